@@ -0,0 +1,14 @@
+package com.jeannychiu.learningnotesapi.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 排程設定
+ *
+ * 啟用 Spring 排程功能，供背景維護工作 (如 API 日誌保留期限清理) 使用。
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
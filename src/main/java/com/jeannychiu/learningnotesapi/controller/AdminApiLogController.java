@@ -0,0 +1,121 @@
+package com.jeannychiu.learningnotesapi.controller;
+
+import com.jeannychiu.learningnotesapi.dto.EndpointErrorRate;
+import com.jeannychiu.learningnotesapi.dto.LatencyPercentiles;
+import com.jeannychiu.learningnotesapi.dto.UserRequestVolume;
+import com.jeannychiu.learningnotesapi.model.ApiLog;
+import com.jeannychiu.learningnotesapi.service.ApiLogRollupService;
+import com.jeannychiu.learningnotesapi.service.ApiLogService;
+import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * API 日誌管理控制器
+ *
+ * 提供管理員查詢 API 日誌的端點。
+ * 日誌的請求/回應內容以壓縮格式儲存，查詢時會自動解壓縮後回傳。
+ * 統計端點 (/stats/**) 由每分鐘彙總表回答，不掃描原始日誌；
+ * 未指定時間範圍時預設為最近 24 小時。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@RestController
+@RequestMapping("/admin/api-logs")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminApiLogController {
+
+    private final ApiLogService apiLogService;
+    private final ApiLogRollupService rollupService;
+
+    public AdminApiLogController(ApiLogService apiLogService, ApiLogRollupService rollupService) {
+        this.apiLogService = apiLogService;
+        this.rollupService = rollupService;
+    }
+
+    /**
+     * 查詢 API 日誌列表
+     *
+     * @param page 頁碼，從0開始 (預設值：0)
+     * @param size 每頁筆數 (預設值：20)
+     * @param userId 使用者 ID (選填)
+     * @param statusCode HTTP 狀態碼 (選填)
+     * @return 分頁的 API 日誌列表
+     */
+    @GetMapping
+    public Page<ApiLog> getApiLogs(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Integer statusCode) {
+        return apiLogService.getApiLogs(page, size, userId, statusCode);
+    }
+
+    /**
+     * 根據 ID 查詢 API 日誌
+     *
+     * @param id API 日誌 ID
+     * @return API 日誌，HTTP 狀態碼 200
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ApiLog> getApiLogById(@PathVariable Long id) {
+        return ResponseEntity.ok(apiLogService.getApiLogById(id));
+    }
+
+    /**
+     * 查詢各端點的錯誤率
+     *
+     * @param from 起始時間 (含，選填)
+     * @param to 結束時間 (不含，選填)
+     * @return 依錯誤率由高到低排序的端點列表
+     */
+    @GetMapping("/stats/error-rates")
+    public List<EndpointErrorRate> getErrorRates(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        return rollupService.getErrorRates(from != null ? from : end.minusDays(1), end);
+    }
+
+    /**
+     * 查詢每小時的延遲百分位數 (p50/p90/p95/p99)
+     *
+     * @param from 起始時間 (含，選填)
+     * @param to 結束時間 (不含，選填)
+     * @param apiPath 路由樣式，例如 /notes/{id} (選填，未指定時統計所有端點)
+     * @param httpMethod HTTP 方法 (選填)
+     * @return 依時間排序的每小時統計
+     */
+    @GetMapping("/stats/latency")
+    public List<LatencyPercentiles> getHourlyLatency(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String apiPath,
+            @RequestParam(required = false) String httpMethod) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        return rollupService.getHourlyLatency(from != null ? from : end.minusDays(1), end, apiPath, httpMethod);
+    }
+
+    /**
+     * 查詢請求量最多的使用者
+     *
+     * @param from 起始時間 (含，選填)
+     * @param to 結束時間 (不含，選填)
+     * @param limit 回傳筆數 (預設值：10，上限 100)
+     * @return 依請求數由多到少排序的使用者列表
+     */
+    @GetMapping("/stats/top-users")
+    public List<UserRequestVolume> getTopUsers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "10") int limit) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        return rollupService.getTopUsers(from != null ? from : end.minusDays(1), end, limit);
+    }
+}
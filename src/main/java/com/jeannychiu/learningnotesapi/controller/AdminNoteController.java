@@ -0,0 +1,90 @@
+package com.jeannychiu.learningnotesapi.controller;
+
+import com.jeannychiu.learningnotesapi.dto.NoteStreamStats;
+import com.jeannychiu.learningnotesapi.dto.QueryCacheStats;
+import com.jeannychiu.learningnotesapi.dto.SearchIndexRebuildStatus;
+import com.jeannychiu.learningnotesapi.search.NoteIndexRebuilder;
+import com.jeannychiu.learningnotesapi.service.NoteQueryCache;
+import com.jeannychiu.learningnotesapi.service.NoteStreamHub;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 筆記管理控制器
+ *
+ * 提供管理員查看筆記相關快取與索引狀態的端點。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@RestController
+@RequestMapping("/admin/notes")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminNoteController {
+
+    private final NoteQueryCache queryCache;
+    private final NoteStreamHub noteStreamHub;
+    private final NoteIndexRebuilder indexRebuilder;
+
+    public AdminNoteController(NoteQueryCache queryCache, NoteStreamHub noteStreamHub,
+                               NoteIndexRebuilder indexRebuilder) {
+        this.queryCache = queryCache;
+        this.noteStreamHub = noteStreamHub;
+        this.indexRebuilder = indexRebuilder;
+    }
+
+    /**
+     * 查詢筆記查詢快取的命中率與記憶體用量
+     *
+     * @return 快取統計
+     */
+    @GetMapping("/query-cache/stats")
+    public QueryCacheStats getQueryCacheStats() {
+        return queryCache.getStats();
+    }
+
+    /**
+     * 清除筆記查詢快取
+     *
+     * @return HTTP 狀態碼 204
+     */
+    @DeleteMapping("/query-cache")
+    public ResponseEntity<Void> clearQueryCache() {
+        queryCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 查詢筆記異動推播的連線統計
+     *
+     * @return 連線統計
+     */
+    @GetMapping("/stream/stats")
+    public NoteStreamStats getStreamStats() {
+        return noteStreamHub.getStats();
+    }
+
+    /**
+     * 查詢搜尋索引重建的進度
+     *
+     * @return 重建進度
+     */
+    @GetMapping("/search-index/rebuild")
+    public SearchIndexRebuildStatus getSearchIndexRebuildStatus() {
+        return indexRebuilder.getStatus();
+    }
+
+    /**
+     * 在背景重建搜尋索引，重建期間舊的索引繼續提供查詢
+     *
+     * @return HTTP 狀態碼 202 與重建進度；已有重建進行中時回傳 409 與目前的進度
+     */
+    @PostMapping("/search-index/rebuild")
+    public ResponseEntity<SearchIndexRebuildStatus> rebuildSearchIndex() {
+        boolean started = indexRebuilder.start();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(indexRebuilder.getStatus());
+    }
+}
@@ -2,19 +2,36 @@ package com.jeannychiu.learningnotesapi.controller;
 
 import com.jeannychiu.learningnotesapi.constant.RoleConstants;
 import com.jeannychiu.learningnotesapi.dto.CreateNoteRequest;
+import com.jeannychiu.learningnotesapi.dto.NoteBatchItem;
+import com.jeannychiu.learningnotesapi.dto.NoteBatchRequest;
+import com.jeannychiu.learningnotesapi.dto.NoteBatchResponse;
+import com.jeannychiu.learningnotesapi.dto.NoteChangesResponse;
+import com.jeannychiu.learningnotesapi.dto.NoteRevisionResponse;
+import com.jeannychiu.learningnotesapi.dto.NoteRevisionSummary;
+import com.jeannychiu.learningnotesapi.dto.NoteSearchHit;
+import com.jeannychiu.learningnotesapi.dto.NoteSummary;
 import com.jeannychiu.learningnotesapi.dto.SearchSuggestionsResponse;
 import com.jeannychiu.learningnotesapi.dto.UpdateNoteRequest;
 import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.service.DuplicateNotePolicy;
+import com.jeannychiu.learningnotesapi.service.IdempotencyService;
+import com.jeannychiu.learningnotesapi.service.NoteChangeLogService;
+import com.jeannychiu.learningnotesapi.service.NoteRevisionService;
 import com.jeannychiu.learningnotesapi.service.NoteService;
+import com.jeannychiu.learningnotesapi.service.NoteStreamHub;
 import jakarta.validation.Valid;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * 筆記管理控制器
@@ -23,6 +40,9 @@ import org.springframework.web.bind.annotation.*;
  * 所有操作都需要使用者認證，並會根據使用者角色進行權限檢查。
  * 一般使用者只能操作自己的筆記，管理員可以操作所有筆記。
  *
+ * 單筆筆記與筆記列表回應帶有強 ETag：單筆筆記由版本號產生，列表由使用者的異動世代與查詢條件產生。
+ * 請求的 If-None-Match 相符時直接回應 304，不載入筆記也不序列化內容。
+ *
  * @author Jeanny Chiu
  * @since 1.0.0
  */
@@ -31,9 +51,19 @@ import org.springframework.web.bind.annotation.*;
 public class NotesController {
     
     private final NoteService noteService;
+    private final NoteChangeLogService noteChangeLogService;
+    private final NoteStreamHub noteStreamHub;
+    private final NoteRevisionService noteRevisionService;
+    private final IdempotencyService idempotencyService;
 
-    public NotesController(NoteService noteService) {
+    public NotesController(NoteService noteService, NoteChangeLogService noteChangeLogService,
+                           NoteStreamHub noteStreamHub, NoteRevisionService noteRevisionService,
+                           IdempotencyService idempotencyService) {
         this.noteService = noteService;
+        this.noteChangeLogService = noteChangeLogService;
+        this.noteStreamHub = noteStreamHub;
+        this.noteRevisionService = noteRevisionService;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
@@ -47,51 +77,207 @@ public class NotesController {
      * @param page 頁碼，從0開始 (預設值：0)
      * @param size 每頁筆數 (預設值：10)
      * @param search 搜尋關鍵字，可搜尋標題及內容 (選填)
-     * @param tag 標籤名稱 (選填)
+     * @param tag 標籤條件，逗號分隔為 AND、| 分隔為 OR、- 開頭為 NOT，例如 java|kotlin,-draft (選填)
+     * @param ifNoneMatch 上次回應的 ETag (選填)
      * @param authentication Spring Security 的認證物件
-     * @return 分頁的筆記列表
+     * @return 分頁的筆記列表，HTTP 狀態碼 200；ETag 相符時為 304
      */
     @GetMapping
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
-    public Page<Note> getAllNotes(
+    public ResponseEntity<Page<Note>> getAllNotes(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String tag,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
             Authentication authentication) {
         
         String userEmail = authentication.getName();
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals(RoleConstants.ROLE_ADMIN));
 
+        String etag = noteService.getNotesETag(PageRequest.of(page, size), userEmail, isAdmin, "list", tag, search);
+        if (isNotModified(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+
+        Page<Note> notes;
         if (tag != null && !tag.trim().isEmpty() &&
             search != null && !search.trim().isEmpty()) {
-            return noteService.searchNotesByTagAndKeyword(PageRequest.of(page, size), userEmail, isAdmin, tag, search);
+            notes = noteService.searchNotesByTagAndKeyword(PageRequest.of(page, size), userEmail, isAdmin, tag, search);
         } else if (tag != null && !tag.trim().isEmpty()) {
-            return noteService.searchNotesByTag(PageRequest.of(page, size), userEmail, isAdmin, tag);
+            notes = noteService.searchNotesByTag(PageRequest.of(page, size), userEmail, isAdmin, tag);
         } else if (search != null && !search.trim().isEmpty()) {
-            return noteService.searchNotes(PageRequest.of(page, size), userEmail, isAdmin, search);
+            notes = noteService.searchNotes(PageRequest.of(page, size), userEmail, isAdmin, search);
         } else {
-            return noteService.getAllNotes(PageRequest.of(page, size), userEmail, isAdmin);
+            notes = noteService.getAllNotes(PageRequest.of(page, size), userEmail, isAdmin);
+        }
+
+        return withETag(etag, notes);
+    }
+
+    /**
+     * 取得筆記摘要列表 (view=summary)
+     *
+     * 篩選條件同 GET /notes，每筆只包含標題、摘要、標籤名稱、字元數、字數與內容雜湊，
+     * 不載入筆記內容，適合列表畫面使用。
+     *
+     * @param page 頁碼，從0開始 (預設值：0)
+     * @param size 每頁筆數 (預設值：10)
+     * @param search 搜尋關鍵字，可搜尋標題及內容 (選填)
+     * @param tag 標籤條件，語法同 GET /notes (選填)
+     * @param ifNoneMatch 上次回應的 ETag (選填)
+     * @param authentication Spring Security 的認證物件
+     * @return 分頁的筆記摘要列表，HTTP 狀態碼 200；ETag 相符時為 304
+     */
+    @GetMapping(params = {"view=summary", "sort!=relevance"})
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<Page<NoteSummary>> getNoteSummaries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String tag,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            Authentication authentication) {
+
+        String userEmail = authentication.getName();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals(RoleConstants.ROLE_ADMIN));
+
+        String etag = noteService.getNotesETag(PageRequest.of(page, size), userEmail, isAdmin, "summary", tag, search);
+        if (isNotModified(ifNoneMatch, etag)) {
+            return notModified(etag);
         }
+
+        return withETag(etag,
+                noteService.getNoteSummaries(PageRequest.of(page, size), userEmail, isAdmin, tag, search));
+    }
+
+    /**
+     * 依相關度搜尋筆記 (sort=relevance)
+     *
+     * 以 BM25 計分，標題命中的權重較高，結果依分數由高到低排序。
+     * 每筆結果附上分數，以及標題、內容摘要中命中文字的位置。
+     *
+     * @param page 頁碼，從0開始 (預設值：0)
+     * @param size 每頁筆數 (預設值：10)
+     * @param search 搜尋關鍵字
+     * @param tag 標籤條件，語法同 GET /notes (選填)
+     * @param ifNoneMatch 上次回應的 ETag (選填)
+     * @param authentication Spring Security 的認證物件
+     * @return 分頁的搜尋結果，HTTP 狀態碼 200；ETag 相符時為 304
+     */
+    @GetMapping(params = "sort=relevance")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<Page<NoteSearchHit>> searchNotesByRelevance(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam String search,
+            @RequestParam(required = false) String tag,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            Authentication authentication) {
+
+        String userEmail = authentication.getName();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals(RoleConstants.ROLE_ADMIN));
+
+        String etag = noteService.getNotesETag(PageRequest.of(page, size), userEmail, isAdmin, "relevance", tag, search);
+        if (isNotModified(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+
+        return withETag(etag,
+                noteService.searchNotesByRelevance(PageRequest.of(page, size), userEmail, isAdmin, tag, search));
+    }
+
+    /**
+     * 取得筆記異動 (增量同步)
+     *
+     * 回傳自己的筆記在 since 之後的新增、更新與刪除，同一筆記只回傳最新狀態。
+     * since 為 0 時回傳所有現存筆記。token 早於已清除的刪除紀錄時回應 410，
+     * 用戶端應清除本機資料後以 since=0 重新同步。
+     *
+     * @param since 上次同步取得的 nextToken (預設值：0)
+     * @param limit 最多讀取的異動筆數 (預設值：100)
+     * @param authentication Spring Security 的認證物件
+     * @return 異動列表與下次同步的 token，HTTP 狀態碼 200
+     */
+    @GetMapping("/changes")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<NoteChangesResponse> getNoteChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "100") int limit,
+            Authentication authentication) {
+        return ResponseEntity.ok(noteChangeLogService.getChanges(authentication.getName(), since, limit));
+    }
+
+    /**
+     * 訂閱筆記異動推播 (Server-Sent Events)
+     *
+     * 自己的筆記新增、更新、刪除後推播 created / updated / deleted 事件，內容為筆記 ID 與版本號。
+     * 連線逾時、被伺服器中斷 (讀取過慢) 或斷線後，用戶端應以 GET /notes/changes 補齊漏掉的異動再重新訂閱。
+     *
+     * @param authentication Spring Security 的認證物件
+     * @return SSE 連線
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public SseEmitter streamNoteChanges(Authentication authentication) {
+        return noteStreamHub.subscribe(authentication.getName());
     }
 
     /**
      * 創建筆記
      *
-     * 設置當前使用者為筆記擁有者
+     * 設置當前使用者為筆記擁有者。onDuplicate 為 skip 或 merge 時，
+     * 已有標題與內容相同的筆記則不新增，回傳既有筆記 (merge 會加上新的標籤)。
+     * 帶有 Idempotency-Key 時，以同一個 key 重試會回傳第一次的回應，不會重複新增。
      *
      * @param note 筆記物件
+     * @param onDuplicate 重複筆記的處理方式：allow、skip、merge (預設值：allow)
+     * @param idempotencyKey 重試時使用的同一個 key (選填)
      * @param authentication Spring Security 的認證物件
-     * @return 創建成功的筆記物件，HTTP 狀態碼 201
+     * @return 創建成功的筆記物件，HTTP 狀態碼 201；重複時為既有筆記，HTTP 狀態碼 200
      */
     @PostMapping
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
-    public ResponseEntity<Note> createNote(@RequestBody @Valid CreateNoteRequest note, Authentication authentication) {
+    public ResponseEntity<Note> createNote(@RequestBody @Valid CreateNoteRequest note,
+                                           @RequestParam(defaultValue = "allow") String onDuplicate,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                           Authentication authentication) {
+        String userEmail = authentication.getName();
+        DuplicateNotePolicy policy = DuplicateNotePolicy.parse(onDuplicate);
+
+        return idempotencyService.execute(userEmail, idempotencyKey, "POST /notes?onDuplicate=" + policy, note, () -> {
+            NoteService.CreateResult result = noteService.createNote(note, userEmail, policy);
+            HttpStatus status = result.status() == NoteBatchItem.Status.CREATED ? HttpStatus.CREATED : HttpStatus.OK;
+            return new ResponseEntity<>(result.note(), status);
+        });
+    }
+
+    /**
+     * 批次創建筆記 (匯入)
+     *
+     * 一次最多 100 筆，在同一個交易中新增。預設略過與既有筆記 (或同一批中較前面的筆記)
+     * 標題與內容相同的筆記，重複匯入不會產生重複的筆記。
+     *
+     * @param request 筆記列表
+     * @param onDuplicate 重複筆記的處理方式：allow、skip、merge (預設值：skip)
+     * @param idempotencyKey 重試時使用的同一個 key (選填)
+     * @param authentication Spring Security 的認證物件
+     * @return 每筆的處理結果，HTTP 狀態碼 200
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<NoteBatchResponse> createNotes(@RequestBody @Valid NoteBatchRequest request,
+                                                         @RequestParam(defaultValue = "skip") String onDuplicate,
+                                                         @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                                         Authentication authentication) {
         String userEmail = authentication.getName();
-        Note createdNote = noteService.createNote(note, userEmail);
+        DuplicateNotePolicy policy = DuplicateNotePolicy.parse(onDuplicate);
 
-        return new ResponseEntity<>(createdNote, HttpStatus.CREATED);
+        return idempotencyService.execute(userEmail, idempotencyKey, "POST /notes/batch?onDuplicate=" + policy,
+                request, () -> ResponseEntity.ok(noteService.createNotes(request.getNotes(), userEmail, policy)));
     }
 
     /**
@@ -102,19 +288,77 @@ public class NotesController {
      * - 管理員：可以看到所有筆記
      *
      * @param id 筆記ID
+     * @param ifNoneMatch 上次回應的 ETag (選填)
      * @param authentication Spring Security 的認證物件
-     * @return 筆記物件，HTTP 狀態碼 200
+     * @return 筆記物件，HTTP 狀態碼 200；ETag 相符時為 304
      */
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
-    public ResponseEntity<Note> getNoteById(@PathVariable Long id, Authentication authentication) {
+    public ResponseEntity<Note> getNoteById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            Authentication authentication) {
         String userEmail = authentication.getName();
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals(RoleConstants.ROLE_ADMIN));
+
+        // 只查詢版本號比對 ETag；筆記不存在或沒有權限時由 readNoteById 回應錯誤
+        if (ifNoneMatch != null) {
+            Integer version = noteService.findNoteVersion(id, userEmail, isAdmin);
+            if (version != null && isNotModified(ifNoneMatch, noteETag(id, version))) {
+                return notModified(noteETag(id, version));
+            }
+        }
         
         Note note = noteService.readNoteById(id, userEmail, isAdmin);
         
-        return ResponseEntity.ok(note);
+        return withETag(note.getVersion() == null ? null : noteETag(id, note.getVersion()), note);
+    }
+
+    /**
+     * 查詢筆記的修訂紀錄
+     *
+     * 每次新增、更新各有一筆，新版本在前，不含內容。
+     *
+     * @param id 筆記ID
+     * @param page 頁碼，從0開始 (預設值：0)
+     * @param size 每頁筆數 (預設值：20)
+     * @param authentication Spring Security 的認證物件
+     * @return 分頁的修訂紀錄摘要，HTTP 狀態碼 200
+     */
+    @GetMapping("/{id}/revisions")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<Page<NoteRevisionSummary>> getNoteRevisions(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
+        String userEmail = authentication.getName();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals(RoleConstants.ROLE_ADMIN));
+
+        return ResponseEntity.ok(noteRevisionService.getRevisions(id, PageRequest.of(page, size), userEmail, isAdmin));
+    }
+
+    /**
+     * 取得筆記在指定版本的內容
+     *
+     * @param id 筆記ID
+     * @param version 版本號
+     * @param authentication Spring Security 的認證物件
+     * @return 該版本的標題、內容與標籤，HTTP 狀態碼 200
+     */
+    @GetMapping("/{id}/revisions/{version}")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<NoteRevisionResponse> getNoteRevision(
+            @PathVariable Long id,
+            @PathVariable Integer version,
+            Authentication authentication) {
+        String userEmail = authentication.getName();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals(RoleConstants.ROLE_ADMIN));
+
+        return ResponseEntity.ok(noteRevisionService.getRevision(id, version, userEmail, isAdmin));
     }
 
     /**
@@ -193,4 +437,41 @@ public class NotesController {
 
         return ResponseEntity.ok(response);
     }
+
+    private static String noteETag(Long id, Integer version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    // If-None-Match 以弱比較 (忽略 W/ 前綴) 判斷是否與目前的 ETag 相符
+    private static boolean isNotModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .build();
+    }
+
+    // 允許用戶端保存回應，但每次使用前都要以 ETag 重新驗證
+    private static <T> ResponseEntity<T> withETag(String etag, T body) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate());
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        return builder.body(body);
+    }
 }
@@ -0,0 +1,146 @@
+package com.jeannychiu.learningnotesapi.converter;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 文字壓縮轉換器
+ *
+ * 將字串以 deflate 壓縮後存成 BLOB，讀取時自動解壓縮，對 Entity 而言是透明的。
+ * 壓縮時使用針對 API 日誌 JSON 格式調整過的預設字典，讓短小的 JSON 也能有不錯的壓縮率。
+ *
+ * 儲存格式的第一個位元組為格式代碼：
+ * - {@code 0x00}：未壓縮的 UTF-8 文字 (內容太短或壓縮後反而較大時使用)
+ * - {@code 0x01}：zlib 格式 deflate 壓縮，使用字典 v1
+ *
+ * 若日後調整字典，需新增格式代碼並保留舊字典，以便解壓縮既有資料。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+    static final byte FORMAT_PLAIN = 0x00;
+    static final byte FORMAT_DEFLATE_V1 = 0x01;
+
+    // 短於此長度的內容直接存原文，壓縮的額外開銷不划算
+    private static final int MIN_COMPRESS_LENGTH = 64;
+
+    // 預設字典：越常出現的片段放越後面，deflate 參照距離越短
+    private static final byte[] DICTIONARY_V1 = String.join("",
+            "\"headers\":{},\"statusCodeValue\":",
+            "\"statusCode\":\"CREATED\",\"statusCode\":\"NO_CONTENT\",",
+            "\"errors\":{},\"code\":\"CONFLICT\",\"details\":{\"resource\":\"note\"},",
+            "\"status\":400,\"status\":401,\"status\":403,\"status\":404,\"message\":\"",
+            "\"suggestions\":[{\"id\":0,\"type\":\"keyword\",\"matchedText\":\"",
+            "\"email\":\"\",\"password\":\"\",\"role\":\"USER\",\"token\":\"eyJhbGciOiJIUzI1NiJ9.",
+            "{\"authorities\":[{\"authority\":\"ROLE_USER\"}],\"details\":null,",
+            "\"authenticated\":true,\"principal\":\"\",\"credentials\":null,\"name\":\"",
+            "\"pageable\":{\"pageNumber\":0,\"pageSize\":10,",
+            "\"sort\":{\"empty\":false,\"sorted\":true,\"unsorted\":false},",
+            "\"offset\":0,\"paged\":true,\"unpaged\":false},",
+            "\"last\":true,\"totalElements\":,\"totalPages\":1,\"size\":10,\"number\":0,",
+            "\"first\":true,\"numberOfElements\":,\"empty\":false}",
+            "\"statusCode\":\"OK\",\"statusCodeValue\":200}",
+            "\"tagNames\":[\"\"],\"tags\":[{\"id\":,\"name\":\"",
+            "\"version\":0,\"version\":1,",
+            "\"userEmail\":\"@gmail.com\",",
+            "\"createdAt\":\"2025-\",\"updatedAt\":\"2025-",
+            "{\"body\":{\"content\":[{\"id\":,\"title\":\"\",\"content\":\""
+    ).getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        if (attribute == null) {
+            return null;
+        }
+
+        byte[] plain = attribute.getBytes(StandardCharsets.UTF_8);
+        if (plain.length >= MIN_COMPRESS_LENGTH) {
+            byte[] compressed = deflate(plain);
+            if (compressed.length < plain.length) {
+                return withHeader(FORMAT_DEFLATE_V1, compressed);
+            }
+        }
+        return withHeader(FORMAT_PLAIN, plain);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        if (dbData == null) {
+            return null;
+        }
+        if (dbData.length == 0) {
+            return "";
+        }
+
+        return switch (dbData[0]) {
+            case FORMAT_PLAIN -> new String(dbData, 1, dbData.length - 1, StandardCharsets.UTF_8);
+            case FORMAT_DEFLATE_V1 -> new String(inflate(dbData), StandardCharsets.UTF_8);
+            default -> throw new IllegalStateException("未知的壓縮格式: " + dbData[0]);
+        };
+    }
+
+    // Deflater/Inflater 建立時會配置原生記憶體，成本遠高於壓縮本身，因此每個執行緒重複使用
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    private static byte[] deflate(byte[] plain) {
+        Deflater deflater = DEFLATERS.get();
+        try {
+            deflater.setDictionary(DICTIONARY_V1);
+            deflater.setInput(plain);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(plain.length / 4, 64));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    private static byte[] inflate(byte[] dbData) {
+        Inflater inflater = INFLATERS.get();
+        try {
+            inflater.setInput(dbData, 1, dbData.length - 1);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(dbData.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY_V1);
+                    } else if (inflater.needsInput()) {
+                        throw new IllegalStateException("壓縮資料不完整");
+                    }
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("壓縮資料格式錯誤: " + e.getMessage(), e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    private static byte[] withHeader(byte format, byte[] payload) {
+        byte[] result = new byte[payload.length + 1];
+        result[0] = format;
+        System.arraycopy(payload, 0, result, 1, payload.length);
+        return result;
+    }
+}
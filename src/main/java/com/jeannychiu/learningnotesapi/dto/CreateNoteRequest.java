@@ -11,7 +11,8 @@ public class CreateNoteRequest {
     @NotBlank(message = "標題不能為空")
     private String title;
 
-    @Size(max = 500, message = "內容不能超過 500 字")
+    // 超過 app.note-body.inline-limit 的內容另外存放，列表只回傳摘要
+    @Size(max = 500000, message = "內容不能超過 500000 字")
     private String content;
 
     private Set<String> tagNames;
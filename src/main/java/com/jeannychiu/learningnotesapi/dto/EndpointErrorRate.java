@@ -0,0 +1,14 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.Data;
+
+@Data
+public class EndpointErrorRate {
+    private String apiPath;
+    private String httpMethod;
+    private long requestCount;
+    private long clientErrorCount;
+    private long serverErrorCount;
+    // (4xx + 5xx) / 總請求數
+    private double errorRate;
+}
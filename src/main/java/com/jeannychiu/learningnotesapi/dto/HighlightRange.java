@@ -0,0 +1,16 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 命中文字的範圍 (UTF-16 字元偏移，start 包含、end 不包含)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HighlightRange {
+    private int start;
+    private int end;
+}
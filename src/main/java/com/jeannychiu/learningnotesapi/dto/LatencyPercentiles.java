@@ -0,0 +1,20 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class LatencyPercentiles {
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime hour;
+    private long requestCount;
+    // 以下皆為毫秒
+    private double mean;
+    private long p50;
+    private long p90;
+    private long p95;
+    private long p99;
+    private long max;
+}
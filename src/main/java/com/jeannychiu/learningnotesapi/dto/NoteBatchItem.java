@@ -0,0 +1,27 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批次新增筆記中單筆的結果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteBatchItem {
+    public enum Status {
+        CREATED,
+        // 與既有筆記重複，未新增
+        SKIPPED,
+        // 與既有筆記重複，新的標籤已合併到既有筆記
+        MERGED
+    }
+
+    // 在請求中的位置 (從 0 開始)
+    private int index;
+    private Status status;
+    private Long noteId;
+    private Integer version;
+}
@@ -0,0 +1,15 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class NoteBatchRequest {
+    @NotEmpty(message = "筆記不能為空")
+    @Size(max = 100, message = "一次最多新增 100 筆筆記")
+    private List<@Valid CreateNoteRequest> notes;
+}
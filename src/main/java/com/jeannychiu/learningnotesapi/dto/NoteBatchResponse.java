@@ -0,0 +1,17 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批次新增筆記的結果，items 依請求的順序排列
+ */
+@Data
+public class NoteBatchResponse {
+    private List<NoteBatchItem> items = new ArrayList<>();
+    private int created;
+    private int skipped;
+    private int merged;
+}
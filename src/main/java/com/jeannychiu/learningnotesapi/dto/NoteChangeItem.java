@@ -0,0 +1,26 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteChange;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 增量同步的單筆異動
+ *
+ * type 為 DELETED 時 note 為 null，用戶端應刪除本機的 noteId。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteChangeItem {
+    private Long noteId;
+    private NoteChange.Type type;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime changedAt;
+    private Note note;
+}
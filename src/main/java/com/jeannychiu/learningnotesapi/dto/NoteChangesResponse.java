@@ -0,0 +1,18 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 增量同步回應
+ *
+ * 同一筆記在此頁有多筆異動時只回傳最新狀態。下次同步時以 nextToken 作為 since；
+ * hasMore 為 true 時表示還有異動，應立即以 nextToken 繼續取得。
+ */
+@Data
+public class NoteChangesResponse {
+    private List<NoteChangeItem> changes;
+    private long nextToken;
+    private boolean hasMore;
+}
@@ -0,0 +1,19 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 搜尋結果的標示位置
+ *
+ * 偏移量皆相對於筆記的 title / content 原文。
+ * 內容只回傳一段摘要範圍 (snippetStart ~ snippetEnd) 與其中命中的位置。
+ */
+@Data
+public class NoteHighlights {
+    private List<HighlightRange> title;
+    private int snippetStart;
+    private int snippetEnd;
+    private List<HighlightRange> content;
+}
@@ -0,0 +1,22 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 筆記某一版本的完整內容
+ */
+@Data
+public class NoteRevisionResponse {
+    private Long noteId;
+    private Integer version;
+    private String title;
+    private String content;
+    private List<String> tagNames;
+    private String editorEmail;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+}
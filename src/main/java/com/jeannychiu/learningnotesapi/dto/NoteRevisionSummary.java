@@ -0,0 +1,24 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 筆記修訂紀錄摘要 (不含內容)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteRevisionSummary {
+    private Integer version;
+    // 重建此版本時的 snapshot 版本，與 version 相同表示此版存有完整內容
+    private Integer baseVersion;
+    private String title;
+    private String editorEmail;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,24 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.jeannychiu.learningnotesapi.model.Note;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 依相關度排序的搜尋結果
+ *
+ * 筆記欄位直接展開在最外層，另外附上 BM25 分數與標示位置。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteSearchHit {
+    @JsonUnwrapped
+    private Note note;
+
+    private double score;
+
+    private NoteHighlights highlights;
+}
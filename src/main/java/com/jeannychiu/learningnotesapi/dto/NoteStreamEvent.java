@@ -0,0 +1,25 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.jeannychiu.learningnotesapi.event.NoteChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 筆記異動推播 (GET /notes/stream) 的事件內容
+ *
+ * 只帶識別資訊，用戶端需要內容時以 GET /notes/{id} (可帶 ETag) 或 GET /notes/changes 取得。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteStreamEvent {
+    private NoteChangedEvent.Type type;
+    private Long noteId;
+    private Integer version;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,15 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.Data;
+
+/**
+ * 筆記異動推播的連線統計
+ */
+@Data
+public class NoteStreamStats {
+    private int subscriberCount;
+    private int userCount;
+    private long deliveredCount;
+    // 緩衝區已滿或寫出逾時 (用戶端讀取太慢) 而被中斷的連線數
+    private long evictedCount;
+}
@@ -0,0 +1,40 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 筆記摘要 (GET /notes?view=summary)，不含筆記內容
+ */
+@Data
+@NoArgsConstructor
+public class NoteSummary {
+    private Long id;
+    private String title;
+    private String excerpt;
+    private List<String> tagNames = new ArrayList<>();
+    private Integer charCount;
+    private Integer wordCount;
+    private String contentHash;
+    private Integer version;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updatedAt;
+
+    // JPQL 建構式查詢使用，標籤另外查詢後填入
+    public NoteSummary(Long id, String title, String excerpt, Integer charCount, Integer wordCount,
+                       String contentHash, Integer version, LocalDateTime updatedAt) {
+        this.id = id;
+        this.title = title;
+        this.excerpt = excerpt;
+        this.charCount = charCount;
+        this.wordCount = wordCount;
+        this.contentHash = contentHash;
+        this.version = version;
+        this.updatedAt = updatedAt;
+    }
+}
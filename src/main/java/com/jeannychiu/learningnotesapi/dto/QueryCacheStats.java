@@ -0,0 +1,18 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.Data;
+
+/**
+ * 筆記查詢結果快取的統計
+ */
+@Data
+public class QueryCacheStats {
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    private long entryCount;
+    // 依快取項目內容估算的記憶體用量
+    private long estimatedBytes;
+    private long maxBytes;
+}
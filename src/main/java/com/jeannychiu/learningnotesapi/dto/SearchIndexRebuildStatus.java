@@ -0,0 +1,36 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 搜尋索引重建的進度
+ */
+@Data
+public class SearchIndexRebuildStatus {
+    // IDLE、RUNNING、COMPLETED、FAILED
+    private String state;
+    // 索引是否已完整載入；第一次重建完成前依賴索引的查詢改用資料庫
+    private boolean ready;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    // 開始重建時的筆記數 (估計值，重建期間新增的筆記由異動事件寫入)
+    private long totalNotes;
+    private long indexedNotes;
+    private int totalChunks;
+    private int completedChunks;
+    private double notesPerSecond;
+    // SNAPSHOT (由磁碟快照還原) 或 DATABASE (從資料庫重建)
+    private String source;
+    // 由快照還原後重播的異動紀錄數
+    private long replayedChanges;
+    // 最近一次寫入快照的時間
+    private LocalDateTime snapshotWrittenAt;
+    // 目前索引的 posting list 佔用的堆外記憶體 (bytes)
+    private long offHeapBytes;
+    private String error;
+    // 連續失敗的次數與下次自動重試的時間 (沒有待重試時為 null)
+    private int failedAttempts;
+    private LocalDateTime retryAt;
+}
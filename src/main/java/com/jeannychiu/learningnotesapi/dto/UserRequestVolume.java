@@ -0,0 +1,10 @@
+package com.jeannychiu.learningnotesapi.dto;
+
+import lombok.Data;
+
+@Data
+public class UserRequestVolume {
+    private Long userId;
+    private long requestCount;
+    private long errorCount;
+}
@@ -0,0 +1,33 @@
+package com.jeannychiu.learningnotesapi.event;
+
+import com.jeannychiu.learningnotesapi.model.Note;
+import lombok.Getter;
+
+/**
+ * 筆記異動事件
+ *
+ * 由 NoteService 在筆記新增、更新、刪除後發布。
+ * 監聽者以 {@code @TransactionalEventListener} 在交易提交後處理，
+ * 例如更新記憶體中的搜尋索引。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Getter
+public class NoteChangedEvent {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+
+    // 異動後的筆記；刪除時為刪除前的筆記
+    private final Note note;
+
+    public NoteChangedEvent(Type type, Note note) {
+        this.type = type;
+        this.note = note;
+    }
+}
@@ -0,0 +1,7 @@
+package com.jeannychiu.learningnotesapi.exception;
+
+public class ApiLogNotFoundException extends RuntimeException {
+    public ApiLogNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.jeannychiu.learningnotesapi.exception;
+
+public class IdempotencyKeyMismatchException extends RuntimeException {
+    public IdempotencyKeyMismatchException(String message) {
+        super(message);
+    }
+}
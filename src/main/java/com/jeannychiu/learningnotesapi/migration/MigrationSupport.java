@@ -0,0 +1,66 @@
+package com.jeannychiu.learningnotesapi.migration;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Java migration 共用的 schema 查詢
+ *
+ * MySQL 與 H2 回傳的識別字大小寫不同，這裡一律轉成小寫比對。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class MigrationSupport {
+    private MigrationSupport() {
+    }
+
+    /**
+     * 取得資料表目前的欄位名稱
+     *
+     * @param connection 資料庫連線
+     * @param table 資料表名稱
+     * @return 小寫的欄位名稱
+     * @throws SQLException 查詢失敗時
+     */
+    static Set<String> columnNames(Connection connection, String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnName(i).toLowerCase(Locale.ROOT));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 資料表是否已有指定名稱的索引
+     *
+     * @param connection 資料庫連線
+     * @param table 資料表名稱
+     * @param index 索引名稱
+     * @return 是否存在
+     * @throws SQLException 查詢失敗時
+     */
+    static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        try (ResultSet resultSet = metaData.getIndexInfo(connection.getCatalog(), null, tableName, false, false)) {
+            while (resultSet.next()) {
+                if (index.equalsIgnoreCase(resultSet.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
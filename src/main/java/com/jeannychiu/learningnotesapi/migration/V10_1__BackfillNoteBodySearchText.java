@@ -0,0 +1,60 @@
+package com.jeannychiu.learningnotesapi.migration;
+
+import com.jeannychiu.learningnotesapi.converter.CompressedTextConverter;
+import com.jeannychiu.learningnotesapi.model.NoteBody;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 為既有的較長筆記補上關鍵字搜尋用的 note_body.search_text
+ *
+ * 依筆記 ID 分批讀取壓縮的內容與標題，以 {@link CompressedTextConverter} 解壓縮後寫入，
+ * 格式與新增、更新筆記時相同 (見 {@link NoteBody#of(Long, String, String)})。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class V10_1__BackfillNoteBodySearchText extends BaseJavaMigration {
+    private static final int BATCH_SIZE = 500;
+
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        String select = "SELECT b.note_id, n.title, b.content FROM note_body b JOIN note n ON n.id = b.note_id"
+                + " WHERE b.note_id > ? AND b.search_text IS NULL"
+                + " ORDER BY b.note_id LIMIT " + BATCH_SIZE;
+        String update = "UPDATE note_body SET search_text = ? WHERE note_id = ?";
+
+        try (PreparedStatement query = connection.prepareStatement(select);
+             PreparedStatement statement = connection.prepareStatement(update)) {
+            long lastId = 0;
+            int rows;
+            do {
+                rows = 0;
+                query.setLong(1, lastId);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    while (resultSet.next()) {
+                        lastId = resultSet.getLong(1);
+                        String content = converter.convertToEntityAttribute(resultSet.getBytes(3));
+                        statement.setString(1, NoteBody.of(lastId, resultSet.getString(2), content).getSearchText());
+                        statement.setLong(2, lastId);
+                        statement.addBatch();
+                        rows++;
+                    }
+                }
+                if (rows > 0) {
+                    statement.executeBatch();
+                }
+            } while (rows == BATCH_SIZE);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.jeannychiu.learningnotesapi.migration;
+
+import com.jeannychiu.learningnotesapi.model.NoteBody;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * note_body 只保留一份內容：移除壓縮的 content，之後由 search_text 讀回內容
+ *
+ * search_text 的第一行是標題，內容從第二行開始 (見 {@link NoteBody#of(Long, String, String)})。
+ * V10_1 補上的資料直接沿用標題，標題本身含有換行時無法分辨內容從哪裡開始，在此改為新的格式。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class V11__DropCompressedNoteBodyContent extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        String select = "SELECT b.note_id, n.title, b.search_text FROM note_body b JOIN note n ON n.id = b.note_id"
+                + " WHERE n.title LIKE ?";
+        String update = "UPDATE note_body SET search_text = ? WHERE note_id = ?";
+
+        try (PreparedStatement query = connection.prepareStatement(select);
+             PreparedStatement statement = connection.prepareStatement(update)) {
+            query.setString(1, "%\n%");
+            try (ResultSet resultSet = query.executeQuery()) {
+                while (resultSet.next()) {
+                    String title = resultSet.getString(2);
+                    String content = resultSet.getString(3).substring(title.length() + 1);
+                    statement.setString(1, NoteBody.of(null, title, content).getSearchText());
+                    statement.setLong(2, resultSet.getLong(1));
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+
+        if (MigrationSupport.columnNames(connection, "note_body").contains("content")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE note_body DROP COLUMN content");
+            }
+        }
+    }
+}
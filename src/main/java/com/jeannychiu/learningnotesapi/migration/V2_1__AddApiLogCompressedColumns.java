@@ -0,0 +1,44 @@
+package com.jeannychiu.learningnotesapi.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 補上改用 Flyway 前建立的 api_log 缺少的欄位與索引
+ *
+ * 由 Hibernate (ddl-auto=update) 建立的 api_log 只有 LONGTEXT 的 request_body / response_body，
+ * V1 的 CREATE TABLE IF NOT EXISTS 會略過已存在的資料表，因此壓縮內容的欄位與 request_time 索引不會建立，
+ * 之後 V3 的 MODIFY 也會失敗。此 migration 排在 V3 之前，只補上缺少的部分，全新的資料庫不做任何事。
+ *
+ * 以 Spring bean 註冊，由 Flyway 自動設定加入 migration 清單。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class V2_1__AddApiLogCompressedColumns extends BaseJavaMigration {
+    private static final List<String> COMPRESSED_COLUMNS = List.of("request_body_compressed", "response_body_compressed");
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        Set<String> columns = MigrationSupport.columnNames(connection, "api_log");
+        try (Statement statement = connection.createStatement()) {
+            for (String column : COMPRESSED_COLUMNS) {
+                if (!columns.contains(column)) {
+                    statement.execute("ALTER TABLE api_log ADD COLUMN " + column + " MEDIUMBLOB");
+                }
+            }
+            if (!MigrationSupport.hasIndex(connection, "api_log", "idx_api_log_request_time")) {
+                statement.execute("CREATE INDEX idx_api_log_request_time ON api_log (request_time)");
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.jeannychiu.learningnotesapi.migration;
+
+import com.jeannychiu.learningnotesapi.converter.CompressedTextConverter;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 將改用 Flyway 前的 LONGTEXT 請求/回應內容壓縮後搬到新欄位，再移除舊欄位
+ *
+ * 依 ID 分批讀取舊欄位，以 {@link CompressedTextConverter} 壓縮後寫入對應的 *_compressed 欄位
+ * (新欄位已有值的不覆蓋)，全部搬完才 DROP 舊欄位，讓管理介面的歷史日誌仍看得到內容並回收空間。
+ * 全新的資料庫沒有舊欄位，不做任何事。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class V2_2__MigrateApiLogBodies extends BaseJavaMigration {
+    // 舊欄位與對應的壓縮欄位
+    private static final Map<String, String> LEGACY_COLUMNS = Map.of(
+            "request_body", "request_body_compressed",
+            "response_body", "response_body_compressed");
+
+    private static final int BATCH_SIZE = 500;
+
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        Set<String> columns = MigrationSupport.columnNames(connection, "api_log");
+        for (Map.Entry<String, String> entry : LEGACY_COLUMNS.entrySet()) {
+            if (columns.contains(entry.getKey())) {
+                copyCompressed(connection, entry.getKey(), entry.getValue());
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("ALTER TABLE api_log DROP COLUMN " + entry.getKey());
+                }
+            }
+        }
+    }
+
+    private void copyCompressed(Connection connection, String source, String target) throws SQLException {
+        String select = "SELECT id, " + source + " FROM api_log"
+                + " WHERE id > ? AND " + source + " IS NOT NULL AND " + target + " IS NULL"
+                + " ORDER BY id LIMIT " + BATCH_SIZE;
+        String update = "UPDATE api_log SET " + target + " = ? WHERE id = ?";
+
+        try (PreparedStatement query = connection.prepareStatement(select);
+             PreparedStatement statement = connection.prepareStatement(update)) {
+            long lastId = 0;
+            int rows;
+            do {
+                rows = 0;
+                query.setLong(1, lastId);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    while (resultSet.next()) {
+                        lastId = resultSet.getLong(1);
+                        statement.setBytes(1, converter.convertToDatabaseColumn(resultSet.getString(2)));
+                        statement.setLong(2, lastId);
+                        statement.addBatch();
+                        rows++;
+                    }
+                }
+                if (rows > 0) {
+                    statement.executeBatch();
+                }
+            } while (rows == BATCH_SIZE);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.jeannychiu.learningnotesapi.model;
 
+import com.jeannychiu.learningnotesapi.converter.CompressedTextConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -7,7 +8,9 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "api_log")
+@Table(name = "api_log", indexes = {
+        @Index(name = "idx_api_log_request_time", columnList = "request_time")
+})
 public class ApiLog {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -19,12 +22,16 @@ public class ApiLog {
     @Column(name = "http_method", length = 10)
     private String httpMethod;
 
+    // 請求/回應內容以 deflate 壓縮後存成 BLOB，讀取時自動解壓縮
+    // 未指定長度時 MySQL 會對應到 TINYBLOB (255 bytes)，因此指定為 MEDIUMBLOB 的大小
     @Lob
-    @Column(name = "request_body", columnDefinition = "LONGTEXT")
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "request_body_compressed", length = 16777215)
     private String requestBody;
 
     @Lob
-    @Column(name = "response_body", columnDefinition = "LONGTEXT")
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "response_body_compressed", length = 16777215)
     private String responseBody;
 
     @Column(name = "status_code")
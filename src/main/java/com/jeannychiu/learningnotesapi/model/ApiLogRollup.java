@@ -0,0 +1,51 @@
+package com.jeannychiu.learningnotesapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * API 日誌每分鐘彙總 (依端點、HTTP 方法、狀態碼分組)
+ *
+ * 延遲分佈以 HdrHistogram 壓縮編碼後儲存，可跨分鐘合併後計算百分位數。
+ */
+@Entity
+@Data
+@Table(name = "api_log_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_api_log_rollup_key",
+                columnNames = {"bucket_start", "api_path", "http_method", "status_code"}),
+        indexes = @Index(name = "idx_api_log_rollup_bucket_start", columnList = "bucket_start"))
+public class ApiLogRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 彙總區間的起始時間 (整分鐘)
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    // 路由樣式 (例如 /notes/{id})，避免每個 ID 各自一組
+    @Column(name = "api_path", nullable = false, length = 255)
+    private String apiPath;
+
+    @Column(name = "http_method", nullable = false, length = 10)
+    private String httpMethod;
+
+    @Column(name = "status_code", nullable = false)
+    private Integer statusCode;
+
+    @Column(name = "request_count", nullable = false)
+    private Long requestCount;
+
+    @Column(name = "duration_sum", nullable = false)
+    private Long durationSum;
+
+    @Column(name = "duration_max", nullable = false)
+    private Long durationMax;
+
+    // HdrHistogram 壓縮編碼的延遲分佈 (毫秒)
+    @Lob
+    @Column(name = "latency_histogram", nullable = false, length = 65535)
+    private byte[] latencyHistogram;
+}
@@ -0,0 +1,35 @@
+package com.jeannychiu.learningnotesapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * API 日誌每分鐘彙總 (依使用者分組)
+ */
+@Entity
+@Data
+@Table(name = "api_log_user_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_api_log_user_rollup_key",
+                columnNames = {"bucket_start", "user_id"}),
+        indexes = @Index(name = "idx_api_log_user_rollup_bucket_start", columnList = "bucket_start"))
+public class ApiLogUserRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 彙總區間的起始時間 (整分鐘)
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "request_count", nullable = false)
+    private Long requestCount;
+
+    // 狀態碼 400 以上的請求數
+    @Column(name = "error_count", nullable = false)
+    private Long errorCount;
+}
@@ -1,11 +1,14 @@
 package com.jeannychiu.learningnotesapi.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.Size;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 
 
@@ -26,9 +29,40 @@ public class Note {
     @NotBlank(message = "標題不能為空")
     private String title;
 
-    @Size(max = 500, message = "內容不能超過 500 字")
+    // 較短的內容直接存在 note 資料表；超過上限的內容另外存在 note_body (見 NoteBody)，此欄位為 null
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
     private String content;
 
+    // 存在 note_body 的內容長度 (字元數)；內容直接存在 note 資料表時為 null
+    @JsonIgnore
+    @Column(name = "body_length")
+    @Setter(AccessLevel.NONE)
+    private Integer bodyLength;
+
+    // 從 note_body 載入的內容，只在查看單篇筆記時載入
+    @Transient
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String loadedBody;
+
+    // 列表顯示用的內容摘要，以及寫入時計算的字元數、字數與內容雜湊 (見 NoteTextStats)
+    private String excerpt;
+
+    @Column(name = "char_count")
+    private Integer charCount;
+
+    @Column(name = "word_count")
+    private Integer wordCount;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // 正規化後標題與內容的指紋，用於偵測重複的筆記 (見 NoteFingerprint)
+    @JsonIgnore
+    private Long fingerprint;
+
     @Column(name = "created_at")
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime createdAt;
@@ -52,4 +86,76 @@ public class Note {
             inverseJoinColumns = @JoinColumn(name = "tag_id")
     )
     private Set<Tag> tags = new HashSet<>();
+
+    /**
+     * 取得筆記內容
+     *
+     * @return 完整內容；內容存在 note_body 且尚未載入時 (例如列表) 為 null
+     */
+    public String getContent() {
+        return bodyLength == null ? content : loadedBody;
+    }
+
+    /**
+     * 設定直接存在 note 資料表的內容
+     */
+    public void setContent(String content) {
+        this.content = content;
+        this.bodyLength = null;
+        this.loadedBody = null;
+    }
+
+    /**
+     * 設定存在 note_body 的內容 (新的內容或從 note_body 載入的內容)
+     */
+    public void setExternalContent(String body) {
+        this.content = null;
+        this.bodyLength = body.length();
+        this.loadedBody = body;
+    }
+
+    /**
+     * 內容是否存在 note_body
+     */
+    @JsonIgnore
+    public boolean isContentExternal() {
+        return bodyLength != null;
+    }
+
+    /**
+     * 內容是否已可使用 (直接存在 note 資料表，或已從 note_body 載入)
+     */
+    @JsonIgnore
+    public boolean isContentLoaded() {
+        return bodyLength == null || loadedBody != null;
+    }
+
+    /**
+     * 複製為不受任何 persistence context 管理的物件，可交給其他請求使用
+     *
+     * 標籤也一併複製；內容 (含已從 note_body 載入的內容) 與其他欄位直接沿用。
+     *
+     * @return 複本
+     */
+    public Note detachedCopy() {
+        Note copy = new Note();
+        copy.id = id;
+        copy.title = title;
+        copy.content = content;
+        copy.bodyLength = bodyLength;
+        copy.loadedBody = loadedBody;
+        copy.excerpt = excerpt;
+        copy.charCount = charCount;
+        copy.wordCount = wordCount;
+        copy.contentHash = contentHash;
+        copy.fingerprint = fingerprint;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.userEmail = userEmail;
+        copy.version = version;
+        for (Tag tag : tags) {
+            copy.tags.add(tag.detachedCopy());
+        }
+        return copy;
+    }
 }
@@ -0,0 +1,51 @@
+package com.jeannychiu.learningnotesapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * 較長的筆記內容
+ *
+ * 與 note 資料表分開存放，列表不會載入這些內容；查看單篇筆記時才以筆記 ID 讀取。
+ * 只存一份未壓縮的文字 (search_text)，關鍵字搜尋直接以 LIKE / FULLTEXT 比對，
+ * 儲存空間由資料庫的資料表壓縮節省 (MySQL 見 V11_1)。
+ */
+@Entity
+@Data
+@Table(name = "note_body")
+public class NoteBody {
+    @Id
+    @Column(name = "note_id")
+    private Long noteId;
+
+    // 第一行是標題 (換行改為空白)，之後是內容，見 of(Long, String, String)
+    @Column(name = "search_text", nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String searchText;
+
+    /**
+     * 建立筆記的內容
+     *
+     * 標題也放進來，FULLTEXT 的多個詞分別出現在標題與內容時仍能以同一個索引比對；
+     * 標題中的換行改為空白，讀取時以第一個換行分開標題與內容。
+     *
+     * @param noteId 筆記 ID
+     * @param title 筆記標題
+     * @param content 筆記內容
+     * @return 筆記的內容
+     */
+    public static NoteBody of(Long noteId, String title, String content) {
+        NoteBody body = new NoteBody();
+        body.noteId = noteId;
+        body.searchText = title.replace('\n', ' ') + "\n" + content;
+        return body;
+    }
+
+    /**
+     * 取得筆記內容 (不含標題)
+     *
+     * @return 筆記內容
+     */
+    public String getContent() {
+        return searchText.substring(searchText.indexOf('\n') + 1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.jeannychiu.learningnotesapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 筆記異動紀錄 (增量同步用)
+ *
+ * 只新增不修改，刪除筆記時留下 DELETED 紀錄 (tombstone)。
+ * id 遞增，作為用戶端同步用的異動 token。
+ */
+@Entity
+@Data
+@Table(name = "note_change",
+        indexes = {
+                @Index(name = "idx_note_change_user_email_id", columnList = "user_email, id"),
+                @Index(name = "idx_note_change_note_id_id", columnList = "note_id, id")
+        })
+public class NoteChange {
+    /**
+     * 異動類型
+     */
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_email", nullable = false)
+    private String userEmail;
+
+    @Column(name = "note_id", nullable = false)
+    private Long noteId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false, length = 10)
+    private Type changeType;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
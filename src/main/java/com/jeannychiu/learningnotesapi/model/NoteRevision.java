@@ -0,0 +1,58 @@
+package com.jeannychiu.learningnotesapi.model;
+
+import com.jeannychiu.learningnotesapi.converter.CompressedTextConverter;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 筆記修訂紀錄
+ *
+ * 標題與標籤每版完整保存；內容在 snapshot (baseVersion 等於 version) 時為完整內容，
+ * 其他版本為與前一版的差異 (格式見 TextDelta)。重建某一版時從 baseVersion 的 snapshot
+ * 依序套用差異即可。
+ */
+@Entity
+@Data
+@Table(name = "note_revision",
+        uniqueConstraints = @UniqueConstraint(name = "uk_note_revision_note_id_version",
+                columnNames = {"note_id", "version"}))
+public class NoteRevision {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "note_id", nullable = false)
+    private Long noteId;
+
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+    // 重建此版本時的起點 (snapshot 的版本)
+    @Column(name = "base_version", nullable = false)
+    private Integer baseVersion;
+
+    @Column(name = "title", nullable = false)
+    private String title;
+
+    // 標籤名稱，依名稱排序後以換行分隔
+    @Column(name = "tag_names", length = 2000)
+    private String tagNames;
+
+    // snapshot 為完整內容，其他為差異
+    @Lob
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "content_data", length = 16777215)
+    private String contentData;
+
+    @Column(name = "editor_email")
+    private String editorEmail;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public boolean isSnapshot() {
+        return version.equals(baseVersion);
+    }
+}
@@ -38,4 +38,18 @@ public class Tag {
     @Column(name = "updated_at")
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime updatedAt;
+
+    /**
+     * 複製為不受任何 persistence context 管理的物件 (不含 notes 關聯)
+     *
+     * @return 複本
+     */
+    public Tag detachedCopy() {
+        Tag copy = new Tag();
+        copy.id = id;
+        copy.name = name;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        return copy;
+    }
 }
@@ -1,5 +1,6 @@
 package com.jeannychiu.learningnotesapi.model;
 
+import com.jeannychiu.learningnotesapi.service.UserIdCacheListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -7,6 +8,7 @@ import lombok.Data;
 
 @Entity
 @Data
+@EntityListeners(UserIdCacheListener.class)
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,7 +1,14 @@
 package com.jeannychiu.learningnotesapi.repository;
 
 import com.jeannychiu.learningnotesapi.model.ApiLog;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * API 日誌資料存取層
@@ -13,4 +20,39 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * @since 1.0.0
  */
 public interface ApiLogRepository extends JpaRepository<ApiLog, Long> {
+    /**
+     * 查詢特定使用者的 API 日誌 (管理員專用)
+     *
+     * @param userId 使用者 ID
+     * @param pageable 分頁參數
+     * @return API 日誌分頁結果
+     */
+    Page<ApiLog> findByUserId(Long userId, Pageable pageable);
+
+    /**
+     * 查詢特定狀態碼的 API 日誌 (管理員專用)
+     *
+     * @param statusCode HTTP 狀態碼
+     * @param pageable 分頁參數
+     * @return API 日誌分頁結果
+     */
+    Page<ApiLog> findByStatusCode(Integer statusCode, Pageable pageable);
+
+    /**
+     * 查詢超過保留期限的日誌 ID
+     *
+     * 依 request_time 索引範圍掃描，搭配分頁限制每批次的數量。
+     *
+     * @param cutoff 保留期限的截止時間，早於此時間的日誌視為過期
+     * @param minStatus 狀態碼下限 (含)
+     * @param maxStatus 狀態碼上限 (含)
+     * @param pageable 分頁參數 (用於限制批次大小)
+     * @return 過期日誌的 ID 列表
+     */
+    @Query("SELECT a.id FROM ApiLog a WHERE a.requestTime < :cutoff " +
+            "AND a.statusCode BETWEEN :minStatus AND :maxStatus")
+    List<Long> findExpiredIds(@Param("cutoff") LocalDateTime cutoff,
+                              @Param("minStatus") int minStatus,
+                              @Param("maxStatus") int maxStatus,
+                              Pageable pageable);
 }
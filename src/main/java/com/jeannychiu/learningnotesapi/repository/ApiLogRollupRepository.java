@@ -0,0 +1,57 @@
+package com.jeannychiu.learningnotesapi.repository;
+
+import com.jeannychiu.learningnotesapi.model.ApiLogRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * API 日誌端點彙總資料存取層
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public interface ApiLogRollupRepository extends JpaRepository<ApiLogRollup, Long> {
+    /**
+     * 查詢同一分鐘、同一分組的彙總 (寫入時合併用)
+     */
+    Optional<ApiLogRollup> findByBucketStartAndApiPathAndHttpMethodAndStatusCode(
+            LocalDateTime bucketStart, String apiPath, String httpMethod, Integer statusCode);
+
+    /**
+     * 統計各端點的請求數與錯誤數
+     *
+     * @param from 起始時間 (含)
+     * @param to 結束時間 (不含)
+     * @return 每列為 [apiPath, httpMethod, 請求數, 4xx 數, 5xx 數]
+     */
+    @Query("SELECT r.apiPath, r.httpMethod, SUM(r.requestCount), " +
+            "SUM(CASE WHEN r.statusCode BETWEEN 400 AND 499 THEN r.requestCount ELSE 0 END), " +
+            "SUM(CASE WHEN r.statusCode >= 500 THEN r.requestCount ELSE 0 END) " +
+            "FROM ApiLogRollup r WHERE r.bucketStart >= :from AND r.bucketStart < :to " +
+            "GROUP BY r.apiPath, r.httpMethod")
+    List<Object[]> sumStatusCountsByEndpoint(@Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
+
+    /**
+     * 查詢時間範圍內的彙總，可依端點與 HTTP 方法篩選
+     *
+     * @param from 起始時間 (含)
+     * @param to 結束時間 (不含)
+     * @param apiPath 路由樣式 (選填)
+     * @param httpMethod HTTP 方法 (選填)
+     * @return 依時間排序的彙總列表
+     */
+    @Query("SELECT r FROM ApiLogRollup r WHERE r.bucketStart >= :from AND r.bucketStart < :to " +
+            "AND (:apiPath IS NULL OR r.apiPath = :apiPath) " +
+            "AND (:httpMethod IS NULL OR r.httpMethod = :httpMethod) " +
+            "ORDER BY r.bucketStart")
+    List<ApiLogRollup> findInRange(@Param("from") LocalDateTime from,
+                                   @Param("to") LocalDateTime to,
+                                   @Param("apiPath") String apiPath,
+                                   @Param("httpMethod") String httpMethod);
+}
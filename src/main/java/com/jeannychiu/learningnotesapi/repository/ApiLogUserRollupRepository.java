@@ -0,0 +1,39 @@
+package com.jeannychiu.learningnotesapi.repository;
+
+import com.jeannychiu.learningnotesapi.model.ApiLogUserRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * API 日誌使用者彙總資料存取層
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public interface ApiLogUserRollupRepository extends JpaRepository<ApiLogUserRollup, Long> {
+    /**
+     * 查詢同一分鐘、同一使用者的彙總 (寫入時合併用)
+     */
+    Optional<ApiLogUserRollup> findByBucketStartAndUserId(LocalDateTime bucketStart, Long userId);
+
+    /**
+     * 依請求數排序的使用者
+     *
+     * @param from 起始時間 (含)
+     * @param to 結束時間 (不含)
+     * @param pageable 分頁參數 (用於限制筆數)
+     * @return 每列為 [userId, 請求數, 錯誤數]
+     */
+    @Query("SELECT u.userId, SUM(u.requestCount), SUM(u.errorCount) FROM ApiLogUserRollup u " +
+            "WHERE u.bucketStart >= :from AND u.bucketStart < :to " +
+            "GROUP BY u.userId ORDER BY SUM(u.requestCount) DESC")
+    List<Object[]> findTopUsers(@Param("from") LocalDateTime from,
+                                @Param("to") LocalDateTime to,
+                                Pageable pageable);
+}
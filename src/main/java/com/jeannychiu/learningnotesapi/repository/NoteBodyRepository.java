@@ -0,0 +1,13 @@
+package com.jeannychiu.learningnotesapi.repository;
+
+import com.jeannychiu.learningnotesapi.model.NoteBody;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * 較長筆記內容的資料存取層
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public interface NoteBodyRepository extends JpaRepository<NoteBody, Long> {
+}
@@ -0,0 +1,87 @@
+package com.jeannychiu.learningnotesapi.repository;
+
+import com.jeannychiu.learningnotesapi.model.NoteChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 筆記異動紀錄資料存取層
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public interface NoteChangeRepository extends JpaRepository<NoteChange, Long> {
+    /**
+     * 依 token 順序取得使用者在指定 token 之後的異動
+     *
+     * @param userEmail 使用者信箱
+     * @param afterId 上次同步的 token
+     * @param pageable 分頁參數 (只使用筆數)
+     * @return 異動列表
+     */
+    @Query("SELECT c FROM NoteChange c WHERE c.userEmail = :userEmail AND c.id > :afterId ORDER BY c.id")
+    List<NoteChange> findChangesAfter(@Param("userEmail") String userEmail,
+                                      @Param("afterId") Long afterId,
+                                      Pageable pageable);
+
+    /**
+     * 依 token 順序取得所有使用者在指定 token 之後的異動 (搜尋索引快照還原後重播用)
+     *
+     * @param afterId 快照已涵蓋的 token
+     * @param pageable 分頁參數 (只使用筆數)
+     * @return 異動列表
+     */
+    @Query("SELECT c FROM NoteChange c WHERE c.id > :afterId ORDER BY c.id")
+    List<NoteChange> findAllChangesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 取得指定時間之前最大的異動紀錄 ID (搜尋索引重建時已反映在資料庫讀取結果中的異動)
+     *
+     * @param cutoff 此時間之前的異動已確定寫入索引
+     * @return 異動ID；沒有異動時回傳 null
+     */
+    @Query("SELECT MAX(c.id) FROM NoteChange c WHERE c.changedAt < :cutoff")
+    Long findMaxIdChangedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * 取得使用者最新的一筆異動 (查詢快取與 ETag 的世代)
+     *
+     * @param userEmail 使用者信箱
+     * @return 異動；沒有異動時為空
+     */
+    Optional<NoteChange> findFirstByUserEmailOrderByIdDesc(String userEmail);
+
+    /**
+     * 取得所有使用者最新的一筆異動 (管理員查詢快取與 ETag 的世代)
+     *
+     * @return 異動；沒有異動時為空
+     */
+    Optional<NoteChange> findFirstByOrderByIdDesc();
+
+    /**
+     * 取得已被同一筆記較新的異動取代的紀錄 IDs (壓縮用)
+     *
+     * @param pageable 分頁參數 (用於限制批次大小)
+     * @return 異動ID列表
+     */
+    @Query("SELECT c.id FROM NoteChange c WHERE EXISTS " +
+            "(SELECT 1 FROM NoteChange n WHERE n.noteId = c.noteId AND n.id > c.id) ORDER BY c.id")
+    List<Long> findSupersededIds(Pageable pageable);
+
+    /**
+     * 取得超過保留期限的刪除紀錄 IDs (壓縮用)
+     *
+     * @param cutoff 此時間之前的刪除紀錄已過期
+     * @param pageable 分頁參數 (用於限制批次大小)
+     * @return 異動ID列表，依 ID 排序
+     */
+    @Query("SELECT c.id FROM NoteChange c WHERE c.changeType = com.jeannychiu.learningnotesapi.model.NoteChange.Type.DELETED " +
+            "AND c.changedAt < :cutoff ORDER BY c.id")
+    List<Long> findExpiredTombstoneIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+}
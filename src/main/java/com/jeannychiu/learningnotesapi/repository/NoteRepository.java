@@ -1,24 +1,28 @@
 package com.jeannychiu.learningnotesapi.repository;
 
+import com.jeannychiu.learningnotesapi.dto.NoteSummary;
 import com.jeannychiu.learningnotesapi.model.Note;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * 筆記資料存取層
  *
  * 負責筆記的資料庫操作，包含基本的 CRUD 和自定義查詢。
- * 提供依使用者信箱和關鍵字搜尋筆記的功能。
+ * 提供依使用者信箱和關鍵字搜尋筆記的功能；多標籤條件的查詢以 Specification 組成。
  *
  * @author Jeanny Chiu
  * @since 1.0.0
  */
-public interface NoteRepository extends JpaRepository<Note, Long> {
+public interface NoteRepository extends JpaRepository<Note, Long>, JpaSpecificationExecutor<Note> {
     /**
      * 取得所有筆記的 IDs (管理員專用)
      *
@@ -65,7 +69,9 @@ public interface NoteRepository extends JpaRepository<Note, Long> {
      */
     @Query("SELECT DISTINCT n.id FROM Note n WHERE n.userEmail = :userEmail AND " +
             "(LOWER(n.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%'))) ORDER BY n.updatedAt DESC")
+            "LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "(n.bodyLength IS NOT NULL AND EXISTS (SELECT 1 FROM NoteBody b WHERE b.noteId = n.id " +
+            "AND LOWER(b.searchText) LIKE LOWER(CONCAT('%', :keyword, '%'))))) ORDER BY n.updatedAt DESC")
     Page<Long> findByUserEmailAndKeyword(@Param("userEmail") String userEmail,
                                          @Param("keyword") String keyword,
                                          Pageable pageable);
@@ -79,7 +85,9 @@ public interface NoteRepository extends JpaRepository<Note, Long> {
      */
     @Query("SELECT DISTINCT n.id FROM Note n WHERE " +
             "(LOWER(n.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%'))) ORDER BY n.updatedAt DESC")
+            "LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "(n.bodyLength IS NOT NULL AND EXISTS (SELECT 1 FROM NoteBody b WHERE b.noteId = n.id " +
+            "AND LOWER(b.searchText) LIKE LOWER(CONCAT('%', :keyword, '%'))))) ORDER BY n.updatedAt DESC")
     Page<Long> findByKeyword(@Param("keyword") String keyword, Pageable pageable);
 
     /**
@@ -120,7 +128,9 @@ public interface NoteRepository extends JpaRepository<Note, Long> {
     @Query("SELECT DISTINCT n.id FROM Note n JOIN n.tags t WHERE n.userEmail = :userEmail " +
             "AND t.name = :tagName " +
             "AND (LOWER(n.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%'))) ORDER BY n.updatedAt DESC")
+            "LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "(n.bodyLength IS NOT NULL AND EXISTS (SELECT 1 FROM NoteBody b WHERE b.noteId = n.id " +
+            "AND LOWER(b.searchText) LIKE LOWER(CONCAT('%', :keyword, '%'))))) ORDER BY n.updatedAt DESC")
     Page<Long> findByUserEmailAndTagNameAndKeyword(@Param("userEmail") String userEmail,
                                                    @Param("tagName") String tagName,
                                                    @Param("keyword") String keyword,
@@ -138,7 +148,9 @@ public interface NoteRepository extends JpaRepository<Note, Long> {
      */
     @Query("SELECT DISTINCT n.id FROM Note n JOIN n.tags t WHERE t.name = :tagName " +
             "AND (LOWER(n.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%'))) ORDER BY n.updatedAt DESC")
+            "LOWER(n.content) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+            "(n.bodyLength IS NOT NULL AND EXISTS (SELECT 1 FROM NoteBody b WHERE b.noteId = n.id " +
+            "AND LOWER(b.searchText) LIKE LOWER(CONCAT('%', :keyword, '%'))))) ORDER BY n.updatedAt DESC")
     Page<Long> findByTagNameAndKeyword(@Param("tagName") String tagName,
                                        @Param("keyword") String keyword,
                                        Pageable pageable);
@@ -152,6 +164,235 @@ public interface NoteRepository extends JpaRepository<Note, Long> {
     @Query("SELECT DISTINCT n FROM Note n LEFT JOIN FETCH n.tags t WHERE n.id IN :ids ORDER BY n.updatedAt DESC")
     List<Note> findNotesWithTagsByIds(@Param("ids") List<Long> ids);
 
+    /**
+     * 根據筆記ID取得筆記摘要 (不載入筆記內容與標籤)
+     *
+     * @param ids 筆記ID列表
+     * @return 筆記摘要列表 (未排序，標籤為空)
+     */
+    @Query("SELECT new com.jeannychiu.learningnotesapi.dto.NoteSummary(n.id, n.title, n.excerpt, " +
+            "n.charCount, n.wordCount, n.contentHash, n.version, n.updatedAt) FROM Note n WHERE n.id IN :ids")
+    List<NoteSummary> findSummariesByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 根據筆記ID取得標籤名稱
+     *
+     * @param ids 筆記ID列表
+     * @return 每列為 [筆記ID, 標籤名稱]
+     */
+    @Query("SELECT n.id, t.name FROM Note n JOIN n.tags t WHERE n.id IN :ids")
+    List<Object[]> findTagNamesByNoteIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 取得尚未計算字數統計或指紋的筆記 ID (升級前建立的筆記)
+     *
+     * @param pageable 分頁參數 (只使用筆數)
+     * @return 筆記ID列表
+     */
+    @Query("SELECT n.id FROM Note n WHERE n.charCount IS NULL OR n.fingerprint IS NULL ORDER BY n.id")
+    List<Long> findNoteIdsWithoutTextStats(Pageable pageable);
+
+    /**
+     * 寫入筆記的摘要、字數統計與指紋 (不改變版本號與更新時間)
+     *
+     * @param id 筆記 ID
+     * @param excerpt 摘要
+     * @param charCount 字元數
+     * @param wordCount 字數
+     * @param contentHash 內容雜湊
+     * @param fingerprint 指紋
+     */
+    @Modifying
+    @Query("UPDATE Note n SET n.excerpt = :excerpt, n.charCount = :charCount, n.wordCount = :wordCount, " +
+            "n.contentHash = :contentHash, n.fingerprint = :fingerprint WHERE n.id = :id")
+    void updateTextStats(@Param("id") Long id, @Param("excerpt") String excerpt,
+                         @Param("charCount") Integer charCount, @Param("wordCount") Integer wordCount,
+                         @Param("contentHash") String contentHash, @Param("fingerprint") Long fingerprint);
+
+    /**
+     * 依指紋取得使用者的筆記 (重複筆記偵測，依建立順序)
+     *
+     * 指紋可能碰撞，呼叫端需再比對內容確認是否重複。
+     *
+     * @param userEmail 使用者信箱
+     * @param fingerprint 指紋
+     * @return 筆記列表
+     */
+    List<Note> findByUserEmailAndFingerprintOrderByIdAsc(String userEmail, Long fingerprint);
+
+    /**
+     * 鎖定使用者新增筆記的資料列，直到交易結束 (資料列不存在時建立)
+     *
+     * 用於依序執行同一使用者需要偵測重複的新增，見 V12__note_create_lock.sql。
+     *
+     * @param userEmail 使用者信箱
+     */
+    @Modifying
+    @Query(value = "INSERT INTO note_create_lock (user_email, locked_at) VALUES (:userEmail, CURRENT_TIMESTAMP) " +
+            "ON DUPLICATE KEY UPDATE locked_at = CURRENT_TIMESTAMP",
+            nativeQuery = true)
+    void lockNoteCreate(@Param("userEmail") String userEmail);
+
+    /**
+     * 取得使用者筆記的版本號 (不載入筆記內容，用於 ETag 比對)
+     *
+     * @param id 筆記 ID
+     * @param userEmail 使用者信箱
+     * @return 版本號
+     */
+    @Query("SELECT n.version FROM Note n WHERE n.id = :id AND n.userEmail = :userEmail")
+    Optional<Integer> findVersionByIdAndUserEmail(@Param("id") Long id, @Param("userEmail") String userEmail);
+
+    /**
+     * 取得筆記的版本號 (管理員專用，不載入筆記內容，用於 ETag 比對)
+     *
+     * @param id 筆記 ID
+     * @return 版本號
+     */
+    @Query("SELECT n.version FROM Note n WHERE n.id = :id")
+    Optional<Integer> findVersionById(@Param("id") Long id);
+
+    /**
+     * 取得最小的筆記 ID (用於將搜尋索引重建切分為 ID 區間)
+     *
+     * @return 最小的筆記 ID；沒有筆記時為 null
+     */
+    @Query("SELECT MIN(n.id) FROM Note n")
+    Long findMinNoteId();
+
+    /**
+     * 取得最大的筆記 ID (用於將搜尋索引重建切分為 ID 區間)
+     *
+     * @return 最大的筆記 ID；沒有筆記時為 null
+     */
+    @Query("SELECT MAX(n.id) FROM Note n")
+    Long findMaxNoteId();
+
+    /**
+     * 取得 ID 區間內的筆記含標籤 (用於重建搜尋索引)
+     *
+     * @param fromId 起始 ID (含)
+     * @param toId 結束 ID (不含)
+     * @return 筆記列表
+     */
+    @Query("SELECT DISTINCT n FROM Note n LEFT JOIN FETCH n.tags t WHERE n.id >= :fromId AND n.id < :toId")
+    List<Note> findNotesWithTagsInIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * 以全文檢索搜尋使用者的筆記 IDs，依相關度排序 (MySQL FULLTEXT 專用)
+     *
+     * @param userEmail 使用者信箱
+     * @param query BOOLEAN MODE 的查詢字串
+     * @param pageable 分頁參數 (不可包含排序)
+     * @return 筆記ID分頁結果
+     */
+    @Query(value = "SELECT m.id FROM (" +
+            "SELECT n.id, n.updated_at, MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) AS score FROM note n " +
+            "WHERE n.user_email = :userEmail AND MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) " +
+            "UNION ALL " +
+            "SELECT n.id, n.updated_at, MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE) AS score FROM note_body b JOIN note n ON n.id = b.note_id " +
+            "WHERE n.user_email = :userEmail AND MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE)" +
+            ") m " +
+            "GROUP BY m.id, m.updated_at ORDER BY MAX(m.score) DESC, m.updated_at DESC",
+                    countQuery = "SELECT COUNT(DISTINCT m.id) FROM (" +
+                    "SELECT n.id FROM note n " +
+                    "WHERE n.user_email = :userEmail AND MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) " +
+                    "UNION ALL " +
+                    "SELECT n.id FROM note_body b JOIN note n ON n.id = b.note_id " +
+                    "WHERE n.user_email = :userEmail AND MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE)" +
+                    ") m",
+            nativeQuery = true)
+    Page<Long> findIdsByUserEmailAndFulltext(@Param("userEmail") String userEmail,
+                                             @Param("query") String query,
+                                             Pageable pageable);
+
+    /**
+     * 以全文檢索搜尋所有筆記 IDs，依相關度排序 (管理員專用，MySQL FULLTEXT 專用)
+     *
+     * @param query BOOLEAN MODE 的查詢字串
+     * @param pageable 分頁參數 (不可包含排序)
+     * @return 筆記ID分頁結果
+     */
+    @Query(value = "SELECT m.id FROM (" +
+            "SELECT n.id, n.updated_at, MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) AS score FROM note n " +
+            "WHERE MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) " +
+            "UNION ALL " +
+            "SELECT n.id, n.updated_at, MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE) AS score FROM note_body b JOIN note n ON n.id = b.note_id " +
+            "WHERE MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE)" +
+            ") m " +
+            "GROUP BY m.id, m.updated_at ORDER BY MAX(m.score) DESC, m.updated_at DESC",
+                    countQuery = "SELECT COUNT(DISTINCT m.id) FROM (" +
+                    "SELECT n.id FROM note n " +
+                    "WHERE MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) " +
+                    "UNION ALL " +
+                    "SELECT n.id FROM note_body b JOIN note n ON n.id = b.note_id " +
+                    "WHERE MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE)" +
+                    ") m",
+            nativeQuery = true)
+    Page<Long> findIdsByFulltext(@Param("query") String query, Pageable pageable);
+
+    /**
+     * 以標籤和全文檢索搜尋使用者的筆記 IDs，依相關度排序 (MySQL FULLTEXT 專用)
+     *
+     * @param userEmail 使用者信箱
+     * @param tagName 標籤名稱
+     * @param query BOOLEAN MODE 的查詢字串
+     * @param pageable 分頁參數 (不可包含排序)
+     * @return 筆記ID分頁結果
+     */
+    @Query(value = "SELECT m.id FROM (" +
+            "SELECT n.id, n.updated_at, MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) AS score FROM note n " +
+            "WHERE n.user_email = :userEmail AND MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) " +
+            "UNION ALL " +
+            "SELECT n.id, n.updated_at, MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE) AS score FROM note_body b JOIN note n ON n.id = b.note_id " +
+            "WHERE n.user_email = :userEmail AND MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE)" +
+            ") m " +
+            "JOIN note_tag nt ON nt.note_id = m.id JOIN tag t ON t.id = nt.tag_id WHERE t.name = :tagName " +
+            "GROUP BY m.id, m.updated_at ORDER BY MAX(m.score) DESC, m.updated_at DESC",
+                    countQuery = "SELECT COUNT(DISTINCT m.id) FROM (" +
+                    "SELECT n.id FROM note n " +
+                    "WHERE n.user_email = :userEmail AND MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) " +
+                    "UNION ALL " +
+                    "SELECT n.id FROM note_body b JOIN note n ON n.id = b.note_id " +
+                    "WHERE n.user_email = :userEmail AND MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE)" +
+                    ") m " +
+                    "JOIN note_tag nt ON nt.note_id = m.id JOIN tag t ON t.id = nt.tag_id WHERE t.name = :tagName",
+            nativeQuery = true)
+    Page<Long> findIdsByUserEmailAndTagNameAndFulltext(@Param("userEmail") String userEmail,
+                                                       @Param("tagName") String tagName,
+                                                       @Param("query") String query,
+                                                       Pageable pageable);
+
+    /**
+     * 以標籤和全文檢索搜尋所有筆記 IDs，依相關度排序 (管理員專用，MySQL FULLTEXT 專用)
+     *
+     * @param tagName 標籤名稱
+     * @param query BOOLEAN MODE 的查詢字串
+     * @param pageable 分頁參數 (不可包含排序)
+     * @return 筆記ID分頁結果
+     */
+    @Query(value = "SELECT m.id FROM (" +
+            "SELECT n.id, n.updated_at, MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) AS score FROM note n " +
+            "WHERE MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) " +
+            "UNION ALL " +
+            "SELECT n.id, n.updated_at, MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE) AS score FROM note_body b JOIN note n ON n.id = b.note_id " +
+            "WHERE MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE)" +
+            ") m " +
+            "JOIN note_tag nt ON nt.note_id = m.id JOIN tag t ON t.id = nt.tag_id WHERE t.name = :tagName " +
+            "GROUP BY m.id, m.updated_at ORDER BY MAX(m.score) DESC, m.updated_at DESC",
+                    countQuery = "SELECT COUNT(DISTINCT m.id) FROM (" +
+                    "SELECT n.id FROM note n " +
+                    "WHERE MATCH(n.title, n.content) AGAINST(:query IN BOOLEAN MODE) " +
+                    "UNION ALL " +
+                    "SELECT n.id FROM note_body b JOIN note n ON n.id = b.note_id " +
+                    "WHERE MATCH(b.search_text) AGAINST(:query IN BOOLEAN MODE)" +
+                    ") m " +
+                    "JOIN note_tag nt ON nt.note_id = m.id JOIN tag t ON t.id = nt.tag_id WHERE t.name = :tagName",
+            nativeQuery = true)
+    Page<Long> findIdsByTagNameAndFulltext(@Param("tagName") String tagName,
+                                           @Param("query") String query,
+                                           Pageable pageable);
+
     /**
      * 根據關鍵字搜尋筆記標題並返回搜尋建議
      *
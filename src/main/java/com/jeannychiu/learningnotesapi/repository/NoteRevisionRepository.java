@@ -0,0 +1,70 @@
+package com.jeannychiu.learningnotesapi.repository;
+
+import com.jeannychiu.learningnotesapi.dto.NoteRevisionSummary;
+import com.jeannychiu.learningnotesapi.model.NoteRevision;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 筆記修訂紀錄資料存取層
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public interface NoteRevisionRepository extends JpaRepository<NoteRevision, Long> {
+    /**
+     * 取得筆記最新的修訂紀錄
+     *
+     * @param noteId 筆記 ID
+     * @return 修訂紀錄
+     */
+    Optional<NoteRevision> findTopByNoteIdOrderByVersionDesc(Long noteId);
+
+    /**
+     * 取得筆記指定版本的修訂紀錄
+     *
+     * @param noteId 筆記 ID
+     * @param version 版本號
+     * @return 修訂紀錄
+     */
+    Optional<NoteRevision> findByNoteIdAndVersion(Long noteId, Integer version);
+
+    /**
+     * 依版本順序取得範圍內的修訂紀錄 (重建內容用)
+     *
+     * @param noteId 筆記 ID
+     * @param fromVersion 起始版本 (含)
+     * @param toVersion 結束版本 (含)
+     * @return 修訂紀錄列表
+     */
+    List<NoteRevision> findByNoteIdAndVersionBetweenOrderByVersion(Long noteId, Integer fromVersion, Integer toVersion);
+
+    /**
+     * 取得筆記的修訂紀錄摘要，新版本在前 (不載入內容)
+     *
+     * @param noteId 筆記 ID
+     * @param pageable 分頁參數
+     * @return 修訂紀錄摘要分頁結果
+     */
+    @Query(value = "SELECT new com.jeannychiu.learningnotesapi.dto.NoteRevisionSummary(" +
+            "r.version, r.baseVersion, r.title, r.editorEmail, r.createdAt) " +
+            "FROM NoteRevision r WHERE r.noteId = :noteId ORDER BY r.version DESC",
+            countQuery = "SELECT COUNT(r) FROM NoteRevision r WHERE r.noteId = :noteId")
+    Page<NoteRevisionSummary> findSummariesByNoteId(@Param("noteId") Long noteId, Pageable pageable);
+
+    /**
+     * 刪除筆記的所有修訂紀錄
+     *
+     * @param noteId 筆記 ID
+     */
+    @Modifying
+    @Query("DELETE FROM NoteRevision r WHERE r.noteId = :noteId")
+    void deleteByNoteId(@Param("noteId") Long noteId);
+}
@@ -0,0 +1,81 @@
+package com.jeannychiu.learningnotesapi.search;
+
+/**
+ * BM25F 計分
+ *
+ * 標題與內容分別以各自的平均長度正規化詞頻，標題詞頻乘上加權後合併，
+ * 再套用 BM25 的飽和函數與 IDF。語料統計 (筆記數、欄位總長度、文件頻率)
+ * 在計分前由各個索引累加進來，每次查詢建立一個實例。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class Bm25Scorer {
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+
+    private final double titleBoost;
+    private final long[] documentFrequencies;
+    private long noteCount;
+    private long totalTitleLength;
+    private long totalContentLength;
+
+    Bm25Scorer(int termCount, double titleBoost) {
+        this.titleBoost = titleBoost;
+        this.documentFrequencies = new long[termCount];
+    }
+
+    void addCorpus(long noteCount, long totalTitleLength, long totalContentLength) {
+        this.noteCount += noteCount;
+        this.totalTitleLength += totalTitleLength;
+        this.totalContentLength += totalContentLength;
+    }
+
+    void addDocumentFrequency(int term, long documentFrequency) {
+        documentFrequencies[term] += documentFrequency;
+    }
+
+    /**
+     * 合併另一個計分器累加的統計 (各分片分別累加後合併)
+     *
+     * @param other 相同查詢詞的計分器
+     */
+    void add(Bm25Scorer other) {
+        addCorpus(other.noteCount, other.totalTitleLength, other.totalContentLength);
+        for (int i = 0; i < documentFrequencies.length; i++) {
+            documentFrequencies[i] += other.documentFrequencies[i];
+        }
+    }
+
+    /**
+     * 計算單一查詢詞對一篇筆記的分數
+     *
+     * @param term 查詢詞的索引
+     * @param titleFrequency 標題詞頻
+     * @param contentFrequency 內容詞頻
+     * @param titleLength 標題長度 (詞數)
+     * @param contentLength 內容長度 (詞數)
+     * @return 分數
+     */
+    double score(int term, int titleFrequency, int contentFrequency, int titleLength, int contentLength) {
+        double frequency = titleBoost * normalize(titleFrequency, titleLength, totalTitleLength)
+                + normalize(contentFrequency, contentLength, totalContentLength);
+        return idf(term) * frequency * (K1 + 1) / (frequency + K1);
+    }
+
+    private double normalize(int frequency, int length, long totalLength) {
+        if (frequency == 0) {
+            return 0;
+        }
+        double averageLength = noteCount == 0 ? 0 : (double) totalLength / noteCount;
+        if (averageLength == 0) {
+            return frequency;
+        }
+        return frequency / (1 - B + B * length / averageLength);
+    }
+
+    private double idf(int term) {
+        long documentFrequency = documentFrequencies[term];
+        return Math.log(1 + (noteCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+}
@@ -0,0 +1,111 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以 MySQL FULLTEXT (ngram parser) 索引搜尋筆記
+ *
+ * 使用 MATCH(title, content) AGAINST(... IN BOOLEAN MODE)，
+ * 關鍵字以空白分隔成多個詞，每個詞都必須出現 (AND)，結果依相關度排序。
+ * 內容存在 note_body 的較長筆記改為比對 note_body.search_text (標題與內容)。
+ *
+ * 以下情況改用 LIKE 查詢：
+ * - 資料庫不是 MySQL (例如測試用的 H2)
+ * - 關鍵字含有短於 ngram token 長度 (預設 2) 的詞，FULLTEXT 索引無法比對
+ * - 多標籤條件 (見 {@link TagFilter})
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.mode", havingValue = "fulltext")
+public class FulltextNoteSearchBackend implements NoteSearchBackend {
+    private static final Logger log = LoggerFactory.getLogger(FulltextNoteSearchBackend.class);
+
+    // 與 MySQL 的 ngram_token_size 預設值一致
+    private static final int NGRAM_TOKEN_SIZE = 2;
+
+    // BOOLEAN MODE 的運算子，出現在使用者輸入時一律移除
+    private static final String BOOLEAN_OPERATORS = "+-<>()~*\"@";
+
+    private final NoteRepository noteRepository;
+    private final LikeNoteSearchBackend likeBackend;
+    private final boolean fulltextSupported;
+
+    public FulltextNoteSearchBackend(NoteRepository noteRepository, JdbcTemplate jdbcTemplate) {
+        this.noteRepository = noteRepository;
+        this.likeBackend = new LikeNoteSearchBackend(noteRepository);
+
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        this.fulltextSupported = product != null && product.toLowerCase().contains("mysql");
+        if (!fulltextSupported) {
+            log.warn("資料庫 {} 不支援 FULLTEXT 搜尋，改用 LIKE 查詢", product);
+        }
+    }
+
+    @Override
+    public Page<Long> searchIds(String userEmail, String tagName, String keyword, Pageable pageable) {
+        String query = toBooleanQuery(keyword);
+        if (!fulltextSupported || query == null) {
+            return likeBackend.searchIds(userEmail, tagName, keyword, pageable);
+        }
+
+        // native query 依相關度排序，分頁參數不可再帶排序欄位
+        Pageable unsorted = pageable.isUnpaged()
+                ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        if (tagName == null) {
+            return userEmail == null
+                    ? noteRepository.findIdsByFulltext(query, unsorted)
+                    : noteRepository.findIdsByUserEmailAndFulltext(userEmail, query, unsorted);
+        }
+        return userEmail == null
+                ? noteRepository.findIdsByTagNameAndFulltext(tagName, query, unsorted)
+                : noteRepository.findIdsByUserEmailAndTagNameAndFulltext(userEmail, tagName, query, unsorted);
+    }
+
+    // 多標籤條件的查詢由 JPA Criteria 組成，無法使用 MATCH ... AGAINST，以 LIKE 比對關鍵字
+    @Override
+    public Page<Long> searchIdsByTags(String userEmail, TagFilter tagFilter, String keyword, Pageable pageable) {
+        return likeBackend.searchIdsByTags(userEmail, tagFilter, keyword, pageable);
+    }
+
+    /**
+     * 將使用者輸入的關鍵字轉為 BOOLEAN MODE 查詢字串
+     *
+     * 例如 {@code spring 資料庫} 轉為 {@code +"spring" +"資料庫"}。
+     *
+     * @param keyword 搜尋關鍵字
+     * @return 查詢字串；含有無法以 FULLTEXT 比對的詞時回傳 null
+     */
+    static String toBooleanQuery(String keyword) {
+        List<String> terms = new ArrayList<>();
+        for (String token : keyword.trim().split("\\s+")) {
+            StringBuilder term = new StringBuilder();
+            token.codePoints()
+                    .filter(codePoint -> BOOLEAN_OPERATORS.indexOf(codePoint) < 0)
+                    .forEach(term::appendCodePoint);
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (term.codePointCount(0, term.length()) < NGRAM_TOKEN_SIZE) {
+                return null;
+            }
+            terms.add("+\"" + term + "\"");
+        }
+        return terms.isEmpty() ? null : String.join(" ", terms);
+    }
+}
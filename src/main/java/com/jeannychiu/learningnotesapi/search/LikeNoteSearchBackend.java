@@ -0,0 +1,61 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+/**
+ * 以 LIKE 子字串比對搜尋筆記 (預設)
+ *
+ * 內容存在 note_body 的較長筆記比對 note_body.search_text，結果依更新時間由新到舊排序。
+ * 多標籤條件以 {@link NoteSearchSpecifications} 組成查詢。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.mode", havingValue = "like", matchIfMissing = true)
+public class LikeNoteSearchBackend implements NoteSearchBackend {
+    private final NoteRepository noteRepository;
+
+    public LikeNoteSearchBackend(NoteRepository noteRepository) {
+        this.noteRepository = noteRepository;
+    }
+
+    @Override
+    public Page<Long> searchIds(String userEmail, String tagName, String keyword, Pageable pageable) {
+        Pageable sortedPageable = sortByUpdatedAt(pageable);
+        if (tagName == null) {
+            return userEmail == null
+                    ? noteRepository.findByKeyword(keyword, sortedPageable)
+                    : noteRepository.findByUserEmailAndKeyword(userEmail, keyword, sortedPageable);
+        }
+        return userEmail == null
+                ? noteRepository.findByTagNameAndKeyword(tagName, keyword, sortedPageable)
+                : noteRepository.findByUserEmailAndTagNameAndKeyword(userEmail, tagName, keyword, sortedPageable);
+    }
+
+    @Override
+    public Page<Long> searchIdsByTags(String userEmail, TagFilter tagFilter, String keyword, Pageable pageable) {
+        Specification<Note> specification = NoteSearchSpecifications.ownedBy(userEmail)
+                .and(NoteSearchSpecifications.matchesTags(tagFilter));
+        if (keyword != null) {
+            specification = specification.and(NoteSearchSpecifications.containsKeyword(keyword));
+        }
+        return noteRepository.findAll(specification, sortByUpdatedAt(pageable)).map(Note::getId);
+    }
+
+    private static Pageable sortByUpdatedAt(Pageable pageable) {
+        return pageable.isUnpaged() ? pageable : PageRequest.of(
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                Sort.by(Sort.Direction.DESC, "updatedAt")
+        );
+    }
+}
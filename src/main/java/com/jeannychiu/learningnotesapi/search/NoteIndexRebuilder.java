@@ -0,0 +1,537 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.dto.SearchIndexRebuildStatus;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteBody;
+import com.jeannychiu.learningnotesapi.model.NoteChange;
+import com.jeannychiu.learningnotesapi.repository.NoteBodyRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteChangeRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import com.jeannychiu.learningnotesapi.service.NoteChangeLogService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 從資料庫重建搜尋索引
+ *
+ * 筆記依 ID 切成固定寬度的區間，由 app.search.rebuild.threads 個工作執行緒各自以獨立的查詢
+ * (各自的資料庫連線) 讀取區間內的筆記與標籤，並在同一個執行緒斷詞、寫入重建中的索引。
+ * 各使用者的索引各自加鎖，斷詞在鎖外進行，工作執行緒可以同時寫入；全部區間完成後整組替換目前的索引。
+ *
+ * 啟動後在背景執行，不阻擋應用程式開始服務：第一次重建完成前依賴索引的查詢改用資料庫，
+ * 之後的重建期間則由舊的索引繼續提供查詢 (此時記憶體用量約為平常的兩倍)。
+ * 重建失敗時依 app.search.rebuild.retry-delay 起算、每次加倍 (最多 retry-max-delay) 的間隔自動重試。
+ *
+ * 本程序的異動由事件立即寫入索引；其他執行個體的異動則定期從異動紀錄 (note_change) 讀取套用，
+ * 並記錄已套用的最大異動紀錄 ID (高水位)。
+ *
+ * 設定 app.search.snapshot.dir 時，索引定期寫入磁碟快照 ({@link NoteIndexSnapshot})，以上述高水位為快照的高水位。
+ * 啟動時先由快照還原，再從異動紀錄重播快照高水位之後的異動，不必讀取所有筆記；
+ * 快照不存在、損毀，或高水位之後的刪除紀錄已被壓縮清除時，改為從資料庫完整重建。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class NoteIndexRebuilder {
+    private static final Logger log = LoggerFactory.getLogger(NoteIndexRebuilder.class);
+
+    private enum State { IDLE, RUNNING, COMPLETED, FAILED }
+
+    // 索引的來源：磁碟快照 (加上重播的異動) 或資料庫
+    private enum Source { SNAPSHOT, DATABASE }
+
+    private record LoadedSnapshot(long changeToken, Map<String, UserNoteIndex> indexes) {
+    }
+
+    private final NoteSearchIndex searchIndex;
+    private final NoteRepository noteRepository;
+    private final NoteBodyRepository noteBodyRepository;
+    private final NoteChangeRepository noteChangeRepository;
+    private final NoteChangeLogService noteChangeLogService;
+    private final int chunkSize;
+    private final int threads;
+    private final Path snapshotDirectory;
+    private final Duration settleTime;
+    private final Duration retryDelay;
+    private final Duration maxRetryDelay;
+
+    private final AtomicInteger completedChunks = new AtomicInteger();
+    private final AtomicLong indexedNotes = new AtomicLong();
+    private final AtomicLong replayedChanges = new AtomicLong();
+    private final Object snapshotLock = new Object();
+    private final Object changeLock = new Object();
+    private volatile State state = State.IDLE;
+    private volatile Source source;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile long totalNotes;
+    private volatile int totalChunks;
+    private volatile String error;
+    // 最近一次寫入或還原的快照高水位；-1 表示還沒有
+    private volatile long snapshotToken = -1;
+    private volatile LocalDateTime snapshotWrittenAt;
+    // 索引已套用的異動紀錄高水位：此 ID 之前 (含) 的異動都已寫入目前的索引
+    private volatile long appliedToken;
+    // 連續失敗的次數與下次自動重試的時間 (沒有待重試時為 null)
+    private volatile int failedAttempts;
+    private volatile LocalDateTime retryAt;
+
+    public NoteIndexRebuilder(NoteSearchIndex searchIndex, NoteRepository noteRepository,
+                              NoteBodyRepository noteBodyRepository, NoteChangeRepository noteChangeRepository,
+                              NoteChangeLogService noteChangeLogService,
+                              @Value("${app.search.rebuild.chunk-size:2000}") int chunkSize,
+                              @Value("${app.search.rebuild.threads:4}") int threads,
+                              @Value("${app.search.snapshot.dir:}") String snapshotDirectory,
+                              @Value("${app.note-changes.settle-time:PT2S}") Duration settleTime,
+                              @Value("${app.search.rebuild.retry-delay:PT10S}") Duration retryDelay,
+                              @Value("${app.search.rebuild.retry-max-delay:PT10M}") Duration maxRetryDelay) {
+        this.searchIndex = searchIndex;
+        this.noteRepository = noteRepository;
+        this.noteBodyRepository = noteBodyRepository;
+        this.noteChangeRepository = noteChangeRepository;
+        this.noteChangeLogService = noteChangeLogService;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.snapshotDirectory = snapshotDirectory.isBlank() ? null : Path.of(snapshotDirectory);
+        this.settleTime = settleTime;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    /**
+     * 啟動後在背景載入搜尋索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        start();
+    }
+
+    /**
+     * 在背景開始重建
+     *
+     * 索引還沒載入過時優先由快照還原；已載入後 (例如管理員要求重建) 一律從資料庫重建。
+     *
+     * @return 是否開始新的重建；已有重建進行中時回傳 false
+     */
+    public synchronized boolean start() {
+        if (state == State.RUNNING) {
+            return false;
+        }
+        boolean restore = shouldRestore();
+        begin();
+
+        Thread thread = new Thread(() -> run(restore), "search-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 在目前的執行緒重建並等待完成
+     *
+     * @return 是否重建成功
+     */
+    synchronized boolean rebuild() {
+        if (state == State.RUNNING) {
+            return false;
+        }
+        boolean restore = shouldRestore();
+        begin();
+        run(restore);
+        return state == State.COMPLETED;
+    }
+
+    /**
+     * 重建失敗後到了重試時間時自動重新開始
+     *
+     * 第 n 次連續失敗後等待 retry-delay 的 2^(n-1) 倍 (最多 retry-max-delay)，重建成功後重新計算。
+     * 啟動時的載入失敗也會重試，不必等管理員手動重建。
+     *
+     * @return 是否開始重試
+     */
+    @Scheduled(initialDelayString = "${app.search.rebuild.retry-delay:PT10S}",
+            fixedDelayString = "${app.search.rebuild.retry-delay:PT10S}")
+    public boolean retryFailedRebuild() {
+        LocalDateTime due = retryAt;
+        if (state != State.FAILED || due == null || LocalDateTime.now().isBefore(due)) {
+            return false;
+        }
+        log.info("自動重試搜尋索引重建 (已連續失敗 {} 次)", failedAttempts);
+        return start();
+    }
+
+    /**
+     * 定期將索引寫入快照
+     */
+    @Scheduled(initialDelayString = "${app.search.snapshot.interval:PT15M}",
+            fixedDelayString = "${app.search.snapshot.interval:PT15M}")
+    public void writeSnapshotPeriodically() {
+        if (snapshotDirectory != null && searchIndex.isReady() && state != State.RUNNING) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * 定期套用異動紀錄中的新異動 (包含其他執行個體的異動)
+     *
+     * 依 ID 順序套用寫入後已超過 settle-time 的異動，遇到還沒超過的異動即停止，下次從該處繼續，
+     * 不會略過較晚提交的異動。本程序的異動已由事件寫入，重複套用以筆記目前的狀態為準，不影響結果。
+     * 尚未套用的刪除紀錄已被壓縮清除時，無法得知哪些筆記已刪除，改為從資料庫重建。
+     *
+     * @return 套用的異動筆數
+     */
+    @Scheduled(fixedDelayString = "${app.search.change-poll-interval:PT5S}")
+    public int applyNewChanges() {
+        if (appliedToken < noteChangeLogService.getPurgedThrough() && searchIndex.isReady()
+                && state != State.RUNNING) {
+            log.warn("搜尋索引未套用的異動紀錄已被清除 (高水位 {})，從資料庫重建", appliedToken);
+            start();
+            return 0;
+        }
+        synchronized (changeLock) {
+            if (!searchIndex.isReady() || state == State.RUNNING) {
+                return 0;
+            }
+            LocalDateTime cutoff = LocalDateTime.now().minus(settleTime);
+            int applied = 0;
+            while (true) {
+                List<NoteChange> changes = noteChangeRepository.findAllChangesAfter(appliedToken,
+                        PageRequest.of(0, chunkSize));
+                List<NoteChange> settled = changes.stream()
+                        .takeWhile(change -> change.getChangedAt().isBefore(cutoff))
+                        .toList();
+                if (settled.isEmpty()) {
+                    return applied;
+                }
+                applyChanges(settled, searchIndex::put, searchIndex::remove);
+                appliedToken = settled.get(settled.size() - 1).getId();
+                applied += settled.size();
+                if (settled.size() < changes.size() || changes.size() < chunkSize) {
+                    return applied;
+                }
+            }
+        }
+    }
+
+    /**
+     * 將目前的索引寫入快照
+     *
+     * 高水位在寫入前決定，取本程序的索引已套用的異動紀錄高水位 (見 {@link #applyNewChanges()})：
+     * 在此之前的異動都已寫入索引，之後的異動不論是否已反映在快照中，還原時都會重播
+     * (重播以筆記目前的狀態為準，重複套用不影響結果)。
+     *
+     * @return 是否寫入；沒有新的異動或寫入失敗時回傳 false
+     */
+    boolean writeSnapshot() {
+        synchronized (snapshotLock) {
+            try {
+                long changeToken = appliedToken;
+                if (changeToken == snapshotToken) {
+                    return false;
+                }
+                Long maxNoteId = noteRepository.findMaxNoteId();
+
+                long start = System.nanoTime();
+                long notes = searchIndex.writeSnapshot(snapshotDirectory, changeToken,
+                        maxNoteId == null ? 0 : maxNoteId);
+                snapshotToken = changeToken;
+                snapshotWrittenAt = LocalDateTime.now();
+                log.info("搜尋索引快照已寫入，共 {} 筆筆記，高水位 {}，耗時 {} ms", notes, changeToken,
+                        (System.nanoTime() - start) / 1_000_000);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                log.warn("搜尋索引快照寫入失敗", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 取得目前 (或最近一次) 重建的進度
+     *
+     * @return 重建進度
+     */
+    public SearchIndexRebuildStatus getStatus() {
+        SearchIndexRebuildStatus status = new SearchIndexRebuildStatus();
+        status.setState(state.name());
+        status.setReady(searchIndex.isReady());
+        status.setStartedAt(startedAt);
+        status.setFinishedAt(finishedAt);
+        status.setTotalNotes(totalNotes);
+        status.setIndexedNotes(indexedNotes.get());
+        status.setTotalChunks(totalChunks);
+        status.setCompletedChunks(completedChunks.get());
+        status.setSource(source == null ? null : source.name());
+        status.setReplayedChanges(replayedChanges.get());
+        status.setSnapshotWrittenAt(snapshotWrittenAt);
+        status.setOffHeapBytes(searchIndex.offHeapBytes());
+        status.setError(error);
+        status.setFailedAttempts(failedAttempts);
+        status.setRetryAt(retryAt);
+
+        if (state != State.IDLE) {
+            long end = state == State.RUNNING ? System.nanoTime() : finishedNanos;
+            double seconds = (end - startedNanos) / 1_000_000_000.0;
+            status.setNotesPerSecond(seconds > 0 ? indexedNotes.get() / seconds : 0);
+        }
+        return status;
+    }
+
+    private void begin() {
+        state = State.RUNNING;
+        startedAt = LocalDateTime.now();
+        startedNanos = System.nanoTime();
+        finishedAt = null;
+        source = null;
+        error = null;
+        retryAt = null;
+        resetProgress();
+    }
+
+    private void resetProgress() {
+        totalNotes = 0;
+        totalChunks = 0;
+        completedChunks.set(0);
+        indexedNotes.set(0);
+        replayedChanges.set(0);
+    }
+
+    private boolean shouldRestore() {
+        return snapshotDirectory != null && !searchIndex.isReady();
+    }
+
+    private void run(boolean restore) {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, workerThreadFactory());
+        NoteSearchIndex.Build build = null;
+        try {
+            LoadedSnapshot snapshot = restore ? loadSnapshot(workers) : null;
+            // 開始讀取前已超過 settle-time 的異動都已提交，會反映在讀取到的筆記中
+            long settledToken = settledChangeToken();
+            if (snapshot != null) {
+                source = Source.SNAPSHOT;
+                build = searchIndex.startBuild(snapshot.indexes());
+                replayChangesAfter(build, snapshot.changeToken());
+                snapshotToken = snapshot.changeToken();
+                settledToken = Math.max(settledToken, snapshot.changeToken());
+            } else {
+                source = Source.DATABASE;
+                resetProgress();
+                build = searchIndex.startBuild();
+                indexAllChunks(build, workers);
+            }
+
+            synchronized (changeLock) {
+                searchIndex.finishBuild(build);
+                appliedToken = settledToken;
+            }
+            failedAttempts = 0;
+            finish(State.COMPLETED, null);
+            log.info("搜尋索引載入完成 (來源 {})，共 {} 筆筆記，重播 {} 筆異動，耗時 {} ms", source,
+                    indexedNotes.get(), replayedChanges.get(), (finishedNanos - startedNanos) / 1_000_000);
+        } catch (ExecutionException e) {
+            fail(build, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(build, e);
+        } catch (RuntimeException e) {
+            fail(build, e);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        // 從資料庫重建後立即寫入快照，下次啟動即可由快照還原
+        if (state == State.COMPLETED && source == Source.DATABASE && snapshotDirectory != null) {
+            writeSnapshot();
+        }
+    }
+
+    private void indexAllChunks(NoteSearchIndex.Build build, ExecutorService workers)
+            throws ExecutionException, InterruptedException {
+        // 區間在開始重建後才決定，之後新增的筆記由異動事件寫入重建中的索引
+        Long minId = noteRepository.findMinNoteId();
+        Long maxId = noteRepository.findMaxNoteId();
+        totalNotes = noteRepository.count();
+
+        List<Future<?>> chunks = new ArrayList<>();
+        if (minId != null && maxId != null) {
+            totalChunks = (int) ((maxId - minId) / chunkSize + 1);
+            for (long fromId = minId; fromId <= maxId; fromId += chunkSize) {
+                long from = fromId;
+                long to = Math.min(fromId + chunkSize, maxId + 1);
+                chunks.add(workers.submit(() -> indexChunk(build, from, to)));
+            }
+        }
+        for (Future<?> chunk : chunks) {
+            chunk.get();
+        }
+    }
+
+    /**
+     * 讀取快照，各檔案由工作執行緒平行還原
+     *
+     * @return 還原的索引；沒有快照或快照無法使用時回傳 null
+     */
+    private LoadedSnapshot loadSnapshot(ExecutorService workers) throws InterruptedException {
+        try {
+            NoteIndexSnapshot.Manifest manifest = NoteIndexSnapshot.open(snapshotDirectory);
+            if (manifest == null) {
+                log.info("沒有搜尋索引快照，從資料庫重建");
+                return null;
+            }
+            // 高水位之後的刪除紀錄已被清除時，無法得知哪些筆記已刪除
+            if (manifest.changeToken() < noteChangeLogService.getPurgedThrough()) {
+                log.warn("搜尋索引快照過舊 (高水位 {})，從資料庫重建", manifest.changeToken());
+                return null;
+            }
+
+            totalNotes = manifest.noteCount();
+            totalChunks = manifest.files().size();
+            List<Future<Map<String, UserNoteIndex>>> files = new ArrayList<>();
+            for (Path file : manifest.files()) {
+                files.add(workers.submit(() -> {
+                    Map<String, UserNoteIndex> indexes =
+                            NoteIndexSnapshot.load(file, manifest, searchIndex.maxEditDistance());
+                    indexedNotes.addAndGet(indexes.values().stream().mapToLong(UserNoteIndex::size).sum());
+                    completedChunks.incrementAndGet();
+                    return indexes;
+                }));
+            }
+            Map<String, UserNoteIndex> indexes = new HashMap<>();
+            for (Future<Map<String, UserNoteIndex>> file : files) {
+                indexes.putAll(file.get());
+            }
+            return new LoadedSnapshot(manifest.changeToken(), indexes);
+        } catch (IOException | RuntimeException e) {
+            log.warn("搜尋索引快照無法使用，從資料庫重建：{}", e.getMessage());
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("搜尋索引快照無法使用，從資料庫重建：{}", e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 重播快照高水位之後的異動
+     *
+     * 同一筆記的多筆異動只載入一次目前的狀態；資料庫中已不存在的筆記 (已刪除) 從索引移除。
+     *
+     * @param build 由快照還原的索引
+     * @param changeToken 快照的高水位
+     */
+    private void replayChangesAfter(NoteSearchIndex.Build build, long changeToken) {
+        long afterId = changeToken;
+        while (true) {
+            List<NoteChange> changes = noteChangeRepository.findAllChangesAfter(afterId, PageRequest.of(0, chunkSize));
+            if (changes.isEmpty()) {
+                return;
+            }
+            applyChanges(changes, build::put, build::remove);
+            replayedChanges.addAndGet(changes.size());
+            afterId = changes.get(changes.size() - 1).getId();
+        }
+    }
+
+    // 同一筆記的多筆異動只載入一次目前的狀態；資料庫中已不存在的筆記 (已刪除) 從索引移除
+    private void applyChanges(List<NoteChange> changes, Consumer<Note> put, BiConsumer<Long, String> remove) {
+        Map<Long, String> owners = new LinkedHashMap<>();
+        for (NoteChange change : changes) {
+            owners.put(change.getNoteId(), change.getUserEmail());
+        }
+        List<Note> notes = noteRepository.findNotesWithTagsByIds(new ArrayList<>(owners.keySet()));
+        loadExternalContents(notes);
+        for (Note note : notes) {
+            put.accept(note);
+            owners.remove(note.getId());
+        }
+        owners.forEach(remove);
+    }
+
+    private long settledChangeToken() {
+        Long latest = noteChangeRepository.findMaxIdChangedBefore(LocalDateTime.now().minus(settleTime));
+        return latest == null ? 0 : latest;
+    }
+
+    private void indexChunk(NoteSearchIndex.Build build, long fromId, long toId) {
+        List<Note> notes = noteRepository.findNotesWithTagsInIdRange(fromId, toId);
+        loadExternalContents(notes);
+        for (Note note : notes) {
+            build.put(note);
+        }
+        indexedNotes.addAndGet(notes.size());
+        completedChunks.incrementAndGet();
+    }
+
+    // 存在 note_body 的較長內容每個區間以一次查詢載入
+    private void loadExternalContents(List<Note> notes) {
+        List<Long> ids = notes.stream().filter(note -> !note.isContentLoaded()).map(Note::getId).toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, String> bodies = new HashMap<>();
+        for (NoteBody body : noteBodyRepository.findAllById(ids)) {
+            bodies.put(body.getNoteId(), body.getContent());
+        }
+        for (Note note : notes) {
+            String body = bodies.get(note.getId());
+            if (body != null) {
+                note.setExternalContent(body);
+            }
+        }
+    }
+
+    private void fail(NoteSearchIndex.Build build, Throwable cause) {
+        searchIndex.abortBuild(build);
+        int attempts = ++failedAttempts;
+        Duration delay = retryDelay.multipliedBy(1L << Math.min(attempts - 1, 20));
+        if (delay.compareTo(maxRetryDelay) > 0) {
+            delay = maxRetryDelay;
+        }
+        retryAt = LocalDateTime.now().plus(delay);
+        finish(State.FAILED, cause.getMessage());
+        log.error("搜尋索引重建失敗 (已連續失敗 {} 次)，{} 秒後自動重試", attempts, delay.toSeconds(), cause);
+    }
+
+    private void finish(State result, String message) {
+        finishedNanos = System.nanoTime();
+        finishedAt = LocalDateTime.now();
+        error = message;
+        state = result;
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "search-rebuild-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
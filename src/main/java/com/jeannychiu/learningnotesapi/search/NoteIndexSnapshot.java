@@ -0,0 +1,269 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 搜尋索引的磁碟快照
+ *
+ * 每個分片寫成一個檔案，開頭是固定長度的檔頭 (格式版本、異動紀錄的高水位、筆記數、內容長度與 CRC32C)，
+ * 之後依序是各使用者的信箱與 {@link UserNoteIndex} 的筆記欄位、詞典及 posting list。
+ * 讀取時以 memory-mapped 方式對應整個檔案，直接從對應的記憶體還原索引，不需重新讀取與斷詞筆記內容。
+ *
+ * 寫入時先寫到暫存檔並 fsync，全部完成後才改名為正式檔名並 fsync 目錄；暫存檔名每次寫入都不同，
+ * 多個程序共用同一個目錄時不會互相覆寫寫到一半的檔案。同一次快照的所有檔案記錄相同的高水位與建立時間，
+ * 讀取時任何一個檔案不一致、長度不符或檢查碼錯誤 (例如與另一個程序的快照交錯替換)，整份快照都不使用。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class NoteIndexSnapshot {
+    static final int FORMAT_VERSION = 3;
+
+    // "LNSI"
+    private static final int MAGIC = 0x4C4E5349;
+    private static final int HEADER_SIZE = 64;
+    private static final String FILE_PREFIX = "search-index-";
+    private static final String FILE_SUFFIX = ".snapshot";
+
+    /**
+     * 一份完整的快照
+     *
+     * @param changeToken 快照已涵蓋的異動紀錄 ID (高水位)，之後的異動需要重播
+     * @param maxNoteId 寫入時最大的筆記 ID
+     * @param createdAt 建立時間 (epoch 毫秒)
+     * @param noteCount 筆記數
+     * @param files 各分片的快照檔案
+     */
+    record Manifest(long changeToken, long maxNoteId, long createdAt, long noteCount, List<Path> files) {
+    }
+
+    private record Header(int fileIndex, int fileCount, long changeToken, long maxNoteId, long createdAt,
+                          long noteCount, long bodyLength, long checksum) {
+    }
+
+    private NoteIndexSnapshot() {
+    }
+
+    /**
+     * 寫入快照，取代目錄中原有的快照
+     *
+     * @param directory 快照目錄
+     * @param changeToken 快照已涵蓋的異動紀錄 ID
+     * @param maxNoteId 寫入時最大的筆記 ID
+     * @param shards 各分片的使用者索引
+     * @return 寫入的筆記數
+     * @throws IOException 寫入失敗時
+     */
+    static long write(Path directory, long changeToken, long maxNoteId,
+                      List<Map<String, UserNoteIndex>> shards) throws IOException {
+        Files.createDirectories(directory);
+        long createdAt = System.currentTimeMillis();
+        long totalNotes = 0;
+
+        List<Path> temporaryFiles = new ArrayList<>(shards.size());
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                Path temporary = Files.createTempFile(directory, fileName(i) + ".", ".tmp");
+                temporaryFiles.add(temporary);
+                totalNotes += writeFile(temporary, i, shards, changeToken, maxNoteId, createdAt);
+            }
+
+            // 全部寫完才替換，中途失敗時原有的快照保持不變
+            for (int i = 0; i < temporaryFiles.size(); i++) {
+                Files.move(temporaryFiles.get(i), directory.resolve(fileName(i)),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            for (Path temporary : temporaryFiles) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        syncDirectory(directory);
+        return totalNotes;
+    }
+
+    // 寫入一個分片的快照檔案並 fsync
+    private static long writeFile(Path file, int fileIndex, List<Map<String, UserNoteIndex>> shards,
+                                  long changeToken, long maxNoteId, long createdAt) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            channel.position(HEADER_SIZE);
+            CRC32C checksum = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), checksum));
+
+            long noteCount = 0;
+            for (Map.Entry<String, UserNoteIndex> entry : shards.get(fileIndex).entrySet()) {
+                out.writeByte(1);
+                writeString(out, entry.getKey());
+                entry.getValue().writeTo(out);
+                noteCount += entry.getValue().size();
+            }
+            out.writeByte(0);
+            out.flush();
+
+            Header header = new Header(fileIndex, shards.size(), changeToken, maxNoteId, createdAt, noteCount,
+                    channel.position() - HEADER_SIZE, checksum.getValue());
+            ByteBuffer encoded = encodeHeader(header);
+            while (encoded.hasRemaining()) {
+                channel.write(encoded, encoded.position());
+            }
+            channel.force(true);
+            return noteCount;
+        }
+    }
+
+    // 改名後 fsync 目錄，確保新的目錄項目寫入磁碟；不支援開啟目錄的平台 (例如 Windows) 略過
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 讀取快照的檔頭並確認各檔案屬於同一次快照
+     *
+     * @param directory 快照目錄
+     * @return 快照；目錄中沒有快照時回傳 null
+     * @throws IOException 讀取失敗、格式版本不符或各檔案不一致時
+     */
+    static Manifest open(Path directory) throws IOException {
+        Path first = directory.resolve(fileName(0));
+        if (!Files.isRegularFile(first)) {
+            return null;
+        }
+        Header firstHeader = readHeader(first);
+        List<Path> files = new ArrayList<>(firstHeader.fileCount());
+        long noteCount = 0;
+        for (int i = 0; i < firstHeader.fileCount(); i++) {
+            Path file = directory.resolve(fileName(i));
+            Header header = i == 0 ? firstHeader : readHeader(file);
+            if (header.fileIndex() != i || header.fileCount() != firstHeader.fileCount()
+                    || header.changeToken() != firstHeader.changeToken()
+                    || header.createdAt() != firstHeader.createdAt()) {
+                throw new IOException("快照檔案不屬於同一次快照：" + file.getFileName());
+            }
+            files.add(file);
+            noteCount += header.noteCount();
+        }
+        return new Manifest(firstHeader.changeToken(), firstHeader.maxNoteId(), firstHeader.createdAt(),
+                noteCount, files);
+    }
+
+    /**
+     * 以 memory-mapped 方式讀取一個快照檔案並還原其中的使用者索引
+     *
+     * @param file 快照檔案
+     * @param manifest 檔案所屬的快照
+     * @param maxEditDistance 拼字容錯的最大編輯距離
+     * @return 使用者信箱與還原的索引
+     * @throws IOException 讀取失敗、長度不符或檢查碼錯誤時
+     */
+    static Map<String, UserNoteIndex> load(Path file, Manifest manifest, int maxEditDistance) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, file);
+            if (header.changeToken() != manifest.changeToken() || header.createdAt() != manifest.createdAt()) {
+                throw new IOException("快照檔案已被替換：" + file.getFileName());
+            }
+            if (HEADER_SIZE + header.bodyLength() != channel.size() || header.bodyLength() > Integer.MAX_VALUE) {
+                throw new IOException("快照檔案長度不符：" + file.getFileName());
+            }
+
+            MappedByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, header.bodyLength());
+            CRC32C checksum = new CRC32C();
+            checksum.update(body.duplicate());
+            if (checksum.getValue() != header.checksum()) {
+                throw new IOException("快照檔案檢查碼錯誤：" + file.getFileName());
+            }
+
+            Map<String, UserNoteIndex> indexes = new HashMap<>();
+            while (body.get() == 1) {
+                String userEmail = readString(body);
+                indexes.put(userEmail, UserNoteIndex.readFrom(body, maxEditDistance));
+            }
+            return indexes;
+        } catch (RuntimeException e) {
+            // 檢查碼正確但內容無法解析 (例如不同版本寫出的格式)
+            throw new IOException("快照檔案內容無法解析：" + file.getFileName(), e);
+        }
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String fileName(int fileIndex) {
+        return String.format("%s%03d%s", FILE_PREFIX, fileIndex, FILE_SUFFIX);
+    }
+
+    private static Header readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel, file);
+        }
+    }
+
+    private static Header readHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new IOException("快照檔案不完整：" + file.getFileName());
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("不是搜尋索引快照：" + file.getFileName());
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("快照格式版本不符：" + version);
+        }
+        return new Header(buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    private static ByteBuffer encodeHeader(Header header) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(header.fileIndex())
+                .putInt(header.fileCount())
+                .putLong(header.changeToken())
+                .putLong(header.maxNoteId())
+                .putLong(header.createdAt())
+                .putLong(header.noteCount())
+                .putLong(header.bodyLength())
+                .putLong(header.checksum());
+        return buffer.flip();
+    }
+}
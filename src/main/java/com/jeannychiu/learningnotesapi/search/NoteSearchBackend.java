@@ -0,0 +1,42 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * 筆記關鍵字搜尋的資料庫查詢方式
+ *
+ * 可透過 app.search.mode 依部署環境選擇：
+ * - like：LOWER(...) LIKE '%keyword%'，依更新時間排序 (預設，任何資料庫皆可使用)
+ * - fulltext：MySQL FULLTEXT (ngram) 索引，依相關度排序
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public interface NoteSearchBackend {
+    /**
+     * 搜尋符合關鍵字的筆記 IDs
+     *
+     * 回傳的 IDs 順序即為結果的顯示順序。
+     *
+     * @param userEmail 使用者信箱，null 表示搜尋所有使用者的筆記 (管理員)
+     * @param tagName 標籤名稱，null 表示不限標籤
+     * @param keyword 搜尋關鍵字
+     * @param pageable 分頁參數
+     * @return 筆記ID分頁結果
+     */
+    Page<Long> searchIds(String userEmail, String tagName, String keyword, Pageable pageable);
+
+    /**
+     * 搜尋符合多標籤條件 (見 {@link TagFilter}) 與關鍵字的筆記 IDs，依更新時間由新到舊排序
+     *
+     * 標籤條件在資料庫中比對並由資料庫分頁。
+     *
+     * @param userEmail 使用者信箱，null 表示搜尋所有使用者的筆記 (管理員)
+     * @param tagFilter 標籤條件
+     * @param keyword 搜尋關鍵字，null 表示只以標籤篩選
+     * @param pageable 分頁參數
+     * @return 筆記ID分頁結果
+     */
+    Page<Long> searchIdsByTags(String userEmail, TagFilter tagFilter, String keyword, Pageable pageable);
+}
@@ -0,0 +1,644 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.dto.NoteHighlights;
+import com.jeannychiu.learningnotesapi.event.NoteChangedEvent;
+import com.jeannychiu.learningnotesapi.model.Note;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 記憶體中的筆記搜尋索引，提供依相關度 (BM25F) 排序的搜尋
+ *
+ * 每個使用者一份倒排索引，由 {@link NoteIndexRebuilder} 從資料庫載入，之後隨筆記異動事件在交易提交後更新。
+ * 一般使用者的分數以自己的筆記為語料計算；管理員搜尋時合併所有使用者的統計。
+ *
+ * 查詢詞的比對方式與 {@link NoteTokenizer} 一致，所有查詢詞都必須出現，
+ * 英文以完整單字比對 (不做 LIKE 的部分字串比對)。
+ *
+ * 另外以各使用者的詞典 (SymSpell 刪除索引) 提供拼字容錯：
+ * 查詢沒有結果時修正拼錯的詞，以及產生相近詞的搜尋建議。
+ * 多標籤篩選 ({@link TagFilter}) 以各使用者每個標籤的筆記 ID 點陣圖計算 (用於管理員以索引搜尋與相關性排序)。
+ *
+ * 使用者的索引依信箱的 hash 分到固定數量的分片。管理員 (所有使用者) 的查詢由各分片在
+ * 專用的 ForkJoinPool 上平行處理，每個分片只保留自己的前 offset + limit 筆，再合併成一頁；
+ * 查詢時間取決於符合的筆記數與分片數，不隨筆記總數線性成長。
+ *
+ * 索引可寫入磁碟快照 ({@link NoteIndexSnapshot})，重新啟動時由快照還原後只重播之後的異動。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class NoteSearchIndex {
+    // 分數相同時，較新的筆記排在前面
+    private static final Comparator<UserNoteIndex.Candidate> RANKING =
+            Comparator.comparingDouble(UserNoteIndex.Candidate::score).reversed()
+                    .thenComparing(Comparator.comparingLong(UserNoteIndex.Candidate::updatedAt).reversed())
+                    .thenComparing(Comparator.comparingLong(UserNoteIndex.Candidate::noteId).reversed());
+
+    // 依更新時間由新到舊
+    private static final Comparator<UserNoteIndex.Candidate> RECENCY =
+            Comparator.comparingLong(UserNoteIndex.Candidate::updatedAt).reversed()
+                    .thenComparing(Comparator.comparingLong(UserNoteIndex.Candidate::noteId).reversed());
+
+    // 編輯距離相同時，出現在較多筆記中的詞優先
+    private static final Comparator<UserNoteIndex.Suggestion> SUGGESTION_ORDER =
+            Comparator.comparingInt(UserNoteIndex.Suggestion::distance)
+                    .thenComparing(Comparator.comparingInt(UserNoteIndex.Suggestion::frequency).reversed())
+                    .thenComparing(UserNoteIndex.Suggestion::term);
+
+    // 短於此長度的詞不做拼字容錯
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    // 沒有擁有者 (note.user_email 為 null) 的筆記放在這個鍵下，只出現在管理員的查詢結果
+    private static final String NO_OWNER = "";
+
+    /**
+     * 單筆搜尋結果
+     */
+    public record Hit(Long noteId, double score, NoteHighlights highlights) {
+    }
+
+    /**
+     * 一頁搜尋結果與符合的總筆數
+     */
+    public record Result(long totalHits, List<Hit> hits) {
+    }
+
+    private final double titleBoost;
+    private final int maxEditDistance;
+    private final int shardCount;
+    private final ForkJoinPool shardPool;
+    // 筆記異動與替換整組分片互斥：異動可同時進行，替換時等待進行中的異動完成
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile List<Map<String, UserNoteIndex>> shards;
+    private volatile Build build;
+    private volatile boolean ready;
+
+    @Autowired
+    public NoteSearchIndex(@Value("${app.search.relevance.title-boost:2.0}") double titleBoost,
+                           @Value("${app.search.fuzzy.max-edit-distance:2}") int maxEditDistance,
+                           @Value("${app.search.index.shards:16}") int shardCount,
+                           @Value("${app.search.index.parallelism:0}") int parallelism) {
+        this(titleBoost, maxEditDistance, shardCount,
+                createShardPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors()));
+    }
+
+    NoteSearchIndex(double titleBoost, int maxEditDistance, int shardCount, ForkJoinPool shardPool) {
+        this.titleBoost = titleBoost;
+        this.maxEditDistance = maxEditDistance;
+        this.shardCount = shardCount;
+        this.shardPool = shardPool;
+        this.shards = createShards(shardCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shardPool.shutdown();
+    }
+
+    /**
+     * 索引是否已完整載入
+     *
+     * 第一次重建完成前索引是空的，依賴索引的查詢應改用資料庫。
+     *
+     * @return 是否已完整載入
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 重建中的索引
+     *
+     * 在另一組分片上建立，完成後整組替換目前的分片，重建期間目前的索引照常提供查詢。
+     * 重建期間的筆記異動同時寫入兩邊；刪除的筆記另外記下，替換前從新的分片移除，
+     * 避免刪除前讀出的資料又被加回。較舊版本的資料由 {@link UserNoteIndex#put} 的版本檢查忽略。
+     */
+    final class Build {
+        private final List<Map<String, UserNoteIndex>> buildShards = createShards(shardCount);
+        private final Map<Long, String> deleted = new ConcurrentHashMap<>();
+
+        private Build(Map<String, UserNoteIndex> restored) {
+            restored.forEach((userEmail, index) -> shardOf(buildShards, userEmail).put(userEmail, index));
+        }
+
+        /**
+         * 加入從資料庫讀出的筆記 (可由多個執行緒同時呼叫)
+         *
+         * @param note 筆記
+         */
+        void put(Note note) {
+            if (!deleted.containsKey(note.getId())) {
+                NoteSearchIndex.this.put(buildShards, note);
+            }
+        }
+
+        /**
+         * 移除已刪除的筆記
+         *
+         * @param noteId 筆記 ID
+         * @param userEmail 筆記擁有者的信箱
+         */
+        void remove(Long noteId, String userEmail) {
+            deleted.put(noteId, ownerKey(userEmail));
+            NoteSearchIndex.remove(buildShards, userEmail, noteId);
+        }
+    }
+
+    /**
+     * 開始重建
+     *
+     * @return 重建中的索引
+     * @throws IllegalStateException 已有進行中的重建
+     */
+    Build startBuild() {
+        return startBuild(Map.of());
+    }
+
+    /**
+     * 以快照還原的使用者索引為起點開始重建
+     *
+     * @param restored 使用者信箱與還原的索引
+     * @return 重建中的索引
+     * @throws IllegalStateException 已有進行中的重建
+     */
+    synchronized Build startBuild(Map<String, UserNoteIndex> restored) {
+        if (build != null) {
+            throw new IllegalStateException("搜尋索引重建已在進行中");
+        }
+        build = new Build(restored);
+        return build;
+    }
+
+    /**
+     * 將目前的索引寫入快照
+     *
+     * 各使用者的索引在自己的讀鎖下寫出，寫入期間查詢與異動照常進行。
+     *
+     * @param directory 快照目錄
+     * @param changeToken 快照已涵蓋的異動紀錄 ID
+     * @param maxNoteId 寫入時最大的筆記 ID
+     * @return 寫入的筆記數
+     * @throws IOException 寫入失敗時
+     */
+    long writeSnapshot(Path directory, long changeToken, long maxNoteId) throws IOException {
+        return NoteIndexSnapshot.write(directory, changeToken, maxNoteId, shards);
+    }
+
+    int maxEditDistance() {
+        return maxEditDistance;
+    }
+
+    /**
+     * 重建完成，以新的分片取代目前的分片
+     *
+     * @param completed 重建完成的索引
+     */
+    synchronized void finishBuild(Build completed) {
+        swapLock.writeLock().lock();
+        try {
+            completed.deleted.forEach((noteId, userEmail) -> remove(completed.buildShards, userEmail, noteId));
+            shards = completed.buildShards;
+            build = null;
+            ready = true;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 放棄重建，保留目前的分片
+     *
+     * @param failed 重建中的索引
+     */
+    synchronized void abortBuild(Build failed) {
+        if (build == failed) {
+            build = null;
+        }
+    }
+
+    /**
+     * 筆記異動後更新索引 (交易提交後執行；沒有交易時立即執行)
+     *
+     * 排在其他監聽者之前，其他監聽者執行時索引已是最新狀態。
+     *
+     * @param event 筆記異動事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onNoteChanged(NoteChangedEvent event) {
+        if (event.getType() == NoteChangedEvent.Type.DELETED) {
+            remove(event.getNote());
+        } else {
+            put(event.getNote());
+        }
+    }
+
+    /**
+     * 新增或更新筆記的索引
+     *
+     * @param note 筆記
+     */
+    public void put(Note note) {
+        swapLock.readLock().lock();
+        try {
+            put(shards, note);
+            Build current = build;
+            if (current != null) {
+                current.put(note);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 移除筆記的索引
+     *
+     * @param note 筆記
+     */
+    public void remove(Note note) {
+        remove(note.getId(), note.getUserEmail());
+    }
+
+    /**
+     * 移除筆記的索引
+     *
+     * @param noteId 筆記 ID
+     * @param userEmail 筆記擁有者的信箱
+     */
+    void remove(Long noteId, String userEmail) {
+        swapLock.readLock().lock();
+        try {
+            remove(shards, userEmail, noteId);
+            Build current = build;
+            if (current != null) {
+                current.remove(noteId, userEmail);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取得索引中的筆記數
+     *
+     * @return 筆記數
+     */
+    public int size() {
+        return shards.stream().flatMap(shard -> shard.values().stream()).mapToInt(UserNoteIndex::size).sum();
+    }
+
+    /**
+     * 取得所有使用者的 posting list 佔用的堆外記憶體
+     *
+     * @return bytes
+     */
+    public long offHeapBytes() {
+        return shards.stream().flatMap(shard -> shard.values().stream()).mapToLong(UserNoteIndex::offHeapBytes).sum();
+    }
+
+    /**
+     * 依相關度搜尋筆記
+     *
+     * @param userEmail 使用者信箱；null 表示搜尋所有使用者 (管理員)
+     * @param tagFilter 標籤條件；null 表示不限
+     * @param keyword 搜尋關鍵字
+     * @param offset 略過的筆數
+     * @param limit 回傳的筆數上限
+     * @return 搜尋結果
+     */
+    public Result search(String userEmail, TagFilter tagFilter, String keyword, int offset, int limit) {
+        List<String> terms = NoteTokenizer.queryTerms(keyword);
+        if (terms.isEmpty() || limit <= 0) {
+            return new Result(0, List.of());
+        }
+
+        // 先合併所有範圍內索引的語料統計，各分片的分數才能互相比較
+        Bm25Scorer scorer = new Bm25Scorer(terms.size(), titleBoost);
+        for (Bm25Scorer partial : inScope(userEmail, indexes -> {
+            Bm25Scorer shardScorer = new Bm25Scorer(terms.size(), titleBoost);
+            indexes.forEach(index -> index.collectStats(terms, shardScorer));
+            return shardScorer;
+        })) {
+            scorer.add(partial);
+        }
+
+        TopCandidates top = collectTop(userEmail, offset, limit, RANKING,
+                (index, collector) -> index.search(terms, tagFilter, false, scorer, collector));
+
+        List<Hit> hits = new ArrayList<>();
+        for (UserNoteIndex.Candidate candidate : top.page()) {
+            NoteHighlights highlights = candidate.source().highlight(candidate.noteId(), terms);
+            if (highlights != null) {
+                hits.add(new Hit(candidate.noteId(), candidate.score(), highlights));
+            }
+        }
+        return new Result(top.totalHits(), hits);
+    }
+
+    /**
+     * 找出包含所有查詢詞的筆記 ID，依更新時間由新到舊排序 (不計分)
+     *
+     * 管理員搜尋 (app.search.admin-mode=index) 以此取代資料庫的 LIKE 查詢。
+     * 比對方式與依相關度搜尋相同：英文以完整單字比對，中文以相鄰兩字比對。
+     *
+     * @param userEmail 使用者信箱；null 表示所有使用者 (管理員)
+     * @param tagFilter 標籤條件；null 表示不限
+     * @param keyword 搜尋關鍵字
+     * @param pageable 分頁參數
+     * @return 筆記 ID 分頁結果
+     */
+    public Page<Long> findIdsByKeyword(String userEmail, TagFilter tagFilter, String keyword, Pageable pageable) {
+        List<String> terms = NoteTokenizer.queryTerms(keyword);
+        if (terms.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        TopCandidates top = collectTop(userEmail, (int) pageable.getOffset(), pageable.getPageSize(), RECENCY,
+                (index, collector) -> index.search(terms, tagFilter, false, null, collector));
+        return toIdsPage(top, pageable);
+    }
+
+    /**
+     * 找出標題包含所有查詢詞的筆記 ID，依更新時間由新到舊排序 (用於搜尋建議)
+     *
+     * @param userEmail 使用者信箱；null 表示所有使用者 (管理員)
+     * @param keyword 搜尋關鍵字
+     * @param limit 回傳的筆數上限
+     * @return 筆記 IDs
+     */
+    public List<Long> findIdsByTitle(String userEmail, String keyword, int limit) {
+        List<String> terms = NoteTokenizer.queryTerms(keyword);
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        return collectTop(userEmail, 0, limit, RECENCY,
+                (index, collector) -> index.search(terms, null, true, null, collector))
+                .page().stream()
+                .map(UserNoteIndex.Candidate::noteId)
+                .toList();
+    }
+
+    /**
+     * 依標籤條件取得筆記 ID，依更新時間由新到舊排序
+     *
+     * @param userEmail 使用者信箱；null 表示所有使用者 (管理員)
+     * @param tagFilter 標籤條件
+     * @param pageable 分頁參數
+     * @return 筆記 ID 分頁結果
+     */
+    public Page<Long> findIdsByTags(String userEmail, TagFilter tagFilter, Pageable pageable) {
+        TopCandidates top = collectTop(userEmail, (int) pageable.getOffset(), pageable.getPageSize(), RECENCY,
+                (index, collector) -> index.collectByTags(tagFilter, collector));
+        return toIdsPage(top, pageable);
+    }
+
+    /**
+     * 修正關鍵字中拼錯的詞
+     *
+     * 英文等詞不在詞典中時，以編輯距離最近、出現在最多筆記中的詞取代，其餘文字保持原樣。
+     *
+     * @param userEmail 使用者信箱；null 表示所有使用者 (管理員)
+     * @param keyword 搜尋關鍵字
+     * @return 修正後的關鍵字；沒有可修正的詞時回傳 null
+     */
+    public String correctKeyword(String userEmail, String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+
+        StringBuilder corrected = new StringBuilder(keyword);
+        boolean changed = false;
+        // 由後往前取代，前面詞的偏移量不受影響
+        List<NoteTokenizer.Token> tokens = NoteTokenizer.tokenize(keyword);
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            NoteTokenizer.Token token = tokens.get(i);
+            if (!NoteTokenizer.isWord(token.term()) || token.term().length() < MIN_FUZZY_LENGTH) {
+                continue;
+            }
+            List<UserNoteIndex.Suggestion> suggestions = fuzzyMatches(userEmail, token.term());
+            if (!suggestions.isEmpty() && suggestions.get(0).distance() > 0) {
+                corrected.replace(token.start(), token.end(), suggestions.get(0).term());
+                changed = true;
+            }
+        }
+        return changed ? corrected.toString() : null;
+    }
+
+    /**
+     * 取得與輸入詞相近 (但不完全相同) 的詞
+     *
+     * @param userEmail 使用者信箱；null 表示所有使用者 (管理員)
+     * @param word 輸入的詞
+     * @param limit 回傳的數量上限
+     * @return 相近的詞，依編輯距離與出現的筆記數排序
+     */
+    public List<String> suggestTerms(String userEmail, String word, int limit) {
+        String term = word == null ? "" : word.trim().toLowerCase(Locale.ROOT);
+        if (term.length() < MIN_FUZZY_LENGTH || !NoteTokenizer.isWord(term) || limit <= 0) {
+            return List.of();
+        }
+        return fuzzyMatches(userEmail, term).stream()
+                .filter(suggestion -> suggestion.distance() > 0)
+                .limit(limit)
+                .map(UserNoteIndex.Suggestion::term)
+                .toList();
+    }
+
+    // 詞越短可容許的編輯距離越小，避免修正成不相干的詞
+    private int allowedDistance(String term) {
+        return term.length() < 6 ? Math.min(1, maxEditDistance) : maxEditDistance;
+    }
+
+    // 合併各索引的候選詞 (管理員範圍內同一個詞的筆記數相加)，依排序規則回傳
+    private List<UserNoteIndex.Suggestion> fuzzyMatches(String userEmail, String term) {
+        int distance = allowedDistance(term);
+        Map<String, UserNoteIndex.Suggestion> merged = new HashMap<>();
+        for (List<UserNoteIndex.Suggestion> partial : inScope(userEmail, indexes -> {
+            List<UserNoteIndex.Suggestion> shardSuggestions = new ArrayList<>();
+            indexes.forEach(index -> shardSuggestions.addAll(index.suggest(term, distance)));
+            return shardSuggestions;
+        })) {
+            for (UserNoteIndex.Suggestion suggestion : partial) {
+                merged.merge(suggestion.term(), suggestion, (a, b) ->
+                        new UserNoteIndex.Suggestion(a.term(), a.distance(), a.frequency() + b.frequency()));
+            }
+        }
+        List<UserNoteIndex.Suggestion> suggestions = new ArrayList<>(merged.values());
+        suggestions.sort(SUGGESTION_ORDER);
+        return suggestions;
+    }
+
+    /**
+     * 在單一索引中找出候選結果，回傳符合的筆數
+     */
+    @FunctionalInterface
+    private interface CandidateSource {
+        long collect(UserNoteIndex index, Consumer<UserNoteIndex.Candidate> collector);
+    }
+
+    /**
+     * 以大小為 offset + limit 的 heap 保留排名最前的候選結果，heap 頂端為目前最差的一筆
+     */
+    private static final class TopCandidates implements Consumer<UserNoteIndex.Candidate> {
+        private final int offset;
+        private final int capacity;
+        private final Comparator<UserNoteIndex.Candidate> order;
+        private final PriorityQueue<UserNoteIndex.Candidate> heap;
+        private long totalHits;
+
+        TopCandidates(int offset, int limit, Comparator<UserNoteIndex.Candidate> order) {
+            this.offset = offset;
+            this.capacity = (int) Math.min(Integer.MAX_VALUE - 1L, (long) offset + Math.max(0, limit));
+            this.order = order;
+            this.heap = new PriorityQueue<>(order.reversed());
+        }
+
+        @Override
+        public void accept(UserNoteIndex.Candidate candidate) {
+            if (heap.size() < capacity) {
+                heap.add(candidate);
+            } else if (capacity > 0 && order.compare(candidate, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        // 合併另一個分片保留的候選結果與符合筆數
+        void merge(TopCandidates other) {
+            other.heap.forEach(this);
+            totalHits += other.totalHits;
+        }
+
+        long totalHits() {
+            return totalHits;
+        }
+
+        // 排序後略過 offset 筆
+        List<UserNoteIndex.Candidate> page() {
+            List<UserNoteIndex.Candidate> ranked = new ArrayList<>(heap);
+            ranked.sort(order);
+            return ranked.size() <= offset ? List.of() : ranked.subList(offset, ranked.size());
+        }
+    }
+
+    // 各分片各自保留前 offset + limit 筆，合併後取出所需的一頁
+    private TopCandidates collectTop(String userEmail, int offset, int limit,
+                                     Comparator<UserNoteIndex.Candidate> order, CandidateSource source) {
+        TopCandidates top = new TopCandidates(offset, limit, order);
+        int shardLimit = (int) Math.min(Integer.MAX_VALUE - 1L, (long) offset + Math.max(0, limit));
+        for (TopCandidates partial : inScope(userEmail, indexes -> {
+            TopCandidates shardTop = new TopCandidates(0, shardLimit, order);
+            for (UserNoteIndex index : indexes) {
+                shardTop.totalHits += source.collect(index, shardTop);
+            }
+            return shardTop;
+        })) {
+            top.merge(partial);
+        }
+        return top;
+    }
+
+    private static Page<Long> toIdsPage(TopCandidates top, Pageable pageable) {
+        List<Long> ids = top.page().stream().map(UserNoteIndex.Candidate::noteId).toList();
+        return new PageImpl<>(ids, pageable, top.totalHits());
+    }
+
+    /**
+     * 對查詢範圍內的索引執行 task
+     *
+     * 一般使用者只有自己的索引，直接在呼叫的執行緒執行；
+     * 管理員的查詢對每個非空的分片各執行一次，在 ForkJoinPool 上平行處理。
+     *
+     * @param userEmail 使用者信箱；null 表示所有使用者 (管理員)
+     * @param task 處理一組索引並回傳部分結果
+     * @return 各分片的部分結果
+     */
+    private <R> List<R> inScope(String userEmail, Function<Collection<UserNoteIndex>, R> task) {
+        List<Map<String, UserNoteIndex>> current = shards;
+        if (userEmail != null) {
+            UserNoteIndex index = shardOf(current, userEmail).get(userEmail);
+            return List.of(task.apply(index == null ? List.of() : List.of(index)));
+        }
+
+        List<ForkJoinTask<R>> tasks = new ArrayList<>(current.size());
+        for (Map<String, UserNoteIndex> shard : current) {
+            if (!shard.isEmpty()) {
+                tasks.add(shardPool.submit(() -> task.apply(shard.values())));
+            }
+        }
+        List<R> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<R> shardTask : tasks) {
+            results.add(shardTask.join());
+        }
+        return results;
+    }
+
+    private void put(List<Map<String, UserNoteIndex>> target, Note note) {
+        String owner = ownerKey(note.getUserEmail());
+        shardOf(target, owner)
+                .computeIfAbsent(owner, email -> new UserNoteIndex(maxEditDistance))
+                .put(note);
+    }
+
+    private static void remove(List<Map<String, UserNoteIndex>> target, String userEmail, Long noteId) {
+        String owner = ownerKey(userEmail);
+        UserNoteIndex index = shardOf(target, owner).get(owner);
+        if (index != null) {
+            index.remove(noteId);
+        }
+    }
+
+    private static String ownerKey(String userEmail) {
+        return userEmail == null ? NO_OWNER : userEmail;
+    }
+
+    private static Map<String, UserNoteIndex> shardOf(List<Map<String, UserNoteIndex>> target, String userEmail) {
+        return target.get(Math.floorMod(userEmail.hashCode(), target.size()));
+    }
+
+    private static List<Map<String, UserNoteIndex>> createShards(int shardCount) {
+        List<Map<String, UserNoteIndex>> created = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            created.add(new ConcurrentHashMap<>());
+        }
+        return created;
+    }
+
+    private static ForkJoinPool createShardPool(int parallelism) {
+        AtomicInteger sequence = new AtomicInteger();
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("search-shard-" + sequence.incrementAndGet());
+            return thread;
+        }, null, false);
+    }
+}
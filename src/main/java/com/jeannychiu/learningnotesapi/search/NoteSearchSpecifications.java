@@ -0,0 +1,90 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteBody;
+import com.jeannychiu.learningnotesapi.model.Tag;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多標籤條件的資料庫查詢
+ *
+ * 將 {@link TagFilter} 轉為 SQL 條件，每組標籤一個 EXISTS 子查詢、排除的標籤一個 NOT EXISTS 子查詢，
+ * 標籤名稱依資料庫的定序比對 (與單一標籤的查詢相同)，由資料庫分頁，不需載入所有符合關鍵字的筆記。
+ * 關鍵字比對方式與 {@link LikeNoteSearchBackend} 的 JPQL 相同。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class NoteSearchSpecifications {
+    private NoteSearchSpecifications() {
+    }
+
+    /**
+     * 使用者的筆記
+     *
+     * @param userEmail 使用者信箱；null 表示所有使用者 (管理員)
+     * @return 查詢條件
+     */
+    static Specification<Note> ownedBy(String userEmail) {
+        return (root, query, cb) -> userEmail == null ? cb.conjunction() : cb.equal(root.get("userEmail"), userEmail);
+    }
+
+    /**
+     * 標題或內容 (含存在 note_body 的內容) 包含關鍵字，不分大小寫
+     *
+     * @param keyword 關鍵字
+     * @return 查詢條件
+     */
+    static Specification<Note> containsKeyword(String keyword) {
+        return (root, query, cb) -> {
+            Expression<String> pattern = cb.lower(cb.literal("%" + keyword + "%"));
+            Subquery<Long> body = query.subquery(Long.class);
+            Root<NoteBody> b = body.from(NoteBody.class);
+            body.select(b.get("noteId")).where(
+                    cb.equal(b.get("noteId"), root.get("id")),
+                    cb.like(cb.lower(b.get("searchText")), pattern));
+
+            return cb.or(
+                    cb.like(cb.lower(root.get("title")), pattern),
+                    cb.like(cb.lower(root.get("content")), pattern),
+                    cb.and(cb.isNotNull(root.get("bodyLength")), cb.exists(body)));
+        };
+    }
+
+    /**
+     * 符合標籤條件
+     *
+     * @param tagFilter 標籤條件
+     * @return 查詢條件
+     */
+    static Specification<Note> matchesTags(TagFilter tagFilter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            for (List<String> group : tagFilter.requiredGroups()) {
+                predicates.add(cb.exists(taggedWithAny(root, query.subquery(Long.class), cb, group)));
+            }
+            if (!tagFilter.excludedTags().isEmpty()) {
+                predicates.add(cb.not(cb.exists(
+                        taggedWithAny(root, query.subquery(Long.class), cb, tagFilter.excludedTags()))));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // 筆記帶有其中任一個標籤
+    private static Subquery<Long> taggedWithAny(Root<Note> root, Subquery<Long> subquery, CriteriaBuilder cb,
+                                                List<String> tagNames) {
+        Root<Note> note = subquery.correlate(root);
+        Join<Note, Tag> tag = note.join("tags");
+        return subquery.select(tag.get("id")).where(tag.get("name").in(tagNames));
+    }
+}
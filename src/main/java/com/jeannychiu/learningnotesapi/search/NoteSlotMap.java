@@ -0,0 +1,137 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import java.util.Arrays;
+
+/**
+ * 筆記 ID 對應到 slot (欄位陣列中的位置) 的 primitive hash map
+ *
+ * 以開放定址 (linear probing) 存放在 long[] / int[]，查詢與寫入不建立 Long 或 Map.Entry 物件；
+ * 刪除時將同一串探測序列後面的項目往前搬 (backward shift)，不留下墓碑。
+ *
+ * 此類別本身不做同步，由呼叫端 (UserNoteIndex) 的讀寫鎖保護。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class NoteSlotMap {
+    static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    // 空位為 MISSING (slot 一定大於等於 0)
+    private int[] values;
+    private int mask;
+    private int size;
+
+    NoteSlotMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * 取得筆記的 slot
+     *
+     * @param noteId 筆記 ID
+     * @return slot；沒有此筆記時回傳 {@link #MISSING}
+     */
+    int get(long noteId) {
+        for (int i = indexOf(noteId); ; i = (i + 1) & mask) {
+            if (values[i] == MISSING || keys[i] == noteId) {
+                return values[i];
+            }
+        }
+    }
+
+    /**
+     * 新增或取代筆記的 slot
+     *
+     * @param noteId 筆記 ID
+     * @param slot slot (大於等於 0)
+     */
+    void put(long noteId, int slot) {
+        // 負載超過一半時擴充，線性探測的序列保持短
+        if ((size + 1) * 2 > values.length) {
+            rehash(values.length * 2);
+        }
+        int i = indexOf(noteId);
+        while (values[i] != MISSING) {
+            if (keys[i] == noteId) {
+                values[i] = slot;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = noteId;
+        values[i] = slot;
+        size++;
+    }
+
+    /**
+     * 移除筆記
+     *
+     * @param noteId 筆記 ID
+     * @return 原本的 slot；沒有此筆記時回傳 {@link #MISSING}
+     */
+    int remove(long noteId) {
+        for (int i = indexOf(noteId); values[i] != MISSING; i = (i + 1) & mask) {
+            if (keys[i] == noteId) {
+                int slot = values[i];
+                shiftBack(i);
+                size--;
+                return slot;
+            }
+        }
+        return MISSING;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // 將空位之後、原本應放在空位 (含) 之前的項目往前搬，直到遇到空位
+    private void shiftBack(int gap) {
+        for (int i = (gap + 1) & mask; values[i] != MISSING; i = (i + 1) & mask) {
+            int home = indexOf(keys[i]);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = MISSING;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != MISSING) {
+                int j = indexOf(oldKeys[i]);
+                while (values[j] != MISSING) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+    // 筆記 ID 多為連續的自動遞增值，先打散再取低位元 (MurmurHash3 的 finalizer)
+    private int indexOf(long noteId) {
+        long h = noteId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,136 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 搜尋索引使用的斷詞器
+ *
+ * - 英文、數字等以連續的字母數字為一個詞，轉為小寫
+ * - 中日韓文字沒有空白分隔，索引時同時產生單字與相鄰兩字 (bigram)
+ *
+ * 查詢時，中日韓文字只有一個字時以單字查詢，兩個字以上以 bigram 查詢，
+ * 效果接近子字串比對。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class NoteTokenizer {
+
+    /**
+     * 斷詞結果，start / end 為原文中的 UTF-16 字元偏移
+     */
+    record Token(String term, int start, int end) {
+    }
+
+    private NoteTokenizer() {
+    }
+
+    /**
+     * 將索引文字斷詞
+     *
+     * @param text 標題或內容
+     * @return 依出現順序排列的詞
+     */
+    static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int previousStart = -1;
+                while (i < text.length() && isCjk(text.codePointAt(i))) {
+                    int end = i + Character.charCount(text.codePointAt(i));
+                    tokens.add(new Token(text.substring(i, end), i, end));
+                    if (previousStart >= 0) {
+                        tokens.add(new Token(text.substring(previousStart, end), previousStart, end));
+                    }
+                    previousStart = i;
+                    i = end;
+                }
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int start = i;
+                while (i < text.length() && isWordPart(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                tokens.add(new Token(text.substring(start, i).toLowerCase(Locale.ROOT), start, i));
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 將查詢關鍵字斷詞 (去除重複)
+     *
+     * @param keyword 搜尋關鍵字
+     * @return 查詢詞，每個詞都必須出現
+     */
+    static List<String> queryTerms(String keyword) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (keyword == null) {
+            return new ArrayList<>(terms);
+        }
+
+        int i = 0;
+        while (i < keyword.length()) {
+            int codePoint = keyword.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int start = i;
+                List<Integer> starts = new ArrayList<>();
+                while (i < keyword.length() && isCjk(keyword.codePointAt(i))) {
+                    starts.add(i);
+                    i += Character.charCount(keyword.codePointAt(i));
+                }
+                if (starts.size() == 1) {
+                    terms.add(keyword.substring(start, i));
+                } else {
+                    for (int j = 1; j < starts.size(); j++) {
+                        int end = j + 1 < starts.size() ? starts.get(j + 1) : i;
+                        terms.add(keyword.substring(starts.get(j - 1), end));
+                    }
+                }
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int start = i;
+                while (i < keyword.length() && isWordPart(keyword.codePointAt(i))) {
+                    i += Character.charCount(keyword.codePointAt(i));
+                }
+                terms.add(keyword.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * 是否為英文、數字等以空白分隔的詞 (可做拼字容錯)
+     *
+     * @param term 詞
+     * @return 不是中日韓文字時回傳 true
+     */
+    static boolean isWord(String term) {
+        return !term.isEmpty() && !isCjk(term.codePointAt(0));
+    }
+
+    private static boolean isWordPart(int codePoint) {
+        return !isCjk(codePoint)
+                && (Character.isLetterOrDigit(codePoint) || Character.getType(codePoint) == Character.NON_SPACING_MARK);
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
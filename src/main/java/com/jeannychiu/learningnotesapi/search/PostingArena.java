@@ -0,0 +1,74 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 存放壓縮 posting list 的堆外記憶體 (一個使用者的索引一個)
+ *
+ * 從 direct ByteBuffer 區塊依序切出空間，區塊大小從 {@value #MIN_CHUNK_BYTES} bytes 起倍增，
+ * 最大 {@value #MAX_CHUNK_BYTES} bytes；較大的 posting list 另外配置獨立的 buffer。
+ * 切出的空間不會個別回收，posting list 重新編碼後舊的空間只記為已釋放，
+ * 已釋放的空間過多時由呼叫端將所有 posting list 搬到新的 arena，舊的區塊隨 GC 釋放。
+ *
+ * 此類別本身不做同步，由呼叫端 (UserNoteIndex) 的讀寫鎖保護。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class PostingArena {
+    static final int MIN_CHUNK_BYTES = 4 * 1024;
+    static final int MAX_CHUNK_BYTES = 1024 * 1024;
+    // 超過此大小的 posting list 獨立配置
+    private static final int LARGE_BLOCK_BYTES = MAX_CHUNK_BYTES / 4;
+
+    private ByteBuffer current;
+    private long allocatedBytes;
+    private long usedBytes;
+
+    /**
+     * 配置一塊空間
+     *
+     * @param size 大小 (bytes)
+     * @return 可寫入的 buffer (以絕對位置讀寫)
+     */
+    ByteBuffer allocate(int size) {
+        usedBytes += size;
+        if (size > LARGE_BLOCK_BYTES) {
+            allocatedBytes += size;
+            return ByteBuffer.allocateDirect(size);
+        }
+        if (current == null || current.remaining() < size) {
+            int chunkSize = current == null ? MIN_CHUNK_BYTES : Math.min(MAX_CHUNK_BYTES, current.capacity() * 2);
+            current = ByteBuffer.allocateDirect(Math.max(chunkSize, size));
+            allocatedBytes += current.capacity();
+        }
+        ByteBuffer block = current.slice(current.position(), size);
+        current.position(current.position() + size);
+        return block;
+    }
+
+    /**
+     * 釋放 {@link #allocate} 配置的空間
+     *
+     * @param block 不再使用的空間
+     */
+    void release(ByteBuffer block) {
+        usedBytes -= block.capacity();
+        if (block.capacity() > LARGE_BLOCK_BYTES) {
+            allocatedBytes -= block.capacity();
+        }
+    }
+
+    /**
+     * 已釋放的空間是否超過一半，應搬到新的 arena
+     *
+     * @return 是否需要壓縮
+     */
+    boolean isFragmented() {
+        return allocatedBytes > MAX_CHUNK_BYTES && usedBytes < allocatedBytes / 2;
+    }
+
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+}
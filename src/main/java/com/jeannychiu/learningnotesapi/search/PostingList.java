@@ -0,0 +1,623 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 一個詞的 posting list，壓縮後存放在堆外的 {@link PostingArena}
+ *
+ * 已編碼的部分依筆記 ID 遞增排列，每筆以 varint 記錄與前一筆的 ID 差值、標題與內容的詞頻，
+ * 以及出現位置 (同樣以差值編碼)；出現位置前記下位元組長度，只需詞頻時可直接跳過。
+ * 每 {@value #SKIP_INTERVAL} 筆記錄一個跳躍點 (前一筆的 ID 與位元組位置)，求交集時以二分搜尋跳到目標附近。
+ *
+ * 之後的新增與刪除先記在堆上的緩衝：新增的筆記 ID 存在排序的 long[]，詞頻與出現位置以相同的格式
+ * 編碼在 byte[]，刪除或取代的 ID 記在 Roaring 點陣圖，不會為每筆 posting 建立物件。
+ * 異動累積超過已編碼筆數的 1/8 (最多 {@value #MAX_PENDING} 次) 時與已編碼的部分合併並重新編碼，
+ * 平均每次異動的重新編碼成本是固定的。
+ * 查詢以 {@link Cursor} 依 ID 順序走訪，回傳 primitive long 與 int，不產生 boxing。
+ *
+ * 此類別本身不做同步，由呼叫端 (UserNoteIndex) 的讀寫鎖保護。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class PostingList {
+    /**
+     * 走訪結束時回傳的筆記 ID
+     */
+    static final long END = Long.MAX_VALUE;
+
+    static final int SKIP_INTERVAL = 32;
+    private static final int MAX_PENDING = 4096;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int SKIP_BYTES = Long.BYTES + Integer.BYTES;
+    private static final long[] NO_IDS = new long[0];
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final String term;
+    private final int termId;
+    private ByteBuffer block;
+    private int size;
+    // 尚未編碼的新增：依 ID 排序的筆記 ID 與各筆在 addedEntries 中的位置
+    private long[] addedIds = NO_IDS;
+    private int[] addedPositions = NO_POSITIONS;
+    private int addedCount;
+    private Encoder addedEntries;
+    // 已編碼部分中被取代或刪除的 ID
+    private Roaring64NavigableMap masked;
+    // 上次重新編碼後的異動次數 (取代緩衝中的新增也會在 addedEntries 留下舊的位元組)
+    private int pendingChanges;
+
+    /**
+     * @param term 詞
+     * @param termId 詞在所屬索引中的 ID (見 UserNoteIndex)
+     */
+    PostingList(String term, int termId) {
+        this.term = term;
+        this.termId = termId;
+    }
+
+    String term() {
+        return term;
+    }
+
+    int termId() {
+        return termId;
+    }
+
+    /**
+     * 包含此詞的筆記數
+     *
+     * @return 筆記數
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 新增或取代筆記的 posting
+     *
+     * @param noteId 筆記 ID
+     * @param posting 詞頻與出現位置
+     * @param arena 重新編碼時使用的 arena
+     */
+    void put(long noteId, UserNoteIndex.Posting posting, PostingArena arena) {
+        boolean encoded = encodedContains(noteId);
+        int index = Arrays.binarySearch(addedIds, 0, addedCount, noteId);
+        boolean existed = index >= 0 || (encoded && !isMasked(noteId));
+        if (encoded) {
+            mask(noteId);
+        }
+        if (addedEntries == null) {
+            addedEntries = new Encoder();
+        }
+        int position = addedEntries.addUnordered(posting);
+        if (index >= 0) {
+            addedPositions[index] = position;
+        } else {
+            insertAdded(-index - 1, noteId, position);
+        }
+        pendingChanges++;
+        if (!existed) {
+            size++;
+        }
+        encodeIfNeeded(arena);
+    }
+
+    /**
+     * 移除筆記的 posting
+     *
+     * @param noteId 筆記 ID
+     * @param arena 重新編碼時使用的 arena
+     */
+    void remove(long noteId, PostingArena arena) {
+        boolean encoded = encodedContains(noteId);
+        int index = Arrays.binarySearch(addedIds, 0, addedCount, noteId);
+        if (index >= 0) {
+            removeAdded(index);
+        }
+        boolean existed = index >= 0 || (encoded && !isMasked(noteId));
+        if (!existed) {
+            return;
+        }
+        if (encoded) {
+            mask(noteId);
+        }
+        pendingChanges++;
+        size--;
+        if (size == 0) {
+            if (block != null) {
+                arena.release(block);
+            }
+            block = null;
+            clearPending();
+        } else {
+            encodeIfNeeded(arena);
+        }
+    }
+
+    /**
+     * 搬到新的 arena (壓縮 arena 時使用)
+     *
+     * @param target 新的 arena
+     */
+    void moveTo(PostingArena target) {
+        if (block != null) {
+            ByteBuffer moved = target.allocate(block.capacity());
+            moved.put(0, block, 0, block.capacity());
+            block = moved;
+        }
+    }
+
+    /**
+     * 編碼後的內容 (含尚未編碼的異動)，寫入快照用
+     *
+     * @return 編碼後的內容 (以絕對位置讀取)
+     */
+    ByteBuffer encoded() {
+        if (block != null && addedCount == 0 && masked == null) {
+            return block;
+        }
+        Encoder encoder = new Encoder();
+        encoder.addAll(cursor());
+        ByteBuffer result = ByteBuffer.allocate(encoder.byteSize());
+        encoder.writeTo(result);
+        return result;
+    }
+
+    /**
+     * 以編碼後的內容建立 posting list (由快照還原)
+     *
+     * @param term 詞
+     * @param termId 詞在所屬索引中的 ID
+     * @param source 編碼後的內容，讀取位置在開頭
+     * @param length 長度 (bytes)
+     * @param arena 存放的 arena
+     * @return posting list
+     */
+    static PostingList decode(String term, int termId, ByteBuffer source, int length, PostingArena arena) {
+        PostingList list = new PostingList(term, termId);
+        list.block = arena.allocate(length);
+        list.block.put(0, source, source.position(), length);
+        source.position(source.position() + length);
+        list.size = list.block.getInt(0);
+        return list;
+    }
+
+    /**
+     * 從頭開始走訪
+     *
+     * @return 依筆記 ID 遞增的 cursor
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 依筆記 ID 遞增走訪 posting list
+     *
+     * 初始位置在第一筆之前，以 {@link #next()} 或 {@link #advance(long)} 移動；
+     * 移動後可讀取目前這筆的詞頻與出現位置。
+     */
+    final class Cursor {
+        private final Reader reader = new Reader(block);
+        private final Reader pendingReader = addedEntries == null ? null : addedEntries.reader();
+        private int pendingIndex;
+        private boolean started;
+        private long noteId = -1;
+        private boolean fromPending;
+
+        /**
+         * 移到下一筆
+         *
+         * @return 筆記 ID；沒有下一筆時回傳 {@link #END}
+         */
+        long next() {
+            if (!started) {
+                started = true;
+                reader.next();
+            } else if (noteId != END) {
+                if (fromPending) {
+                    pendingIndex++;
+                } else {
+                    reader.next();
+                }
+            }
+            return settle();
+        }
+
+        /**
+         * 移到第一個 ID 不小於 target 的筆記 (target 必須不小於目前的 ID)
+         *
+         * @param target 目標筆記 ID
+         * @return 筆記 ID；沒有時回傳 {@link #END}
+         */
+        long advance(long target) {
+            if (!started) {
+                started = true;
+                reader.next();
+            } else if (noteId >= target) {
+                return noteId;
+            }
+            reader.advance(target);
+            if (pendingIndex < addedCount && addedIds[pendingIndex] < target) {
+                int found = Arrays.binarySearch(addedIds, pendingIndex, addedCount, target);
+                pendingIndex = found >= 0 ? found : -found - 1;
+            }
+            return settle();
+        }
+
+        long noteId() {
+            return noteId;
+        }
+
+        int titleFrequency() {
+            return current().titleFrequency;
+        }
+
+        int contentFrequency() {
+            return current().contentFrequency;
+        }
+
+        int[] titleOffsets() {
+            return current().offsets(false);
+        }
+
+        int[] contentOffsets() {
+            return current().offsets(true);
+        }
+
+        // 略過已編碼部分中被取代或刪除的筆記，取兩邊較小的 ID
+        private long settle() {
+            while (reader.noteId != END && masked != null && masked.contains(reader.noteId)) {
+                reader.next();
+            }
+            long pendingId = pendingIndex < addedCount ? addedIds[pendingIndex] : END;
+            fromPending = pendingId < reader.noteId;
+            if (fromPending) {
+                pendingReader.readAt(addedPositions[pendingIndex]);
+            }
+            noteId = fromPending ? pendingId : reader.noteId;
+            return noteId;
+        }
+
+        private Reader current() {
+            return fromPending ? pendingReader : reader;
+        }
+
+        private void copyTo(Encoder encoder) {
+            encoder.addEncoded(noteId, current());
+        }
+    }
+
+    private boolean encodedContains(long noteId) {
+        if (block == null) {
+            return false;
+        }
+        Reader reader = new Reader(block);
+        reader.next();
+        reader.advance(noteId);
+        return reader.noteId == noteId;
+    }
+
+    private boolean isMasked(long noteId) {
+        return masked != null && masked.contains(noteId);
+    }
+
+    private void mask(long noteId) {
+        if (masked == null) {
+            masked = new Roaring64NavigableMap();
+        }
+        masked.addLong(noteId);
+    }
+
+    private void insertAdded(int index, long noteId, int position) {
+        if (addedCount == addedIds.length) {
+            int capacity = Math.max(4, addedCount * 2);
+            addedIds = Arrays.copyOf(addedIds, capacity);
+            addedPositions = Arrays.copyOf(addedPositions, capacity);
+        }
+        System.arraycopy(addedIds, index, addedIds, index + 1, addedCount - index);
+        System.arraycopy(addedPositions, index, addedPositions, index + 1, addedCount - index);
+        addedIds[index] = noteId;
+        addedPositions[index] = position;
+        addedCount++;
+    }
+
+    private void removeAdded(int index) {
+        System.arraycopy(addedIds, index + 1, addedIds, index, addedCount - index - 1);
+        System.arraycopy(addedPositions, index + 1, addedPositions, index, addedCount - index - 1);
+        addedCount--;
+    }
+
+    private void clearPending() {
+        addedIds = NO_IDS;
+        addedPositions = NO_POSITIONS;
+        addedCount = 0;
+        addedEntries = null;
+        masked = null;
+        pendingChanges = 0;
+    }
+
+    private void encodeIfNeeded(PostingArena arena) {
+        int encodedCount = block == null ? 0 : block.getInt(0);
+        if (pendingChanges > Math.min(MAX_PENDING, encodedCount / 8)) {
+            Encoder encoder = new Encoder();
+            encoder.addAll(cursor());
+            ByteBuffer encoded = arena.allocate(encoder.byteSize());
+            encoder.writeTo(encoded);
+            if (block != null) {
+                arena.release(block);
+            }
+            block = encoded;
+            clearPending();
+        }
+    }
+
+    /**
+     * 解碼已編碼的部分 (只以絕對位置讀取，多個查詢可同時讀同一個 block)
+     *
+     * 格式：筆數、跳躍點數、跳躍點 (前一筆的 ID、位元組位置)，接著各筆資料。
+     * 也用來讀取尚未編碼的新增 (沒有標頭，以 {@link #readAt(int)} 讀取單筆)。
+     */
+    private static final class Reader {
+        private final ByteBuffer block;
+        private final int count;
+        private final int skipCount;
+        private final int entriesStart;
+        private int index;
+        private int position;
+        long noteId;
+        int titleFrequency;
+        int contentFrequency;
+        int titlePairs;
+        int contentPairs;
+        int offsetsPosition;
+        int offsetsLength;
+
+        Reader(ByteBuffer block) {
+            this.block = block;
+            this.count = block == null ? 0 : block.getInt(0);
+            this.skipCount = block == null ? 0 : block.getInt(Integer.BYTES);
+            this.entriesStart = HEADER_BYTES + skipCount * SKIP_BYTES;
+            this.position = entriesStart;
+        }
+
+        private Reader(byte[] entries) {
+            this.block = ByteBuffer.wrap(entries);
+            this.count = 0;
+            this.skipCount = 0;
+            this.entriesStart = 0;
+        }
+
+        void next() {
+            if (index >= count) {
+                noteId = END;
+                return;
+            }
+            noteId += readVarLong();
+            readFields();
+            index++;
+        }
+
+        // 讀取位置 position 上不含 ID 的一筆資料
+        void readAt(int position) {
+            this.position = position;
+            readFields();
+        }
+
+        private void readFields() {
+            titleFrequency = (int) readVarLong();
+            contentFrequency = (int) readVarLong();
+            titlePairs = (int) readVarLong();
+            contentPairs = (int) readVarLong();
+            offsetsLength = (int) readVarLong();
+            offsetsPosition = position;
+            position += offsetsLength;
+        }
+
+        // 先以跳躍點跳到目標之前最近的位置，再逐筆前進
+        void advance(long target) {
+            if (noteId >= target) {
+                return;
+            }
+            int low = 0;
+            int high = skipCount - 1;
+            int found = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (skipId(middle) < target) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (found >= 0 && (found + 1) * SKIP_INTERVAL >= index) {
+                int skipPosition = HEADER_BYTES + found * SKIP_BYTES;
+                noteId = block.getLong(skipPosition);
+                position = entriesStart + block.getInt(skipPosition + Long.BYTES);
+                index = (found + 1) * SKIP_INTERVAL;
+                next();
+            }
+            while (noteId < target) {
+                next();
+            }
+        }
+
+        int[] offsets(boolean content) {
+            int saved = position;
+            position = offsetsPosition;
+            if (content) {
+                for (int i = 0; i < titlePairs * 2; i++) {
+                    readVarLong();
+                }
+            }
+            int pairs = content ? contentPairs : titlePairs;
+            int[] offsets = new int[pairs * 2];
+            int start = 0;
+            for (int i = 0; i < pairs; i++) {
+                start += (int) readVarLong();
+                offsets[i * 2] = start;
+                offsets[i * 2 + 1] = start + (int) readVarLong();
+            }
+            position = saved;
+            return offsets;
+        }
+
+        private long skipId(int skip) {
+            return block.getLong(HEADER_BYTES + skip * SKIP_BYTES);
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = block.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * 依筆記 ID 遞增加入資料並編碼
+     *
+     * 尚未編碼的新增也以此類別存放 ({@link #addUnordered})，只寫入不含 ID 的資料。
+     */
+    private static final class Encoder {
+        private byte[] entries = new byte[64];
+        private int length;
+        private int count;
+        private long lastId;
+        private long[] skipIds = NO_IDS;
+        private int[] skipPositions = new int[0];
+        private int skipCount;
+
+        void addAll(Cursor cursor) {
+            for (long noteId = cursor.next(); noteId != END; noteId = cursor.next()) {
+                cursor.copyTo(this);
+            }
+        }
+
+        /**
+         * 寫入不含 ID 的一筆資料 (不參與筆數與跳躍點)
+         *
+         * @param posting 詞頻與出現位置
+         * @return 寫入的位元組位置，以 {@link Reader#readAt(int)} 讀取
+         */
+        int addUnordered(UserNoteIndex.Posting posting) {
+            int start = length;
+            writeFields(posting.titleFrequency, posting.contentFrequency, posting.titleOffsets.length / 2,
+                    posting.contentOffsets.length / 2,
+                    offsetsSize(posting.titleOffsets) + offsetsSize(posting.contentOffsets));
+            writeOffsets(posting.titleOffsets);
+            writeOffsets(posting.contentOffsets);
+            return start;
+        }
+
+        // 讀取 addUnordered 寫入的資料；之後再寫入可能換掉底層陣列，須重新建立
+        Reader reader() {
+            return new Reader(entries);
+        }
+
+        // 出現位置直接複製已編碼的位元組
+        void addEncoded(long noteId, Reader reader) {
+            addHeader(noteId, reader.titleFrequency, reader.contentFrequency, reader.titlePairs,
+                    reader.contentPairs, reader.offsetsLength);
+            ensureCapacity(reader.offsetsLength);
+            reader.block.get(reader.offsetsPosition, entries, length, reader.offsetsLength);
+            length += reader.offsetsLength;
+        }
+
+        int byteSize() {
+            return HEADER_BYTES + skipCount * SKIP_BYTES + length;
+        }
+
+        void writeTo(ByteBuffer target) {
+            target.putInt(0, count);
+            target.putInt(Integer.BYTES, skipCount);
+            for (int i = 0; i < skipCount; i++) {
+                target.putLong(HEADER_BYTES + i * SKIP_BYTES, skipIds[i]);
+                target.putInt(HEADER_BYTES + i * SKIP_BYTES + Long.BYTES, skipPositions[i]);
+            }
+            target.put(HEADER_BYTES + skipCount * SKIP_BYTES, entries, 0, length);
+        }
+
+        private void addHeader(long noteId, int titleFrequency, int contentFrequency, int titlePairs,
+                               int contentPairs, int offsetsLength) {
+            if (count > 0 && noteId <= lastId) {
+                throw new IllegalStateException("posting 必須依筆記 ID 遞增加入");
+            }
+            if (count > 0 && count % SKIP_INTERVAL == 0) {
+                if (skipCount == skipIds.length) {
+                    skipIds = Arrays.copyOf(skipIds, Math.max(4, skipCount * 2));
+                    skipPositions = Arrays.copyOf(skipPositions, skipIds.length);
+                }
+                skipIds[skipCount] = lastId;
+                skipPositions[skipCount] = length;
+                skipCount++;
+            }
+            writeVarLong(noteId - lastId);
+            writeFields(titleFrequency, contentFrequency, titlePairs, contentPairs, offsetsLength);
+            lastId = noteId;
+            count++;
+        }
+
+        private void writeFields(int titleFrequency, int contentFrequency, int titlePairs, int contentPairs,
+                                 int offsetsLength) {
+            writeVarLong(titleFrequency);
+            writeVarLong(contentFrequency);
+            writeVarLong(titlePairs);
+            writeVarLong(contentPairs);
+            writeVarLong(offsetsLength);
+        }
+
+        private void writeOffsets(int[] offsets) {
+            int start = 0;
+            for (int i = 0; i < offsets.length; i += 2) {
+                writeVarLong((offsets[i] - start) & 0xFFFFFFFFL);
+                writeVarLong((offsets[i + 1] - offsets[i]) & 0xFFFFFFFFL);
+                start = offsets[i];
+            }
+        }
+
+        private static int offsetsSize(int[] offsets) {
+            int size = 0;
+            int start = 0;
+            for (int i = 0; i < offsets.length; i += 2) {
+                size += varLongSize((offsets[i] - start) & 0xFFFFFFFFL);
+                size += varLongSize((offsets[i + 1] - offsets[i]) & 0xFFFFFFFFL);
+                start = offsets[i];
+            }
+            return size;
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                entries[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            entries[length++] = (byte) value;
+        }
+
+        private static int varLongSize(long value) {
+            return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 6) / 7);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (length + additional > entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(entries.length * 2, length + additional));
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 以 SymSpell 刪除索引實作的拼字容錯詞典
+ *
+ * 加入詞時預先產生「刪除最多 maxEditDistance 個字元」的所有變形並記錄對應的原詞；
+ * 查詢時只需對輸入產生同樣的刪除變形並查表，再以有上限的編輯距離確認候選詞，
+ * 不必與詞典中的每個詞比對。為控制記憶體，只對詞的前 {@value #PREFIX_LENGTH} 個字元產生變形。
+ *
+ * 此類別本身不做同步，由呼叫端 (UserNoteIndex) 的讀寫鎖保護。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class SymSpellDictionary {
+    static final int PREFIX_LENGTH = 7;
+
+    /**
+     * 候選詞與編輯距離
+     */
+    record Match(String term, int distance) {
+    }
+
+    private final int maxEditDistance;
+    private final Set<String> terms = new HashSet<>();
+    private final Map<String, List<String>> deletes = new HashMap<>();
+
+    SymSpellDictionary(int maxEditDistance) {
+        this.maxEditDistance = maxEditDistance;
+    }
+
+    /**
+     * 加入詞
+     *
+     * @param term 詞 (已轉小寫)
+     */
+    void add(String term) {
+        if (!terms.add(term)) {
+            return;
+        }
+        for (String delete : deletesOf(term)) {
+            deletes.computeIfAbsent(delete, key -> new ArrayList<>(2)).add(term);
+        }
+    }
+
+    /**
+     * 移除詞
+     *
+     * @param term 詞 (已轉小寫)
+     */
+    void remove(String term) {
+        if (!terms.remove(term)) {
+            return;
+        }
+        for (String delete : deletesOf(term)) {
+            List<String> suggestions = deletes.get(delete);
+            if (suggestions != null) {
+                suggestions.remove(term);
+                if (suggestions.isEmpty()) {
+                    deletes.remove(delete);
+                }
+            }
+        }
+    }
+
+    boolean contains(String term) {
+        return terms.contains(term);
+    }
+
+    int size() {
+        return terms.size();
+    }
+
+    /**
+     * 找出編輯距離 (Damerau-Levenshtein，相鄰字元對調算一次) 在上限內的詞
+     *
+     * @param input 查詢詞 (已轉小寫)
+     * @param maxDistance 編輯距離上限，不超過建立詞典時的上限
+     * @return 候選詞 (未排序)，包含距離為 0 的完全相符
+     */
+    List<Match> lookup(String input, int maxDistance) {
+        int distanceLimit = Math.min(maxDistance, maxEditDistance);
+        List<Match> matches = new ArrayList<>();
+        Set<String> checked = new HashSet<>();
+        Set<String> considered = new HashSet<>();
+        Deque<String> candidates = new ArrayDeque<>();
+
+        String inputPrefix = input.length() > PREFIX_LENGTH ? input.substring(0, PREFIX_LENGTH) : input;
+        candidates.add(inputPrefix);
+        considered.add(inputPrefix);
+
+        while (!candidates.isEmpty()) {
+            String candidate = candidates.poll();
+            int deleted = inputPrefix.length() - candidate.length();
+
+            List<String> suggestions = deletes.get(candidate);
+            if (suggestions != null) {
+                for (String suggestion : suggestions) {
+                    if (Math.abs(suggestion.length() - input.length()) > distanceLimit || !checked.add(suggestion)) {
+                        continue;
+                    }
+                    int distance = distance(input, suggestion, distanceLimit);
+                    if (distance >= 0) {
+                        matches.add(new Match(suggestion, distance));
+                    }
+                }
+            }
+
+            // 繼續刪除字元產生下一層候選
+            if (deleted < distanceLimit && candidate.length() > 1) {
+                for (int i = 0; i < candidate.length(); i++) {
+                    String next = candidate.substring(0, i) + candidate.substring(i + 1);
+                    if (considered.add(next)) {
+                        candidates.add(next);
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    // 詞的前綴本身與刪除 1 ~ maxEditDistance 個字元的變形
+    private Set<String> deletesOf(String term) {
+        String prefix = term.length() > PREFIX_LENGTH ? term.substring(0, PREFIX_LENGTH) : term;
+        Set<String> result = new HashSet<>();
+        result.add(prefix);
+        List<String> level = List.of(prefix);
+        for (int distance = 1; distance <= maxEditDistance; distance++) {
+            List<String> nextLevel = new ArrayList<>();
+            for (String word : level) {
+                if (word.length() <= 1) {
+                    continue;
+                }
+                for (int i = 0; i < word.length(); i++) {
+                    String delete = word.substring(0, i) + word.substring(i + 1);
+                    if (result.add(delete)) {
+                        nextLevel.add(delete);
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+        return result;
+    }
+
+    /**
+     * 計算有上限的編輯距離 (optimal string alignment)
+     *
+     * @return 編輯距離；超過上限時回傳 -1
+     */
+    static int distance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return -1;
+        }
+        int[] previousPrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previousPrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMinimum = Math.min(rowMinimum, value);
+            }
+            // 整列都已超過上限，不可能再變小
+            if (rowMinimum > limit) {
+                return -1;
+            }
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        int result = previous[b.length()];
+        return result <= limit ? result : -1;
+    }
+}
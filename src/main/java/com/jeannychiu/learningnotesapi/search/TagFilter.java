@@ -0,0 +1,177 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.exception.InvalidRequestParameterException;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 多標籤篩選條件
+ *
+ * 語法：以逗號分隔的條件全部都要符合 (AND)，條件內以 | 分隔的標籤符合其一即可 (OR)，
+ * 以 - 開頭的標籤不可出現 (NOT)。例如 {@code java|kotlin,spring,-draft} 表示
+ * (java 或 kotlin) 且 spring 且不含 draft。只有一個標籤時與原本的單一標籤搜尋相同。
+ *
+ * 標籤名稱本身含有 , | 或以 - 開頭時，在該字元前加上反斜線跳脫，例如 {@code c\,c++} 是名為 "c,c++" 的標籤、
+ * {@code \-draft} 是名為 "-draft" 的標籤；反斜線本身寫成 {@code \\}。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public final class TagFilter {
+    private final List<List<String>> requiredGroups;
+    private final List<String> excludedTags;
+
+    private TagFilter(List<List<String>> requiredGroups, List<String> excludedTags) {
+        this.requiredGroups = requiredGroups;
+        this.excludedTags = excludedTags;
+    }
+
+    /**
+     * 解析標籤篩選條件
+     *
+     * @param expression 標籤條件
+     * @return 篩選條件
+     * @throws InvalidRequestParameterException 條件中沒有任何標籤、NOT 與 OR 混用，或結尾是未跳脫的反斜線時
+     */
+    public static TagFilter parse(String expression) {
+        List<List<String>> requiredGroups = new ArrayList<>();
+        List<String> excludedTags = new ArrayList<>();
+
+        for (String clause : split(expression, ',')) {
+            String trimmed = clause.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (trimmed.startsWith("-")) {
+                List<String> tagNames = split(trimmed.substring(1), '|');
+                String tagName = unescape(tagNames.get(0)).trim();
+                if (tagName.isEmpty() || tagNames.size() > 1) {
+                    throw new InvalidRequestParameterException("標籤條件格式錯誤：" + trimmed);
+                }
+                excludedTags.add(tagName);
+                continue;
+            }
+
+            List<String> group = new ArrayList<>();
+            for (String tagName : split(trimmed, '|')) {
+                String unescaped = unescape(tagName).trim();
+                if (!unescaped.isEmpty()) {
+                    group.add(unescaped);
+                }
+            }
+            if (!group.isEmpty()) {
+                requiredGroups.add(group);
+            }
+        }
+
+        if (requiredGroups.isEmpty() && excludedTags.isEmpty()) {
+            throw new InvalidRequestParameterException("標籤條件不能為空");
+        }
+        return new TagFilter(requiredGroups, excludedTags);
+    }
+
+    /**
+     * 取得必須符合的條件：每一組至少要有其中一個標籤 (組內 OR，組間 AND)
+     *
+     * @return 標籤組
+     */
+    public List<List<String>> requiredGroups() {
+        return requiredGroups;
+    }
+
+    /**
+     * 取得不可出現的標籤
+     *
+     * @return 標籤名稱
+     */
+    public List<String> excludedTags() {
+        return excludedTags;
+    }
+
+    /**
+     * 條件只有一個標籤時回傳該標籤 (可改用資料庫的單一標籤查詢)
+     *
+     * @return 標籤名稱；有多個標籤或 NOT 條件時回傳 null
+     */
+    public String singleTag() {
+        if (excludedTags.isEmpty() && requiredGroups.size() == 1 && requiredGroups.get(0).size() == 1) {
+            return requiredGroups.get(0).get(0);
+        }
+        return null;
+    }
+
+    /**
+     * 以各標籤的筆記 ID 點陣圖計算符合條件的筆記
+     *
+     * @param bitmapOf 取得標籤的點陣圖 (沒有此標籤時回傳 null)
+     * @param allNotes 所有筆記的點陣圖 (只有 NOT 條件時作為起點)
+     * @return 符合條件的筆記 ID (新的點陣圖，不會修改傳入的點陣圖)
+     */
+    Roaring64NavigableMap evaluate(Function<String, Roaring64NavigableMap> bitmapOf, Roaring64NavigableMap allNotes) {
+        Roaring64NavigableMap result = null;
+        for (List<String> group : requiredGroups) {
+            Roaring64NavigableMap groupResult = new Roaring64NavigableMap();
+            for (String tagName : group) {
+                Roaring64NavigableMap bitmap = bitmapOf.apply(tagName);
+                if (bitmap != null) {
+                    groupResult.or(bitmap);
+                }
+            }
+            if (result == null) {
+                result = groupResult;
+            } else {
+                result.and(groupResult);
+            }
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+
+        if (result == null) {
+            result = new Roaring64NavigableMap();
+            result.or(allNotes);
+        }
+        for (String tagName : excludedTags) {
+            Roaring64NavigableMap bitmap = bitmapOf.apply(tagName);
+            if (bitmap != null) {
+                result.andNot(bitmap);
+            }
+        }
+        return result;
+    }
+
+    // 以未跳脫的分隔字元切開，保留跳脫字元 (之後由 unescape 移除)
+    private static List<String> split(String expression, char separator) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '\\') {
+                if (i == expression.length() - 1) {
+                    throw new InvalidRequestParameterException("標籤條件格式錯誤：結尾不能是未跳脫的反斜線");
+                }
+                i++;
+            } else if (c == separator) {
+                parts.add(expression.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(expression.substring(start));
+        return parts;
+    }
+
+    private static String unescape(String tagName) {
+        StringBuilder result = new StringBuilder(tagName.length());
+        for (int i = 0; i < tagName.length(); i++) {
+            char c = tagName.charAt(i);
+            if (c == '\\' && i + 1 < tagName.length()) {
+                c = tagName.charAt(++i);
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+}
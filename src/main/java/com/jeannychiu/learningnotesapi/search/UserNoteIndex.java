@@ -0,0 +1,763 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.dto.HighlightRange;
+import com.jeannychiu.learningnotesapi.dto.NoteHighlights;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.Tag;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 單一使用者筆記的倒排索引
+ *
+ * 記錄每個詞在各筆記標題與內容中的詞頻與出現位置，以及 BM25 需要的欄位長度統計。
+ * 出現位置在建立索引時就記下，標示命中文字時不必重新掃描筆記內容。
+ * 各詞的 posting list ({@link PostingList}) 壓縮後存放在此索引專用的堆外 arena，
+ * 每篇筆記的欄位 (版本、更新時間、欄位長度) 與包含哪些詞 (更新、刪除時用來找出要移除的 posting)
+ * 也寫成一筆紀錄存放在同一個 arena，以 {@link NoteSlotMap} 由筆記 ID 找到紀錄所在的 slot。
+ * 堆上的物件只有每篇筆記一個指向紀錄的 ByteBuffer、每個詞一個 posting list，
+ * 不隨 posting 數成長；尚未編碼的少量異動以 primitive 陣列暫存在堆上 (見 {@link PostingList})。
+ * 英文等詞另外放進拼字容錯詞典，隨 posting 新增與清空同步維護。
+ * 每個標籤另有一份筆記 ID 的 Roaring 點陣圖，多標籤篩選以點陣圖的 AND / OR / ANDNOT 計算；
+ * 筆記的標籤只記在點陣圖中。
+ * 讀寫以讀寫鎖保護。
+ *
+ * 索引內容可寫入快照 ({@link NoteIndexSnapshot}) 並直接還原，不需重新斷詞。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class UserNoteIndex {
+    // 每個欄位每個詞最多記錄的出現位置數 (只用於標示，詞頻仍完整計算)
+    static final int MAX_OFFSETS_PER_FIELD = 32;
+
+    // 內容摘要的長度與命中位置前保留的字元數
+    static final int SNIPPET_LENGTH = 120;
+    static final int SNIPPET_CONTEXT = 20;
+
+    // 沒有更新時間的筆記 (排在最後)
+    static final long NO_UPDATED_AT = Long.MIN_VALUE;
+
+    private static final int[] NO_OFFSETS = new int[0];
+
+    // 筆記紀錄的欄位位置 (見 writeRecord)：筆記 ID、版本 (沒有時為 -1)、更新時間 (epoch 毫秒，UTC)、
+    // 標題與內容的詞數、內容字元數，接著詞數與詞 ID 清單
+    private static final int ID = 0;
+    private static final int VERSION = 8;
+    private static final int UPDATED_AT = 12;
+    private static final int TITLE_LENGTH = 20;
+    private static final int CONTENT_LENGTH = 24;
+    private static final int CONTENT_CHARS = 28;
+    private static final int TERM_IDS = 32;
+
+    /**
+     * 某個詞在一篇筆記中的詞頻與出現位置 (start, end 成對存放)，寫入 {@link PostingList} 前的暫存
+     */
+    static final class Posting {
+        int titleFrequency;
+        int contentFrequency;
+        int[] titleOffsets = NO_OFFSETS;
+        int[] contentOffsets = NO_OFFSETS;
+    }
+
+    /**
+     * 搜尋候選結果，updatedAt 為 epoch 毫秒 (UTC)，沒有更新時間時為 {@link #NO_UPDATED_AT}
+     */
+    record Candidate(UserNoteIndex source, long noteId, double score, long updatedAt) {
+    }
+
+    /**
+     * 拼字容錯的候選詞，frequency 為包含此詞的筆記數
+     */
+    record Suggestion(String term, int distance, int frequency) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    // 以詞 ID 找 posting list；清空的詞 ID 放回 freeTermIds 重複使用
+    private final List<PostingList> postingsById = new ArrayList<>();
+    private int[] freeTermIds = new int[0];
+    private int freeTermCount;
+    private PostingArena arena = new PostingArena();
+    // 每個 slot 一筆存在 arena 的筆記紀錄；刪除後為 null，slot 放回 freeSlots 重複使用
+    private final NoteSlotMap slots = new NoteSlotMap();
+    private ByteBuffer[] records = new ByteBuffer[16];
+    private int slotCount;
+    private int[] freeSlots = new int[0];
+    private int freeSlotCount;
+    private final SymSpellDictionary dictionary;
+    private final Map<String, Roaring64NavigableMap> tagBitmaps = new HashMap<>();
+    private final Roaring64NavigableMap allNotes = new Roaring64NavigableMap();
+    private long totalTitleLength;
+    private long totalContentLength;
+
+    UserNoteIndex(int maxEditDistance) {
+        this.dictionary = new SymSpellDictionary(maxEditDistance);
+    }
+
+    /**
+     * 新增或更新筆記的索引
+     *
+     * @param note 筆記
+     * @return 是否有寫入；索引中已有較新版本時忽略
+     */
+    boolean put(Note note) {
+        Map<String, Posting> notePostings = new HashMap<>();
+        List<NoteTokenizer.Token> titleTokens = NoteTokenizer.tokenize(note.getTitle());
+        for (NoteTokenizer.Token token : titleTokens) {
+            Posting posting = notePostings.computeIfAbsent(token.term(), term -> new Posting());
+            posting.titleFrequency++;
+            posting.titleOffsets = appendOffset(posting.titleOffsets, posting.titleFrequency, token);
+        }
+        List<NoteTokenizer.Token> contentTokens = NoteTokenizer.tokenize(note.getContent());
+        for (NoteTokenizer.Token token : contentTokens) {
+            Posting posting = notePostings.computeIfAbsent(token.term(), term -> new Posting());
+            posting.contentFrequency++;
+            posting.contentOffsets = appendOffset(posting.contentOffsets, posting.contentFrequency, token);
+        }
+
+        Set<String> tagNames = new HashSet<>();
+        if (note.getTags() != null) {
+            for (Tag tag : note.getTags()) {
+                tagNames.add(tag.getName());
+            }
+        }
+
+        long noteId = note.getId();
+        int version = note.getVersion() == null ? -1 : note.getVersion();
+        long updatedAt = note.getUpdatedAt() == null
+                ? NO_UPDATED_AT
+                : note.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        int contentChars = note.getContent() == null ? 0 : note.getContent().length();
+
+        lock.writeLock().lock();
+        try {
+            int existing = slots.get(noteId);
+            if (existing != NoteSlotMap.MISSING) {
+                int existingVersion = records[existing].getInt(VERSION);
+                if (existingVersion >= 0 && version >= 0 && version < existingVersion) {
+                    return false;
+                }
+                removeLocked(existing);
+            }
+            int[] termIds = new int[notePostings.size()];
+            int i = 0;
+            for (Map.Entry<String, Posting> entry : notePostings.entrySet()) {
+                PostingList termPostings = postings.computeIfAbsent(entry.getKey(), this::createPostings);
+                termPostings.put(noteId, entry.getValue(), arena);
+                termIds[i++] = termPostings.termId();
+            }
+            int slot = allocateSlot();
+            records[slot] = writeRecord(noteId, version, updatedAt, titleTokens.size(), contentTokens.size(),
+                    contentChars, termIds, termIds.length, arena);
+            slots.put(noteId, slot);
+            allNotes.addLong(noteId);
+            for (String tagName : tagNames) {
+                tagBitmaps.computeIfAbsent(tagName, name -> new Roaring64NavigableMap()).addLong(noteId);
+            }
+            totalTitleLength += titleTokens.size();
+            totalContentLength += contentTokens.size();
+            compactIfFragmented();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除筆記的索引
+     *
+     * @param noteId 筆記 ID
+     * @return 索引中是否有此筆記
+     */
+    boolean remove(long noteId) {
+        lock.writeLock().lock();
+        try {
+            int existing = slots.get(noteId);
+            if (existing == NoteSlotMap.MISSING) {
+                return false;
+            }
+            removeLocked(existing);
+            compactIfFragmented();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 堆外 posting 儲存區配置的大小
+     *
+     * @return bytes
+     */
+    long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return arena.allocatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 累加此索引的語料統計
+     *
+     * @param terms 查詢詞
+     * @param scorer 計分器
+     */
+    void collectStats(List<String> terms, Bm25Scorer scorer) {
+        lock.readLock().lock();
+        try {
+            scorer.addCorpus(slots.size(), totalTitleLength, totalContentLength);
+            for (int i = 0; i < terms.size(); i++) {
+                PostingList termPostings = postings.get(terms.get(i));
+                if (termPostings != null) {
+                    scorer.addDocumentFrequency(i, termPostings.size());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 找出符合標籤條件的筆記 (分數皆為 0，依更新時間排序)
+     *
+     * @param filter 標籤條件
+     * @param collector 接收候選結果
+     * @return 符合的筆記數
+     */
+    long collectByTags(TagFilter filter, Consumer<Candidate> collector) {
+        lock.readLock().lock();
+        try {
+            Roaring64NavigableMap matched = filter.evaluate(tagBitmaps::get, allNotes);
+            LongIterator iterator = matched.getLongIterator();
+            while (iterator.hasNext()) {
+                long noteId = iterator.next();
+                collector.accept(new Candidate(this, noteId, 0, records[slots.get(noteId)].getLong(UPDATED_AT)));
+            }
+            return matched.getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 找出包含所有查詢詞的筆記並計分
+     *
+     * @param terms 查詢詞
+     * @param tagFilter 標籤條件 (null 表示不限)
+     * @param titleOnly 是否只比對標題
+     * @param scorer 計分器；null 時不計分 (分數皆為 0)
+     * @param collector 接收候選結果
+     * @return 符合的筆記數
+     */
+    int search(List<String> terms, TagFilter tagFilter, boolean titleOnly, Bm25Scorer scorer,
+               Consumer<Candidate> collector) {
+        lock.readLock().lock();
+        try {
+            Roaring64NavigableMap tagged = tagFilter == null ? null : tagFilter.evaluate(tagBitmaps::get, allNotes);
+            if (tagged != null && tagged.isEmpty()) {
+                return 0;
+            }
+
+            PostingList.Cursor[] cursors = new PostingList.Cursor[terms.size()];
+            int smallest = 0;
+            int smallestSize = Integer.MAX_VALUE;
+            for (int i = 0; i < terms.size(); i++) {
+                PostingList termPostings = postings.get(terms.get(i));
+                if (termPostings == null) {
+                    return 0;
+                }
+                cursors[i] = termPostings.cursor();
+                if (termPostings.size() < smallestSize) {
+                    smallest = i;
+                    smallestSize = termPostings.size();
+                }
+            }
+
+            // 從最短的 posting list 開始，其他詞的 cursor 跳到同一篇筆記；
+            // 某個詞跳過頭時，最短的 cursor 直接跳到該位置
+            PostingList.Cursor lead = cursors[smallest];
+            int matched = 0;
+            long noteId = lead.next();
+            candidates:
+            while (noteId != PostingList.END) {
+                if (tagged != null && !tagged.contains(noteId)) {
+                    noteId = lead.next();
+                    continue;
+                }
+                for (int i = 0; i < cursors.length; i++) {
+                    if (i != smallest) {
+                        long found = cursors[i].advance(noteId);
+                        if (found != noteId) {
+                            noteId = lead.advance(found);
+                            continue candidates;
+                        }
+                    }
+                }
+
+                ByteBuffer note = records[slots.get(noteId)];
+                double score = 0;
+                boolean accepted = true;
+                for (int i = 0; i < cursors.length && accepted; i++) {
+                    PostingList.Cursor cursor = cursors[i];
+                    if (titleOnly && cursor.titleFrequency() == 0) {
+                        accepted = false;
+                    } else if (scorer != null) {
+                        score += scorer.score(i, cursor.titleFrequency(), cursor.contentFrequency(),
+                                note.getInt(TITLE_LENGTH), note.getInt(CONTENT_LENGTH));
+                    }
+                }
+                if (accepted) {
+                    matched++;
+                    collector.accept(new Candidate(this, noteId, score, note.getLong(UPDATED_AT)));
+                }
+                noteId = lead.next();
+            }
+            return matched;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在詞典中找出與查詢詞相近的詞
+     *
+     * @param term 查詢詞 (已轉小寫)
+     * @param maxDistance 編輯距離上限
+     * @return 候選詞 (未排序)，包含完全相符的詞
+     */
+    List<Suggestion> suggest(String term, int maxDistance) {
+        lock.readLock().lock();
+        try {
+            List<Suggestion> suggestions = new ArrayList<>();
+            for (SymSpellDictionary.Match match : dictionary.lookup(term, maxDistance)) {
+                suggestions.add(new Suggestion(match.term(), match.distance(), postings.get(match.term()).size()));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 依索引中的出現位置產生標示範圍
+     *
+     * @param noteId 筆記 ID
+     * @param terms 查詢詞
+     * @return 標示位置；筆記已不在索引中時回傳 null
+     */
+    NoteHighlights highlight(long noteId, List<String> terms) {
+        lock.readLock().lock();
+        try {
+            int slot = slots.get(noteId);
+            if (slot == NoteSlotMap.MISSING) {
+                return null;
+            }
+            int contentChars = records[slot].getInt(CONTENT_CHARS);
+            List<int[]> titleOffsets = new ArrayList<>();
+            List<int[]> contentOffsets = new ArrayList<>();
+            for (String term : terms) {
+                PostingList termPostings = postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                PostingList.Cursor cursor = termPostings.cursor();
+                if (cursor.advance(noteId) == noteId) {
+                    titleOffsets.add(cursor.titleOffsets());
+                    contentOffsets.add(cursor.contentOffsets());
+                }
+            }
+
+            NoteHighlights highlights = new NoteHighlights();
+            highlights.setTitle(mergeRanges(titleOffsets));
+
+            List<HighlightRange> content = mergeRanges(contentOffsets);
+            int snippetStart = selectSnippetStart(content);
+            int snippetEnd = Math.min(contentChars, snippetStart + SNIPPET_LENGTH);
+            snippetStart = Math.max(0, Math.min(snippetStart, snippetEnd - SNIPPET_LENGTH));
+            List<HighlightRange> snippetRanges = new ArrayList<>();
+            for (HighlightRange range : content) {
+                if (range.getStart() >= snippetStart && range.getEnd() <= snippetEnd) {
+                    snippetRanges.add(range);
+                }
+            }
+            highlights.setSnippetStart(snippetStart);
+            highlights.setSnippetEnd(snippetEnd);
+            highlights.setContent(snippetRanges);
+            return highlights;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 將索引內容寫入快照
+     *
+     * 格式：筆記數、每篇筆記的欄位，標籤數、每個標籤與其筆記 ID，
+     * 接著詞數、每個詞與其編碼後的 posting list (與堆外的格式相同)。
+     *
+     * @param out 輸出
+     * @throws IOException 寫入失敗時
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(slots.size());
+            for (int slot = 0; slot < slotCount; slot++) {
+                ByteBuffer note = records[slot];
+                if (note != null) {
+                    out.writeLong(note.getLong(ID));
+                    out.writeInt(note.getInt(VERSION));
+                    out.writeLong(note.getLong(UPDATED_AT));
+                    out.writeInt(note.getInt(TITLE_LENGTH));
+                    out.writeInt(note.getInt(CONTENT_LENGTH));
+                    out.writeInt(note.getInt(CONTENT_CHARS));
+                }
+            }
+
+            out.writeInt(tagBitmaps.size());
+            for (Map.Entry<String, Roaring64NavigableMap> tag : tagBitmaps.entrySet()) {
+                NoteIndexSnapshot.writeString(out, tag.getKey());
+                out.writeInt((int) tag.getValue().getLongCardinality());
+                LongIterator noteIds = tag.getValue().getLongIterator();
+                while (noteIds.hasNext()) {
+                    out.writeLong(noteIds.next());
+                }
+            }
+
+            out.writeInt(postings.size());
+            byte[] buffer = new byte[0];
+            for (PostingList termPostings : postings.values()) {
+                NoteIndexSnapshot.writeString(out, termPostings.term());
+                ByteBuffer encoded = termPostings.encoded();
+                if (buffer.length < encoded.capacity()) {
+                    buffer = new byte[Math.max(encoded.capacity(), buffer.length * 2)];
+                }
+                encoded.get(0, buffer, 0, encoded.capacity());
+                out.writeInt(encoded.capacity());
+                out.write(buffer, 0, encoded.capacity());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 從快照還原索引
+     *
+     * @param in 快照內容，讀取位置在此使用者索引的開頭
+     * @param maxEditDistance 拼字容錯的最大編輯距離
+     * @return 還原的索引
+     */
+    static UserNoteIndex readFrom(ByteBuffer in, int maxEditDistance) {
+        UserNoteIndex index = new UserNoteIndex(maxEditDistance);
+
+        // 筆記依快照中的順序放在 slot 0..noteCount-1，詞 ID 讀完 posting list 後才寫入紀錄
+        int noteCount = in.getInt();
+        RestoredNote[] restored = new RestoredNote[noteCount];
+        for (int i = 0; i < noteCount; i++) {
+            RestoredNote note = new RestoredNote();
+            note.id = in.getLong();
+            note.version = in.getInt();
+            note.updatedAt = in.getLong();
+            note.titleLength = in.getInt();
+            note.contentLength = in.getInt();
+            note.contentChars = in.getInt();
+            restored[i] = note;
+            index.slots.put(note.id, i);
+        }
+
+        int tagCount = in.getInt();
+        for (int i = 0; i < tagCount; i++) {
+            String tagName = NoteIndexSnapshot.readString(in);
+            int size = in.getInt();
+            Roaring64NavigableMap bitmap = new Roaring64NavigableMap();
+            for (int j = 0; j < size; j++) {
+                bitmap.addLong(in.getLong());
+            }
+            index.tagBitmaps.put(tagName, bitmap);
+        }
+
+        // 編碼後的 posting list 直接複製到 arena，只解碼筆記 ID 以重建每篇筆記的詞 ID
+        int termCount = in.getInt();
+        for (int i = 0; i < termCount; i++) {
+            String term = NoteIndexSnapshot.readString(in);
+            int length = in.getInt();
+            if (NoteTokenizer.isWord(term)) {
+                index.dictionary.add(term);
+            }
+            PostingList termPostings = PostingList.decode(term, i, in, length, index.arena);
+            PostingList.Cursor cursor = termPostings.cursor();
+            for (long noteId = cursor.next(); noteId != PostingList.END; noteId = cursor.next()) {
+                restored[index.slots.get(noteId)].add(i);
+            }
+            index.postings.put(term, termPostings);
+            index.postingsById.add(termPostings);
+        }
+
+        index.records = new ByteBuffer[Math.max(16, noteCount)];
+        index.slotCount = noteCount;
+        for (int slot = 0; slot < noteCount; slot++) {
+            RestoredNote note = restored[slot];
+            index.records[slot] = writeRecord(note.id, note.version, note.updatedAt, note.titleLength,
+                    note.contentLength, note.contentChars, note.termIds, note.termCount, index.arena);
+            index.allNotes.addLong(note.id);
+            index.totalTitleLength += note.titleLength;
+            index.totalContentLength += note.contentLength;
+        }
+        return index;
+    }
+
+    private void removeLocked(int slot) {
+        ByteBuffer existing = records[slot];
+        long noteId = existing.getLong(ID);
+        for (int termId : readTermIds(existing)) {
+            PostingList termPostings = postingsById.get(termId);
+            termPostings.remove(noteId, arena);
+            if (termPostings.isEmpty()) {
+                postings.remove(termPostings.term());
+                dictionary.remove(termPostings.term());
+                releaseTermId(termId);
+            }
+        }
+        arena.release(existing);
+        slots.remove(noteId);
+        releaseSlot(slot);
+        allNotes.removeLong(noteId);
+        // 筆記的標籤只記在點陣圖中，從此使用者的每個標籤移除
+        tagBitmaps.values().removeIf(bitmap -> {
+            bitmap.removeLong(noteId);
+            return bitmap.isEmpty();
+        });
+        totalTitleLength -= existing.getInt(TITLE_LENGTH);
+        totalContentLength -= existing.getInt(CONTENT_LENGTH);
+    }
+
+    private int allocateSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (slotCount == records.length) {
+            records = Arrays.copyOf(records, slotCount * 2);
+        }
+        return slotCount++;
+    }
+
+    private void releaseSlot(int slot) {
+        records[slot] = null;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeSlotCount * 2));
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    // 新的詞第一次出現時建立 posting list (優先使用已釋放的詞 ID)，並加入拼字容錯詞典
+    private PostingList createPostings(String term) {
+        if (NoteTokenizer.isWord(term)) {
+            dictionary.add(term);
+        }
+        PostingList termPostings;
+        if (freeTermCount > 0) {
+            termPostings = new PostingList(term, freeTermIds[--freeTermCount]);
+            postingsById.set(termPostings.termId(), termPostings);
+        } else {
+            termPostings = new PostingList(term, postingsById.size());
+            postingsById.add(termPostings);
+        }
+        return termPostings;
+    }
+
+    private void releaseTermId(int termId) {
+        postingsById.set(termId, null);
+        if (freeTermCount == freeTermIds.length) {
+            freeTermIds = Arrays.copyOf(freeTermIds, Math.max(16, freeTermCount * 2));
+        }
+        freeTermIds[freeTermCount++] = termId;
+    }
+
+    // 已釋放的堆外空間過多時，將所有 posting list 與筆記紀錄搬到新的 arena
+    private void compactIfFragmented() {
+        if (arena.isFragmented()) {
+            PostingArena compacted = new PostingArena();
+            for (PostingList termPostings : postings.values()) {
+                termPostings.moveTo(compacted);
+            }
+            for (int slot = 0; slot < slotCount; slot++) {
+                ByteBuffer note = records[slot];
+                if (note != null) {
+                    ByteBuffer moved = compacted.allocate(note.capacity());
+                    moved.put(0, note, 0, note.capacity());
+                    records[slot] = moved;
+                }
+            }
+            arena = compacted;
+        }
+    }
+
+    /**
+     * 將筆記紀錄寫入堆外 arena
+     *
+     * 格式：固定欄位 (見 ID 到 CONTENT_CHARS 的位置)，詞數 (int)，
+     * 接著排序後的詞 ID 以 varint 記錄與前一個的差值。
+     *
+     * @param noteId 筆記 ID
+     * @param version 版本；沒有時為 -1
+     * @param updatedAt 更新時間 (epoch 毫秒，UTC)；沒有時為 {@link #NO_UPDATED_AT}
+     * @param titleLength 標題詞數
+     * @param contentLength 內容詞數
+     * @param contentChars 內容字元數
+     * @param termIds 詞 ID (會被排序)
+     * @param count 詞數
+     * @param target 存放的 arena
+     * @return 筆記紀錄
+     */
+    private static ByteBuffer writeRecord(long noteId, int version, long updatedAt, int titleLength,
+                                          int contentLength, int contentChars, int[] termIds, int count,
+                                          PostingArena target) {
+        Arrays.sort(termIds, 0, count);
+        int size = TERM_IDS + Integer.BYTES;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            size += Math.max(1, (32 - Integer.numberOfLeadingZeros(termIds[i] - previous) + 6) / 7);
+            previous = termIds[i];
+        }
+
+        ByteBuffer encoded = target.allocate(size);
+        encoded.putLong(ID, noteId)
+                .putInt(VERSION, version)
+                .putLong(UPDATED_AT, updatedAt)
+                .putInt(TITLE_LENGTH, titleLength)
+                .putInt(CONTENT_LENGTH, contentLength)
+                .putInt(CONTENT_CHARS, contentChars)
+                .putInt(TERM_IDS, count);
+        int position = TERM_IDS + Integer.BYTES;
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = termIds[i] - previous;
+            while ((delta & ~0x7F) != 0) {
+                encoded.put(position++, (byte) ((delta & 0x7F) | 0x80));
+                delta >>>= 7;
+            }
+            encoded.put(position++, (byte) delta);
+            previous = termIds[i];
+        }
+        return encoded;
+    }
+
+    private static int[] readTermIds(ByteBuffer encoded) {
+        int[] termIds = new int[encoded.getInt(TERM_IDS)];
+        int position = TERM_IDS + Integer.BYTES;
+        int previous = 0;
+        for (int i = 0; i < termIds.length; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = encoded.get(position++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += delta;
+            termIds[i] = previous;
+        }
+        return termIds;
+    }
+
+    // 還原快照時暫存每篇筆記的欄位與詞 ID
+    private static final class RestoredNote {
+        private long id;
+        private int version;
+        private long updatedAt;
+        private int titleLength;
+        private int contentLength;
+        private int contentChars;
+        private int[] termIds = new int[8];
+        private int termCount;
+
+        void add(int termId) {
+            if (termCount == termIds.length) {
+                termIds = Arrays.copyOf(termIds, termCount * 2);
+            }
+            termIds[termCount++] = termId;
+        }
+    }
+
+    private static int[] appendOffset(int[] offsets, int frequency, NoteTokenizer.Token token) {
+        if (frequency > MAX_OFFSETS_PER_FIELD) {
+            return offsets;
+        }
+        int[] appended = Arrays.copyOf(offsets, offsets.length + 2);
+        appended[offsets.length] = token.start();
+        appended[offsets.length + 1] = token.end();
+        return appended;
+    }
+
+    // 合併各詞的出現位置，重疊或相連的範圍 (例如相鄰的 bigram) 合併為一段
+    private static List<HighlightRange> mergeRanges(List<int[]> offsetLists) {
+        List<int[]> ranges = new ArrayList<>();
+        for (int[] offsets : offsetLists) {
+            for (int i = 0; i < offsets.length; i += 2) {
+                ranges.add(new int[]{offsets[i], offsets[i + 1]});
+            }
+        }
+        ranges.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+
+        List<HighlightRange> merged = new ArrayList<>();
+        for (int[] range : ranges) {
+            HighlightRange last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last.getEnd()) {
+                last.setEnd(Math.max(last.getEnd(), range[1]));
+            } else {
+                merged.add(new HighlightRange(range[0], range[1]));
+            }
+        }
+        return merged;
+    }
+
+    // 選出命中最密集的一段作為摘要，回傳摘要起點
+    private static int selectSnippetStart(List<HighlightRange> ranges) {
+        if (ranges.isEmpty()) {
+            return 0;
+        }
+        int best = 0;
+        int bestCount = 0;
+        int end = 0;
+        for (int start = 0; start < ranges.size(); start++) {
+            int windowEnd = ranges.get(start).getStart() + SNIPPET_LENGTH - SNIPPET_CONTEXT;
+            end = Math.max(end, start);
+            while (end < ranges.size() && ranges.get(end).getEnd() <= windowEnd) {
+                end++;
+            }
+            if (end - start > bestCount) {
+                bestCount = end - start;
+                best = start;
+            }
+        }
+        return Math.max(0, ranges.get(best).getStart() - SNIPPET_CONTEXT);
+    }
+}
@@ -19,12 +19,20 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private long expirationTime;
 
+    // 使用者 ID，記錄 API 日誌時不需再查詢資料庫
+    private static final String USER_ID_CLAIM = "uid";
+
     public String generateToken(String email, String role) {
+        return generateToken(null, email, role);
+    }
+
+    public String generateToken(Long userId, String email, String role) {
         Key key = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
 
         return Jwts.builder()
                 .subject(email)
                 .claim("role", role)
+                .claim(USER_ID_CLAIM, userId)
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + expirationTime))
                 .signWith(key)
@@ -46,6 +54,45 @@ public class JwtUtil {
 
     }
 
+    /**
+     * 驗證並解析 token，需要多個欄位時只解析一次
+     *
+     * @param token JWT token
+     * @return token 內的 claims
+     */
+    public Claims getClaimsFromToken(String token) {
+        try {
+            Key key = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+            return Jwts.parser()
+                    .verifyWith((SecretKey) key)
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload();
+        } catch (Exception e) {
+            throw new InvalidTokenException("無效的 JWT token: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取得 token 內的使用者 ID
+     *
+     * @param token JWT token
+     * @return 使用者 ID，舊版 token 沒有此欄位時回傳 null
+     */
+    public Long getUserIdFromToken(String token) {
+        return getUserId(getClaimsFromToken(token));
+    }
+
+    /**
+     * 取得已解析的 claims 內的使用者 ID
+     *
+     * @param claims {@link #getClaimsFromToken} 的結果
+     * @return 使用者 ID，舊版 token 沒有此欄位時回傳 null
+     */
+    public Long getUserId(Claims claims) {
+        return claims.get(USER_ID_CLAIM, Long.class);
+    }
+
     public boolean validateToken(String token, String email) {
         try {
             // 1. 解析 token（如果有錯誤可直接丟 exception）
@@ -0,0 +1,163 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * API 日誌擷取策略
+ *
+ * 決定每一筆 API 日誌要保存多少請求/回應內容：
+ * - 錯誤回應 (狀態碼 >= 400) 一律完整保存，方便除錯
+ * - 可設定只保存錯誤回應的內容 (ERRORS_ONLY) 或完全不保存 (NONE)
+ * - 可依端點設定抽樣比例，未被抽中的請求只保留基本資訊
+ * - 成功的 GET 回應可改存雜湊值，避免大量列表資料寫入資料庫
+ *
+ * 抽樣設定格式：{@code [HTTP方法 ]路徑樣式=比例}，以逗號分隔，例如
+ * {@code GET /notes/**=0.1,/auth/**=1.0}。路徑樣式使用 Ant 風格，先符合者優先。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class ApiLogCapturePolicy {
+
+    /**
+     * 內容擷取模式
+     */
+    public enum CaptureMode {
+        /** 保存所有請求的內容 */
+        ALL,
+        /** 只保存錯誤回應的內容 */
+        ERRORS_ONLY,
+        /** 不保存任何內容 */
+        NONE
+    }
+
+    /**
+     * 單一請求的擷取結果
+     */
+    public enum CaptureDecision {
+        /** 保存完整的請求與回應內容 (仍受長度上限限制) */
+        FULL,
+        /** 保存請求內容，回應只保存雜湊值 */
+        HASH_RESPONSE,
+        /** 不保存請求與回應內容 */
+        SKIP
+    }
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final CaptureMode captureMode;
+    private final boolean hashSuccessfulGet;
+    private final double defaultSampleRate;
+    private final int maxBodyLength;
+    private final List<SampleRule> sampleRules;
+
+    public ApiLogCapturePolicy(
+            @Value("${app.api-log.capture-mode:ALL}") String captureMode,
+            @Value("${app.api-log.hash-successful-get:true}") boolean hashSuccessfulGet,
+            @Value("${app.api-log.default-sample-rate:1.0}") double defaultSampleRate,
+            @Value("${app.api-log.sample-rates:}") String sampleRates,
+            @Value("${app.api-log.max-body-length:50000}") int maxBodyLength) {
+        this.captureMode = CaptureMode.valueOf(captureMode.trim().toUpperCase(Locale.ROOT));
+        this.hashSuccessfulGet = hashSuccessfulGet;
+        this.defaultSampleRate = defaultSampleRate;
+        this.sampleRules = parseSampleRules(sampleRates);
+        this.maxBodyLength = maxBodyLength;
+    }
+
+    /**
+     * 決定一筆請求要保存的內容
+     *
+     * @param httpMethod HTTP 方法
+     * @param uri 請求路徑
+     * @param statusCode 回應狀態碼
+     * @return 擷取結果
+     */
+    public CaptureDecision decide(String httpMethod, String uri, int statusCode) {
+        if (captureMode == CaptureMode.NONE) {
+            return CaptureDecision.SKIP;
+        }
+
+        // 錯誤回應一律完整保存
+        if (statusCode >= 400) {
+            return CaptureDecision.FULL;
+        }
+
+        if (captureMode == CaptureMode.ERRORS_ONLY || !isSampled(httpMethod, uri)) {
+            return CaptureDecision.SKIP;
+        }
+
+        if (hashSuccessfulGet && "GET".equals(httpMethod)) {
+            return CaptureDecision.HASH_RESPONSE;
+        }
+
+        return CaptureDecision.FULL;
+    }
+
+    /**
+     * 取得請求/回應內容保存的最大字元數
+     *
+     * @return 最大字元數
+     */
+    public int getMaxBodyLength() {
+        return maxBodyLength;
+    }
+
+    private boolean isSampled(String httpMethod, String uri) {
+        double rate = sampleRateFor(httpMethod, uri);
+        if (rate >= 1.0) {
+            return true;
+        }
+        if (rate <= 0.0) {
+            return false;
+        }
+        return ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private double sampleRateFor(String httpMethod, String uri) {
+        for (SampleRule rule : sampleRules) {
+            if ((rule.httpMethod() == null || rule.httpMethod().equals(httpMethod))
+                    && pathMatcher.match(rule.pathPattern(), uri)) {
+                return rule.rate();
+            }
+        }
+        return defaultSampleRate;
+    }
+
+    private static List<SampleRule> parseSampleRules(String sampleRates) {
+        List<SampleRule> rules = new ArrayList<>();
+        if (sampleRates == null || sampleRates.isBlank()) {
+            return rules;
+        }
+
+        for (String entry : sampleRates.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("無效的 API 日誌抽樣設定: " + entry);
+            }
+
+            String target = entry.substring(0, separator).trim();
+            double rate = Double.parseDouble(entry.substring(separator + 1).trim());
+
+            // 可選的 HTTP 方法前綴，例如 "GET /notes/**"
+            String httpMethod = null;
+            int space = target.indexOf(' ');
+            if (space > 0) {
+                httpMethod = target.substring(0, space).trim().toUpperCase(Locale.ROOT);
+                target = target.substring(space + 1).trim();
+            }
+
+            rules.add(new SampleRule(httpMethod, target, rate));
+        }
+        return rules;
+    }
+
+    private record SampleRule(String httpMethod, String pathPattern, double rate) {
+    }
+}
@@ -0,0 +1,290 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.repository.ApiLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * API 日誌保留期限服務
+ *
+ * 定期清除超過保留期限的 API 日誌，保留期限可依狀態碼類別分別設定
+ * (例如成功請求保留 14 天、伺服器錯誤保留 180 天)。
+ *
+ * 在 MySQL 上啟用分區 (app.api-log.retention.partitioning=true) 時：
+ * - api_log 依 request_time 切成每日分區，並預先建立未來幾天的分區
+ * - 超過最長保留期限的分區直接 DROP PARTITION，不需逐筆 DELETE 掃描
+ * - 保留期限較短的狀態碼類別，只在已過期的分區內刪除 (分區裁剪)，
+ *   並以 status_code 索引只讀取該類別的資料列；已清理過的分區每次執行只需一次索引查詢
+ *
+ * 未啟用分區 (或使用 H2 等其他資料庫) 時，改以 request_time 索引分批刪除。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Service
+public class ApiLogRetentionService {
+    private static final Logger log = LoggerFactory.getLogger(ApiLogRetentionService.class);
+
+    private static final String TABLE_NAME = "api_log";
+    private static final String OVERFLOW_PARTITION = "pmax";
+    private static final String PARTITION_PREFIX = "p";
+    private static final String STATUS_CODE_INDEX = "idx_api_log_status_code";
+    private static final DateTimeFormatter PARTITION_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * 狀態碼類別
+     */
+    public enum StatusClass {
+        SUCCESS(100, 299),
+        REDIRECTION(300, 399),
+        CLIENT_ERROR(400, 499),
+        SERVER_ERROR(500, 599);
+
+        private final int minStatus;
+        private final int maxStatus;
+
+        StatusClass(int minStatus, int maxStatus) {
+            this.minStatus = minStatus;
+            this.maxStatus = maxStatus;
+        }
+    }
+
+    private final ApiLogRepository apiLogRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<StatusClass, Integer> retentionDays = new EnumMap<>(StatusClass.class);
+    private final boolean partitioning;
+    private final int partitionsAhead;
+    private final int batchSize;
+
+    public ApiLogRetentionService(
+            ApiLogRepository apiLogRepository,
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.api-log.retention.days-2xx:14}") int successDays,
+            @Value("${app.api-log.retention.days-3xx:14}") int redirectionDays,
+            @Value("${app.api-log.retention.days-4xx:90}") int clientErrorDays,
+            @Value("${app.api-log.retention.days-5xx:180}") int serverErrorDays,
+            @Value("${app.api-log.retention.partitioning:false}") boolean partitioning,
+            @Value("${app.api-log.retention.partitions-ahead:7}") int partitionsAhead,
+            @Value("${app.api-log.retention.batch-size:1000}") int batchSize) {
+        this.apiLogRepository = apiLogRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionDays.put(StatusClass.SUCCESS, successDays);
+        this.retentionDays.put(StatusClass.REDIRECTION, redirectionDays);
+        this.retentionDays.put(StatusClass.CLIENT_ERROR, clientErrorDays);
+        this.retentionDays.put(StatusClass.SERVER_ERROR, serverErrorDays);
+        this.partitioning = partitioning;
+        this.partitionsAhead = partitionsAhead;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 定期執行的保留期限維護工作
+     */
+    @Scheduled(initialDelayString = "${app.api-log.retention.initial-delay:PT5M}",
+            fixedDelayString = "${app.api-log.retention.interval:PT6H}")
+    public void runRetention() {
+        try {
+            LocalDate today = LocalDate.now();
+            if (partitioning && isMySql()) {
+                maintainPartitions(today);
+            } else {
+                purgeExpiredLogs(today);
+            }
+        } catch (DataAccessException e) {
+            log.error("API 日誌保留期限維護失敗: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 以 request_time 索引分批刪除過期日誌 (未啟用分區時使用)
+     *
+     * @param today 今天日期
+     * @return 刪除的筆數
+     */
+    public long purgeExpiredLogs(LocalDate today) {
+        long deleted = 0;
+        for (StatusClass statusClass : StatusClass.values()) {
+            LocalDate cutoff = today.minusDays(retentionDays.get(statusClass));
+
+            List<Long> ids;
+            do {
+                ids = apiLogRepository.findExpiredIds(cutoff.atStartOfDay(),
+                        statusClass.minStatus, statusClass.maxStatus, PageRequest.of(0, batchSize));
+                if (!ids.isEmpty()) {
+                    apiLogRepository.deleteAllByIdInBatch(ids);
+                    deleted += ids.size();
+                }
+            } while (ids.size() == batchSize);
+        }
+
+        if (deleted > 0) {
+            log.info("已刪除 {} 筆過期的 API 日誌", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * 維護每日分區：建立未來分區、刪除過期分區、清理保留期限較短的狀態碼類別
+     *
+     * @param today 今天日期
+     */
+    void maintainPartitions(LocalDate today) {
+        int maxRetention = retentionDays.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        LocalDate dropBefore = today.minusDays(maxRetention);
+
+        if (!isPartitioned()) {
+            convertToPartitionedTable(dropBefore, today.plusDays(partitionsAhead));
+        }
+        if (!hasStatusCodeIndex()) {
+            // 較早版本轉換的分區資料表沒有此索引，清理時會掃描整個分區
+            jdbcTemplate.execute("CREATE INDEX " + STATUS_CODE_INDEX + " ON " + TABLE_NAME + " (status_code)");
+            log.info("已在 api_log 建立 status_code 索引");
+        }
+
+        List<LocalDate> partitionDays = listPartitionDays();
+        createFuturePartitions(partitionDays, today, today.plusDays(partitionsAhead));
+
+        // 整個分區都超過最長保留期限，直接 DROP (O(1)，不需掃描資料列)
+        List<String> expired = new ArrayList<>();
+        for (LocalDate day : partitionDays) {
+            if (day.isBefore(dropBefore)) {
+                expired.add(partitionName(day));
+            }
+        }
+        if (!expired.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " DROP PARTITION " + String.join(",", expired));
+            log.info("已刪除過期的 API 日誌分區: {}", expired);
+        }
+
+        // 保留期限較短的狀態碼類別，只在已過期的分區內刪除
+        for (StatusClass statusClass : StatusClass.values()) {
+            LocalDate cutoff = today.minusDays(retentionDays.get(statusClass));
+            for (LocalDate day : partitionDays) {
+                if (!day.isBefore(dropBefore) && day.isBefore(cutoff)) {
+                    deleteFromPartition(partitionName(day), statusClass);
+                }
+            }
+        }
+    }
+
+    private void deleteFromPartition(String partition, StatusClass statusClass) {
+        String sql = "DELETE FROM " + TABLE_NAME + " PARTITION (" + partition + ") " +
+                "WHERE status_code BETWEEN ? AND ? LIMIT " + batchSize;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, statusClass.minStatus, statusClass.maxStatus);
+        } while (deleted == batchSize);
+    }
+
+    private void createFuturePartitions(List<LocalDate> partitionDays, LocalDate today, LocalDate lastDay) {
+        LocalDate latest = partitionDays.isEmpty() ? today.minusDays(1) : partitionDays.get(partitionDays.size() - 1);
+
+        List<String> definitions = new ArrayList<>();
+        for (LocalDate day = latest.plusDays(1); !day.isAfter(lastDay); day = day.plusDays(1)) {
+            definitions.add(partitionDefinition(day));
+        }
+        if (definitions.isEmpty()) {
+            return;
+        }
+
+        // 從溢出分區 pmax 切出新的每日分區 (pmax 正常情況下是空的，不會搬移資料)
+        definitions.add("PARTITION " + OVERFLOW_PARTITION + " VALUES LESS THAN MAXVALUE");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " REORGANIZE PARTITION " + OVERFLOW_PARTITION +
+                " INTO (" + String.join(", ", definitions) + ")");
+    }
+
+    /**
+     * 將 api_log 轉換為每日分區的資料表
+     *
+     * MySQL 要求分區欄位包含在主鍵內，因此主鍵改為 (id, request_time)，request_time 也必須為 NOT NULL：
+     * 沒有 request_time 的既有資料改用 response_time，兩者都沒有的無法歸入任何分區，直接刪除。
+     * 早於保留期限的既有資料會放在第一個分區，接著在同一次維護中被整個刪除。
+     */
+    private void convertToPartitionedTable(LocalDate firstDay, LocalDate lastDay) {
+        log.warn("api_log 尚未分區，開始轉換為每日分區 (會重建資料表)");
+
+        int backfilled = jdbcTemplate.update("UPDATE " + TABLE_NAME + " SET request_time = response_time " +
+                "WHERE request_time IS NULL AND response_time IS NOT NULL");
+        int removed = jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE request_time IS NULL");
+        if (backfilled > 0 || removed > 0) {
+            log.warn("api_log 有 {} 筆沒有 request_time 的日誌改用 response_time，{} 筆沒有時間的日誌已刪除",
+                    backfilled, removed);
+        }
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " MODIFY request_time DATETIME(6) NOT NULL, " +
+                "DROP PRIMARY KEY, ADD PRIMARY KEY (id, request_time), " +
+                "ADD INDEX " + STATUS_CODE_INDEX + " (status_code)");
+
+        List<String> definitions = new ArrayList<>();
+        definitions.add(partitionDefinition(firstDay.minusDays(1)));
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            definitions.add(partitionDefinition(day));
+        }
+        definitions.add("PARTITION " + OVERFLOW_PARTITION + " VALUES LESS THAN MAXVALUE");
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " PARTITION BY RANGE (TO_DAYS(request_time)) (" +
+                String.join(", ", definitions) + ")");
+    }
+
+    private List<LocalDate> listPartitionDays() {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                        "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class, TABLE_NAME);
+
+        List<LocalDate> days = new ArrayList<>();
+        for (String name : names) {
+            if (!OVERFLOW_PARTITION.equals(name)) {
+                days.add(LocalDate.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_DATE));
+            }
+        }
+        return days;
+    }
+
+    private boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL",
+                Integer.class, TABLE_NAME);
+        return count != null && count > 0;
+    }
+
+    private boolean hasStatusCodeIndex() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.STATISTICS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?",
+                Integer.class, TABLE_NAME, STATUS_CODE_INDEX);
+        return count != null && count > 0;
+    }
+
+    private boolean isMySql() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return product != null && product.toLowerCase().contains("mysql");
+    }
+
+    private static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + day.format(PARTITION_DATE);
+    }
+
+    // 分區 pYYYYMMDD 存放該日的資料 (request_time 小於隔天 00:00)
+    private static String partitionDefinition(LocalDate day) {
+        return "PARTITION " + partitionName(day) +
+                " VALUES LESS THAN (TO_DAYS('" + day.plusDays(1) + "'))";
+    }
+}
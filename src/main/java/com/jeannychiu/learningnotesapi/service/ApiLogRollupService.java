@@ -0,0 +1,385 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.EndpointErrorRate;
+import com.jeannychiu.learningnotesapi.dto.LatencyPercentiles;
+import com.jeannychiu.learningnotesapi.dto.UserRequestVolume;
+import com.jeannychiu.learningnotesapi.exception.InvalidRequestParameterException;
+import com.jeannychiu.learningnotesapi.model.ApiLogRollup;
+import com.jeannychiu.learningnotesapi.model.ApiLogUserRollup;
+import com.jeannychiu.learningnotesapi.repository.ApiLogRollupRepository;
+import com.jeannychiu.learningnotesapi.repository.ApiLogUserRollupRepository;
+import jakarta.annotation.PreDestroy;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+
+/**
+ * API 日誌彙總服務
+ *
+ * 每筆 API 請求在記憶體中累加到所屬分鐘的彙總：
+ * - 依路由樣式/HTTP 方法/狀態碼分組，記錄請求數與延遲分佈 (HdrHistogram)
+ * - 依使用者分組，記錄請求數與錯誤數
+ *
+ * 已結束的分鐘定期寫入 api_log_rollup 與 api_log_user_rollup，
+ * 管理員的統計查詢 (錯誤率、延遲百分位數、使用者請求量) 直接由彙總表回答，
+ * 不需掃描 api_log 的原始日誌。彙總表的資料最多落後一個寫入週期。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Service
+public class ApiLogRollupService {
+    private static final Logger log = LoggerFactory.getLogger(ApiLogRollupService.class);
+
+    // 延遲值保留 2 位有效數字 (誤差 1% 以內)，編碼後每組約數百 bytes
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final int MAX_TOP_USERS = 100;
+
+    private record EndpointKey(LocalDateTime bucketStart, String apiPath, String httpMethod, int statusCode) {
+    }
+
+    private record UserKey(LocalDateTime bucketStart, Long userId) {
+    }
+
+    /**
+     * 單一分組在一分鐘內的延遲統計
+     *
+     * 寫入資料庫前會先 close，之後的 record 會失敗並改寫到新的彙總物件，
+     * 避免資料寫入已取出的彙總而遺失。
+     */
+    private static final class EndpointAggregate {
+        private final Histogram histogram = new Histogram(SIGNIFICANT_DIGITS);
+        private long count;
+        private long sum;
+        private long max;
+        private boolean closed;
+
+        synchronized boolean record(long duration) {
+            if (closed) {
+                return false;
+            }
+            histogram.recordValue(duration);
+            count++;
+            sum += duration;
+            max = Math.max(max, duration);
+            return true;
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        synchronized void absorb(EndpointAggregate other) {
+            histogram.add(other.histogram);
+            count += other.count;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+    }
+
+    private static final class UserAggregate {
+        private long requests;
+        private long errors;
+        private boolean closed;
+
+        synchronized boolean record(boolean error) {
+            if (closed) {
+                return false;
+            }
+            requests++;
+            if (error) {
+                errors++;
+            }
+            return true;
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        synchronized void absorb(UserAggregate other) {
+            requests += other.requests;
+            errors += other.errors;
+        }
+    }
+
+    private final ApiLogRollupRepository rollupRepository;
+    private final ApiLogUserRollupRepository userRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<EndpointKey, EndpointAggregate> endpoints = new ConcurrentHashMap<>();
+    private final Map<UserKey, UserAggregate> users = new ConcurrentHashMap<>();
+
+    public ApiLogRollupService(ApiLogRollupRepository rollupRepository,
+                               ApiLogUserRollupRepository userRollupRepository,
+                               TransactionTemplate transactionTemplate) {
+        this.rollupRepository = rollupRepository;
+        this.userRollupRepository = userRollupRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * 記錄一筆 API 請求
+     *
+     * @param apiPath 路由樣式 (例如 /notes/{id})
+     * @param httpMethod HTTP 方法
+     * @param statusCode HTTP 狀態碼
+     * @param durationMillis 處理時間 (毫秒)
+     * @param userId 使用者 ID (未登入為 null)
+     * @param requestTime 請求時間
+     */
+    public void record(String apiPath, String httpMethod, int statusCode, long durationMillis,
+                       Long userId, LocalDateTime requestTime) {
+        LocalDateTime bucketStart = requestTime.truncatedTo(ChronoUnit.MINUTES);
+        long duration = Math.max(durationMillis, 0);
+
+        EndpointKey endpointKey = new EndpointKey(bucketStart, apiPath, httpMethod, statusCode);
+        while (!endpoints.computeIfAbsent(endpointKey, key -> new EndpointAggregate()).record(duration)) {
+            // 彙總物件剛被取出寫入資料庫，重新建立一個
+            Thread.onSpinWait();
+        }
+
+        if (userId != null) {
+            UserKey userKey = new UserKey(bucketStart, userId);
+            while (!users.computeIfAbsent(userKey, key -> new UserAggregate()).record(statusCode >= 400)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * 定期將已結束的分鐘寫入彙總表
+     */
+    @Scheduled(initialDelayString = "${app.api-log.rollup.flush-interval:PT1M}",
+            fixedDelayString = "${app.api-log.rollup.flush-interval:PT1M}")
+    public void flushCompletedMinutes() {
+        flush(LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES));
+    }
+
+    /**
+     * 關閉前寫入所有尚未寫入的彙總
+     */
+    @PreDestroy
+    public void flushAll() {
+        flush(LocalDateTime.MAX);
+    }
+
+    /**
+     * 將早於指定時間的彙總寫入資料庫
+     *
+     * 同一分鐘、同一分組若已有資料 (例如延遲抵達的請求或重新啟動前寫入的資料)，
+     * 會合併計數並合併延遲分佈。寫入失敗 (包含交易或合併延遲分佈時的任何錯誤) 時彙總會放回記憶體，下一輪重試。
+     *
+     * @param before 早於此時間的分鐘會被寫入
+     */
+    void flush(LocalDateTime before) {
+        Map<EndpointKey, EndpointAggregate> pendingEndpoints = new HashMap<>();
+        for (EndpointKey key : endpoints.keySet()) {
+            if (key.bucketStart().isBefore(before)) {
+                EndpointAggregate aggregate = endpoints.remove(key);
+                if (aggregate != null) {
+                    aggregate.close();
+                    pendingEndpoints.put(key, aggregate);
+                }
+            }
+        }
+
+        Map<UserKey, UserAggregate> pendingUsers = new HashMap<>();
+        for (UserKey key : users.keySet()) {
+            if (key.bucketStart().isBefore(before)) {
+                UserAggregate aggregate = users.remove(key);
+                if (aggregate != null) {
+                    aggregate.close();
+                    pendingUsers.put(key, aggregate);
+                }
+            }
+        }
+
+        if (pendingEndpoints.isEmpty() && pendingUsers.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                pendingEndpoints.forEach(this::saveEndpointRollup);
+                pendingUsers.forEach(this::saveUserRollup);
+            });
+        } catch (RuntimeException e) {
+            log.warn("API 日誌彙總寫入失敗，稍後重試: {}", e.getMessage());
+            pendingEndpoints.forEach((key, aggregate) ->
+                    endpoints.computeIfAbsent(key, k -> new EndpointAggregate()).absorb(aggregate));
+            pendingUsers.forEach((key, aggregate) ->
+                    users.computeIfAbsent(key, k -> new UserAggregate()).absorb(aggregate));
+        }
+    }
+
+    /**
+     * 查詢各端點的錯誤率
+     *
+     * @param from 起始時間 (含)
+     * @param to 結束時間 (不含)
+     * @return 依錯誤率由高到低排序的端點列表
+     */
+    public List<EndpointErrorRate> getErrorRates(LocalDateTime from, LocalDateTime to) {
+        validateRange(from, to);
+
+        List<EndpointErrorRate> result = new ArrayList<>();
+        for (Object[] row : rollupRepository.sumStatusCountsByEndpoint(from, to)) {
+            EndpointErrorRate rate = new EndpointErrorRate();
+            rate.setApiPath((String) row[0]);
+            rate.setHttpMethod((String) row[1]);
+            rate.setRequestCount(((Number) row[2]).longValue());
+            rate.setClientErrorCount(((Number) row[3]).longValue());
+            rate.setServerErrorCount(((Number) row[4]).longValue());
+            rate.setErrorRate(rate.getRequestCount() == 0 ? 0 :
+                    (double) (rate.getClientErrorCount() + rate.getServerErrorCount()) / rate.getRequestCount());
+            result.add(rate);
+        }
+
+        result.sort(Comparator.comparingDouble(EndpointErrorRate::getErrorRate).reversed()
+                .thenComparing(Comparator.comparingLong(EndpointErrorRate::getRequestCount).reversed()));
+        return result;
+    }
+
+    /**
+     * 查詢每小時的延遲百分位數
+     *
+     * @param from 起始時間 (含)
+     * @param to 結束時間 (不含)
+     * @param apiPath 路由樣式 (選填，未指定時統計所有端點)
+     * @param httpMethod HTTP 方法 (選填)
+     * @return 依時間排序的每小時統計
+     */
+    public List<LatencyPercentiles> getHourlyLatency(LocalDateTime from, LocalDateTime to,
+                                                     String apiPath, String httpMethod) {
+        validateRange(from, to);
+
+        Map<LocalDateTime, EndpointAggregate> hours = new TreeMap<>();
+        for (ApiLogRollup rollup : rollupRepository.findInRange(from, to, apiPath, httpMethod)) {
+            EndpointAggregate hour = hours.computeIfAbsent(
+                    rollup.getBucketStart().truncatedTo(ChronoUnit.HOURS), key -> new EndpointAggregate());
+            hour.histogram.add(decode(rollup.getLatencyHistogram()));
+            hour.count += rollup.getRequestCount();
+            hour.sum += rollup.getDurationSum();
+            hour.max = Math.max(hour.max, rollup.getDurationMax());
+        }
+
+        List<LatencyPercentiles> result = new ArrayList<>();
+        hours.forEach((hour, aggregate) -> {
+            LatencyPercentiles percentiles = new LatencyPercentiles();
+            percentiles.setHour(hour);
+            percentiles.setRequestCount(aggregate.count);
+            percentiles.setMean(aggregate.count == 0 ? 0 : (double) aggregate.sum / aggregate.count);
+            percentiles.setP50(aggregate.histogram.getValueAtPercentile(50));
+            percentiles.setP90(aggregate.histogram.getValueAtPercentile(90));
+            percentiles.setP95(aggregate.histogram.getValueAtPercentile(95));
+            percentiles.setP99(aggregate.histogram.getValueAtPercentile(99));
+            percentiles.setMax(aggregate.max);
+            result.add(percentiles);
+        });
+        return result;
+    }
+
+    /**
+     * 查詢請求量最多的使用者
+     *
+     * @param from 起始時間 (含)
+     * @param to 結束時間 (不含)
+     * @param limit 回傳筆數 (1 ~ 100)
+     * @return 依請求數由多到少排序的使用者列表
+     */
+    public List<UserRequestVolume> getTopUsers(LocalDateTime from, LocalDateTime to, int limit) {
+        validateRange(from, to);
+        if (limit < 1 || limit > MAX_TOP_USERS) {
+            throw new InvalidRequestParameterException("limit 必須介於 1 到 " + MAX_TOP_USERS + " 之間");
+        }
+
+        List<UserRequestVolume> result = new ArrayList<>();
+        for (Object[] row : userRollupRepository.findTopUsers(from, to, PageRequest.of(0, limit))) {
+            UserRequestVolume volume = new UserRequestVolume();
+            volume.setUserId((Long) row[0]);
+            volume.setRequestCount(((Number) row[1]).longValue());
+            volume.setErrorCount(((Number) row[2]).longValue());
+            result.add(volume);
+        }
+        return result;
+    }
+
+    private void saveEndpointRollup(EndpointKey key, EndpointAggregate aggregate) {
+        ApiLogRollup rollup = rollupRepository.findByBucketStartAndApiPathAndHttpMethodAndStatusCode(
+                key.bucketStart(), key.apiPath(), key.httpMethod(), key.statusCode()).orElse(null);
+
+        // 複製後再合併，寫入失敗重試時不會重複計入既有資料
+        Histogram histogram = aggregate.histogram.copy();
+        if (rollup == null) {
+            rollup = new ApiLogRollup();
+            rollup.setBucketStart(key.bucketStart());
+            rollup.setApiPath(key.apiPath());
+            rollup.setHttpMethod(key.httpMethod());
+            rollup.setStatusCode(key.statusCode());
+            rollup.setRequestCount(aggregate.count);
+            rollup.setDurationSum(aggregate.sum);
+            rollup.setDurationMax(aggregate.max);
+        } else {
+            histogram.add(decode(rollup.getLatencyHistogram()));
+            rollup.setRequestCount(rollup.getRequestCount() + aggregate.count);
+            rollup.setDurationSum(rollup.getDurationSum() + aggregate.sum);
+            rollup.setDurationMax(Math.max(rollup.getDurationMax(), aggregate.max));
+        }
+        rollup.setLatencyHistogram(encode(histogram));
+        rollupRepository.save(rollup);
+    }
+
+    private void saveUserRollup(UserKey key, UserAggregate aggregate) {
+        ApiLogUserRollup rollup = userRollupRepository.findByBucketStartAndUserId(key.bucketStart(), key.userId())
+                .orElse(null);
+        if (rollup == null) {
+            rollup = new ApiLogUserRollup();
+            rollup.setBucketStart(key.bucketStart());
+            rollup.setUserId(key.userId());
+            rollup.setRequestCount(aggregate.requests);
+            rollup.setErrorCount(aggregate.errors);
+        } else {
+            rollup.setRequestCount(rollup.getRequestCount() + aggregate.requests);
+            rollup.setErrorCount(rollup.getErrorCount() + aggregate.errors);
+        }
+        userRollupRepository.save(rollup);
+    }
+
+    private static void validateRange(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new InvalidRequestParameterException("from 必須早於 to");
+        }
+    }
+
+    static byte[] encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Arrays.copyOf(buffer.array(), length);
+    }
+
+    static Histogram decode(byte[] encoded) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), 0);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("延遲分佈資料格式錯誤: " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,34 +1,57 @@
 package com.jeannychiu.learningnotesapi.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeannychiu.learningnotesapi.exception.ApiLogNotFoundException;
 import com.jeannychiu.learningnotesapi.model.ApiLog;
 import com.jeannychiu.learningnotesapi.model.User;
 import com.jeannychiu.learningnotesapi.repository.ApiLogRepository;
 import com.jeannychiu.learningnotesapi.repository.UserRepository;
 import com.jeannychiu.learningnotesapi.security.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.http.HttpServletRequest;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.servlet.HandlerMapping;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 
 @Service
 public class ApiLogService {
+    // 沒有對應路由的請求在彙總中的路由樣式
+    static final String UNMATCHED_ROUTE = "UNMATCHED";
+
     private final ApiLogRepository apiLogRepository;
     private final JwtUtil jwtUtil;
     private final UserRepository userRepository;
     private final ObjectMapper mapper;
+    private final ApiLogCapturePolicy capturePolicy;
+    private final ApiLogSink apiLogSink;
+    private final ApiLogRollupService rollupService;
+    private final UserIdCache userIdCache;
 
-    public ApiLogService(ApiLogRepository apiLogRepository, JwtUtil jwtUtil, UserRepository userRepository, ObjectMapper mapper) {
+    public ApiLogService(ApiLogRepository apiLogRepository, JwtUtil jwtUtil, UserRepository userRepository,
+                         ObjectMapper mapper, ApiLogCapturePolicy capturePolicy, ApiLogSink apiLogSink,
+                         ApiLogRollupService rollupService, UserIdCache userIdCache) {
         this.apiLogRepository = apiLogRepository;
         this.jwtUtil = jwtUtil;
         this.userRepository = userRepository;
         this.mapper = mapper;
+        this.capturePolicy = capturePolicy;
+        this.apiLogSink = apiLogSink;
+        this.rollupService = rollupService;
+        this.userIdCache = userIdCache;
     }
 
     /**
@@ -47,14 +70,30 @@ public class ApiLogService {
             }
             
             Long duration = Duration.between(startTime, endTime).toMillis();
-            
-            String requestBody = extractRequestData(joinPoint, method);
-            String responseBody = serializeResponse(result);
-            
+
+            // 彙總統計不受擷取策略影響，每個請求都要計入
+            rollupService.record(resolveRoutePattern(request), method, statusCode, duration, userId, startTime);
+
+            // 依擷取策略決定要保存的內容，未保存的部分不做序列化
+            String requestBody = null;
+            String responseBody = null;
+            switch (capturePolicy.decide(method, uri, statusCode)) {
+                case FULL -> {
+                    requestBody = extractRequestData(joinPoint, method);
+                    responseBody = serializeResponse(result);
+                }
+                case HASH_RESPONSE -> {
+                    requestBody = extractRequestData(joinPoint, method);
+                    responseBody = hashResponse(result);
+                }
+                case SKIP -> {
+                }
+            }
+
             ApiLog apiLog = createApiLog(uri, method, requestBody, responseBody, statusCode, 
                                        startTime, endTime, duration, userId);
             
-            apiLogRepository.save(apiLog);
+            apiLogSink.write(apiLog);
         } catch (Exception e) {
             System.err.println("Failed to log API request: " + e.getMessage());
         }
@@ -73,16 +112,53 @@ public class ApiLogService {
             // 對於安全錯誤，不記錄請求內容以避免敏感資訊洩露
             String requestBody = "";
             String responseBody = errorMessage;
+
+            rollupService.record(resolveRoutePattern(request), method, statusCode, 0L, userId, now);
             
             ApiLog apiLog = createApiLog(uri, method, requestBody, responseBody, statusCode, 
                                        now, now, 0L, userId);
             
-            apiLogRepository.save(apiLog);
+            apiLogSink.write(apiLog);
         } catch (Exception e) {
             System.err.println("Failed to log security error: " + e.getMessage());
         }
     }
 
+    /**
+     * 查詢 API 日誌列表 (管理員專用)
+     *
+     * 依 ID 由新到舊排序，請求/回應內容在讀取時會自動解壓縮。
+     *
+     * @param page 頁碼
+     * @param size 每頁筆數
+     * @param userId 使用者 ID (選填)
+     * @param statusCode HTTP 狀態碼 (選填)
+     * @return API 日誌分頁結果
+     */
+    public Page<ApiLog> getApiLogs(int page, int size, Long userId, Integer statusCode) {
+        PageRequest pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id"));
+
+        if (userId != null) {
+            return apiLogRepository.findByUserId(userId, pageable);
+        } else if (statusCode != null) {
+            return apiLogRepository.findByStatusCode(statusCode, pageable);
+        } else {
+            return apiLogRepository.findAll(pageable);
+        }
+    }
+
+    /**
+     * 根據 ID 查詢 API 日誌 (管理員專用)
+     *
+     * @param id API 日誌 ID
+     * @return API 日誌 (內容已解壓縮)
+     * @throws ApiLogNotFoundException 當日誌不存在時
+     */
+    public ApiLog getApiLogById(Long id) {
+        return apiLogRepository.findById(id)
+                .orElseThrow(() -> new ApiLogNotFoundException("找不到 ID 為 " + id + " 的 API 日誌"));
+    }
+
     private ApiLog createApiLog(String uri, String method, String requestBody, String responseBody, 
                               int statusCode, LocalDateTime startTime, LocalDateTime endTime, 
                               Long duration, Long userId) {
@@ -99,15 +175,34 @@ public class ApiLogService {
         return apiLog;
     }
 
+    /**
+     * 取得路由樣式 (例如 /notes/{id})，讓彙總依端點分組而不是依每個 ID 分組
+     *
+     * 未經過 Spring MVC 路由的請求 (例如被 security filter 擋下) 全部歸入 {@link #UNMATCHED_ROUTE}，
+     * 掃描任意路徑的請求不會讓彙總的分組數量無限增加；原始路徑仍記錄在 api_log。
+     */
+    private String resolveRoutePattern(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern != null) {
+            return pattern.toString();
+        }
+        return UNMATCHED_ROUTE;
+    }
+
     private Long extractUserIdFromRequest(HttpServletRequest request) {
         try {
             String authHeader = request.getHeader("Authorization");
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 String token = authHeader.substring(7);
-                String email = jwtUtil.getEmailFromToken(token);
-                
-                User user = userRepository.findByEmail(email).orElse(null);
-                return user != null ? user.getId() : null;
+
+                // 新版 token 直接帶有使用者 ID，舊版 token 以信箱查快取 (token 只解析一次)
+                Claims claims = jwtUtil.getClaimsFromToken(token);
+                Long userId = jwtUtil.getUserId(claims);
+                if (userId != null) {
+                    return userId;
+                }
+
+                return userIdCache.resolve(claims.getSubject(), key -> userRepository.findByEmail(key).map(User::getId));
             }
         } catch (Exception e) {
             // JWT 解析失敗或使用者不存在，回傳 null
@@ -146,22 +241,15 @@ public class ApiLogService {
         }
 
         try {
-            return mapper.writeValueAsString(args);
-        } catch (JsonProcessingException e) {
+            return writeLimited(args);
+        } catch (IOException e) {
             return buildParametersManually(args);
         }
     }
 
     private String serializeResponse(Object result) {
         try {
-            String fullResponseBody = mapper.writeValueAsString(result);
-            
-            // 限制回應內容大小（避免過大導致資料庫問題）
-            if (fullResponseBody != null && fullResponseBody.length() > 50000) {
-                return fullResponseBody.substring(0, 50000) + "... [TRUNCATED]";
-            } else {
-                return fullResponseBody;
-            }
+            return writeLimited(result);
         } catch (Exception e) {
             return "Failed to parse response body: " + e.getMessage();
         }
@@ -169,12 +257,52 @@ public class ApiLogService {
 
     private String serializeToJson(Object obj) {
         try {
-            return mapper.writeValueAsString(obj);
-        } catch (JsonProcessingException e) {
+            return writeLimited(obj);
+        } catch (IOException e) {
             return "Failed to serialize: " + e.getMessage();
         }
     }
 
+    /**
+     * 以限制長度的方式序列化物件
+     *
+     * 限制內容大小（避免過大導致資料庫問題），超過上限時在序列化途中就停止，
+     * 不會先產生完整字串再截斷。
+     */
+    private String writeLimited(Object value) throws IOException {
+        SizeLimitedWriter writer = new SizeLimitedWriter(capturePolicy.getMaxBodyLength());
+        try {
+            mapper.writeValue(writer, value);
+        } catch (IOException e) {
+            if (!writer.isTruncated()) {
+                throw e;
+            }
+        }
+
+        if (writer.isTruncated()) {
+            return writer + "... [TRUNCATED]";
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 以 SHA-256 雜湊值取代回應內容
+     *
+     * 直接將序列化結果串流進雜湊函式，不在記憶體中建立完整字串。
+     */
+    private String hashResponse(Object result) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            CountingOutputStream counter = new CountingOutputStream();
+            try (DigestOutputStream out = new DigestOutputStream(counter, digest)) {
+                mapper.writeValue(out, result);
+            }
+            return "sha256:" + HexFormat.of().formatHex(digest.digest()) + " (" + counter.count + " bytes)";
+        } catch (Exception e) {
+            return "Failed to hash response body: " + e.getMessage();
+        }
+    }
+
     private String buildParametersManually(Object[] args) {
         StringBuilder params = new StringBuilder("[");
         for (int i = 0; i < args.length; i++) {
@@ -194,4 +322,21 @@ public class ApiLogService {
             params.append("\"").append(arg).append("\"");
         }
     }
+
+    /**
+     * 只計算位元組數的輸出串流 (雜湊時使用)
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.model.ApiLog;
+
+/**
+ * API 日誌寫入目的地
+ *
+ * ApiLogService 組好日誌後交由 sink 寫出，可透過 app.api-log.sink 選擇：
+ * - database：直接寫入 api_log 資料表 (預設)
+ * - file：先寫入本機的追加式檔案，再由背景程序批次匯入資料庫
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public interface ApiLogSink {
+    /**
+     * 寫出一筆 API 日誌
+     *
+     * @param apiLog API 日誌
+     */
+    void write(ApiLog apiLog);
+}
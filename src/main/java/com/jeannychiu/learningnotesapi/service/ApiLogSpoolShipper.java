@@ -0,0 +1,212 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeannychiu.learningnotesapi.converter.CompressedTextConverter;
+import com.jeannychiu.learningnotesapi.model.ApiLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 將 spool 檔案批次匯入資料庫的背景程序
+ *
+ * 依檔名順序讀取已封存的 segment，以 JDBC batch insert 寫入 api_log，
+ * 整個 segment 在同一個交易內匯入，成功後才刪除檔案。
+ * 資料庫暫時無法使用 (包含無法取得連線、無法開始交易) 時保留檔案，下一輪再重試。
+ *
+ * 因 segment 內容本身 (例如欄位超過長度、違反限制) 或檔案無法讀取而失敗時，先略過此 segment 繼續匯入後面的 segment；
+ * 同一個 segment 連續失敗 max-attempts 次後改名為 .failed 隔離並記錄錯誤，不再重試，
+ * 避免一個無法匯入的 segment 卡住之後所有的日誌。隔離的檔案保留在 spool 目錄中供人工處理。
+ *
+ * 匯入保證至少一次 (at-least-once)，不保證只有一次：交易提交後、刪除檔案前行程中斷或刪除失敗時，
+ * 下一輪會再匯入同一個 segment，api_log 中會有重複的日誌。API 日誌用於稽核與統計，接受少量重複。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+@ConditionalOnProperty(name = "app.api-log.sink", havingValue = "file")
+public class ApiLogSpoolShipper {
+    private static final Logger log = LoggerFactory.getLogger(ApiLogSpoolShipper.class);
+
+    static final String FAILED_SUFFIX = ".failed";
+
+    private static final String INSERT_SQL = "INSERT INTO api_log (api_path, http_method, " +
+            "request_body_compressed, response_body_compressed, status_code, request_time, response_time, " +
+            "duration, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final FileSpoolApiLogSink spool;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper mapper;
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+    private final int batchSize;
+    private final int maxAttempts;
+    // 各 segment 連續失敗的次數 (只由排程的單一執行緒存取)
+    private final Map<Path, Integer> failedAttempts = new HashMap<>();
+
+    public ApiLogSpoolShipper(
+            FileSpoolApiLogSink spool,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper mapper,
+            @Value("${app.api-log.spool.ship-batch-size:500}") int batchSize,
+            @Value("${app.api-log.spool.max-attempts:5}") int maxAttempts) {
+        this.spool = spool;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.mapper = mapper;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 定期匯入已封存的 segment
+     *
+     * @return 匯入的日誌筆數
+     */
+    @Scheduled(initialDelayString = "${app.api-log.spool.ship-interval:PT10S}",
+            fixedDelayString = "${app.api-log.spool.ship-interval:PT10S}")
+    public long shipSealedSegments() {
+        long shipped = 0;
+        try {
+            for (Path segment : listSealedSegments()) {
+                try {
+                    shipped += shipSegment(segment);
+                    failedAttempts.remove(segment);
+                } catch (RuntimeException e) {
+                    if (!isSegmentFailure(e)) {
+                        throw e;
+                    }
+                    recordFailure(segment, e);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 保留未匯入的 segment，下一輪依相同順序重試
+            log.warn("API 日誌 spool 匯入失敗，稍後重試: {}", e.getMessage());
+        }
+        return shipped;
+    }
+
+    private long shipSegment(Path segment) throws IOException {
+        Long count = transactionTemplate.execute(status -> {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                long inserted = 0;
+                List<ApiLog> batch = new ArrayList<>(batchSize);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    ApiLog apiLog = parse(segment, line);
+                    if (apiLog == null) {
+                        continue;
+                    }
+                    batch.add(apiLog);
+                    if (batch.size() == batchSize) {
+                        inserted += insertBatch(batch);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    inserted += insertBatch(batch);
+                }
+                return inserted;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        try {
+            Files.delete(segment);
+        } catch (IOException e) {
+            log.error("API 日誌 segment {} 已匯入但無法刪除，下一輪會重複匯入", segment.getFileName());
+            throw e;
+        }
+        return count == null ? 0 : count;
+    }
+
+    // 內容本身或檔案造成的失敗，重試也不會成功；無法取得連線、無法開始交易等暫時性的失敗不計入
+    private static boolean isSegmentFailure(RuntimeException e) {
+        return e instanceof UncheckedIOException
+                || (e instanceof NonTransientDataAccessException
+                        && !(e instanceof NonTransientDataAccessResourceException));
+    }
+
+    private void recordFailure(Path segment, RuntimeException e) {
+        int attempts = failedAttempts.merge(segment, 1, Integer::sum);
+        if (attempts < maxAttempts) {
+            log.warn("API 日誌 segment {} 匯入失敗 (第 {} 次)，先匯入其他 segment: {}",
+                    segment.getFileName(), attempts, e.getMessage());
+            return;
+        }
+
+        failedAttempts.remove(segment);
+        Path quarantined = segment.resolveSibling(segment.getFileName() + FAILED_SUFFIX);
+        try {
+            Files.move(segment, quarantined, StandardCopyOption.ATOMIC_MOVE);
+            log.error("API 日誌 segment {} 連續 {} 次匯入失敗，已隔離為 {}，不再重試", segment.getFileName(),
+                    attempts, quarantined.getFileName(), e);
+        } catch (IOException moveError) {
+            log.error("API 日誌 segment {} 連續 {} 次匯入失敗，且無法隔離: {}", segment.getFileName(), attempts,
+                    moveError.getMessage(), e);
+        }
+    }
+
+    private int insertBatch(List<ApiLog> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, apiLog) -> {
+            ps.setString(1, apiLog.getApiPath());
+            ps.setString(2, apiLog.getHttpMethod());
+            ps.setBytes(3, converter.convertToDatabaseColumn(apiLog.getRequestBody()));
+            ps.setBytes(4, converter.convertToDatabaseColumn(apiLog.getResponseBody()));
+            ps.setObject(5, apiLog.getStatusCode(), Types.INTEGER);
+            ps.setObject(6, apiLog.getRequestTime());
+            ps.setObject(7, apiLog.getResponseTime());
+            ps.setObject(8, apiLog.getDuration(), Types.BIGINT);
+            ps.setObject(9, apiLog.getUserId(), Types.BIGINT);
+        });
+        return batch.size();
+    }
+
+    // 行程中斷時最後一行可能只寫了一半，略過無法解析的行，不影響其他日誌
+    private ApiLog parse(Path segment, String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            return mapper.readValue(line, ApiLog.class);
+        } catch (JsonProcessingException e) {
+            log.warn("略過 {} 中無法解析的 API 日誌: {}", segment.getFileName(), e.getOriginalMessage());
+            return null;
+        }
+    }
+
+    private List<Path> listSealedSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spool.getDirectory(),
+                "*" + FileSpoolApiLogSink.SEALED_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        segments.sort(null);
+        return segments;
+    }
+}
@@ -34,13 +34,16 @@ public class AuthService {
     private final BCryptPasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
     private final JwtUtil jwtUtil;
+    private final UserIdCache userIdCache;
 
     public AuthService(BCryptPasswordEncoder passwordEncoder,
                        UserRepository userRepository,
-                       JwtUtil jwtUtil) {
+                       JwtUtil jwtUtil,
+                       UserIdCache userIdCache) {
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
         this.jwtUtil = jwtUtil;
+        this.userIdCache = userIdCache;
     }
 
     /**
@@ -167,7 +170,9 @@ public class AuthService {
         response.setRole(user.getRole());
 
         if (includeToken) {
-            response.setToken(jwtUtil.generateToken(user.getEmail(), user.getRole()));
+            // 登入與註冊時放入快取，並在 token 內帶上使用者 ID
+            userIdCache.put(user.getEmail(), user.getId());
+            response.setToken(jwtUtil.generateToken(user.getId(), user.getEmail(), user.getRole()));
         }
 
         return response;
@@ -0,0 +1,27 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.model.ApiLog;
+import com.jeannychiu.learningnotesapi.repository.ApiLogRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 直接寫入資料庫的 API 日誌 sink (預設)
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+@ConditionalOnProperty(name = "app.api-log.sink", havingValue = "database", matchIfMissing = true)
+public class DatabaseApiLogSink implements ApiLogSink {
+    private final ApiLogRepository apiLogRepository;
+
+    public DatabaseApiLogSink(ApiLogRepository apiLogRepository) {
+        this.apiLogRepository = apiLogRepository;
+    }
+
+    @Override
+    public void write(ApiLog apiLog) {
+        apiLogRepository.save(apiLog);
+    }
+}
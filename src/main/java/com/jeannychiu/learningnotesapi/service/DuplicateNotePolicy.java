@@ -0,0 +1,43 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.exception.InvalidRequestParameterException;
+
+import java.util.Locale;
+
+/**
+ * 新增筆記時遇到重複筆記 (標題與內容指紋相同) 的處理方式
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public enum DuplicateNotePolicy {
+    /**
+     * 不檢查，照常新增
+     */
+    ALLOW,
+
+    /**
+     * 不新增，回傳既有的筆記
+     */
+    SKIP,
+
+    /**
+     * 不新增，把新的標籤合併到既有的筆記
+     */
+    MERGE;
+
+    /**
+     * 解析請求參數
+     *
+     * @param value allow、skip 或 merge (不分大小寫)
+     * @return 處理方式
+     * @throws InvalidRequestParameterException 不是以上的值時
+     */
+    public static DuplicateNotePolicy parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestParameterException("onDuplicate 必須為 allow、skip 或 merge");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeannychiu.learningnotesapi.model.ApiLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 寫入本機追加式檔案的 API 日誌 sink
+ *
+ * 每筆日誌以 JSON Lines 格式追加到目前的 segment 檔案 ({@code *.jsonl.open})，
+ * 不需等待資料庫，請求延遲與 MySQL 是否可用完全脫鉤。
+ *
+ * - fsync 批次處理：由背景執行緒定期 force，而非每筆日誌都同步寫入磁碟
+ * - segment 輪替：檔案超過大小上限或存在時間上限時封存為 {@code *.jsonl}
+ * - 封存後的 segment 由 {@link ApiLogSpoolShipper} 批次匯入資料庫
+ *
+ * 程式異常結束時遺留的 {@code *.jsonl.open} 會在下次啟動時封存，不會遺失。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+@ConditionalOnProperty(name = "app.api-log.sink", havingValue = "file")
+public class FileSpoolApiLogSink implements ApiLogSink {
+    private static final Logger log = LoggerFactory.getLogger(FileSpoolApiLogSink.class);
+
+    static final String OPEN_SUFFIX = ".jsonl.open";
+    static final String SEALED_SUFFIX = ".jsonl";
+
+    private final ObjectMapper mapper;
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private final Duration segmentMaxAge;
+    private final Duration fsyncInterval;
+    private final ScheduledExecutorService fsyncExecutor;
+
+    private FileChannel channel;
+    private Path segmentPath;
+    private long segmentBytes;
+    private long segmentOpenedAt;
+    private boolean dirty;
+    private int segmentSequence;
+
+    public FileSpoolApiLogSink(
+            ObjectMapper mapper,
+            @Value("${app.api-log.spool.directory:${java.io.tmpdir}/api-log-spool}") String directory,
+            @Value("${app.api-log.spool.segment-max-bytes:16777216}") long segmentMaxBytes,
+            @Value("${app.api-log.spool.segment-max-age:PT30S}") Duration segmentMaxAge,
+            @Value("${app.api-log.spool.fsync-interval:PT0.2S}") Duration fsyncInterval) {
+        this.mapper = mapper;
+        this.directory = Paths.get(directory);
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.segmentMaxAge = segmentMaxAge;
+        this.fsyncInterval = fsyncInterval;
+        this.fsyncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "api-log-spool-fsync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+
+        // 上次未正常關閉的 segment 直接封存，交給 shipper 匯入
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + OPEN_SUFFIX)) {
+            for (Path leftover : stream) {
+                log.warn("封存上次未關閉的 API 日誌 segment: {}", leftover.getFileName());
+                seal(leftover);
+            }
+        }
+
+        synchronized (this) {
+            openSegment();
+        }
+
+        long intervalMillis = Math.max(fsyncInterval.toMillis(), 1);
+        fsyncExecutor.scheduleWithFixedDelay(this::syncAndRotate, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void write(ApiLog apiLog) {
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(apiLog);
+        } catch (IOException e) {
+            throw new UncheckedIOException("API 日誌序列化失敗", e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(json.length + 1);
+        buffer.put(json).put((byte) '\n').flip();
+
+        synchronized (this) {
+            try {
+                while (buffer.hasRemaining()) {
+                    segmentBytes += channel.write(buffer);
+                }
+                dirty = true;
+
+                if (segmentBytes >= segmentMaxBytes) {
+                    rotate();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("寫入 API 日誌 segment 失敗", e);
+            }
+        }
+    }
+
+    /**
+     * 批次 fsync，並封存超過存在時間上限的 segment
+     */
+    void syncAndRotate() {
+        try {
+            FileChannel current;
+            synchronized (this) {
+                current = dirty ? channel : null;
+                dirty = false;
+            }
+
+            // force 不持有鎖，避免 fsync 期間阻塞寫入的請求執行緒
+            if (current != null) {
+                try {
+                    current.force(false);
+                } catch (ClosedChannelException e) {
+                    // segment 已在輪替時 force 並關閉
+                }
+            }
+
+            synchronized (this) {
+                long age = System.currentTimeMillis() - segmentOpenedAt;
+                if (segmentBytes > 0 && age >= segmentMaxAge.toMillis()) {
+                    rotate();
+                }
+            }
+        } catch (IOException e) {
+            log.error("API 日誌 segment 同步失敗: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        fsyncExecutor.shutdown();
+        synchronized (this) {
+            channel.force(false);
+            channel.close();
+            if (segmentBytes > 0) {
+                seal(segmentPath);
+            } else {
+                Files.deleteIfExists(segmentPath);
+            }
+        }
+    }
+
+    /**
+     * 取得 spool 目錄
+     *
+     * @return spool 目錄
+     */
+    Path getDirectory() {
+        return directory;
+    }
+
+    private void rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        seal(segmentPath);
+        openSegment();
+    }
+
+    private void openSegment() throws IOException {
+        // 檔名依時間排序，shipper 依檔名順序匯入
+        String name = String.format("api-log-%013d-%04d", System.currentTimeMillis(), segmentSequence++ % 10000);
+        segmentPath = directory.resolve(name + OPEN_SUFFIX);
+        channel = FileChannel.open(segmentPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+        segmentOpenedAt = System.currentTimeMillis();
+        dirty = false;
+    }
+
+    private static void seal(Path openSegment) throws IOException {
+        String fileName = openSegment.getFileName().toString();
+        String sealedName = fileName.substring(0, fileName.length() - OPEN_SUFFIX.length()) + SEALED_SUFFIX;
+        Files.move(openSegment, openSegment.resolveSibling(sealedName), StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,158 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeannychiu.learningnotesapi.exception.IdempotencyKeyInProgressException;
+import com.jeannychiu.learningnotesapi.exception.IdempotencyKeyMismatchException;
+import com.jeannychiu.learningnotesapi.exception.InvalidRequestParameterException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key 處理
+ *
+ * 用戶端在寫入請求帶上 Idempotency-Key，重試時使用同一個 key：
+ * - 第一次的請求照常執行並保存回應
+ * - 之後同一使用者以同一個 key 送出相同的請求時，直接回傳保存的回應 (加上 Idempotent-Replayed 標頭)，不再執行
+ * - 第一次的請求仍在執行時，重複的請求等待同一次執行的結果，不會同時執行兩次
+ * - 同一個 key 用於不同的請求內容時回應 422
+ *
+ * 執行失敗 (拋出例外) 時不保存結果，用戶端可以用同一個 key 重試。
+ * 保存的是序列化後的回應 (狀態碼、標頭與 JSON 本文)，不保留回應中的實體物件；
+ * 重播的回應本文是保存的 JSON (byte[])，直接寫出，不再序列化。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Service
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final Duration waitTimeout;
+
+    public IdempotencyService(IdempotencyStore store, ObjectMapper objectMapper,
+                              @Value("${app.idempotency.wait-timeout:PT30S}") Duration waitTimeout) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * 以 Idempotency-Key 執行寫入
+     *
+     * @param userEmail 使用者信箱 (key 依使用者區分)
+     * @param key Idempotency-Key；null 時直接執行
+     * @param operation 操作名稱，例如 POST /notes，同一個 key 用於不同操作視為不同的請求
+     * @param request 請求內容 (含影響結果的參數)，用於確認重試的是同一個請求
+     * @param action 實際的寫入
+     * @return 本次執行的回應，或第一次執行保存的回應 (本文為 JSON byte[])
+     * @throws IdempotencyKeyMismatchException 同一個 key 已用於不同的請求
+     * @throws IdempotencyKeyInProgressException 等待第一次執行的結果逾時
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(String userEmail, String key, String operation, Object request,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestParameterException("Idempotency-Key 長度必須介於 1 到 " + MAX_KEY_LENGTH + " 之間");
+        }
+
+        String storeKey = userEmail + "\n" + key;
+        IdempotencyStore.Entry entry = new IdempotencyStore.Entry(requestHash(operation, request),
+                new CompletableFuture<>());
+        IdempotencyStore.Entry existing = store.putIfAbsent(storeKey, entry);
+        if (existing != null) {
+            if (!existing.requestHash().equals(entry.requestHash())) {
+                throw new IdempotencyKeyMismatchException("此 Idempotency-Key 已用於不同的請求");
+            }
+            return (ResponseEntity<T>) replay(existing);
+        }
+
+        try {
+            ResponseEntity<T> response = action.get();
+            entry.response().complete(serialize(response));
+            store.complete(storeKey, entry);
+            return response;
+        } catch (RuntimeException | Error e) {
+            // 失敗 (包含 Error) 時移除紀錄並通知等待中的重複請求，不等到過期才能重試
+            store.remove(storeKey, entry);
+            entry.response().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // 等待第一次執行完成，回傳同樣的回應
+    private ResponseEntity<?> replay(IdempotencyStore.Entry entry) {
+        IdempotencyStore.StoredResponse original;
+        try {
+            original = entry.response().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException("相同 Idempotency-Key 的請求仍在處理中，請稍後重試");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("相同 Idempotency-Key 的請求仍在處理中，請稍後重試");
+        } catch (ExecutionException e) {
+            // 第一次執行失敗：回應同樣的錯誤
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        original.headers().forEach(headers::addAll);
+        headers.set(REPLAYED_HEADER, "true");
+        return ResponseEntity.status(original.status())
+                .headers(headers)
+                .body(original.body());
+    }
+
+    private IdempotencyStore.StoredResponse serialize(ResponseEntity<?> response) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        response.getHeaders().forEach((name, values) -> headers.put(name, List.copyOf(values)));
+        byte[] body = null;
+        if (response.hasBody()) {
+            try {
+                body = objectMapper.writeValueAsBytes(response.getBody());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("無法序列化回應內容", e);
+            }
+            if (response.getHeaders().getContentType() == null) {
+                headers.put(HttpHeaders.CONTENT_TYPE, List.of(MediaType.APPLICATION_JSON_VALUE));
+            }
+        }
+        return new IdempotencyStore.StoredResponse(response.getStatusCode().value(), headers, body);
+    }
+
+    private String requestHash(String operation, Object request) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(request);
+            String value = operation + "\n" + new String(body, StandardCharsets.UTF_8);
+            return DigestUtils.md5DigestAsHex(value.getBytes(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法序列化請求內容", e);
+        }
+    }
+}
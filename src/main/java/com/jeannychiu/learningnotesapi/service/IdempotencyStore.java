@@ -0,0 +1,75 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Idempotency-Key 的結果儲存
+ *
+ * 預設為單一程序內的 {@link InMemoryIdempotencyStore}；多台伺服器共用時可換成
+ * 以 Redis 等外部儲存實作此介面 (app.idempotency.store)。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public interface IdempotencyStore {
+    /**
+     * 一個 key 的紀錄
+     *
+     * @param requestHash 請求內容的雜湊，同一個 key 只能用於相同的請求
+     * @param response 執行結果；執行中時尚未完成
+     */
+    record Entry(String requestHash, CompletableFuture<StoredResponse> response) {
+    }
+
+    /**
+     * 保存的回應 (已序列化，不保留回應中的實體物件)
+     *
+     * @param status HTTP 狀態碼
+     * @param headers 回應標頭
+     * @param body JSON 本文；沒有本文時為 null
+     */
+    record StoredResponse(int status, Map<String, List<String>> headers, byte[] body) {
+        /**
+         * 估計占用的記憶體 (位元組)
+         *
+         * @return 位元組數
+         */
+        public int size() {
+            int size = body == null ? 0 : body.length;
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                size += header.getKey().length() * 2;
+                for (String value : header.getValue()) {
+                    size += value.length() * 2;
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * 沒有紀錄時登記新的紀錄
+     *
+     * @param key 儲存用的 key (已包含使用者)
+     * @param entry 新的紀錄
+     * @return 已存在的紀錄；登記成功時為 null
+     */
+    Entry putIfAbsent(String key, Entry entry);
+
+    /**
+     * 執行完成後更新紀錄 (保存的回應已寫入 entry)
+     *
+     * @param key 儲存用的 key
+     * @param entry 已完成的紀錄，已被其他紀錄取代時不更新
+     */
+    void complete(String key, Entry entry);
+
+    /**
+     * 移除紀錄 (執行失敗時，讓用戶端可以用同一個 key 重試)
+     *
+     * @param key 儲存用的 key
+     * @param entry 要移除的紀錄，已被其他紀錄取代時不移除
+     */
+    void remove(String key, Entry entry);
+}
@@ -0,0 +1,63 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 單一程序內的 Idempotency-Key 儲存
+ *
+ * 以 Caffeine 保存，寫入後經過 ttl 過期。回應以序列化後的位元組保存，
+ * 依 key 與回應的大小計算權重，總大小超過 max-size 時淘汰較少使用的 key。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+    // 每筆紀錄除了字串與本文之外的固定開銷 (Entry、CompletableFuture、標頭 Map 等物件)
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Cache<String, Entry> entries;
+
+    public InMemoryIdempotencyStore(@Value("${app.idempotency.ttl:PT24H}") Duration ttl,
+                                    @Value("${app.idempotency.max-size:64MB}") DataSize maxSize) {
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxSize.toBytes())
+                .weigher(InMemoryIdempotencyStore::weigh)
+                .build();
+    }
+
+    @Override
+    public Entry putIfAbsent(String key, Entry entry) {
+        return entries.asMap().putIfAbsent(key, entry);
+    }
+
+    @Override
+    public void complete(String key, Entry entry) {
+        // 以同一筆紀錄取代，依保存的回應重新計算權重 (登記時回應尚未完成)
+        entries.asMap().replace(key, entry, entry);
+    }
+
+    @Override
+    public void remove(String key, Entry entry) {
+        entries.asMap().remove(key, entry);
+    }
+
+    private static int weigh(String key, Entry entry) {
+        CompletableFuture<StoredResponse> response = entry.response();
+        int size = ENTRY_OVERHEAD + (key.length() + entry.requestHash().length()) * 2;
+        if (response.isDone() && !response.isCompletedExceptionally()) {
+            size += response.join().size();
+        }
+        return size;
+    }
+}
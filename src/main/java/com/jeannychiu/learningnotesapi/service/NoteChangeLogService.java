@@ -0,0 +1,225 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.NoteChangeItem;
+import com.jeannychiu.learningnotesapi.dto.NoteChangesResponse;
+import com.jeannychiu.learningnotesapi.event.NoteChangedEvent;
+import com.jeannychiu.learningnotesapi.exception.ChangeTokenExpiredException;
+import com.jeannychiu.learningnotesapi.exception.InvalidRequestParameterException;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteChange;
+import com.jeannychiu.learningnotesapi.repository.NoteChangeRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 筆記異動紀錄服務 (增量同步)
+ *
+ * 筆記的新增、更新、刪除在同一個交易中寫入 note_change，紀錄的 id 即為同步 token，
+ * 用戶端以上次取得的 token 查詢之後的異動，成本與異動數量成正比，與筆記總數無關。
+ *
+ * 自動遞增的 id 依寫入順序配發，但交易不一定依同樣順序提交。為避免用戶端的 token
+ * 越過仍在提交中的異動，寫入時間在 settle-time 以內的異動留待下次同步。
+ *
+ * 定期壓縮：
+ * - 同一筆記只保留最新一筆異動，從 token 0 同步即為所有筆記的最新狀態
+ * - 超過保留期限的刪除紀錄 (tombstone) 移除，並記錄已清除到的 token；
+ *   比它更舊的 token 可能漏掉刪除，回應 410 要求用戶端重新完整同步
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Service
+public class NoteChangeLogService {
+    private static final Logger log = LoggerFactory.getLogger(NoteChangeLogService.class);
+
+    private final NoteChangeRepository noteChangeRepository;
+    private final NoteRepository noteRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration settleTime;
+    private final Duration tombstoneRetention;
+    private final int maxLimit;
+    private final int batchSize;
+
+    public NoteChangeLogService(
+            NoteChangeRepository noteChangeRepository,
+            NoteRepository noteRepository,
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.note-changes.settle-time:PT2S}") Duration settleTime,
+            @Value("${app.note-changes.tombstone-retention:P30D}") Duration tombstoneRetention,
+            @Value("${app.note-changes.max-limit:500}") int maxLimit,
+            @Value("${app.note-changes.compaction.batch-size:1000}") int batchSize) {
+        this.noteChangeRepository = noteChangeRepository;
+        this.noteRepository = noteRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.settleTime = settleTime;
+        this.tombstoneRetention = tombstoneRetention;
+        this.maxLimit = maxLimit;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 筆記異動時寫入異動紀錄 (與筆記在同一個交易中)
+     *
+     * @param event 筆記異動事件
+     */
+    @EventListener
+    public void onNoteChanged(NoteChangedEvent event) {
+        NoteChange change = new NoteChange();
+        change.setUserEmail(event.getNote().getUserEmail());
+        change.setNoteId(event.getNote().getId());
+        change.setChangeType(NoteChange.Type.valueOf(event.getType().name()));
+        change.setChangedAt(LocalDateTime.now());
+        noteChangeRepository.save(change);
+    }
+
+    /**
+     * 取得使用者在指定 token 之後的筆記異動
+     *
+     * since 為 0 表示用戶端沒有本機資料，只回傳現存的筆記，不回傳刪除紀錄。
+     *
+     * @param userEmail 使用者信箱
+     * @param since 上次同步取得的 token
+     * @param limit 最多讀取的異動筆數
+     * @return 異動列表與下次同步的 token
+     * @throws ChangeTokenExpiredException token 早於已清除的刪除紀錄時
+     */
+    public NoteChangesResponse getChanges(String userEmail, long since, int limit) {
+        if (since < 0) {
+            throw new InvalidRequestParameterException("since 不能小於 0");
+        }
+        if (limit < 1 || limit > maxLimit) {
+            throw new InvalidRequestParameterException("limit 必須介於 1 到 " + maxLimit + " 之間");
+        }
+        if (since > 0 && since < getPurgedThrough()) {
+            throw new ChangeTokenExpiredException("同步 token 已過期，請重新完整同步");
+        }
+
+        List<NoteChange> changes = new ArrayList<>(
+                noteChangeRepository.findChangesAfter(userEmail, since, PageRequest.of(0, limit + 1)));
+        boolean hasMore = changes.size() > limit;
+        if (hasMore) {
+            changes = changes.subList(0, limit);
+        }
+
+        // 遇到尚未穩定的異動就停止，token 不越過它
+        LocalDateTime settledBefore = LocalDateTime.now().minus(settleTime);
+        for (int i = 0; i < changes.size(); i++) {
+            if (!changes.get(i).getChangedAt().isBefore(settledBefore)) {
+                changes = changes.subList(0, i);
+                hasMore = false;
+                break;
+            }
+        }
+
+        // 同一筆記只保留此頁中最新的異動，順序依最新異動的 token
+        Map<Long, NoteChange> latest = new LinkedHashMap<>();
+        for (NoteChange change : changes) {
+            latest.remove(change.getNoteId());
+            latest.put(change.getNoteId(), change);
+        }
+
+        List<Long> noteIds = latest.values().stream()
+                .filter(change -> change.getChangeType() != NoteChange.Type.DELETED)
+                .map(NoteChange::getNoteId)
+                .toList();
+        Map<Long, Note> notes = noteIds.isEmpty() ? Map.of() : noteRepository.findNotesWithTagsByIds(noteIds).stream()
+                .collect(Collectors.toMap(Note::getId, Function.identity()));
+
+        List<NoteChangeItem> items = new ArrayList<>();
+        for (NoteChange change : latest.values()) {
+            if (change.getChangeType() == NoteChange.Type.DELETED) {
+                if (since > 0) {
+                    items.add(new NoteChangeItem(change.getNoteId(), change.getChangeType(), change.getChangedAt(), null));
+                }
+                continue;
+            }
+            // 筆記已在之後被刪除，刪除紀錄會在後面的異動中回傳
+            Note note = notes.get(change.getNoteId());
+            if (note != null) {
+                items.add(new NoteChangeItem(change.getNoteId(), change.getChangeType(), change.getChangedAt(), note));
+            }
+        }
+
+        NoteChangesResponse response = new NoteChangesResponse();
+        response.setChanges(items);
+        response.setNextToken(changes.isEmpty() ? since : changes.get(changes.size() - 1).getId());
+        response.setHasMore(hasMore);
+        return response;
+    }
+
+    /**
+     * 定期壓縮異動紀錄
+     */
+    @Scheduled(initialDelayString = "${app.note-changes.compaction.initial-delay:PT10M}",
+            fixedDelayString = "${app.note-changes.compaction.interval:PT1H}")
+    public void runCompaction() {
+        try {
+            compact(LocalDateTime.now());
+        } catch (DataAccessException e) {
+            log.error("筆記異動紀錄壓縮失敗: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 移除被較新異動取代的紀錄，以及超過保留期限的刪除紀錄
+     *
+     * @param now 目前時間
+     * @return 移除的筆數
+     */
+    public long compact(LocalDateTime now) {
+        long removed = 0;
+        List<Long> ids;
+        do {
+            ids = noteChangeRepository.findSupersededIds(PageRequest.of(0, batchSize));
+            if (!ids.isEmpty()) {
+                noteChangeRepository.deleteAllByIdInBatch(ids);
+                removed += ids.size();
+            }
+        } while (ids.size() == batchSize);
+
+        LocalDateTime cutoff = now.minus(tombstoneRetention);
+        do {
+            ids = noteChangeRepository.findExpiredTombstoneIds(cutoff, PageRequest.of(0, batchSize));
+            if (!ids.isEmpty()) {
+                // 先推進清除位置再刪除，同步中的用戶端不會在刪除後仍被視為有效
+                jdbcTemplate.update("UPDATE note_change_compaction SET purged_through = GREATEST(purged_through, ?), " +
+                        "compacted_at = ? WHERE id = 1", ids.get(ids.size() - 1), now);
+                noteChangeRepository.deleteAllByIdInBatch(ids);
+                removed += ids.size();
+            }
+        } while (ids.size() == batchSize);
+
+        if (removed > 0) {
+            log.info("已壓縮 {} 筆筆記異動紀錄", removed);
+        }
+        return removed;
+    }
+
+    /**
+     * 取得已清除的刪除紀錄位置，比它更舊的 token 無法增量同步
+     *
+     * @return token
+     */
+    public long getPurgedThrough() {
+        Long purgedThrough = jdbcTemplate.queryForObject(
+                "SELECT purged_through FROM note_change_compaction WHERE id = 1", Long.class);
+        return purgedThrough == null ? 0 : purgedThrough;
+    }
+}
@@ -0,0 +1,47 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import net.openhft.hashing.LongHashFunction;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * 筆記內容指紋，用於偵測重複匯入的筆記
+ *
+ * 對正規化後的標題與內容計算 64 位元 xxHash：Unicode 正規化為 NFC、連續空白合併為一個空格、
+ * 去除前後空白，因此只有換行或縮排不同的筆記視為相同。標籤不列入指紋，
+ * 重複的筆記可以選擇把新的標籤合併到既有筆記。
+ *
+ * 指紋只用來以索引找出可能重複的筆記，碰撞時不同的筆記也會有相同的指紋，
+ * 由 NoteService 再比對內容雜湊或正規化後的原文確認。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class NoteFingerprint {
+    private static final LongHashFunction XX = LongHashFunction.xx();
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // 分隔標題與內容，避免 ("ab", "c") 與 ("a", "bc") 得到相同的指紋
+    private static final char SEPARATOR = '\u0000';
+
+    private NoteFingerprint() {
+    }
+
+    /**
+     * @param title 標題
+     * @param content 內容 (可為 null)
+     * @return 64 位元指紋
+     */
+    static long of(String title, String content) {
+        return XX.hashChars(normalize(title) + SEPARATOR + normalize(content));
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").trim();
+    }
+}
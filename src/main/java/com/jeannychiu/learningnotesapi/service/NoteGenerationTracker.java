@@ -0,0 +1,69 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.model.NoteChange;
+import com.jeannychiu.learningnotesapi.repository.NoteChangeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * 筆記異動世代
+ *
+ * 世代取自資料庫中的異動紀錄 (note_change)：使用者最新一筆異動的 ID，管理員則是所有使用者最新一筆異動的 ID。
+ * 異動紀錄與筆記在同一個交易中寫入，任何執行個體的新增、更新、刪除提交後世代都會改變，
+ * 不同執行個體對同一份資料算出相同的世代，重新啟動後也不會改變。
+ * 快取鍵與 ETag 帶上查詢當下的世代，寫入後世代改變，舊的快取項目自然不再被使用，
+ * 一個使用者的寫入只影響自己的快取。
+ *
+ * 世代不小於已清除的刪除紀錄位置：最新一筆異動是刪除紀錄且被清除時，世代不會退回更早的值。
+ *
+ * 自動遞增的 ID 依寫入順序配發，但交易不一定依同樣順序提交，其他執行個體的異動也要經過
+ * app.search.change-poll-interval 才會反映在搜尋索引中。最新一筆異動寫入後還沒超過
+ * settle-time 加上此間隔時，世代標示為尚未穩定，查詢結果不快取、也不產生 ETag。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class NoteGenerationTracker {
+    /**
+     * 世代
+     *
+     * @param value 世代值
+     * @param settled 是否已穩定 (之前的異動都已提交並反映在搜尋索引中)，尚未穩定時查詢結果不可快取
+     */
+    public record Generation(long value, boolean settled) {
+    }
+
+    private final NoteChangeRepository noteChangeRepository;
+    private final NoteChangeLogService noteChangeLogService;
+    private final Duration unsettledTime;
+
+    public NoteGenerationTracker(NoteChangeRepository noteChangeRepository, NoteChangeLogService noteChangeLogService,
+                                 @Value("${app.note-changes.settle-time:PT2S}") Duration settleTime,
+                                 @Value("${app.search.change-poll-interval:PT5S}") Duration changePollInterval) {
+        this.noteChangeRepository = noteChangeRepository;
+        this.noteChangeLogService = noteChangeLogService;
+        this.unsettledTime = settleTime.plus(changePollInterval);
+    }
+
+    /**
+     * 取得目前的世代
+     *
+     * @param userEmail 使用者信箱；null 表示所有使用者 (管理員)
+     * @return 世代
+     */
+    public Generation current(String userEmail) {
+        Optional<NoteChange> latest = userEmail == null
+                ? noteChangeRepository.findFirstByOrderByIdDesc()
+                : noteChangeRepository.findFirstByUserEmailOrderByIdDesc(userEmail);
+        long value = Math.max(latest.map(NoteChange::getId).orElse(0L), noteChangeLogService.getPurgedThrough());
+        boolean settled = latest
+                .map(change -> change.getChangedAt().isBefore(LocalDateTime.now().minus(unsettledTime)))
+                .orElse(true);
+        return new Generation(value, settled);
+    }
+}
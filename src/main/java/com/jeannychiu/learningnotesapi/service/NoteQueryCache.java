@@ -0,0 +1,124 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.jeannychiu.learningnotesapi.dto.QueryCacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 筆記列表與搜尋的查詢結果快取
+ *
+ * 以 (使用者、關鍵字、標籤、頁碼、每頁筆數、世代) 為鍵，只快取該頁的筆記 IDs 與總筆數，
+ * 筆記內容仍每次從資料庫載入。世代由 {@link NoteGenerationTracker} 提供，
+ * 使用者寫入筆記 (不論在哪個執行個體) 後世代改變，舊項目不再命中，之後由 Caffeine 的 W-TinyLFU 淘汰。
+ * 世代尚未穩定時直接查詢，不讀取也不寫入快取。
+ *
+ * 容量以估算的記憶體用量 (bytes) 限制。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class NoteQueryCache {
+    // 快取項目的固定開銷與每個 ID 的估算大小 (bytes)
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+    private static final int BYTES_PER_ID = 24;
+
+    private record QueryKey(String userEmail, String search, String tag, int page, int size, long generation) {
+    }
+
+    private record CachedIds(List<Long> ids, long total) {
+    }
+
+    private final NoteGenerationTracker generationTracker;
+    private final Cache<QueryKey, CachedIds> cache;
+    private final long maxBytes;
+
+    public NoteQueryCache(NoteGenerationTracker generationTracker,
+                          @Value("${app.note-query-cache.max-bytes:33554432}") long maxBytes,
+                          @Value("${app.note-query-cache.expire-after-write:PT10M}") Duration expireAfterWrite) {
+        this.generationTracker = generationTracker;
+        this.maxBytes = maxBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(NoteQueryCache::estimateBytes)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 取得快取的查詢結果，沒有時以 loader 查詢並放入快取
+     *
+     * 世代在查詢前取得：查詢期間若有寫入，結果會存在舊世代的鍵下，不會被之後的請求使用。
+     * 世代尚未穩定時 (見 {@link NoteGenerationTracker.Generation#settled()}) 直接以 loader 查詢。
+     *
+     * @param userEmail 使用者信箱；null 表示所有使用者 (管理員)
+     * @param search 搜尋關鍵字 (選填)
+     * @param tag 標籤條件 (選填)
+     * @param pageable 分頁參數
+     * @param loader 查詢筆記 IDs 的方式
+     * @return 筆記ID分頁結果
+     */
+    public Page<Long> get(String userEmail, String search, String tag, Pageable pageable,
+                          Supplier<Page<Long>> loader) {
+        NoteGenerationTracker.Generation generation = generationTracker.current(userEmail);
+        if (!generation.settled()) {
+            return loader.get();
+        }
+        QueryKey key = new QueryKey(userEmail, search, tag, pageable.getPageNumber(), pageable.getPageSize(),
+                generation.value());
+        CachedIds cached = cache.get(key, k -> {
+            Page<Long> idsPage = loader.get();
+            return new CachedIds(List.copyOf(idsPage.getContent()), idsPage.getTotalElements());
+        });
+        return new PageImpl<>(cached.ids(), pageable, cached.total());
+    }
+
+    /**
+     * 清除所有快取項目
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 取得命中率與記憶體用量統計
+     *
+     * @return 快取統計
+     */
+    public QueryCacheStats getStats() {
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+
+        QueryCacheStats result = new QueryCacheStats();
+        result.setHitCount(stats.hitCount());
+        result.setMissCount(stats.missCount());
+        result.setHitRate(stats.hitRate());
+        result.setEvictionCount(stats.evictionCount());
+        result.setEntryCount(cache.estimatedSize());
+        result.setEstimatedBytes(cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        result.setMaxBytes(maxBytes);
+        return result;
+    }
+
+    private static int estimateBytes(QueryKey key, CachedIds value) {
+        long bytes = ENTRY_OVERHEAD_BYTES
+                + 2L * (length(key.userEmail()) + length(key.search()) + length(key.tag()))
+                + (long) BYTES_PER_ID * value.ids().size();
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,172 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.NoteRevisionResponse;
+import com.jeannychiu.learningnotesapi.dto.NoteRevisionSummary;
+import com.jeannychiu.learningnotesapi.exception.NoteNotFoundException;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteRevision;
+import com.jeannychiu.learningnotesapi.model.Tag;
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteRevisionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 筆記修訂紀錄服務
+ *
+ * 筆記新增與每次更新都寫入一筆修訂紀錄 (與筆記在同一個交易中)。內容只存與前一版的差異，
+ * 儲存量與編輯的大小成正比，而不是筆記大小乘以編輯次數。
+ *
+ * 以下情況改存完整內容 (snapshot)：
+ * - 筆記的第一筆紀錄，或前一版沒有修訂紀錄 (例如功能上線前建立的筆記)
+ * - 距離上一個 snapshot 已達 snapshot-interval 個版本，重建任一版本最多套用這麼多次差異
+ * - 差異不比完整內容小 (例如整篇改寫)
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Service
+public class NoteRevisionService {
+    private static final String TAG_SEPARATOR = "\n";
+
+    private final NoteRevisionRepository revisionRepository;
+    private final NoteRepository noteRepository;
+    private final int snapshotInterval;
+
+    public NoteRevisionService(NoteRevisionRepository revisionRepository,
+                               NoteRepository noteRepository,
+                               @Value("${app.note-revisions.snapshot-interval:20}") int snapshotInterval) {
+        this.revisionRepository = revisionRepository;
+        this.noteRepository = noteRepository;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * 寫入筆記目前版本的修訂紀錄
+     *
+     * @param note 已儲存的筆記 (版本號為更新後的版本)
+     * @param editorEmail 編輯者信箱
+     * @param previousVersion 更新前的版本號；新增筆記時為 null
+     * @param previousContent 更新前的內容
+     */
+    public void recordRevision(Note note, String editorEmail, Integer previousVersion, String previousContent) {
+        NoteRevision revision = new NoteRevision();
+        revision.setNoteId(note.getId());
+        revision.setVersion(note.getVersion());
+        revision.setTitle(note.getTitle());
+        revision.setTagNames(joinTagNames(note));
+        revision.setEditorEmail(editorEmail);
+        revision.setCreatedAt(LocalDateTime.now());
+
+        NoteRevision previous = previousVersion == null ? null
+                : revisionRepository.findTopByNoteIdOrderByVersionDesc(note.getId())
+                        .filter(latest -> latest.getVersion().equals(previousVersion))
+                        .orElse(null);
+        String content = note.getContent();
+
+        String delta = null;
+        if (previous != null && previousContent != null && content != null
+                && note.getVersion() - previous.getBaseVersion() < snapshotInterval) {
+            delta = TextDelta.diff(previousContent, content);
+            if (delta.length() >= content.length()) {
+                delta = null;
+            }
+        }
+
+        if (delta != null) {
+            revision.setBaseVersion(previous.getBaseVersion());
+            revision.setContentData(delta);
+        } else {
+            revision.setBaseVersion(note.getVersion());
+            revision.setContentData(content);
+        }
+        revisionRepository.save(revision);
+    }
+
+    /**
+     * 刪除筆記的所有修訂紀錄
+     *
+     * @param noteId 筆記 ID
+     */
+    public void deleteRevisions(Long noteId) {
+        revisionRepository.deleteByNoteId(noteId);
+    }
+
+    /**
+     * 查詢筆記的修訂紀錄，新版本在前
+     *
+     * @param noteId 筆記 ID
+     * @param pageable 分頁參數
+     * @param userEmail 使用者信箱
+     * @param isAdmin 是否為管理員
+     * @return 修訂紀錄摘要分頁結果
+     */
+    public Page<NoteRevisionSummary> getRevisions(Long noteId, Pageable pageable, String userEmail, boolean isAdmin) {
+        checkPermission(noteId, userEmail, isAdmin);
+        return revisionRepository.findSummariesByNoteId(noteId, pageable);
+    }
+
+    /**
+     * 重建筆記在指定版本的內容
+     *
+     * 從該版本所依據的 snapshot 依序套用差異，最多套用 snapshot-interval 次。
+     *
+     * @param noteId 筆記 ID
+     * @param version 版本號
+     * @param userEmail 使用者信箱
+     * @param isAdmin 是否為管理員
+     * @return 該版本的完整內容
+     */
+    public NoteRevisionResponse getRevision(Long noteId, Integer version, String userEmail, boolean isAdmin) {
+        checkPermission(noteId, userEmail, isAdmin);
+        NoteRevision target = revisionRepository.findByNoteIdAndVersion(noteId, version)
+                .orElseThrow(() -> new NoteNotFoundException("找不到 ID 為 " + noteId + " 的筆記的第 " + version + " 版"));
+
+        List<NoteRevision> chain = revisionRepository.findByNoteIdAndVersionBetweenOrderByVersion(
+                noteId, target.getBaseVersion(), version);
+        String content = chain.get(0).getContentData();
+        for (NoteRevision revision : chain.subList(1, chain.size())) {
+            content = TextDelta.apply(content, revision.getContentData());
+        }
+
+        NoteRevisionResponse response = new NoteRevisionResponse();
+        response.setNoteId(noteId);
+        response.setVersion(version);
+        response.setTitle(target.getTitle());
+        response.setContent(content);
+        response.setTagNames(target.getTagNames() == null || target.getTagNames().isEmpty()
+                ? List.of()
+                : Arrays.asList(target.getTagNames().split(TAG_SEPARATOR)));
+        response.setEditorEmail(target.getEditorEmail());
+        response.setCreatedAt(target.getCreatedAt());
+        return response;
+    }
+
+    // 與查看筆記相同：筆記不存在回應 404，不是擁有者回應 403
+    private void checkPermission(Long noteId, String userEmail, boolean isAdmin) {
+        if (!noteRepository.existsById(noteId)) {
+            throw new NoteNotFoundException("找不到 ID 為 " + noteId + " 的筆記");
+        }
+        if (!isAdmin && !noteRepository.existsByIdAndUserEmail(noteId, userEmail)) {
+            throw new AccessDeniedException("您沒有權限查看此筆記");
+        }
+    }
+
+    private static String joinTagNames(Note note) {
+        if (note.getTags() == null || note.getTags().isEmpty()) {
+            return null;
+        }
+        return note.getTags().stream()
+                .map(Tag::getName)
+                .sorted()
+                .collect(Collectors.joining(TAG_SEPARATOR));
+    }
+}
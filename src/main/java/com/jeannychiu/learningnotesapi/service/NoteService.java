@@ -1,20 +1,41 @@
 package com.jeannychiu.learningnotesapi.service;
 
 import com.jeannychiu.learningnotesapi.dto.CreateNoteRequest;
+import com.jeannychiu.learningnotesapi.dto.NoteBatchItem;
+import com.jeannychiu.learningnotesapi.dto.NoteBatchResponse;
+import com.jeannychiu.learningnotesapi.dto.NoteSearchHit;
+import com.jeannychiu.learningnotesapi.dto.NoteSummary;
 import com.jeannychiu.learningnotesapi.dto.SearchSuggestionsResponse;
 import com.jeannychiu.learningnotesapi.dto.SuggestionItem;
 import com.jeannychiu.learningnotesapi.dto.UpdateNoteRequest;
+import com.jeannychiu.learningnotesapi.event.NoteChangedEvent;
 import com.jeannychiu.learningnotesapi.exception.NoteNotFoundException;
 import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteBody;
 import com.jeannychiu.learningnotesapi.model.Tag;
+import com.jeannychiu.learningnotesapi.repository.NoteBodyRepository;
 import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import com.jeannychiu.learningnotesapi.search.NoteSearchBackend;
+import com.jeannychiu.learningnotesapi.search.NoteSearchIndex;
+import com.jeannychiu.learningnotesapi.search.TagFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.*;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 
 import org.springframework.stereotype.Service;
@@ -33,28 +54,103 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Service
 public class NoteService {
+    /**
+     * 新增筆記的結果：新增的筆記，或重複時的既有筆記
+     */
+    public record CreateResult(Note note, NoteBatchItem.Status status) {
+    }
+
+    private record NoteReadKey(Long id, long generation) {
+    }
+
+    private record SearchKey(String scope, String keyword, int page, int size, long generation) {
+    }
+
     private final NoteRepository noteRepository;
+    private final NoteBodyRepository noteBodyRepository;
     private final TagService tagService;
-
-    public NoteService(NoteRepository noteRepository, TagService tagService) {
+    private final NoteSearchBackend searchBackend;
+    private final NoteSearchIndex searchIndex;
+    private final NoteQueryCache queryCache;
+    private final NoteGenerationTracker generationTracker;
+    private final NoteRevisionService revisionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int inlineContentLimit;
+    private final boolean adminSearchUsesIndex;
+    private final SingleFlight<NoteReadKey, Note> noteReads;
+    private final SingleFlight<SearchKey, Page<Note>> searches;
+
+    public NoteService(NoteRepository noteRepository, NoteBodyRepository noteBodyRepository, TagService tagService,
+                       NoteSearchBackend searchBackend, NoteSearchIndex searchIndex, NoteQueryCache queryCache,
+                       NoteGenerationTracker generationTracker, NoteRevisionService revisionService,
+                       ApplicationEventPublisher eventPublisher,
+                       @Value("${app.note-body.inline-limit:500}") int inlineContentLimit,
+                       @Value("${app.single-flight.timeout:PT5S}") Duration singleFlightTimeout,
+                       @Value("${app.search.admin-mode:database}") String adminSearchMode) {
         this.noteRepository = noteRepository;
+        this.noteBodyRepository = noteBodyRepository;
         this.tagService = tagService;
+        this.searchBackend = searchBackend;
+        this.searchIndex = searchIndex;
+        this.queryCache = queryCache;
+        this.generationTracker = generationTracker;
+        this.revisionService = revisionService;
+        this.eventPublisher = eventPublisher;
+        this.inlineContentLimit = inlineContentLimit;
+        this.adminSearchUsesIndex = "index".equalsIgnoreCase(adminSearchMode);
+        this.noteReads = new SingleFlight<>(singleFlightTimeout);
+        this.searches = new SingleFlight<>(singleFlightTimeout);
     }
 
     /**
      * 創建筆記
      *
      * 設置當前使用者為筆記擁有者，並自動設定建立和更新時間。
+     * 超過 app.note-body.inline-limit 的內容另外存放在 note_body。
      *
      * @param createNoteRequest 要創建的筆記請求物件
      * @param userEmail 使用者信箱
      * @return 創建成功的筆記
      */
+    @Transactional
     public Note createNote(CreateNoteRequest createNoteRequest, String userEmail) {
+        return createNote(createNoteRequest, userEmail, DuplicateNotePolicy.ALLOW).note();
+    }
+
+    /**
+     * 創建筆記，並依 policy 處理重複的筆記
+     *
+     * 以標題與內容的指紋 (見 {@link NoteFingerprint}) 查詢使用者是否已有相同的筆記，
+     * 指紋相同的筆記再比對內容雜湊或正規化後的原文確認，指紋碰撞時仍照常新增：
+     * - ALLOW：不檢查，照常新增
+     * - SKIP：已有相同的筆記時不新增，回傳既有筆記
+     * - MERGE：同 SKIP，但請求中有既有筆記沒有的標籤時，把標籤加到既有筆記 (視為一次更新)
+     *
+     * SKIP 與 MERGE 查詢前先鎖定使用者在 note_create_lock 的資料列 (至交易結束)，
+     * 同一使用者並行新增相同的筆記時依序執行，不會各自查不到重複而新增兩筆。
+     *
+     * @param createNoteRequest 要創建的筆記請求物件
+     * @param userEmail 使用者信箱
+     * @param policy 重複筆記的處理方式
+     * @return 新增的筆記或既有的筆記，以及處理結果
+     */
+    @Transactional
+    public CreateResult createNote(CreateNoteRequest createNoteRequest, String userEmail, DuplicateNotePolicy policy) {
+        long fingerprint = NoteFingerprint.of(createNoteRequest.getTitle(), createNoteRequest.getContent());
+        if (policy != DuplicateNotePolicy.ALLOW) {
+            noteRepository.lockNoteCreate(userEmail);
+            for (Note candidate : noteRepository.findByUserEmailAndFingerprintOrderByIdAsc(userEmail, fingerprint)) {
+                if (isSameNote(candidate, createNoteRequest.getTitle(), createNoteRequest.getContent())) {
+                    return reuseDuplicate(candidate, createNoteRequest.getTagNames(), userEmail, policy);
+                }
+            }
+        }
+
         // 建立 Note 物件
         Note note = new Note();
         note.setTitle(createNoteRequest.getTitle());
-        note.setContent(createNoteRequest.getContent());
+        applyContent(note, createNoteRequest.getContent());
+        note.setFingerprint(fingerprint);
         note.setUserEmail(userEmail);
 
         // 處理標籤
@@ -68,7 +164,81 @@ public class NoteService {
         note.setUpdatedAt(now);
 
         // 保存並返回
-        return noteRepository.save(note);
+        Note savedNote = noteRepository.save(note);
+        saveBody(savedNote, false);
+        revisionService.recordRevision(savedNote, userEmail, null, null);
+        eventPublisher.publishEvent(new NoteChangedEvent(NoteChangedEvent.Type.CREATED, savedNote));
+
+        return new CreateResult(savedNote, NoteBatchItem.Status.CREATED);
+    }
+
+    /**
+     * 批次創建筆記 (匯入)
+     *
+     * 在同一個交易中依序新增，任一筆失敗時全部不新增。重複筆記的處理方式同
+     * {@link #createNote(CreateNoteRequest, String, DuplicateNotePolicy)}，
+     * 同一批中重複的筆記也會被偵測。
+     *
+     * @param createNoteRequests 要創建的筆記請求物件
+     * @param userEmail 使用者信箱
+     * @param policy 重複筆記的處理方式
+     * @return 每筆的處理結果
+     */
+    @Transactional
+    public NoteBatchResponse createNotes(List<CreateNoteRequest> createNoteRequests, String userEmail,
+                                         DuplicateNotePolicy policy) {
+        NoteBatchResponse response = new NoteBatchResponse();
+        for (int i = 0; i < createNoteRequests.size(); i++) {
+            CreateResult result = createNote(createNoteRequests.get(i), userEmail, policy);
+            response.getItems().add(new NoteBatchItem(i, result.status(), result.note().getId(),
+                    result.note().getVersion()));
+            switch (result.status()) {
+                case CREATED -> response.setCreated(response.getCreated() + 1);
+                case SKIPPED -> response.setSkipped(response.getSkipped() + 1);
+                case MERGED -> response.setMerged(response.getMerged() + 1);
+            }
+        }
+        return response;
+    }
+
+    // 指紋相同的筆記是否真的相同：內容雜湊相同 (原文一致) 即可確認，否則載入內容比對正規化後的原文
+    private boolean isSameNote(Note candidate, String title, String content) {
+        if (!NoteFingerprint.normalize(candidate.getTitle()).equals(NoteFingerprint.normalize(title))) {
+            return false;
+        }
+        String contentHash = NoteTextStats.contentHash(content);
+        if (contentHash != null && contentHash.equals(candidate.getContentHash())) {
+            return true;
+        }
+        loadContent(candidate);
+        return NoteFingerprint.normalize(candidate.getContent()).equals(NoteFingerprint.normalize(content));
+    }
+
+    // 重複的筆記不新增；MERGE 且有新的標籤時，把標籤加到既有筆記
+    private CreateResult reuseDuplicate(Note existing, Set<String> tagNames, String userEmail,
+                                        DuplicateNotePolicy policy) {
+        loadContent(existing);
+        if (policy == DuplicateNotePolicy.MERGE && tagNames != null) {
+            Set<String> mergedTagNames = new LinkedHashSet<>();
+            existing.getTags().forEach(tag -> mergedTagNames.add(tag.getName()));
+            boolean changed = false;
+            for (String tagName : tagNames) {
+                if (tagName != null && !tagName.trim().isEmpty()) {
+                    changed |= mergedTagNames.add(tagName.trim());
+                }
+            }
+
+            if (changed) {
+                UpdateNoteRequest update = new UpdateNoteRequest();
+                update.setTitle(existing.getTitle());
+                update.setContent(existing.getContent());
+                update.setVersion(existing.getVersion());
+                update.setTagNames(mergedTagNames);
+                return new CreateResult(updateNote(existing.getId(), update, userEmail, false),
+                        NoteBatchItem.Status.MERGED);
+            }
+        }
+        return new CreateResult(existing, NoteBatchItem.Status.SKIPPED);
     }
 
     /**
@@ -97,23 +267,74 @@ public class NoteService {
     /**
      * 根據筆記 ID 查看筆記
      *
+     * 內容存放在 note_body 時在此載入。
+     * 同一篇筆記的並行查看合併為一次查詢 (見 {@link SingleFlight})，
+     * 以全域世代區分，筆記異動提交後開始的查看不會拿到異動前的結果；權限由每個呼叫者各自檢查。
+     * 共用的結果是不受任何 persistence context 管理的複本 (見 {@link Note#detachedCopy()})。
+     *
      * @param id 筆記 ID
      * @param userEmail 使用者信箱
      * @param isAdmin 是否為管理員
-     * @return 查看的筆記
+     * @return 查看的筆記 (可能與其他請求共用，不可修改)
      */
     public Note readNoteById(Long id, String userEmail, boolean isAdmin) {
         // 先檢查筆記是否存在
-        Note note = findNoteById(id);
-        
-        // 檢查權限
-        if (!hasNotePermission(id, userEmail, isAdmin)) { 
+        Note note = noteReads.execute(new NoteReadKey(id, generationTracker.current(null).value()),
+                () -> loadNote(id).detachedCopy());
+
+        // 檢查權限 (沒有擁有者的筆記只有管理員可以查看)
+        if (!isAdmin && !Objects.equals(note.getUserEmail(), userEmail)) {
             throw new AccessDeniedException("您沒有權限查看此筆記");
         }
-        
         return note;
     }
 
+    /**
+     * 取得筆記目前的版本號，只查詢版本欄位，不載入筆記內容
+     *
+     * 筆記不存在或沒有權限時回傳 null，由呼叫端改走一般的查看流程回應對應的錯誤。
+     *
+     * @param id 筆記 ID
+     * @param userEmail 使用者信箱
+     * @param isAdmin 是否為管理員
+     * @return 版本號；筆記不存在或沒有權限時為 null
+     */
+    public Integer findNoteVersion(Long id, String userEmail, boolean isAdmin) {
+        Optional<Integer> version = isAdmin
+                ? noteRepository.findVersionById(id)
+                : noteRepository.findVersionByIdAndUserEmail(id, userEmail);
+        return version.orElse(null);
+    }
+
+    /**
+     * 計算筆記列表的 ETag
+     *
+     * 由使用者的異動世代與查詢條件組成：世代取自資料庫的異動紀錄 (見 {@link NoteGenerationTracker})，
+     * 在使用者的筆記有任何新增、更新、刪除後改變，各執行個體算出的 ETag 相同。
+     * 同一組條件在世代不變時回傳的內容相同，因此不需查詢筆記即可判斷是否有變更。
+     * 管理員使用所有使用者共用的世代；世代尚未穩定時不產生 ETag。
+     *
+     * @param pageable 分頁參數
+     * @param userEmail 使用者信箱
+     * @param isAdmin 是否為管理員
+     * @param view 列表種類，例如 list、relevance
+     * @param tag 標籤條件 (選填)
+     * @param search 搜尋關鍵字 (選填)
+     * @return 強 ETag (含雙引號)；世代尚未穩定時回傳 null
+     */
+    public String getNotesETag(Pageable pageable, String userEmail, boolean isAdmin,
+                               String view, String tag, String search) {
+        String scope = isAdmin ? null : userEmail;
+        NoteGenerationTracker.Generation generation = generationTracker.current(scope);
+        if (!generation.settled()) {
+            return null;
+        }
+        String criteria = String.join("\n", String.valueOf(scope), view,
+                String.valueOf(pageable.getPageNumber()), String.valueOf(pageable.getPageSize()),
+                tag == null ? "" : tag.trim(), search == null ? "" : search.trim());
+        return "\"" + generation.value() + "-" + DigestUtils.md5DigestAsHex(criteria.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
     /**
      * 查看所有筆記
      *
@@ -133,23 +354,18 @@ public class NoteService {
                 Sort.by(Sort.Direction.DESC, "updatedAt")
         );
 
-        if (isAdmin) {
-            // 管理員可以查看所有筆記
-            Page<Long> idsPage = noteRepository.findAllNoteIds(sortedPageable);
+        // 管理員可以查看所有筆記，一般使用者只能查看自己的筆記
+        Page<Long> idsPage = findAllIds(isAdmin ? null : userEmail, sortedPageable);
 
-            return convertIdsPageToNotesPage(idsPage, sortedPageable);
-        } else {
-            // 一般使用者只能查看自己的筆記
-            Page<Long> idsPage = noteRepository.findAllNoteIdsByUserEmail(userEmail, sortedPageable);
-
-            return convertIdsPageToNotesPage(idsPage, sortedPageable);
-        }
+        return convertIdsPageToNotesPage(idsPage, sortedPageable);
     }
 
     /**
      * 搜尋筆記
      *
-     * 依據關鍵字查詢筆記
+     * 依據關鍵字查詢筆記，查詢方式與排序依 app.search.mode 而定。
+     * 沒有結果時會修正拼錯的詞再查詢一次。
+     * 相同範圍、條件與世代的並行搜尋合併為一次查詢 (見 {@link SingleFlight})。
      *
      *  - 一般使用者只能搜尋自己的筆記
      *  - 管理員可搜尋所有筆記
@@ -158,9 +374,17 @@ public class NoteService {
      * @param userEmail 使用者信箱
      * @param isAdmin 是否為管理員
      * @param keyword 關鍵字
-     * @return 分頁的筆記列表
+     * @return 分頁的筆記列表 (可能與其他請求共用，不可修改)
      */
     public Page<Note> searchNotes(Pageable pageable, String userEmail, boolean isAdmin, String keyword) {
+        // 搜尋範圍由呼叫者的身分決定，不同範圍不會共用結果
+        String scope = isAdmin ? null : userEmail;
+        SearchKey key = new SearchKey(scope, keyword, pageable.getPageNumber(), pageable.getPageSize(),
+                generationTracker.current(scope).value());
+        return searches.execute(key, () -> loadSearchResults(pageable, userEmail, isAdmin, keyword));
+    }
+
+    private Page<Note> loadSearchResults(Pageable pageable, String userEmail, boolean isAdmin, String keyword) {
         // 分頁的筆記列表以更新時間最新排序
         Pageable sortedPageable = PageRequest.of(
                 pageable.getPageNumber(),
@@ -172,29 +396,24 @@ public class NoteService {
             return getAllNotes(sortedPageable, userEmail, isAdmin);
         }
         
-        if (isAdmin) {
-            // 管理員可以搜尋所有筆記
-            Page<Long> idsPage = noteRepository.findByKeyword(keyword, sortedPageable);
+        // 管理員可以搜尋所有筆記，一般使用者只能搜尋自己的筆記
+        Page<Long> idsPage = findIdsByKeyword(isAdmin ? null : userEmail, keyword, sortedPageable);
 
-            return convertIdsPageToNotesPage(idsPage, sortedPageable);
-        } else {
-            // 一般使用者只能搜尋自己的筆記
-            Page<Long> idsPage = noteRepository.findByUserEmailAndKeyword(userEmail, keyword, sortedPageable);
-
-            return convertIdsPageToNotesPage(idsPage, sortedPageable);
-        }
+        return convertIdsPageToNotesPage(idsPage, sortedPageable);
     }
 
     /**
      * 根據標籤搜尋筆記
      *
+     * 支援多標籤條件 (語法見 {@link TagFilter})，在資料庫中比對並分頁，標籤名稱依資料庫的定序比對。
+     *
      * - 一般使用者只能搜尋自己的筆記
      * - 管理員可搜尋所有筆記
      *
      * @param pageable 分頁參數
      * @param userEmail 使用者信箱
      * @param isAdmin 是否為管理員
-     * @param tagName 標籤名稱
+     * @param tagName 標籤條件
      * @return 分頁的筆記列表
      */
     public Page<Note> searchNotesByTag(Pageable pageable, String userEmail, boolean isAdmin, String tagName) {
@@ -209,29 +428,24 @@ public class NoteService {
             return Page.empty(sortedPageable);
         }
 
-        if (isAdmin) {
-            // 管理員可以搜尋所有筆記
-            Page<Long> idsPage = noteRepository.findByTagName(tagName.trim(), sortedPageable);
-
-            return convertIdsPageToNotesPage(idsPage, sortedPageable);
-        } else {
-            // 一般使用者只能搜尋自己的筆記
-            Page<Long> idsPage = noteRepository.findByUserEmailAndTagName(userEmail, tagName.trim(), sortedPageable);
+        // 管理員可以搜尋所有筆記，一般使用者只能搜尋自己的筆記
+        Page<Long> idsPage = findIdsByTag(isAdmin ? null : userEmail, tagName, sortedPageable);
 
-            return convertIdsPageToNotesPage(idsPage, sortedPageable);
-        }
+        return convertIdsPageToNotesPage(idsPage, sortedPageable);
     }
 
     /**
      * 根據標籤名稱和關鍵字搜尋筆記
      *
+     * 標籤條件與關鍵字一起在資料庫中比對並分頁，不需載入所有符合關鍵字的筆記。
+     *
      * - 一般使用者只能搜尋自己的筆記
      * - 管理員可搜尋所有筆記
      *
      * @param pageable 分頁參數
      * @param userEmail 使用者信箱
      * @param isAdmin 是否為管理員
-     * @param tagName 標籤名稱
+     * @param tagName 標籤條件
      * @param keyword 關鍵字
      * @return 分頁的筆記列表
      */
@@ -249,17 +463,254 @@ public class NoteService {
             return Page.empty(sortedPageable);
         }
 
-        if (isAdmin) {
-            // 管理員可以搜尋所有筆記
-            Page<Long> idsPage = noteRepository.findByTagNameAndKeyword(tagName.trim(), keyword.trim(), sortedPageable);
+        // 管理員可以搜尋所有筆記，一般使用者只能搜尋自己的筆記
+        Page<Long> idsPage = findIdsByTagAndKeyword(isAdmin ? null : userEmail, tagName, keyword, sortedPageable);
 
-            return convertIdsPageToNotesPage(idsPage, sortedPageable);
+        return convertIdsPageToNotesPage(idsPage, sortedPageable);
+    }
+
+    /**
+     * 取得筆記摘要列表 (view=summary)
+     *
+     * 篩選條件與排序同 GET /notes，但只查詢標題、摘要、字數、內容雜湊與標籤名稱，
+     * 不載入筆記內容與標籤物件。
+     *
+     * - 一般使用者只能查看自己的筆記
+     * - 管理員可查看所有筆記
+     *
+     * @param pageable 分頁參數
+     * @param userEmail 使用者信箱
+     * @param isAdmin 是否為管理員
+     * @param tagName 標籤條件 (選填)
+     * @param keyword 關鍵字 (選填)
+     * @return 分頁的筆記摘要列表
+     */
+    public Page<NoteSummary> getNoteSummaries(Pageable pageable, String userEmail, boolean isAdmin,
+                                              String tagName, String keyword) {
+        // 分頁的筆記列表以更新時間最新排序
+        Pageable sortedPageable = PageRequest.of(
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                Sort.by(Sort.Direction.DESC, "updatedAt")
+        );
+
+        String scope = isAdmin ? null : userEmail;
+        boolean hasTag = tagName != null && !tagName.trim().isEmpty();
+        boolean hasKeyword = keyword != null && !keyword.trim().isEmpty();
+
+        Page<Long> idsPage;
+        if (hasTag && hasKeyword) {
+            idsPage = findIdsByTagAndKeyword(scope, tagName, keyword, sortedPageable);
+        } else if (hasTag) {
+            idsPage = findIdsByTag(scope, tagName, sortedPageable);
+        } else if (hasKeyword) {
+            idsPage = findIdsByKeyword(scope, keyword, sortedPageable);
         } else {
-            // 一般使用者只能搜尋自己的筆記
-            Page<Long> idsPage = noteRepository.findByUserEmailAndTagNameAndKeyword(userEmail, tagName.trim(), keyword.trim(), sortedPageable);
+            idsPage = findAllIds(scope, sortedPageable);
+        }
+        if (idsPage.isEmpty()) {
+            return Page.empty(sortedPageable);
+        }
 
-            return convertIdsPageToNotesPage(idsPage, sortedPageable);
+        List<Long> ids = idsPage.getContent();
+        Map<Long, NoteSummary> summaries = new HashMap<>();
+        for (NoteSummary summary : noteRepository.findSummariesByIds(ids)) {
+            summaries.put(summary.getId(), summary);
+        }
+        for (Object[] row : noteRepository.findTagNamesByNoteIds(ids)) {
+            NoteSummary summary = summaries.get((Long) row[0]);
+            if (summary != null) {
+                summary.getTagNames().add((String) row[1]);
+            }
         }
+
+        // 依 IDs 的順序排列
+        List<NoteSummary> ordered = new ArrayList<>();
+        for (Long id : ids) {
+            NoteSummary summary = summaries.get(id);
+            if (summary != null) {
+                summary.getTagNames().sort(Comparator.naturalOrder());
+                ordered.add(summary);
+            }
+        }
+        return new PageImpl<>(ordered, sortedPageable, idsPage.getTotalElements());
+    }
+
+    // scope 為 null 表示所有使用者 (管理員)
+    private Page<Long> findAllIds(String scope, Pageable pageable) {
+        return queryCache.get(scope, null, null, pageable, () -> scope == null
+                ? noteRepository.findAllNoteIds(pageable)
+                : noteRepository.findAllNoteIdsByUserEmail(scope, pageable));
+    }
+
+    private Page<Long> findIdsByKeyword(String scope, String keyword, Pageable pageable) {
+        return queryCache.get(scope, keyword, null, pageable,
+                () -> searchIdsWithCorrection(scope, null, keyword, pageable));
+    }
+
+    // 標籤條件在資料庫中比對 (單一標籤以 JPQL，多標籤見 NoteSearchBackend#searchIdsByTags)；
+    // 管理員在 app.search.admin-mode=index 時改用搜尋索引的標籤點陣圖
+    private Page<Long> findIdsByTag(String scope, String tagName, Pageable pageable) {
+        return queryCache.get(scope, null, tagName.trim(), pageable, () -> {
+            TagFilter tagFilter = TagFilter.parse(tagName);
+            if (usesIndexSearch(scope)) {
+                return searchIndex.findIdsByTags(scope, tagFilter, pageable);
+            }
+            String tag = tagFilter.singleTag();
+            if (tag == null) {
+                return searchBackend.searchIdsByTags(scope, tagFilter, null, pageable);
+            }
+            return scope == null
+                    ? noteRepository.findByTagName(tag, pageable)
+                    : noteRepository.findByUserEmailAndTagName(scope, tag, pageable);
+        });
+    }
+
+    private Page<Long> findIdsByTagAndKeyword(String scope, String tagName, String keyword, Pageable pageable) {
+        return queryCache.get(scope, keyword.trim(), tagName.trim(), pageable,
+                () -> searchIdsByTagAndKeyword(scope, tagName, keyword.trim(), pageable));
+    }
+
+    /**
+     * 依相關度搜尋筆記
+     *
+     * 以記憶體中的搜尋索引計算 BM25 分數 (標題命中加權)，並附上命中文字的位置。
+     * 沒有結果時會修正拼錯的詞再查詢一次。
+     *
+     * - 一般使用者只能搜尋自己的筆記
+     * - 管理員可搜尋所有筆記
+     *
+     * @param pageable 分頁參數
+     * @param userEmail 使用者信箱
+     * @param isAdmin 是否為管理員
+     * @param tagName 標籤名稱 (選填)
+     * @param keyword 關鍵字
+     * @return 依分數由高到低排序的分頁搜尋結果
+     */
+    public Page<NoteSearchHit> searchNotesByRelevance(Pageable pageable, String userEmail, boolean isAdmin,
+                                                      String tagName, String keyword) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        TagFilter tag = (tagName == null || tagName.trim().isEmpty()) ? null : TagFilter.parse(tagName);
+        String scope = isAdmin ? null : userEmail;
+        if (!searchIndex.isReady()) {
+            return searchHitsInDatabase(scope, tag, keyword, pageable);
+        }
+        NoteSearchIndex.Result result = searchIndex.search(scope, tag, keyword,
+                (int) pageable.getOffset(), pageable.getPageSize());
+        if (result.totalHits() == 0) {
+            String corrected = searchIndex.correctKeyword(scope, keyword);
+            if (corrected != null) {
+                result = searchIndex.search(scope, tag, corrected, (int) pageable.getOffset(), pageable.getPageSize());
+            }
+        }
+        if (result.hits().isEmpty()) {
+            return new PageImpl<>(new ArrayList<>(), pageable, result.totalHits());
+        }
+
+        // 批量載入完整的筆記資料 (包含 tags)
+        List<Long> ids = result.hits().stream().map(NoteSearchIndex.Hit::noteId).toList();
+        Map<Long, Note> notes = new HashMap<>();
+        for (Note note : noteRepository.findNotesWithTagsByIds(ids)) {
+            notes.put(note.getId(), note);
+        }
+
+        List<NoteSearchHit> hits = new ArrayList<>();
+        for (NoteSearchIndex.Hit hit : result.hits()) {
+            Note note = notes.get(hit.noteId());
+            if (note != null) {
+                hits.add(new NoteSearchHit(note, hit.score(), hit.highlights()));
+            }
+        }
+
+        return new PageImpl<>(hits, pageable, result.totalHits());
+    }
+
+    // 搜尋索引載入完成前改以資料庫查詢 (排序依 app.search.mode)，沒有分數與標示位置
+    private Page<NoteSearchHit> searchHitsInDatabase(String scope, TagFilter tagFilter, String keyword,
+                                                     Pageable pageable) {
+        String tagName = tagFilter == null ? null : tagFilter.singleTag();
+        Page<Long> idsPage = tagFilter != null && tagName == null
+                ? searchBackend.searchIdsByTags(scope, tagFilter, keyword, pageable)
+                : searchBackend.searchIds(scope, tagName, keyword, pageable);
+        return convertIdsPageToNotesPage(idsPage, pageable).map(note -> new NoteSearchHit(note, 0, null));
+    }
+
+    // 查詢沒有結果時，以搜尋索引的詞典修正拼錯的詞再查一次
+    private Page<Long> searchIdsWithCorrection(String userEmail, String tagName, String keyword, Pageable pageable) {
+        if (usesIndexSearch(userEmail)) {
+            return searchIndexWithCorrection(userEmail,
+                    tagName == null ? null : TagFilter.parse(tagName), keyword, pageable);
+        }
+
+        Page<Long> idsPage = searchBackend.searchIds(userEmail, tagName, keyword, pageable);
+        if (idsPage.getTotalElements() > 0) {
+            return idsPage;
+        }
+
+        String corrected = searchIndex.correctKeyword(userEmail, keyword);
+        return corrected == null ? idsPage : searchBackend.searchIds(userEmail, tagName, corrected, pageable);
+    }
+
+    // 標籤條件與關鍵字一起在資料庫中比對並分頁；單一標籤使用 app.search.mode 的查詢方式
+    private Page<Long> searchIdsByTagAndKeyword(String userEmail, String tagName, String keyword, Pageable pageable) {
+        TagFilter tagFilter = TagFilter.parse(tagName);
+        if (usesIndexSearch(userEmail)) {
+            return searchIndexWithCorrection(userEmail, tagFilter, keyword, pageable);
+        }
+        String tag = tagFilter.singleTag();
+        if (tag != null) {
+            return searchIdsWithCorrection(userEmail, tag, keyword, pageable);
+        }
+
+        Page<Long> idsPage = searchBackend.searchIdsByTags(userEmail, tagFilter, keyword, pageable);
+        if (idsPage.getTotalElements() > 0) {
+            return idsPage;
+        }
+        String corrected = searchIndex.correctKeyword(userEmail, keyword);
+        return corrected == null ? idsPage : searchBackend.searchIdsByTags(userEmail, tagFilter, corrected, pageable);
+    }
+
+    // 管理員搜尋 (scope 為 null) 在 app.search.admin-mode=index 時改用搜尋索引，不以 LIKE 掃描所有使用者的筆記；
+    // 索引載入完成前仍使用資料庫
+    private boolean usesIndexSearch(String scope) {
+        return scope == null && adminSearchUsesIndex && searchIndex.isReady();
+    }
+
+    private Page<Long> searchIndexWithCorrection(String userEmail, TagFilter tagFilter, String keyword,
+                                                 Pageable pageable) {
+        Page<Long> idsPage = searchIndex.findIdsByKeyword(userEmail, tagFilter, keyword, pageable);
+        if (idsPage.getTotalElements() > 0) {
+            return idsPage;
+        }
+
+        String corrected = searchIndex.correctKeyword(userEmail, keyword);
+        return corrected == null ? idsPage : searchIndex.findIdsByKeyword(userEmail, tagFilter, corrected, pageable);
+    }
+
+    // 與 findSuggestionsForAdmin 相同的格式 (id, title)，同標題只保留最新的一筆
+    private List<Object[]> findSuggestionsFromIndex(String keyword, int limit) {
+        // 同標題的筆記只算一次，多取一些候選
+        List<Long> ids = searchIndex.findIdsByTitle(null, keyword, limit * 4);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, String> titles = new HashMap<>();
+        for (NoteSummary summary : noteRepository.findSummariesByIds(ids)) {
+            titles.put(summary.getId(), summary.getTitle());
+        }
+        Set<String> seen = new LinkedHashSet<>();
+        List<Object[]> results = new ArrayList<>();
+        for (Long id : ids) {
+            String title = titles.get(id);
+            if (title != null && seen.add(title) && results.size() < limit) {
+                results.add(new Object[]{id, title});
+            }
+        }
+        return results;
     }
 
     private Page<Note> convertIdsPageToNotesPage(Page<Long> idsPage, Pageable pageable) {
@@ -269,7 +720,15 @@ public class NoteService {
         }
 
         // 批量載入完整的筆記資料 (包含 tags)
-        List<Note> notes = noteRepository.findNotesWithTagsByIds(idsPage.toList());
+        List<Long> ids = idsPage.getContent();
+        List<Note> notes = noteRepository.findNotesWithTagsByIds(ids);
+
+        // 依 IDs 的順序排列 (例如全文檢索依相關度排序)
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            positions.put(ids.get(i), i);
+        }
+        notes.sort(Comparator.comparing(note -> positions.get(note.getId())));
 
         // 重新組裝成 Page 物件
         return new PageImpl<>(notes, pageable, idsPage.getTotalElements());
@@ -280,6 +739,7 @@ public class NoteService {
      *
      * 從筆記標題中提取包含關鍵字的詞組作為搜尋建議。
      * 會自動去除重複的建議，並限制最少輸入 2 個字元。
+     * 建議不足時，再從筆記的詞典中補上拼字相近的詞 (type 為 correction)。
      *
      * - 一般使用者：只能從自己的筆記標題中取得建議
      * - 管理員：可從所有筆記標題中取得建議
@@ -304,7 +764,10 @@ public class NoteService {
 
         List<Object[]> results;
 
-        if (isAdmin) {
+        if (isAdmin && usesIndexSearch(null)) {
+            // 管理員以搜尋索引找出標題符合的筆記，不掃描所有筆記的標題
+            results = findSuggestionsFromIndex(keyword.trim(), actualLimit);
+        } else if (isAdmin) {
             // 管理員可以搜尋所有筆記
             results = noteRepository.findSuggestionsForAdmin(keyword.trim(), actualLimit);
         } else {
@@ -328,7 +791,7 @@ public class NoteService {
             }
         }
 
-        List<SuggestionItem> items = suggestions.stream()
+        List<SuggestionItem> items = new ArrayList<>(suggestions.stream()
                 .limit(actualLimit)
                 .map(word -> {
                     SuggestionItem item = new SuggestionItem();
@@ -338,7 +801,21 @@ public class NoteService {
                     item.setMatchedText(word);
                     return item;
                 })
-                .toList();
+                .toList());
+
+        // 建議不足時補上拼字相近的詞 (可能是打錯字)
+        if (items.size() < actualLimit) {
+            List<String> corrections = searchIndex.suggestTerms(isAdmin ? null : userEmail,
+                    keyword.trim(), actualLimit - items.size());
+            for (String word : corrections) {
+                SuggestionItem item = new SuggestionItem();
+                item.setId(0L);
+                item.setTitle(word);
+                item.setType("correction");
+                item.setMatchedText(word);
+                items.add(item);
+            }
+        }
 
         SearchSuggestionsResponse response = new SearchSuggestionsResponse();
         response.setSuggestions(items);
@@ -399,9 +876,16 @@ public class NoteService {
             throw new OptimisticLockingFailureException("筆記版本不一致");
         }
 
+        // 保留更新前的內容，修訂紀錄以差異儲存
+        loadContent(note);
+        Integer previousVersion = note.getVersion();
+        String previousContent = note.getContent();
+        boolean wasExternal = note.isContentExternal();
+
         // 更新筆記資料
         note.setTitle(updateNoteRequest.getTitle());
-        note.setContent(updateNoteRequest.getContent());
+        applyContent(note, updateNoteRequest.getContent());
+        note.setFingerprint(NoteFingerprint.of(updateNoteRequest.getTitle(), updateNoteRequest.getContent()));
 
         // 處理標籤
         Set<String> updateNoteTags = updateNoteRequest.getTagNames();
@@ -411,8 +895,13 @@ public class NoteService {
         // 更新時間戳記
         note.setUpdatedAt(LocalDateTime.now());
 
-        // 保存
-        return noteRepository.save(note);
+        // 保存 (立即寫入以取得更新後的版本號)
+        Note savedNote = noteRepository.saveAndFlush(note);
+        saveBody(savedNote, wasExternal);
+        revisionService.recordRevision(savedNote, userEmail, previousVersion, previousContent);
+        eventPublisher.publishEvent(new NoteChangedEvent(NoteChangedEvent.Type.UPDATED, savedNote));
+
+        return savedNote;
     }
 
     /**
@@ -428,14 +917,69 @@ public class NoteService {
     @Transactional
     public void deleteNote(Long id, String userEmail, boolean isAdmin) {
         // 先檢查筆記是否存在
-        findNoteById(id);
+        Note note = findNoteById(id);
 
         // 如果不是管理員，且不是筆記擁有者，拒絕刪除
         if (!hasNotePermission(id, userEmail, isAdmin)) { 
             throw new AccessDeniedException("您沒有權限刪除此筆記");
         }   
         
+        if (note.isContentExternal()) {
+            noteBodyRepository.deleteById(id);
+        }
         noteRepository.deleteById(id);
+        revisionService.deleteRevisions(id);
+        eventPublisher.publishEvent(new NoteChangedEvent(NoteChangedEvent.Type.DELETED, note));
+    }
+
+    // 依長度決定內容存在 note 資料表或 note_body，並更新列表用的摘要與統計
+    private void applyContent(Note note, String content) {
+        if (content != null && content.length() > inlineContentLimit) {
+            note.setExternalContent(content);
+        } else {
+            note.setContent(content);
+        }
+        applyTextStats(note, content);
+    }
+
+    /**
+     * 計算並設定筆記的摘要、字元數、字數與內容雜湊
+     *
+     * @param note 筆記
+     * @param content 筆記內容
+     */
+    static void applyTextStats(Note note, String content) {
+        note.setExcerpt(NoteTextStats.excerpt(content));
+        note.setCharCount(NoteTextStats.characterCount(content));
+        note.setWordCount(NoteTextStats.wordCount(content));
+        note.setContentHash(NoteTextStats.contentHash(content));
+    }
+
+    // 寫入 note_body；內容改為直接存在 note 資料表時移除舊的 note_body
+    private void saveBody(Note note, boolean wasExternal) {
+        if (note.isContentExternal()) {
+            noteBodyRepository.save(NoteBody.of(note.getId(), note.getTitle(), note.getContent()));
+        } else if (wasExternal) {
+            noteBodyRepository.deleteById(note.getId());
+        }
+    }
+
+    // 載入筆記、標籤與內容；結果由多個請求共用，不能留下需要延遲載入的關聯
+    private Note loadNote(Long id) {
+        Note note = noteRepository.findNotesWithTagsByIds(List.of(id)).stream()
+                .findFirst()
+                .orElseThrow(() -> new NoteNotFoundException("找不到 ID 為 " + id + " 的筆記"));
+        loadContent(note);
+        return note;
+    }
+
+    // 內容存在 note_body 且尚未載入時，從 note_body 載入
+    private void loadContent(Note note) {
+        if (!note.isContentLoaded()) {
+            NoteBody body = noteBodyRepository.findById(note.getId())
+                    .orElseThrow(() -> new IllegalStateException("找不到 ID 為 " + note.getId() + " 的筆記內容"));
+            note.setExternalContent(body.getContent());
+        }
     }
 
     /**
@@ -0,0 +1,303 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.NoteStreamEvent;
+import com.jeannychiu.learningnotesapi.dto.NoteStreamStats;
+import com.jeannychiu.learningnotesapi.event.NoteChangedEvent;
+import com.jeannychiu.learningnotesapi.model.Note;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 筆記異動推播中心 (Server-Sent Events)
+ *
+ * 每個連線對應一個 SseEmitter，以 Servlet 非同步模式保持連線，閒置的連線不佔用執行緒；
+ * 實際寫出由共用的小型執行緒池負責。
+ *
+ * - 每個連線有固定大小的緩衝區，事件先放入緩衝區再由執行緒池依序送出
+ * - 緩衝區已滿表示用戶端讀取跟不上，直接中斷該連線 (用戶端重新連線後以 GET /notes/changes 補齊)
+ * - 單次寫出超過時間上限 (socket 寫不出去) 時中斷該連線並中斷寫出的執行緒，避免少數卡住的連線佔滿執行緒池；
+ *   寫出最久仍受 Tomcat 的寫出逾時限制
+ * - 定期送出心跳註解，維持代理伺服器上的連線並及早發現已斷線的用戶端
+ * - 每個使用者的連線數有上限，超過時中斷最舊的連線
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class NoteStreamHub {
+    private static final Logger log = LoggerFactory.getLogger(NoteStreamHub.class);
+
+    /**
+     * 單一連線
+     */
+    static final class Subscriber {
+        private final String userEmail;
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final long subscribedAt = System.nanoTime();
+        // 目前寫出的開始時間 (0 表示沒有在寫出) 與寫出的執行緒，由 this 保護
+        private long sendStartedAt;
+        private Thread sendingThread;
+
+        Subscriber(String userEmail, SseEmitter emitter, int bufferSize) {
+            this.userEmail = userEmail;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        SseEmitter getEmitter() {
+            return emitter;
+        }
+    }
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final Executor sendExecutor;
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final int maxSubscribersPerUser;
+    private final long sendTimeoutNanos;
+
+    @Autowired
+    public NoteStreamHub(@Value("${app.note-stream.timeout:PT30M}") Duration timeout,
+                         @Value("${app.note-stream.buffer-size:32}") int bufferSize,
+                         @Value("${app.note-stream.max-subscribers-per-user:5}") int maxSubscribersPerUser,
+                         @Value("${app.note-stream.send-threads:4}") int sendThreads,
+                         @Value("${app.note-stream.send-timeout:PT10S}") Duration sendTimeout) {
+        this(Executors.newFixedThreadPool(sendThreads, sendThreadFactory()), timeout, bufferSize, maxSubscribersPerUser,
+                sendTimeout);
+    }
+
+    NoteStreamHub(Executor sendExecutor, Duration timeout, int bufferSize, int maxSubscribersPerUser,
+                  Duration sendTimeout) {
+        this.sendExecutor = sendExecutor;
+        this.timeoutMillis = timeout.toMillis();
+        this.bufferSize = bufferSize;
+        this.maxSubscribersPerUser = maxSubscribersPerUser;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+    }
+
+    /**
+     * 建立使用者的推播連線
+     *
+     * @param userEmail 使用者信箱
+     * @return SSE 連線
+     */
+    public SseEmitter subscribe(String userEmail) {
+        return subscribe(userEmail, new SseEmitter(timeoutMillis)).getEmitter();
+    }
+
+    Subscriber subscribe(String userEmail, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(userEmail, emitter, bufferSize);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(error -> remove(subscriber));
+
+        // 與 remove 一樣在 compute 中修改，不會加入剛被移除的集合
+        Set<Subscriber> userSubscribers = subscribers.compute(userEmail, (key, current) -> {
+            Set<Subscriber> result = current != null ? current : ConcurrentHashMap.<Subscriber>newKeySet();
+            result.add(subscriber);
+            return result;
+        });
+        subscriberCount.incrementAndGet();
+
+        // 超過連線數上限時中斷最舊的連線
+        while (userSubscribers.size() > maxSubscribersPerUser) {
+            userSubscribers.stream()
+                    .min((a, b) -> Long.compare(a.subscribedAt, b.subscribedAt))
+                    .ifPresent(this::close);
+        }
+
+        // 先送出一個註解，讓用戶端立即收到回應標頭
+        enqueue(subscriber, SseEmitter.event().comment("connected"));
+        return subscriber;
+    }
+
+    /**
+     * 筆記異動提交後推播給筆記擁有者的所有連線
+     *
+     * @param event 筆記異動事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNoteChanged(NoteChangedEvent event) {
+        Note note = event.getNote();
+        Set<Subscriber> userSubscribers = subscribers.get(note.getUserEmail());
+        if (userSubscribers == null || userSubscribers.isEmpty()) {
+            return;
+        }
+
+        NoteStreamEvent payload = new NoteStreamEvent(event.getType(), note.getId(), note.getVersion(), note.getUpdatedAt());
+        for (Subscriber subscriber : userSubscribers) {
+            enqueue(subscriber, SseEmitter.event()
+                    .name(event.getType().name().toLowerCase(Locale.ROOT))
+                    .data(payload, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    /**
+     * 定期對所有連線送出心跳
+     */
+    @Scheduled(fixedDelayString = "${app.note-stream.heartbeat-interval:PT20S}")
+    public void sendHeartbeats() {
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                enqueue(subscriber, SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    /**
+     * 定期中斷寫出卡住的連線
+     *
+     * 寫出超過時間上限的連線視同讀取過慢：關閉連線並中斷正在寫出的執行緒，讓執行緒回到執行緒池。
+     */
+    @Scheduled(fixedDelayString = "${app.note-stream.send-timeout:PT10S}")
+    public void evictStalledSubscribers() {
+        long now = System.nanoTime();
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                synchronized (subscriber) {
+                    if (subscriber.sendingThread == null || now - subscriber.sendStartedAt < sendTimeoutNanos) {
+                        continue;
+                    }
+                    evictedCount.incrementAndGet();
+                    log.warn("筆記推播連線寫出逾時，中斷連線: {}", subscriber.userEmail);
+                    close(subscriber);
+                    subscriber.sendingThread.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * 取得連線統計
+     *
+     * @return 連線統計
+     */
+    public NoteStreamStats getStats() {
+        NoteStreamStats stats = new NoteStreamStats();
+        stats.setSubscriberCount(subscriberCount.get());
+        stats.setUserCount(subscribers.size());
+        stats.setDeliveredCount(deliveredCount.get());
+        stats.setEvictedCount(evictedCount.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            userSubscribers.forEach(this::close);
+        }
+        if (sendExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (!subscriber.buffer.offer(event)) {
+            evictedCount.incrementAndGet();
+            log.warn("筆記推播連線讀取過慢，中斷連線: {}", subscriber.userEmail);
+            close(subscriber);
+            return;
+        }
+        scheduleDrain(subscriber);
+    }
+
+    // 同一連線同時只有一個送出工作，事件依序寫出
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            sendExecutor.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        SseEmitter.SseEventBuilder event;
+        while (!subscriber.closed.get() && (event = subscriber.buffer.poll()) != null) {
+            synchronized (subscriber) {
+                subscriber.sendStartedAt = System.nanoTime();
+                subscriber.sendingThread = Thread.currentThread();
+            }
+            try {
+                subscriber.emitter.send(event);
+                deliveredCount.incrementAndGet();
+            } catch (Exception e) {
+                // 用戶端已斷線，或寫出逾時被中斷
+                remove(subscriber);
+                return;
+            } finally {
+                synchronized (subscriber) {
+                    subscriber.sendingThread = null;
+                    // 清除逾時時設定的中斷狀態，執行緒之後還要處理其他連線
+                    Thread.interrupted();
+                }
+            }
+        }
+        subscriber.draining.set(false);
+        // 釋放旗標前可能有新事件放入
+        if (!subscriber.closed.get() && !subscriber.buffer.isEmpty()) {
+            scheduleDrain(subscriber);
+        }
+    }
+
+    private void close(Subscriber subscriber) {
+        if (remove(subscriber)) {
+            try {
+                subscriber.emitter.complete();
+            } catch (Exception e) {
+                log.debug("關閉筆記推播連線失敗: {}", e.getMessage());
+            }
+        }
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscriber.buffer.clear();
+        subscriberCount.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.userEmail, (key, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+        return true;
+    }
+
+    private static ThreadFactory sendThreadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "note-stream-send-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 筆記內容的摘要與統計，在寫入筆記時計算並存入 note 資料表，列表不需讀取內容
+ *
+ * - 摘要：前 {@value #EXCERPT_LENGTH} 個字 (grapheme cluster)，不會切開 emoji、組合字元
+ * - 字元數：Unicode code point 數
+ * - 字數：中日韓文字每字算一個詞，其他以連續的字母數字為一個詞 (與搜尋索引的斷詞方式一致)
+ * - 內容雜湊：UTF-8 內容的 SHA-256 (hex)
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class NoteTextStats {
+    // 摘要的字數 (grapheme cluster，不含省略符號)
+    static final int EXCERPT_LENGTH = 200;
+
+    // 摘要欄位長度為 255，一個字可能由多個字元組成，另外以 UTF-16 長度限制 (保留省略符號的位置)
+    private static final int EXCERPT_MAX_CHARS = 254;
+
+    private static final String ELLIPSIS = "…";
+
+    private static final Pattern GRAPHEME = Pattern.compile("\\X");
+
+    private NoteTextStats() {
+    }
+
+    /**
+     * 取得列表用的內容摘要，較長時加上省略符號
+     *
+     * @param content 筆記內容
+     * @return 摘要；沒有內容時為 null
+     */
+    static String excerpt(String content) {
+        if (content == null) {
+            return null;
+        }
+        Matcher matcher = GRAPHEME.matcher(content);
+        int count = 0;
+        int end = 0;
+        while (matcher.find()) {
+            if (count == EXCERPT_LENGTH || matcher.end() > EXCERPT_MAX_CHARS) {
+                return content.substring(0, end).stripTrailing() + ELLIPSIS;
+            }
+            end = matcher.end();
+            count++;
+        }
+        return content;
+    }
+
+    static int characterCount(String content) {
+        return content == null ? 0 : content.codePointCount(0, content.length());
+    }
+
+    static int wordCount(String content) {
+        if (content == null) {
+            return 0;
+        }
+        int words = 0;
+        boolean inWord = false;
+        int i = 0;
+        while (i < content.length()) {
+            int codePoint = content.codePointAt(i);
+            if (isCjk(codePoint)) {
+                words++;
+                inWord = false;
+            } else if (Character.isLetterOrDigit(codePoint)
+                    || (inWord && Character.getType(codePoint) == Character.NON_SPACING_MARK)) {
+                if (!inWord) {
+                    words++;
+                    inWord = true;
+                }
+            } else {
+                inWord = false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return words;
+    }
+
+    /**
+     * @param content 筆記內容
+     * @return SHA-256 (64 個十六進位字元)；沒有內容時為 null
+     */
+    static String contentHash(String content) {
+        if (content == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
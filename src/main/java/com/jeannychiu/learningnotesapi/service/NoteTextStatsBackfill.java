@@ -0,0 +1,166 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteBody;
+import com.jeannychiu.learningnotesapi.model.NoteChange;
+import com.jeannychiu.learningnotesapi.repository.NoteBodyRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteChangeRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 補上升級前建立的筆記的摘要、字數統計與指紋
+ *
+ * 新增、更新筆記時由 NoteService 計算；既有筆記在啟動後由排程分批補上，不延遲啟動。
+ * 多個執行個體中只有取得 background_job_lock 租約的一個執行 (見 V13__background_job_lock.sql)，
+ * 每批完成後延長租約；沒取得租約的執行個體在下一輪再試，直到補完為止。
+ *
+ * 以 UPDATE 直接寫入欄位，不改變筆記的版本號與更新時間；同一個交易中為每筆筆記寫入 UPDATED 異動紀錄，
+ * 世代改變 (見 {@link NoteGenerationTracker})，所有執行個體的查詢快取與列表 ETag 不會沿用補上之前的結果，
+ * 增量同步的用戶端也會重新取得這些筆記。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class NoteTextStatsBackfill {
+    private static final Logger log = LoggerFactory.getLogger(NoteTextStatsBackfill.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final String JOB_NAME = "note-text-stats-backfill";
+
+    private final NoteRepository noteRepository;
+    private final NoteBodyRepository noteBodyRepository;
+    private final NoteChangeRepository noteChangeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration lease;
+    private final String owner = UUID.randomUUID().toString();
+
+    // 已補完 (任一執行個體補完後，之後新增的筆記都會在寫入時計算)
+    private volatile boolean completed;
+
+    public NoteTextStatsBackfill(NoteRepository noteRepository, NoteBodyRepository noteBodyRepository,
+                                 NoteChangeRepository noteChangeRepository, TransactionTemplate transactionTemplate,
+                                 JdbcTemplate jdbcTemplate,
+                                 @Value("${app.note-text-stats.backfill.lease:PT5M}") Duration lease) {
+        this.noteRepository = noteRepository;
+        this.noteBodyRepository = noteBodyRepository;
+        this.noteChangeRepository = noteChangeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.lease = lease;
+    }
+
+    /**
+     * 定期檢查並補上統計，補完後不再執行
+     */
+    @Scheduled(initialDelayString = "${app.note-text-stats.backfill.initial-delay:PT30S}",
+            fixedDelayString = "${app.note-text-stats.backfill.interval:PT1M}")
+    public void runBackfill() {
+        if (completed) {
+            return;
+        }
+        try {
+            backfill();
+        } catch (DataAccessException e) {
+            log.error("筆記摘要與字數統計補寫失敗，稍後重試: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 取得租約後補上所有筆記的統計
+     *
+     * @return 是否已補完；其他執行個體正在執行時回傳 false
+     */
+    boolean backfill() {
+        if (!acquireLease()) {
+            return false;
+        }
+        try {
+            int count = 0;
+            while (true) {
+                Integer updated = transactionTemplate.execute(status -> backfillBatch());
+                if (updated == null || updated == 0) {
+                    break;
+                }
+                count += updated;
+                if (!acquireLease()) {
+                    log.warn("筆記摘要與字數統計補寫的租約已被其他執行個體取得，已補上 {} 筆", count);
+                    return false;
+                }
+            }
+            if (count > 0) {
+                log.info("已補上 {} 筆筆記的摘要、字數統計與指紋", count);
+            }
+            completed = true;
+            return true;
+        } finally {
+            releaseLease();
+        }
+    }
+
+    /**
+     * 補上一批筆記的統計
+     *
+     * @return 處理的筆數；0 表示已全部補完
+     */
+    int backfillBatch() {
+        List<Long> ids = noteRepository.findNoteIdsWithoutTextStats(PageRequest.of(0, BATCH_SIZE));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        List<Note> notes = noteRepository.findAllById(ids);
+        Map<Long, String> bodies = new HashMap<>();
+        List<Long> externalIds = notes.stream().filter(Note::isContentExternal).map(Note::getId).toList();
+        if (!externalIds.isEmpty()) {
+            for (NoteBody body : noteBodyRepository.findAllById(externalIds)) {
+                bodies.put(body.getNoteId(), body.getContent());
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Note note : notes) {
+            String content = note.isContentExternal() ? bodies.get(note.getId()) : note.getContent();
+            noteRepository.updateTextStats(note.getId(), NoteTextStats.excerpt(content),
+                    NoteTextStats.characterCount(content), NoteTextStats.wordCount(content),
+                    NoteTextStats.contentHash(content), NoteFingerprint.of(note.getTitle(), content));
+
+            NoteChange change = new NoteChange();
+            change.setUserEmail(note.getUserEmail());
+            change.setNoteId(note.getId());
+            change.setChangeType(NoteChange.Type.UPDATED);
+            change.setChangedAt(now);
+            noteChangeRepository.save(change);
+        }
+        return notes.size();
+    }
+
+    // 取得或延長租約：租約已過期或本來就由此執行個體持有時成功
+    private boolean acquireLease() {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.update("UPDATE background_job_lock SET owner = ?, locked_until = ? " +
+                "WHERE name = ? AND (owner = ? OR locked_until < ?)", owner, now.plus(lease), JOB_NAME, owner, now) == 1;
+    }
+
+    private void releaseLease() {
+        jdbcTemplate.update("UPDATE background_job_lock SET owner = NULL, locked_until = ? WHERE name = ? AND owner = ?",
+                LocalDateTime.now(), JOB_NAME, owner);
+    }
+}
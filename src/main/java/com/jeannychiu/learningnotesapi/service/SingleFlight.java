@@ -0,0 +1,96 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 合併相同的並行查詢 (single-flight)
+ *
+ * 同一個鍵同時只執行一次查詢：第一個呼叫者在自己的執行緒查詢，
+ * 查詢期間以相同的鍵進來的呼叫者等待並共用同一個結果 (或同一個例外)。
+ * 查詢完成後立即移除，之後的呼叫重新查詢，因此不會回傳過期的資料。
+ *
+ * 等待超過逾時時間時不再等待，改由呼叫者自行查詢，避免一個卡住的查詢拖住所有請求。
+ * 共用的結果由多個執行緒同時讀取，呼叫端不可修改。
+ *
+ * @param <K> 查詢鍵，必須正確實作 equals/hashCode
+ * @param <V> 查詢結果
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final Duration timeout;
+
+    SingleFlight(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * 執行查詢，相同的鍵已有查詢進行中時等待其結果
+     *
+     * @param key 查詢鍵
+     * @param loader 查詢方式
+     * @return 查詢結果
+     */
+    V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing, loader);
+        }
+
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 目前進行中的查詢數
+     */
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 累計等待其他呼叫者查詢結果的次數
+     */
+    long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    private V await(CompletableFuture<V> flight, Supplier<V> loader) {
+        try {
+            return flight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待查詢結果時被中斷", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 限制長度的 Writer
+ *
+ * 序列化時一旦超過上限就中斷寫入，避免先產生完整的大字串再截斷。
+ * 超過上限後會拋出 IOException 讓序列化提早結束，呼叫端可透過
+ * {@link #isTruncated()} 判斷是否因長度限制而中斷。
+ */
+class SizeLimitedWriter extends Writer {
+    private final StringBuilder buffer;
+    private final int maxLength;
+    private boolean truncated;
+
+    SizeLimitedWriter(int maxLength) {
+        this.maxLength = maxLength;
+        this.buffer = new StringBuilder(Math.min(maxLength, 1024));
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        int remaining = maxLength - buffer.length();
+        if (length > remaining) {
+            buffer.append(chars, offset, Math.max(remaining, 0));
+            truncated = true;
+            throw new IOException("Serialized content exceeds " + maxLength + " characters");
+        }
+        buffer.append(chars, offset, length);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,225 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文字差異 (delta) 的產生與套用
+ *
+ * 以 code point 為單位比對 (不會拆開 surrogate pair)，先去掉相同的開頭與結尾，
+ * 中間部分以 Myers 演算法找出最少的插入與刪除。編輯次數超過 {@value #MAX_EDITS}
+ * 時不再細分，中間部分整段取代，結果仍然正確只是較大。
+ *
+ * 編碼為文字，依序為以下操作：
+ * - {@code =n}：複製原文的 n 個字元
+ * - {@code -n}：略過原文的 n 個字元
+ * - {@code +n:文字}：插入接下來的 n 個字元
+ *
+ * 例如 {@code "hello world"} 改為 {@code "hello java world"} 的差異為 {@code =6+5:java =5}。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+final class TextDelta {
+    static final int MAX_EDITS = 500;
+
+    private TextDelta() {
+    }
+
+    /**
+     * 產生由 base 變成 target 的差異
+     *
+     * @param base 原文
+     * @param target 新內容
+     * @return 差異
+     */
+    static String diff(String base, String target) {
+        int[] a = base.codePoints().toArray();
+        int[] b = target.codePoints().toArray();
+
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix] == b[b.length - 1 - suffix]) {
+            suffix++;
+        }
+
+        Encoder encoder = new Encoder();
+        encoder.copy(prefix);
+        char[] edits = shortestEdits(a, prefix, a.length - suffix, b, prefix, b.length - suffix);
+        if (edits == null) {
+            encoder.delete(a.length - suffix - prefix);
+            for (int j = prefix; j < b.length - suffix; j++) {
+                encoder.insert(b[j]);
+            }
+        } else {
+            int j = prefix;
+            for (char edit : edits) {
+                switch (edit) {
+                    case '=' -> {
+                        encoder.copy(1);
+                        j++;
+                    }
+                    case '-' -> encoder.delete(1);
+                    default -> encoder.insert(b[j++]);
+                }
+            }
+        }
+        encoder.copy(suffix);
+        return encoder.toString();
+    }
+
+    /**
+     * 將差異套用到原文
+     *
+     * @param base 原文
+     * @param delta 差異
+     * @return 新內容
+     * @throws IllegalStateException 差異與原文不符時
+     */
+    static String apply(String base, String delta) {
+        try {
+            return applyOps(base, delta);
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalStateException("差異與原文不符", e);
+        }
+    }
+
+    private static String applyOps(String base, String delta) {
+        StringBuilder result = new StringBuilder(base.length() + delta.length());
+        int position = 0;
+        int i = 0;
+        while (i < delta.length()) {
+            char op = delta.charAt(i++);
+            int start = i;
+            while (i < delta.length() && Character.isDigit(delta.charAt(i))) {
+                i++;
+            }
+            int count = Integer.parseInt(delta, start, i, 10);
+            switch (op) {
+                case '=' -> {
+                    int end = base.offsetByCodePoints(position, count);
+                    result.append(base, position, end);
+                    position = end;
+                }
+                case '-' -> position = base.offsetByCodePoints(position, count);
+                case '+' -> {
+                    int end = delta.offsetByCodePoints(i + 1, count);
+                    result.append(delta, i + 1, end);
+                    i = end;
+                }
+                default -> throw new IllegalStateException("無效的差異操作: " + op);
+            }
+        }
+        if (position != base.length()) {
+            throw new IllegalStateException("差異與原文長度不符");
+        }
+        return result.toString();
+    }
+
+    // Myers O(ND) 演算法：回傳每一步的操作 (= 相同、- 刪除、+ 插入)；超過編輯上限時回傳 null
+    private static char[] shortestEdits(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int max = Math.min(n + m, MAX_EDITS);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+
+        for (int d = 0; d <= max; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+                        ? v[offset + k + 1]
+                        : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, offset, n, m);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static char[] backtrack(List<int[]> trace, int offset, int n, int m) {
+        StringBuilder edits = new StringBuilder();
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d >= 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            int previousK = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) ? k + 1 : k - 1;
+            int previousX = v[offset + previousK];
+            int previousY = previousX - previousK;
+            while (x > previousX && y > previousY) {
+                edits.append('=');
+                x--;
+                y--;
+            }
+            if (d > 0) {
+                edits.append(x == previousX ? '+' : '-');
+            }
+            x = previousX;
+            y = previousY;
+        }
+        return edits.reverse().toString().toCharArray();
+    }
+
+    // 將連續的同類操作合併後編碼
+    private static final class Encoder {
+        private final StringBuilder output = new StringBuilder();
+        private final StringBuilder inserted = new StringBuilder();
+        private char pendingOp;
+        private int pendingCount;
+
+        void copy(int count) {
+            append('=', count);
+        }
+
+        void delete(int count) {
+            append('-', count);
+        }
+
+        void insert(int codePoint) {
+            append('+', 1);
+            inserted.appendCodePoint(codePoint);
+        }
+
+        private void append(char op, int count) {
+            if (count == 0) {
+                return;
+            }
+            if (op != pendingOp) {
+                flush();
+                pendingOp = op;
+            }
+            pendingCount += count;
+        }
+
+        private void flush() {
+            if (pendingCount > 0) {
+                output.append(pendingOp).append(pendingCount);
+                if (pendingOp == '+') {
+                    output.append(':').append(inserted);
+                    inserted.setLength(0);
+                }
+            }
+            pendingCount = 0;
+        }
+
+        @Override
+        public String toString() {
+            flush();
+            pendingOp = 0;
+            return output.toString();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * 信箱 → 使用者 ID 的快取
+ *
+ * 記錄 API 日誌時需要使用者 ID，但舊版 JWT 只帶有信箱。
+ * 登入與註冊時先放入快取，之後的請求不需再查詢資料庫。
+ * 容量有上限，超過時淘汰最久未使用的項目 (LRU)。
+ *
+ * 使用者資料更新或刪除時由 {@link UserIdCacheListener} 移除對應的項目。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+@Component
+public class UserIdCache {
+    private final Map<String, Long> cache;
+
+    public UserIdCache(@Value("${app.user-id-cache.max-size:10000}") int maxSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 取得使用者 ID，快取沒有時以 loader 查詢並放入快取
+     *
+     * 查無使用者時不放入快取，避免之後註冊的帳號查不到。
+     *
+     * @param email 使用者信箱
+     * @param loader 快取沒有時的查詢方式
+     * @return 使用者 ID，查無使用者時回傳 null
+     */
+    public Long resolve(String email, Function<String, Optional<Long>> loader) {
+        synchronized (cache) {
+            Long userId = cache.get(email);
+            if (userId != null) {
+                return userId;
+            }
+        }
+
+        // 查詢資料庫時不持有鎖
+        Long userId = loader.apply(email).orElse(null);
+        if (userId != null) {
+            put(email, userId);
+        }
+        return userId;
+    }
+
+    public void put(String email, Long userId) {
+        synchronized (cache) {
+            cache.put(email, userId);
+        }
+    }
+
+    /**
+     * 移除使用者的快取
+     *
+     * 信箱可能已變更，因此依使用者 ID 移除，而不是依目前的信箱。
+     *
+     * @param userId 使用者 ID
+     */
+    public void evict(Long userId) {
+        synchronized (cache) {
+            cache.values().removeIf(userId::equals);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * 使用者更新或刪除後移除 {@link UserIdCache} 中的項目
+ *
+ * {@link User} 的 JPA entity listener，由 Hibernate 透過 Spring 建立並注入快取，
+ * 所有更新與刪除使用者的途徑都會經過這裡。
+ *
+ * @author Jeanny Chiu
+ * @since 1.0.0
+ */
+public class UserIdCacheListener {
+    private final UserIdCache userIdCache;
+
+    public UserIdCacheListener(UserIdCache userIdCache) {
+        this.userIdCache = userIdCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    void evict(User user) {
+        userIdCache.evict(user.getId());
+    }
+}
@@ -0,0 +1,3 @@
+-- note_body.content 經過壓縮，無法以 LIKE / FULLTEXT 比對。
+-- 另存未壓縮的標題與內容供關鍵字搜尋，既有資料由 V10_1 (Java migration) 補上
+ALTER TABLE note_body ADD COLUMN search_text MEDIUMTEXT;
@@ -0,0 +1,8 @@
+-- 以 onDuplicate=skip / merge 新增筆記時，先鎖定使用者在此表的資料列再查詢重複的筆記 (見 NoteService#createNote)，
+-- 同一使用者並行的相同請求依序執行，後面的請求可以看到前面新增的筆記，不會都因為查不到重複而各自新增。
+-- fingerprint 不能設為唯一：onDuplicate=allow 允許重複的筆記
+CREATE TABLE note_create_lock (
+    user_email VARCHAR(255) NOT NULL,
+    locked_at  DATETIME(6)  NOT NULL,
+    PRIMARY KEY (user_email)
+);
@@ -0,0 +1,10 @@
+-- 背景工作的執行鎖 (每個工作一列)：多個執行個體中只有取得租約 (locked_until 之前) 的一個執行，
+-- 執行中定期延長租約；執行個體中斷時租約到期後由其他執行個體接手
+CREATE TABLE background_job_lock (
+    name         VARCHAR(64) NOT NULL,
+    owner        VARCHAR(64),
+    locked_until DATETIME(6) NOT NULL,
+    PRIMARY KEY (name)
+);
+
+INSERT INTO background_job_lock (name, locked_until) VALUES ('note-text-stats-backfill', '1970-01-01 00:00:00');
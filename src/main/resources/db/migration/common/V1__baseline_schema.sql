@@ -0,0 +1,81 @@
+-- 基準 schema：與改用 Flyway 前由 Hibernate (ddl-auto=update) 建立的資料表一致
+-- 既有資料庫的資料表已存在，CREATE TABLE IF NOT EXISTS 只會補上缺少的資料表
+
+CREATE TABLE IF NOT EXISTS user (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    email      VARCHAR(255) NOT NULL,
+    google_sub VARCHAR(255),
+    password   VARCHAR(255) NOT NULL,
+    role       VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_user_email UNIQUE (email)
+);
+
+CREATE TABLE IF NOT EXISTS tag (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    name       VARCHAR(255) NOT NULL,
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_tag_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS note (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    title      VARCHAR(255) NOT NULL,
+    content    VARCHAR(500),
+    user_email VARCHAR(255),
+    version    INTEGER,
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS note_tag (
+    note_id BIGINT NOT NULL,
+    tag_id  BIGINT NOT NULL,
+    PRIMARY KEY (note_id, tag_id),
+    CONSTRAINT fk_note_tag_note FOREIGN KEY (note_id) REFERENCES note (id),
+    CONSTRAINT fk_note_tag_tag FOREIGN KEY (tag_id) REFERENCES tag (id)
+);
+
+CREATE TABLE IF NOT EXISTS api_log (
+    id                       BIGINT       NOT NULL AUTO_INCREMENT,
+    api_path                 VARCHAR(255),
+    http_method              VARCHAR(10),
+    request_body_compressed  MEDIUMBLOB,
+    response_body_compressed MEDIUMBLOB,
+    status_code              INTEGER,
+    request_time             DATETIME(6),
+    response_time            DATETIME(6),
+    duration                 BIGINT,
+    user_id                  BIGINT,
+    PRIMARY KEY (id),
+    INDEX idx_api_log_request_time (request_time)
+);
+
+CREATE TABLE IF NOT EXISTS api_log_rollup (
+    id                BIGINT       NOT NULL AUTO_INCREMENT,
+    bucket_start      DATETIME(6)  NOT NULL,
+    api_path          VARCHAR(255) NOT NULL,
+    http_method       VARCHAR(10)  NOT NULL,
+    status_code       INTEGER      NOT NULL,
+    request_count     BIGINT       NOT NULL,
+    duration_sum      BIGINT       NOT NULL,
+    duration_max      BIGINT       NOT NULL,
+    latency_histogram BLOB         NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_api_log_rollup_key UNIQUE (bucket_start, api_path, http_method, status_code),
+    INDEX idx_api_log_rollup_bucket_start (bucket_start)
+);
+
+CREATE TABLE IF NOT EXISTS api_log_user_rollup (
+    id            BIGINT      NOT NULL AUTO_INCREMENT,
+    bucket_start  DATETIME(6) NOT NULL,
+    user_id       BIGINT      NOT NULL,
+    request_count BIGINT      NOT NULL,
+    error_count   BIGINT      NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_api_log_user_rollup_key UNIQUE (bucket_start, user_id),
+    INDEX idx_api_log_user_rollup_bucket_start (bucket_start)
+);
@@ -0,0 +1,11 @@
+-- 對應 NoteRepository 的查詢：依 user_email 篩選並依 updated_at DESC 排序
+CREATE INDEX idx_note_user_email_updated_at ON note (user_email, updated_at);
+
+-- 管理員查詢全部筆記，依 updated_at DESC 排序
+CREATE INDEX idx_note_updated_at ON note (updated_at);
+
+-- 依標籤查詢筆記 (主鍵為 note_id, tag_id，無法用於以 tag_id 開頭的查詢)
+CREATE INDEX idx_note_tag_tag_id_note_id ON note_tag (tag_id, note_id);
+
+-- Google 登入時以 google_sub 查詢使用者
+CREATE INDEX idx_user_google_sub ON user (google_sub);
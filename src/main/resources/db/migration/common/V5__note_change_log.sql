@@ -0,0 +1,32 @@
+-- 筆記異動紀錄 (增量同步用)：每次新增、更新、刪除各寫入一筆，id 即為同步用的異動 token
+CREATE TABLE note_change (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    user_email  VARCHAR(255) NOT NULL,
+    note_id     BIGINT       NOT NULL,
+    change_type VARCHAR(10)  NOT NULL,
+    changed_at  DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- 依使用者讀取 token 之後的異動
+CREATE INDEX idx_note_change_user_email_id ON note_change (user_email, id);
+
+-- 壓縮時找出同一筆記較舊的異動
+CREATE INDEX idx_note_change_note_id_id ON note_change (note_id, id);
+
+-- 壓縮狀態 (單列)：purged_through 以前的刪除紀錄已清除，比它更舊的 token 無法再增量同步
+CREATE TABLE note_change_compaction (
+    id             BIGINT      NOT NULL,
+    purged_through BIGINT      NOT NULL,
+    compacted_at   DATETIME(6),
+    PRIMARY KEY (id)
+);
+
+INSERT INTO note_change_compaction (id, purged_through) VALUES (1, 0);
+
+-- 既有筆記各補一筆異動，從 token 0 同步時可取得完整的筆記
+INSERT INTO note_change (user_email, note_id, change_type, changed_at)
+SELECT user_email, id, 'CREATED', COALESCE(updated_at, created_at, CURRENT_TIMESTAMP)
+FROM note
+WHERE user_email IS NOT NULL
+ORDER BY updated_at, id;
@@ -0,0 +1,15 @@
+-- 筆記修訂紀錄：每次新增、更新各一筆。內容以與前一版的差異 (delta) 儲存，
+-- 每隔固定版本數 (或差異不划算時) 存一次完整內容 (snapshot，此時 base_version = version)
+CREATE TABLE note_revision (
+    id           BIGINT       NOT NULL AUTO_INCREMENT,
+    note_id      BIGINT       NOT NULL,
+    version      INTEGER      NOT NULL,
+    base_version INTEGER      NOT NULL,
+    title        VARCHAR(255) NOT NULL,
+    tag_names    VARCHAR(2000),
+    content_data MEDIUMBLOB,
+    editor_email VARCHAR(255),
+    created_at   DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_note_revision_note_id_version UNIQUE (note_id, version)
+);
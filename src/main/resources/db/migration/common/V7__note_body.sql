@@ -0,0 +1,20 @@
+-- 較長的筆記內容移到 note_body 並壓縮存放 (格式見 CompressedTextConverter)，
+-- 列表與搜尋只讀 note 資料表。此時 note.content 為 null，body_length 為內容的字元數
+CREATE TABLE note_body (
+    note_id BIGINT     NOT NULL,
+    content MEDIUMBLOB NOT NULL,
+    PRIMARY KEY (note_id),
+    CONSTRAINT fk_note_body_note_id FOREIGN KEY (note_id) REFERENCES note (id)
+);
+
+ALTER TABLE note ADD COLUMN body_length INTEGER;
+
+-- 列表顯示用的內容摘要
+ALTER TABLE note ADD COLUMN excerpt VARCHAR(255);
+
+UPDATE note
+SET excerpt = CASE
+    WHEN CHAR_LENGTH(content) > 200 THEN CONCAT(SUBSTRING(content, 1, 200), '…')
+    ELSE content
+END
+WHERE content IS NOT NULL;
@@ -0,0 +1,5 @@
+-- 寫入筆記時計算的字元數、字數與內容雜湊 (SHA-256)，列表摘要不需讀取內容。
+-- 既有筆記的值為 null，啟動後由 NoteTextStatsBackfill 補上
+ALTER TABLE note ADD COLUMN char_count INTEGER;
+ALTER TABLE note ADD COLUMN word_count INTEGER;
+ALTER TABLE note ADD COLUMN content_hash VARCHAR(64);
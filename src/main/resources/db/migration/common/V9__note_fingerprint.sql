@@ -0,0 +1,5 @@
+-- 筆記內容指紋 (正規化後標題與內容的 64 位元 xxHash)，新增筆記時偵測同一使用者的重複筆記。
+-- 既有筆記的值為 null，啟動後由 NoteTextStatsBackfill 補上
+ALTER TABLE note ADD COLUMN fingerprint BIGINT;
+
+CREATE INDEX idx_note_user_email_fingerprint ON note (user_email, fingerprint);
@@ -0,0 +1,2 @@
+-- 較長筆記 (內容存在 note_body) 的全文檢索索引，與 ft_note_title_content 相同使用 ngram parser
+ALTER TABLE note_body ADD FULLTEXT INDEX ft_note_body_search_text (search_text) WITH PARSER ngram;
@@ -0,0 +1,2 @@
+-- note_body 只保留未壓縮的 search_text (V11)，改由 InnoDB 的資料表壓縮節省空間
+ALTER TABLE note_body ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8;
@@ -0,0 +1,8 @@
+-- Hibernate 將未指定長度的 @Lob byte[] 建成 TINYBLOB (上限 255 bytes)，
+-- 壓縮後的請求/回應內容與延遲分佈會被截斷，改為足夠的大小
+ALTER TABLE api_log
+    MODIFY request_body_compressed MEDIUMBLOB,
+    MODIFY response_body_compressed MEDIUMBLOB;
+
+ALTER TABLE api_log_rollup
+    MODIFY latency_histogram BLOB NOT NULL;
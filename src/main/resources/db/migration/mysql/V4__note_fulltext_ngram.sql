@@ -0,0 +1,6 @@
+-- 全文檢索索引 (ngram parser 支援中文等不以空白分詞的語言)
+-- 標題與內容一起搜尋用 ft_note_title_content，搜尋建議只比對標題用 ft_note_title
+-- InnoDB 一次只能建立一個 FULLTEXT 索引，因此分成兩個敘述
+ALTER TABLE note ADD FULLTEXT INDEX ft_note_title_content (title, content) WITH PARSER ngram;
+
+ALTER TABLE note ADD FULLTEXT INDEX ft_note_title (title) WITH PARSER ngram;
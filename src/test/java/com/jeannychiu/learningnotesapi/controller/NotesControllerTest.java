@@ -1,5 +1,6 @@
 package com.jeannychiu.learningnotesapi.controller;
 
+import com.jeannychiu.learningnotesapi.dto.NoteSummary;
 import com.jeannychiu.learningnotesapi.model.Note;
 import com.jeannychiu.learningnotesapi.service.NoteService;
 import org.junit.jupiter.api.Test;
@@ -22,7 +23,11 @@ import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -74,4 +79,70 @@ class NotesControllerTest {
         String responseContent = mvcResult.getResponse().getContentAsString();
         System.out.println("Response回應 : " + responseContent);
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void testGetNotesNotModified() throws Exception {
+        // 測試 GET /notes 的 ETag：相符時回應 304 且不查詢筆記
+        when(noteService.getNotesETag(any(), anyString(), anyBoolean(), eq("list"), any(), any()))
+                .thenReturn("\"42-abc\"");
+        when(noteService.getAllNotes(any(), anyString(), anyBoolean()))
+                .thenReturn(new PageImpl<>(List.of(), PageRequest.of(0, 10), 0));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/notes").header("If-None-Match", "\"42-abc\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"42-abc\""))
+                .andExpect(content().string(""));
+        verify(noteService, never()).getAllNotes(any(), anyString(), anyBoolean());
+
+        // 世代改變後 ETag 不同，回應完整內容
+        mockMvc.perform(MockMvcRequestBuilders.get("/notes").header("If-None-Match", "\"41-abc\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"42-abc\""))
+                .andExpect(jsonPath("$.totalElements", equalTo(0)));
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void testGetNoteSummaries() throws Exception {
+        // 測試 GET /notes?view=summary 只回傳摘要欄位
+        NoteSummary summary = new NoteSummary(1L, "測試標題", "測試摘要", 4, 2, "abc", 0, null);
+        summary.setTagNames(List.of("java"));
+        when(noteService.getNotesETag(any(), anyString(), anyBoolean(), eq("summary"), any(), any()))
+                .thenReturn("\"42-def\"");
+        when(noteService.getNoteSummaries(any(), anyString(), anyBoolean(), any(), any()))
+                .thenReturn(new PageImpl<>(List.of(summary), PageRequest.of(0, 10), 1));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/notes").param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"42-def\""))
+                .andExpect(jsonPath("$.content[0].excerpt", equalTo("測試摘要")))
+                .andExpect(jsonPath("$.content[0].tagNames[0]", equalTo("java")))
+                .andExpect(jsonPath("$.content[0].content").doesNotExist());
+        verify(noteService, never()).getAllNotes(any(), anyString(), anyBoolean());
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void testGetNoteByIdNotModified() throws Exception {
+        // 測試 GET /notes/{id} 的 ETag：只比對版本號，不載入筆記
+        when(noteService.findNoteVersion(1L, "test@example.com", false)).thenReturn(3);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/notes/1").header("If-None-Match", "W/\"1-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"1-3\""));
+        verify(noteService, never()).readNoteById(any(), anyString(), anyBoolean());
+
+        Note note = new Note();
+        note.setId(1L);
+        note.setTitle("測試標題");
+        note.setVersion(4);
+        when(noteService.findNoteVersion(1L, "test@example.com", false)).thenReturn(4);
+        when(noteService.readNoteById(1L, "test@example.com", false)).thenReturn(note);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/notes/1").header("If-None-Match", "\"1-3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-4\""))
+                .andExpect(jsonPath("$.title", equalTo("測試標題")));
+    }
+}
@@ -0,0 +1,51 @@
+package com.jeannychiu.learningnotesapi.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 壓縮與解壓縮的 CPU 成本量測 (mvn test -Pbenchmark)
+ */
+@Tag("benchmark")
+class CompressedTextConverterBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(CompressedTextConverterBenchmarkTest.class);
+    private static final int ITERATIONS = 2000;
+
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void benchmarkCompression() throws Exception {
+        for (String payload : CompressedTextConverterTest.samplePayloads(mapper)) {
+            byte[] plain = payload.getBytes(StandardCharsets.UTF_8);
+            byte[] stored = converter.convertToDatabaseColumn(payload);
+            byte[] withoutDictionary = CompressedTextConverterTest.deflateWithoutDictionary(plain);
+
+            // 暖機
+            for (int i = 0; i < ITERATIONS; i++) {
+                converter.convertToEntityAttribute(converter.convertToDatabaseColumn(payload));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                converter.convertToDatabaseColumn(payload);
+            }
+            long compressNanos = (System.nanoTime() - start) / ITERATIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                converter.convertToEntityAttribute(stored);
+            }
+            long decompressNanos = (System.nanoTime() - start) / ITERATIONS;
+
+            log.info(String.format("原始 %,d bytes -> 壓縮 %,d bytes (%.1f%%，無字典 %,d bytes)，壓縮 %,d ns/op，解壓縮 %,d ns/op",
+                    plain.length, stored.length, stored.length * 100.0 / plain.length,
+                    withoutDictionary.length, compressNanos, decompressNanos));
+        }
+    }
+}
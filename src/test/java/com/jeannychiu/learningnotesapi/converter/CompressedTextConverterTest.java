@@ -0,0 +1,105 @@
+package com.jeannychiu.learningnotesapi.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedTextConverterTest {
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void testRoundTrip() {
+        // 測試壓縮後可還原 (包含短字串、中文、空字串與 null)
+        String longText = "{\"message\":\"這是一段會被壓縮的中文內容 with English\"}".repeat(20);
+
+        assertEquals(longText, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(longText)));
+        assertEquals("短", converter.convertToEntityAttribute(converter.convertToDatabaseColumn("短")));
+        assertEquals("", converter.convertToEntityAttribute(converter.convertToDatabaseColumn("")));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+
+        // 短字串不壓縮，直接存原文
+        assertEquals(CompressedTextConverter.FORMAT_PLAIN, converter.convertToDatabaseColumn("短")[0]);
+        assertEquals(CompressedTextConverter.FORMAT_DEFLATE_V1, converter.convertToDatabaseColumn(longText)[0]);
+    }
+
+    @Test
+    void testCompressionRatio() throws Exception {
+        // 以實際的 API 日誌內容確認壓縮率 (CPU 成本見 CompressedTextConverterBenchmarkTest)
+        for (String payload : samplePayloads(mapper)) {
+            byte[] plain = payload.getBytes(StandardCharsets.UTF_8);
+            byte[] stored = converter.convertToDatabaseColumn(payload);
+
+            assertEquals(payload, converter.convertToEntityAttribute(stored));
+            assertTrue(stored.length < plain.length * 0.6, "壓縮後應小於原始大小的 60%");
+            assertTrue(stored.length <= deflateWithoutDictionary(plain).length + 1, "使用字典不應比無字典差");
+        }
+    }
+
+    /**
+     * 單筆筆記、10 筆與 100 筆分頁的回應內容
+     */
+    static List<String> samplePayloads(ObjectMapper mapper) throws Exception {
+        return List.of(
+                mapper.writeValueAsString(ResponseEntity.ok(sampleNote(1))),
+                mapper.writeValueAsString(ResponseEntity.ok(samplePage(10))),
+                mapper.writeValueAsString(ResponseEntity.ok(samplePage(100))));
+    }
+
+    private static Note sampleNote(long id) {
+        Tag tag = new Tag();
+        tag.setId(id % 5);
+        tag.setName("spring-boot");
+        tag.setCreatedAt(LocalDateTime.of(2025, 8, 1, 10, 0));
+        tag.setUpdatedAt(LocalDateTime.of(2025, 8, 1, 10, 0));
+
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle("學習筆記 " + id + "：Spring Data JPA 查詢");
+        note.setContent("今天學到 JPQL 與 native query 的差異，分頁查詢時要注意 count query 的效能。第 " + id + " 篇。");
+        note.setUserEmail("demo@example-test.com");
+        note.setVersion((int) (id % 3));
+        note.setCreatedAt(LocalDateTime.of(2025, 8, 1, 10, 0).plusMinutes(id));
+        note.setUpdatedAt(LocalDateTime.of(2025, 8, 2, 9, 30).plusMinutes(id));
+        note.setTags(Set.of(tag));
+        return note;
+    }
+
+    private static PageImpl<Note> samplePage(int size) {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            notes.add(sampleNote(i));
+        }
+        return new PageImpl<>(notes, PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "updatedAt")), 250);
+    }
+
+    static byte[] deflateWithoutDictionary(byte[] plain) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(plain);
+            deflater.finish();
+            byte[] buffer = new byte[plain.length + 64];
+            int length = deflater.deflate(buffer);
+            byte[] result = new byte[length];
+            System.arraycopy(buffer, 0, result, 0, length);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+}
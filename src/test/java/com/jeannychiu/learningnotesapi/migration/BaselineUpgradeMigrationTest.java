@@ -0,0 +1,136 @@
+package com.jeannychiu.learningnotesapi.migration;
+
+import com.jeannychiu.learningnotesapi.converter.CompressedTextConverter;
+import com.jeannychiu.learningnotesapi.model.NoteBody;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 從改用 Flyway 前的 schema 升級 (MySQL 專用的 V3、V4 不在 H2 上執行)
+ */
+class BaselineUpgradeMigrationTest {
+
+    @Test
+    void testUpgradeMigratesApiLogBodies() throws Exception {
+        DataSource dataSource = dataSource();
+        new ResourceDatabasePopulator(new ClassPathResource("db/baseline/schema.sql")).execute(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO api_log (api_path, http_method, request_body, status_code) "
+                + "VALUES ('/notes', 'POST', '{\"title\":\"t\"}', 201)");
+        String longBody = "{\"content\":\"" + "長內容 long content ".repeat(200) + "\"}";
+        jdbcTemplate.update("INSERT INTO api_log (api_path, http_method, response_body, status_code) "
+                + "VALUES ('/notes/1', 'GET', ?, 200)", longBody);
+
+        migrate(dataSource);
+
+        try (Connection connection = dataSource.getConnection()) {
+            Set<String> columns = MigrationSupport.columnNames(connection, "api_log");
+            assertTrue(columns.contains("request_body_compressed"));
+            assertTrue(columns.contains("response_body_compressed"));
+            assertTrue(MigrationSupport.hasIndex(connection, "api_log", "idx_api_log_request_time"));
+            // 舊欄位搬完後移除，結果與全新資料庫相同
+            assertFalse(columns.contains("request_body"));
+            assertFalse(columns.contains("response_body"));
+        }
+
+        // 歷史日誌的內容可由 Entity 的轉換器讀回
+        CompressedTextConverter converter = new CompressedTextConverter();
+        List<String[]> bodies = jdbcTemplate.query(
+                "SELECT request_body_compressed, response_body_compressed FROM api_log ORDER BY id",
+                (resultSet, rowNum) -> new String[]{
+                        converter.convertToEntityAttribute(resultSet.getBytes(1)),
+                        converter.convertToEntityAttribute(resultSet.getBytes(2))});
+        assertEquals(2, bodies.size());
+        assertArrayEquals(new String[]{"{\"title\":\"t\"}", null}, bodies.get(0));
+        assertArrayEquals(new String[]{null, longBody}, bodies.get(1));
+    }
+
+    @Test
+    void testFreshDatabaseIsUnchanged() throws Exception {
+        DataSource dataSource = dataSource();
+        migrate(dataSource);
+
+        try (Connection connection = dataSource.getConnection()) {
+            Set<String> columns = MigrationSupport.columnNames(connection, "api_log");
+            assertTrue(columns.contains("request_body_compressed"));
+            assertFalse(columns.contains("request_body"));
+        }
+    }
+
+    @Test
+    void testBackfillsNoteBodySearchText() {
+        DataSource dataSource = dataSource();
+        migrate(dataSource, "10");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        String content = "前言。".repeat(200) + "只出現在後段的關鍵字";
+        jdbcTemplate.update("INSERT INTO note (id, title, content, user_email, body_length) "
+                + "VALUES (1, '長筆記', NULL, 'test@example.com', ?)", content.length());
+        jdbcTemplate.update("INSERT INTO note_body (note_id, content) VALUES (1, ?)",
+                new CompressedTextConverter().convertToDatabaseColumn(content));
+
+        migrate(dataSource, "latest");
+
+        assertEquals("長筆記\n" + content,
+                jdbcTemplate.queryForObject("SELECT search_text FROM note_body WHERE note_id = 1", String.class));
+    }
+
+    @Test
+    void testDropsCompressedNoteBodyContent() throws Exception {
+        DataSource dataSource = dataSource();
+        migrate(dataSource, "10.1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        String content = "第一行\n第二行";
+        jdbcTemplate.update("INSERT INTO note (id, title, content, user_email, body_length) "
+                + "VALUES (1, ?, NULL, 'test@example.com', ?)", "多行\n標題", content.length());
+        jdbcTemplate.update("INSERT INTO note_body (note_id, content, search_text) VALUES (1, ?, ?)",
+                new CompressedTextConverter().convertToDatabaseColumn(content), "多行\n標題\n" + content);
+
+        migrate(dataSource, "latest");
+
+        try (Connection connection = dataSource.getConnection()) {
+            assertFalse(MigrationSupport.columnNames(connection, "note_body").contains("content"));
+        }
+        // 標題中的換行改為空白，第一個換行之後即為內容
+        String searchText = jdbcTemplate.queryForObject("SELECT search_text FROM note_body WHERE note_id = 1",
+                String.class);
+        assertEquals("多行 標題\n" + content, searchText);
+        NoteBody body = new NoteBody();
+        body.setSearchText(searchText);
+        assertEquals(content, body.getContent());
+    }
+
+    private static DataSource dataSource() {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+                "sa", "sa");
+    }
+
+    private static void migrate(DataSource dataSource) {
+        migrate(dataSource, "latest");
+    }
+
+    private static void migrate(DataSource dataSource, String target) {
+        // 與 application.properties 的 Flyway 設定相同
+        Flyway.configure()
+                .dataSource(dataSource)
+                .target(target)
+                .locations("classpath:db/migration/common")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .javaMigrations(new V2_1__AddApiLogCompressedColumns(), new V2_2__MigrateApiLogBodies(),
+                        new V10_1__BackfillNoteBodySearchText(), new V11__DropCompressedNoteBodyContent())
+                .load()
+                .migrate();
+    }
+}
@@ -0,0 +1,131 @@
+package com.jeannychiu.learningnotesapi.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 以 EXPLAIN 確認 repository 查詢都有使用索引
+ *
+ * 透過 Hibernate StatementInspector 取得各 repository 方法實際送出的 SQL，
+ * 再以 EXPLAIN 檢查執行計畫中沒有 table scan。
+ *
+ * 管理員的全部筆記列表與不限使用者的關鍵字搜尋 (LIKE '%keyword%') 本質上需要掃描，
+ * 不在此檢查範圍內；MySQL 上的關鍵字搜尋由 FULLTEXT 索引處理。
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "com.jeannychiu.learningnotesapi.repository.NoteRepositoryIndexTest$CapturingInspector")
+@Transactional
+class NoteRepositoryIndexTest {
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 記錄 Hibernate 送出的 SQL
+     */
+    public static class CapturingInspector implements StatementInspector {
+        static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        // 準備足夠的資料，讓最佳化器依實際選擇性挑選索引
+        for (int tag = 1; tag <= 5; tag++) {
+            jdbcTemplate.update("INSERT INTO tag (name, created_at, updated_at) VALUES (?, NOW(), NOW())",
+                    "index-test-tag-" + tag);
+        }
+        List<Long> tagIds = jdbcTemplate.queryForList(
+                "SELECT id FROM tag WHERE name LIKE 'index-test-tag-%'", Long.class);
+        for (int i = 0; i < 500; i++) {
+            jdbcTemplate.update("INSERT INTO note (title, content, user_email, version, created_at, updated_at) " +
+                            "VALUES (?, ?, ?, 0, NOW(), DATEADD('MINUTE', ?, NOW()))",
+                    "筆記 " + i, "內容 " + i, "index-user-" + (i % 50) + "@example.com", i);
+            Long noteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM note", Long.class);
+            jdbcTemplate.update("INSERT INTO note_tag (note_id, tag_id) VALUES (?, ?)",
+                    noteId, tagIds.get(i % tagIds.size()));
+        }
+    }
+
+    @Test
+    void testNoteQueriesUseIndexes() {
+        String email = "index-user-1@example.com";
+        PageRequest page = PageRequest.of(0, 10);
+
+        assertUsesIndexes("findAllNoteIdsByUserEmail", repo -> repo.findAllNoteIdsByUserEmail(email, page));
+        assertUsesIndexes("findByUserEmail", repo -> repo.findByUserEmail(email, page));
+        assertUsesIndexes("findByUserEmailAndKeyword", repo -> repo.findByUserEmailAndKeyword(email, "筆記", page));
+        assertUsesIndexes("findByUserEmailAndTagName",
+                repo -> repo.findByUserEmailAndTagName(email, "index-test-tag-1", page));
+        assertUsesIndexes("findByTagName", repo -> repo.findByTagName("index-test-tag-1", page));
+        assertUsesIndexes("findByUserEmailAndTagNameAndKeyword",
+                repo -> repo.findByUserEmailAndTagNameAndKeyword(email, "index-test-tag-1", "筆記", page));
+        assertUsesIndexes("findByTagNameAndKeyword",
+                repo -> repo.findByTagNameAndKeyword("index-test-tag-1", "筆記", page));
+        assertUsesIndexes("findNotesWithTagsByIds", repo -> repo.findNotesWithTagsByIds(List.of(1L, 2L, 3L)));
+        assertUsesIndexes("findSuggestionsForUser", repo -> repo.findSuggestionsForUser(email, "筆記", 5));
+        assertUsesIndexes("findByUserEmailAndFingerprintOrderByIdAsc",
+                repo -> repo.findByUserEmailAndFingerprintOrderByIdAsc(email, 1L));
+    }
+
+    @Test
+    void testUserAndTagLookupsUseIndexes() {
+        CapturingInspector.STATEMENTS.clear();
+        userRepository.findByEmail("index-user-1@example.com");
+        userRepository.findByGoogleSub("google-sub");
+        tagRepository.findByName("index-test-tag-1");
+        tagRepository.findByNameIn(List.of("index-test-tag-1", "index-test-tag-2"));
+        assertPlansUseIndexes("user/tag lookups", new ArrayList<>(CapturingInspector.STATEMENTS));
+    }
+
+    private void assertUsesIndexes(String name, Consumer<NoteRepository> query) {
+        CapturingInspector.STATEMENTS.clear();
+        query.accept(noteRepository);
+        assertPlansUseIndexes(name, new ArrayList<>(CapturingInspector.STATEMENTS));
+    }
+
+    private void assertPlansUseIndexes(String name, List<String> statements) {
+        assertFalse(statements.isEmpty(), name + " 沒有送出任何 SQL");
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.contains(".tableScan"), name + " 的查詢沒有使用索引:\n" + plan);
+        }
+    }
+
+    // 以 EXPLAIN 取得執行計畫，所有參數以字串 "1" 代入 (H2 會轉換成欄位的型別)
+    private String explain(String sql) {
+        int parameters = (int) sql.chars().filter(c -> c == '?').count();
+        Object[] args = Collections.nCopies(parameters, "1").toArray();
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("EXPLAIN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        rows.forEach(row -> row.values().forEach(value -> plan.append(value).append('\n')));
+        return plan.toString();
+    }
+}
@@ -0,0 +1,21 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FulltextNoteSearchBackendTest {
+
+    @Test
+    void testToBooleanQuery() {
+        // 每個詞都必須出現
+        assertEquals("+\"spring\" +\"資料庫\"", FulltextNoteSearchBackend.toBooleanQuery(" spring  資料庫 "));
+
+        // 使用者輸入的運算子一律移除
+        assertEquals("+\"java\" +\"boot\"", FulltextNoteSearchBackend.toBooleanQuery("-java +\"boot*\" ~"));
+
+        // 短於 ngram token 長度的詞無法以 FULLTEXT 比對，交由 LIKE 處理
+        assertNull(FulltextNoteSearchBackend.toBooleanQuery("筆 記"));
+        assertNull(FulltextNoteSearchBackend.toBooleanQuery("()"));
+    }
+}
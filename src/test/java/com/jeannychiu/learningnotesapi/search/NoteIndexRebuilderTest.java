@@ -0,0 +1,276 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.dto.HighlightRange;
+import com.jeannychiu.learningnotesapi.dto.SearchIndexRebuildStatus;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteChange;
+import com.jeannychiu.learningnotesapi.repository.NoteBodyRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteChangeRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import com.jeannychiu.learningnotesapi.service.NoteChangeLogService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NoteIndexRebuilderTest {
+    private final NoteRepository noteRepository = mock(NoteRepository.class);
+    private final NoteChangeRepository noteChangeRepository = mock(NoteChangeRepository.class);
+    private final NoteChangeLogService noteChangeLogService = mock(NoteChangeLogService.class);
+    private final NoteSearchIndex index = new NoteSearchIndex(2.0, 2, 4, ForkJoinPool.commonPool());
+    private final NoteIndexRebuilder rebuilder = rebuilder(index, "");
+    private final List<Note> notes = new ArrayList<>();
+
+    @TempDir
+    Path snapshotDirectory;
+
+    @BeforeEach
+    void setUp() {
+        // ID 不連續，部分區間沒有筆記
+        for (long id = 3; id <= 1000; id += 7) {
+            notes.add(note(id, "user" + (id % 13) + "@example.com", id % 2 == 0 ? "Spring 筆記" : "Java 筆記"));
+        }
+        when(noteRepository.findMinNoteId()).thenReturn(3L);
+        when(noteRepository.findMaxNoteId()).thenReturn(notes.get(notes.size() - 1).getId());
+        when(noteRepository.count()).thenReturn((long) notes.size());
+        when(noteRepository.findNotesWithTagsInIdRange(anyLong(), anyLong())).thenAnswer(invocation -> {
+            long fromId = invocation.getArgument(0);
+            long toId = invocation.getArgument(1);
+            return notes.stream().filter(note -> note.getId() >= fromId && note.getId() < toId).toList();
+        });
+    }
+
+    @Test
+    void testRebuildLoadsAllChunks() {
+        assertFalse(index.isReady());
+        // 重建前的內容在替換後不再存在
+        index.put(note(5000L, "user@example.com", "已刪除的筆記"));
+
+        assertTrue(rebuilder.rebuild());
+
+        assertTrue(index.isReady());
+        assertEquals(notes.size(), index.size());
+        assertEquals(notes.stream().filter(note -> note.getTitle().startsWith("Spring")).count(),
+                index.search(null, null, "spring", 0, 10).totalHits());
+
+        SearchIndexRebuildStatus status = rebuilder.getStatus();
+        assertEquals("COMPLETED", status.getState());
+        assertEquals(10, status.getTotalChunks());
+        assertEquals(10, status.getCompletedChunks());
+        assertEquals(notes.size(), status.getIndexedNotes());
+        assertNotNull(status.getFinishedAt());
+    }
+
+    @Test
+    void testFailedRebuildKeepsCurrentIndex() {
+        index.put(note(5000L, "user@example.com", "目前的筆記"));
+        when(noteRepository.findNotesWithTagsInIdRange(anyLong(), anyLong()))
+                .thenThrow(new IllegalStateException("資料庫連線中斷"));
+
+        assertFalse(rebuilder.rebuild());
+
+        SearchIndexRebuildStatus status = rebuilder.getStatus();
+        assertEquals("FAILED", status.getState());
+        assertEquals("資料庫連線中斷", status.getError());
+        assertFalse(index.isReady());
+        assertEquals(1, index.size());
+
+        // 失敗後可以重新開始
+        doReturn(List.of()).when(noteRepository).findNotesWithTagsInIdRange(anyLong(), anyLong());
+        assertTrue(rebuilder.rebuild());
+        assertTrue(index.isReady());
+    }
+
+    @Test
+    void testFailedRebuildIsRetriedWithBackoff() throws Exception {
+        // 失敗的重建中其他工作執行緒可能仍在查詢，以旗標切換結果，不在查詢進行中重新設定 mock
+        AtomicBoolean databaseDown = new AtomicBoolean(true);
+        when(noteRepository.findNotesWithTagsInIdRange(anyLong(), anyLong())).thenAnswer(invocation -> {
+            if (databaseDown.get()) {
+                throw new IllegalStateException("資料庫連線中斷");
+            }
+            return List.of();
+        });
+
+        // 每次連續失敗等待時間加倍，最多 retry-max-delay；還沒到重試時間時不重試
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            assertFalse(rebuilder.rebuild());
+            SearchIndexRebuildStatus status = rebuilder.getStatus();
+            assertEquals(attempt, status.getFailedAttempts());
+            Duration wait = Duration.between(LocalDateTime.now(), status.getRetryAt());
+            Duration expected = attempt == 1 ? Duration.ofHours(1) : Duration.ofHours(2);
+            assertTrue(wait.compareTo(expected) <= 0 && wait.compareTo(expected.minusMinutes(1)) > 0, wait::toString);
+        }
+        assertFalse(rebuilder.retryFailedRebuild());
+
+        // 到了重試時間自動在背景重建，成功後重新計算
+        NoteIndexRebuilder retrying = rebuilder(index, "", Duration.ZERO, Duration.ZERO);
+        assertFalse(retrying.rebuild());
+        databaseDown.set(false);
+        assertTrue(retrying.retryFailedRebuild());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!"COMPLETED".equals(retrying.getStatus().getState()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(index.isReady());
+        assertEquals(0, retrying.getStatus().getFailedAttempts());
+        assertNull(retrying.getStatus().getRetryAt());
+        assertFalse(retrying.retryFailedRebuild());
+    }
+
+    @Test
+    void testRestoreFromSnapshotAndReplayChanges() {
+        when(noteChangeRepository.findMaxIdChangedBefore(any())).thenReturn(50L);
+        NoteIndexRebuilder first = rebuilder(index, snapshotDirectory.toString());
+        assertTrue(first.rebuild());
+        assertEquals("DATABASE", first.getStatus().getSource());
+        assertNotNull(first.getStatus().getSnapshotWrittenAt());
+        // 沒有新的異動時不重寫
+        assertFalse(first.writeSnapshot());
+
+        // 快照之後更新了一篇筆記、刪除了一篇
+        Note updated = note(3L, "user3@example.com", "Kotlin 筆記");
+        updated.setVersion(1);
+        Note deleted = notes.get(1);
+        when(noteChangeRepository.findAllChangesAfter(eq(50L), any()))
+                .thenReturn(List.of(change(51L, updated), change(52L, deleted), change(53L, updated)));
+        when(noteChangeRepository.findAllChangesAfter(eq(53L), any())).thenReturn(List.of());
+        when(noteRepository.findNotesWithTagsByIds(anyList())).thenReturn(List.of(updated));
+        // 還原時不會逐區間讀取筆記
+        doReturn(List.of()).when(noteRepository).findNotesWithTagsInIdRange(anyLong(), anyLong());
+
+        NoteSearchIndex restored = new NoteSearchIndex(2.0, 2, 8, ForkJoinPool.commonPool());
+        NoteIndexRebuilder second = rebuilder(restored, snapshotDirectory.toString());
+        assertTrue(second.rebuild());
+
+        SearchIndexRebuildStatus status = second.getStatus();
+        assertEquals("SNAPSHOT", status.getSource());
+        assertEquals(3, status.getReplayedChanges());
+        assertEquals(notes.size(), status.getIndexedNotes());
+        assertTrue(restored.isReady());
+        assertEquals(notes.size() - 1, restored.size());
+        assertEquals(List.of(3L), restored.findIdsByKeyword(null, null, "kotlin", PageRequest.of(0, 10)).getContent());
+        assertEquals(index.search(null, null, "java", 0, 10).totalHits() - 1,
+                restored.search(null, null, "java", 0, 10).totalHits());
+
+        // 詞典與出現位置一併還原
+        assertEquals("spring", restored.correctKeyword("user4@example.com", "sprnig"));
+        assertEquals(List.of(new HighlightRange(0, 6)),
+                restored.search("user4@example.com", null, "spring", 0, 1).hits().get(0).highlights().getTitle());
+    }
+
+    @Test
+    void testAppliesSettledChangesFromOtherInstances() throws IOException {
+        when(noteChangeRepository.findMaxIdChangedBefore(any())).thenReturn(50L);
+        NoteIndexRebuilder rebuilder = rebuilder(index, snapshotDirectory.toString());
+        assertTrue(rebuilder.rebuild());
+
+        // 其他執行個體的異動 (本程序沒有收到事件)；第三筆還在 settle-time 內
+        Note updated = note(3L, "user3@example.com", "Kotlin 筆記");
+        updated.setVersion(1);
+        Note deleted = notes.get(1);
+        NoteChange unsettled = change(53L, notes.get(2));
+        unsettled.setChangedAt(LocalDateTime.now());
+        when(noteChangeRepository.findAllChangesAfter(eq(50L), any()))
+                .thenReturn(List.of(change(51L, updated), change(52L, deleted), unsettled));
+        when(noteRepository.findNotesWithTagsByIds(anyList())).thenReturn(List.of(updated));
+
+        assertEquals(2, rebuilder.applyNewChanges());
+        assertEquals(notes.size() - 1, index.size());
+        assertEquals(List.of(3L), index.findIdsByKeyword(null, null, "kotlin", PageRequest.of(0, 10)).getContent());
+
+        // 快照的高水位是已套用的異動，而非資料庫中最大的異動紀錄
+        when(noteChangeRepository.findMaxIdChangedBefore(any())).thenReturn(60L);
+        assertTrue(rebuilder.writeSnapshot());
+        NoteIndexSnapshot.Manifest manifest = NoteIndexSnapshot.open(snapshotDirectory);
+        assertEquals(52L, manifest.changeToken());
+        // 暫存檔都已改名
+        try (Stream<Path> files = Files.list(snapshotDirectory)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void testUnusableSnapshotFallsBackToDatabase() throws IOException {
+        when(noteChangeRepository.findMaxIdChangedBefore(any())).thenReturn(50L);
+        assertTrue(rebuilder(index, snapshotDirectory.toString()).rebuild());
+
+        // 快照之後的刪除紀錄已被清除
+        when(noteChangeLogService.getPurgedThrough()).thenReturn(60L);
+        NoteIndexRebuilder stale = rebuilder(new NoteSearchIndex(2.0, 2, 4, ForkJoinPool.commonPool()),
+                snapshotDirectory.toString());
+        assertTrue(stale.rebuild());
+        assertEquals("DATABASE", stale.getStatus().getSource());
+
+        // 內容損毀時檢查碼不符
+        when(noteChangeLogService.getPurgedThrough()).thenReturn(0L);
+        Path largest;
+        try (Stream<Path> files = Files.list(snapshotDirectory)) {
+            largest = files.max(Comparator.comparingLong(file -> file.toFile().length())).orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(largest.toFile(), "rw")) {
+            file.seek(file.length() / 2);
+            int value = file.read();
+            file.seek(file.length() / 2);
+            file.write(value ^ 0xFF);
+        }
+        NoteSearchIndex fallback = new NoteSearchIndex(2.0, 2, 4, ForkJoinPool.commonPool());
+        NoteIndexRebuilder corrupted = rebuilder(fallback, snapshotDirectory.toString());
+        assertTrue(corrupted.rebuild());
+        assertEquals("DATABASE", corrupted.getStatus().getSource());
+        assertEquals(notes.size(), fallback.size());
+    }
+
+    private NoteIndexRebuilder rebuilder(NoteSearchIndex target, String snapshotDirectory) {
+        return rebuilder(target, snapshotDirectory, Duration.ofHours(1), Duration.ofHours(2));
+    }
+
+    private NoteIndexRebuilder rebuilder(NoteSearchIndex target, String snapshotDirectory, Duration retryDelay,
+                                         Duration maxRetryDelay) {
+        return new NoteIndexRebuilder(target, noteRepository, mock(NoteBodyRepository.class), noteChangeRepository,
+                noteChangeLogService, 100, 4, snapshotDirectory, Duration.ofSeconds(2), retryDelay, maxRetryDelay);
+    }
+
+    private static NoteChange change(Long id, Note note) {
+        NoteChange change = new NoteChange();
+        change.setId(id);
+        change.setNoteId(note.getId());
+        change.setUserEmail(note.getUserEmail());
+        change.setChangedAt(LocalDateTime.now().minusMinutes(1));
+        return change;
+    }
+
+    private static Note note(Long id, String userEmail, String title) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUserEmail(userEmail);
+        note.setTitle(title);
+        note.setContent("內容");
+        note.setVersion(0);
+        note.setUpdatedAt(LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(id));
+        return note;
+    }
+}
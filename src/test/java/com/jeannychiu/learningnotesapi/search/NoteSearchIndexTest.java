@@ -0,0 +1,282 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.dto.HighlightRange;
+import com.jeannychiu.learningnotesapi.dto.NoteHighlights;
+import com.jeannychiu.learningnotesapi.exception.InvalidRequestParameterException;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteSearchIndexTest {
+    private static final String USER = "user@example.com";
+    private static final String OTHER_USER = "other@example.com";
+
+    private final NoteSearchIndex index = new NoteSearchIndex(2.0, 2, 4, ForkJoinPool.commonPool());
+
+    @Test
+    void testTitleMatchesRankFirst() {
+        index.put(note(1L, USER, "週末計畫", "學習 Spring Boot 的資料庫設定"));
+        index.put(note(2L, USER, "Spring Boot 筆記", "今天整理了一些設定"));
+        index.put(note(3L, USER, "JPA 心得", "Spring Data 的資料庫存取"));
+        index.put(note(4L, USER, "無關的筆記", "完全沒有提到"));
+        index.put(note(5L, OTHER_USER, "Spring", "其他使用者的筆記"));
+
+        NoteSearchIndex.Result result = index.search(USER, null, "spring", 0, 10);
+
+        // 標題命中排在內容命中之前，其他使用者的筆記不在結果中
+        assertEquals(3, result.totalHits());
+        assertEquals(2L, result.hits().get(0).noteId());
+        assertTrue(result.hits().get(0).score() > result.hits().get(1).score());
+
+        // 管理員搜尋所有使用者
+        assertEquals(4, index.search(null, null, "spring", 0, 10).totalHits());
+
+        // 分頁
+        NoteSearchIndex.Result secondPage = index.search(USER, null, "spring", 2, 2);
+        assertEquals(3, secondPage.totalHits());
+        assertEquals(1, secondPage.hits().size());
+        assertEquals(result.hits().get(2).noteId(), secondPage.hits().get(0).noteId());
+    }
+
+    @Test
+    void testAllTermsRequiredAndTagFilter() {
+        Note tagged = note(1L, USER, "資料庫索引", "MySQL 的 B+ tree 索引");
+        tagged.setTags(Set.of(tag("mysql")));
+        index.put(tagged);
+        index.put(note(2L, USER, "資料庫設計", "正規化"));
+
+        assertEquals(2, index.search(USER, null, "資料庫", 0, 10).totalHits());
+        assertEquals(1, index.search(USER, null, "資料庫 索引", 0, 10).totalHits());
+        assertEquals(1, index.search(USER, TagFilter.parse("mysql"), "資料庫", 0, 10).totalHits());
+        assertEquals(0, index.search(USER, null, "資料庫 postgres", 0, 10).totalHits());
+    }
+
+    @Test
+    void testMultiTagFilter() {
+        index.put(taggedNote(1L, "java", "spring"));
+        index.put(taggedNote(2L, "kotlin", "spring", "draft"));
+        index.put(taggedNote(3L, "java"));
+        index.put(taggedNote(4L, "python"));
+        Note other = taggedNote(5L, "java", "spring");
+        other.setUserEmail(OTHER_USER);
+        index.put(other);
+
+        assertEquals(List.of(3L, 1L), tagged(USER, "java"));
+        assertEquals(List.of(3L, 2L, 1L), tagged(USER, "java|kotlin"));
+        assertEquals(List.of(2L, 1L), tagged(USER, "java|kotlin, spring"));
+        assertEquals(List.of(1L), tagged(USER, "java|kotlin,spring,-draft"));
+        assertEquals(List.of(4L, 3L, 1L), tagged(USER, "-draft"));
+        assertEquals(List.of(), tagged(USER, "missing"));
+        assertEquals(List.of(5L, 1L), tagged(null, "java,spring"));
+
+        // 分頁依更新時間由新到舊
+        Page<Long> page = index.findIdsByTags(USER, TagFilter.parse("-draft"), PageRequest.of(1, 2));
+        assertEquals(3, page.getTotalElements());
+        assertEquals(List.of(1L), page.getContent());
+
+        // 標籤異動後點陣圖同步更新
+        Note retagged = taggedNote(3L, "spring");
+        retagged.setVersion(1);
+        index.put(retagged);
+        assertEquals(List.of(1L), tagged(USER, "java"));
+        index.remove(taggedNote(1L));
+        assertEquals(List.of(), tagged(USER, "java"));
+    }
+
+    @Test
+    void testInvalidTagFilter() {
+        assertThrows(InvalidRequestParameterException.class, () -> TagFilter.parse(" , "));
+        assertThrows(InvalidRequestParameterException.class, () -> TagFilter.parse("-"));
+        assertThrows(InvalidRequestParameterException.class, () -> TagFilter.parse("-a|b"));
+        assertThrows(InvalidRequestParameterException.class, () -> TagFilter.parse("java\\"));
+    }
+
+    @Test
+    void testTagFilterEscapes() {
+        assertEquals("c,c++", TagFilter.parse("c\\,c++").singleTag());
+        assertEquals("-draft", TagFilter.parse("\\-draft").singleTag());
+        assertEquals("a\\b", TagFilter.parse("a\\\\b").singleTag());
+
+        TagFilter filter = TagFilter.parse("c\\|c++|java,-wip\\,old");
+        assertEquals(List.of(List.of("c|c++", "java")), filter.requiredGroups());
+        assertEquals(List.of("wip,old"), filter.excludedTags());
+    }
+
+    @Test
+    void testAdminSearchMergesShards() {
+        // 30 個使用者分散在 4 個分片，每人 5 篇筆記，其中偶數篇提到 spring
+        List<Note> matching = new ArrayList<>();
+        long id = 1;
+        for (int user = 0; user < 30; user++) {
+            for (int i = 0; i < 5; i++, id++) {
+                Note note = note(id, "user" + user + "@example.com", "筆記 " + id,
+                        i % 2 == 0 ? "Spring Boot 設定" : "其他內容");
+                // 更新時間與 ID 順序不同，確認是依更新時間合併
+                note.setUpdatedAt(LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes((id * 37) % 150));
+                if (i == 0) {
+                    note.setTitle("Spring 入門 " + id);
+                    note.setTags(Set.of(tag("java")));
+                }
+                index.put(note);
+                if (i % 2 == 0) {
+                    matching.add(note);
+                }
+            }
+        }
+        List<Long> expected = matching.stream()
+                .sorted(Comparator.comparing(Note::getUpdatedAt).reversed())
+                .map(Note::getId)
+                .toList();
+
+        Page<Long> firstPage = index.findIdsByKeyword(null, null, "spring", PageRequest.of(0, 10));
+        assertEquals(90, firstPage.getTotalElements());
+        assertEquals(expected.subList(0, 10), firstPage.getContent());
+        assertEquals(expected.subList(40, 50),
+                index.findIdsByKeyword(null, null, "spring", PageRequest.of(4, 10)).getContent());
+
+        // 一般使用者只搜尋自己的分片
+        assertEquals(3, index.findIdsByKeyword("user3@example.com", null, "spring", PageRequest.of(0, 10))
+                .getTotalElements());
+        assertEquals(30, index.findIdsByKeyword(null, TagFilter.parse("java"), "spring", PageRequest.of(0, 10))
+                .getTotalElements());
+
+        // 標題比對 (搜尋建議)
+        List<Long> titled = index.findIdsByTitle(null, "spring", 5);
+        assertEquals(5, titled.size());
+        assertTrue(titled.stream().allMatch(noteId -> (noteId - 1) % 5 == 0));
+
+        // 依相關度合併時，各分片以相同的語料統計計分
+        NoteSearchIndex.Result result = index.search(null, null, "spring", 0, 200);
+        assertEquals(90, result.totalHits());
+        for (int i = 1; i < result.hits().size(); i++) {
+            assertTrue(result.hits().get(i - 1).score() >= result.hits().get(i).score());
+        }
+        assertTrue(result.hits().subList(0, 30).stream().allMatch(hit -> (hit.noteId() - 1) % 5 == 0));
+    }
+
+    @Test
+    void testChangesDuringBuildAreKept() {
+        index.put(note(1L, USER, "重建前的筆記", "內容"));
+        NoteSearchIndex.Build build = index.startBuild();
+        assertThrows(IllegalStateException.class, index::startBuild);
+
+        // 從資料庫讀出的筆記
+        build.put(note(2L, USER, "Spring", "內容"));
+        Note deleted = note(3L, USER, "Spring", "內容");
+        build.put(deleted);
+
+        // 重建期間的異動同時寫入兩邊
+        index.remove(deleted);
+        Note updated = note(2L, USER, "Java", "內容");
+        updated.setVersion(1);
+        index.put(updated);
+        index.put(note(4L, USER, "Spring", "新增的筆記"));
+
+        // 較早讀出的資料不會蓋過異動
+        build.put(note(2L, USER, "Spring", "內容"));
+        build.put(deleted);
+
+        // 替換前仍以目前的索引查詢
+        assertEquals(1, index.search(USER, null, "spring", 0, 10).totalHits());
+        index.finishBuild(build);
+
+        assertTrue(index.isReady());
+        assertEquals(2, index.size());
+        assertEquals(List.of(4L), index.findIdsByKeyword(USER, null, "spring", PageRequest.of(0, 10)).getContent());
+        assertEquals(List.of(2L), index.findIdsByKeyword(USER, null, "java", PageRequest.of(0, 10)).getContent());
+    }
+
+    @Test
+    void testHighlightsFromIndexedOffsets() {
+        String content = "前言。".repeat(50) + "這裡介紹資料庫索引的原理";
+        index.put(note(1L, USER, "MySQL 資料庫", content));
+
+        NoteHighlights highlights = index.search(USER, null, "資料庫", 0, 10).hits().get(0).highlights();
+
+        // 相鄰的 bigram 合併為一段
+        assertEquals(List.of(new HighlightRange(6, 9)), highlights.getTitle());
+        int start = content.indexOf("資料庫");
+        assertEquals(List.of(new HighlightRange(start, start + 3)), highlights.getContent());
+        assertTrue(highlights.getSnippetStart() <= start);
+        assertTrue(highlights.getSnippetEnd() >= start + 3);
+        assertTrue(highlights.getSnippetEnd() - highlights.getSnippetStart() <= UserNoteIndex.SNIPPET_LENGTH);
+    }
+
+    @Test
+    void testUpdatesAndDeletesAreApplied() {
+        Note note = note(1L, USER, "Spring 筆記", "內容");
+        index.put(note);
+
+        Note updated = note(1L, USER, "Java 筆記", "內容");
+        updated.setVersion(1);
+        index.put(updated);
+        assertEquals(0, index.search(USER, null, "spring", 0, 10).totalHits());
+        assertEquals(1, index.search(USER, null, "java", 0, 10).totalHits());
+
+        // 較舊的版本不會覆蓋較新的索引
+        index.put(note);
+        assertEquals(0, index.search(USER, null, "spring", 0, 10).totalHits());
+
+        index.remove(updated);
+        assertEquals(0, index.search(USER, null, "java", 0, 10).totalHits());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testNotesWithoutOwner() {
+        // user_email 為 null 的筆記不影響重建，只有管理員查得到
+        NoteSearchIndex.Build build = index.startBuild();
+        build.put(note(1L, null, "Spring", "沒有擁有者"));
+        build.put(note(2L, USER, "Spring", "內容"));
+        index.finishBuild(build);
+
+        assertEquals(2, index.search(null, null, "spring", 0, 10).totalHits());
+        assertEquals(List.of(2L), index.findIdsByKeyword(USER, null, "spring", PageRequest.of(0, 10)).getContent());
+
+        index.remove(note(1L, null, "Spring", "沒有擁有者"));
+        assertEquals(1, index.search(null, null, "spring", 0, 10).totalHits());
+    }
+
+    private static Note note(Long id, String userEmail, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUserEmail(userEmail);
+        note.setTitle(title);
+        note.setContent(content);
+        note.setVersion(0);
+        note.setUpdatedAt(LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(id));
+        return note;
+    }
+
+    private List<Long> tagged(String userEmail, String expression) {
+        return index.findIdsByTags(userEmail, TagFilter.parse(expression), PageRequest.of(0, 10)).getContent();
+    }
+
+    private static Note taggedNote(Long id, String... tagNames) {
+        Note note = note(id, USER, "筆記 " + id, "內容");
+        Set<Tag> tags = new HashSet<>();
+        for (String tagName : tagNames) {
+            tags.add(tag(tagName));
+        }
+        note.setTags(tags);
+        return note;
+    }
+
+    private static Tag tag(String name) {
+        Tag tag = new Tag();
+        tag.setName(name);
+        return tag;
+    }
+}
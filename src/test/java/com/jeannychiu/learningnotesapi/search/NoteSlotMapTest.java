@@ -0,0 +1,53 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteSlotMapTest {
+
+    @Test
+    void testMatchesHashMapUnderRandomOperations() {
+        // 隨機新增、取代、刪除，與 HashMap 比對 (ID 範圍小，探測序列與刪除搬移經常發生)
+        NoteSlotMap slots = new NoteSlotMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long noteId = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(noteId);
+                assertEquals(removed == null ? NoteSlotMap.MISSING : removed, slots.remove(noteId));
+            } else {
+                int slot = random.nextInt(Integer.MAX_VALUE);
+                expected.put(noteId, slot);
+                slots.put(noteId, slot);
+            }
+        }
+
+        assertEquals(expected.size(), slots.size());
+        for (long noteId = -100; noteId < 4_900; noteId++) {
+            Integer slot = expected.get(noteId);
+            assertEquals(slot == null ? NoteSlotMap.MISSING : slot, slots.get(noteId));
+        }
+    }
+
+    @Test
+    void testExtremeIds() {
+        NoteSlotMap slots = new NoteSlotMap();
+        slots.put(0L, 1);
+        slots.put(Long.MIN_VALUE, 2);
+        slots.put(Long.MAX_VALUE, 3);
+
+        assertEquals(1, slots.get(0L));
+        assertEquals(2, slots.get(Long.MIN_VALUE));
+        assertEquals(3, slots.get(Long.MAX_VALUE));
+        assertEquals(NoteSlotMap.MISSING, slots.get(1L));
+        assertEquals(2, slots.remove(Long.MIN_VALUE));
+        assertEquals(NoteSlotMap.MISSING, slots.get(Long.MIN_VALUE));
+        assertEquals(2, slots.size());
+    }
+}
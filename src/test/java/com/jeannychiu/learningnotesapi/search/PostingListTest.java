@@ -0,0 +1,206 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingListTest {
+    private final PostingArena arena = new PostingArena();
+
+    @Test
+    void testMatchesReferenceAfterRandomChanges() {
+        Random random = new Random(7);
+        PostingList list = new PostingList("spring", 0);
+        TreeMap<Long, UserNoteIndex.Posting> expected = new TreeMap<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            long noteId = 1 + random.nextInt(5_000) * 3L;
+            if (random.nextInt(4) == 0) {
+                list.remove(noteId, arena);
+                expected.remove(noteId);
+            } else {
+                UserNoteIndex.Posting posting = posting(random);
+                list.put(noteId, posting, arena);
+                expected.put(noteId, posting);
+            }
+            if (i % 2_500 == 0) {
+                assertContent(expected, list);
+            }
+        }
+        assertContent(expected, list);
+
+        // 以編碼後的內容還原
+        ByteBuffer encoded = list.encoded();
+        PostingList decoded = PostingList.decode("spring", 0, encoded.duplicate().position(0), encoded.capacity(), arena);
+        assertContent(expected, decoded);
+    }
+
+    @Test
+    void testAdvanceUsesSkipsAndPendingChanges() {
+        PostingList list = new PostingList("java", 0);
+        for (long noteId = 10; noteId <= 10_000; noteId += 10) {
+            list.put(noteId, posting(1, 0), arena);
+        }
+        // 之後的異動還在緩衝中
+        list.put(15, posting(2, 1), arena);
+        list.remove(20, arena);
+
+        PostingList.Cursor cursor = list.cursor();
+        assertEquals(15, cursor.advance(11));
+        assertEquals(2, cursor.titleFrequency());
+        assertEquals(30, cursor.advance(20));
+        assertEquals(5_000, cursor.advance(4_995));
+        assertEquals(5_000, cursor.advance(5_000));
+        assertEquals(5_010, cursor.next());
+        assertEquals(PostingList.END, cursor.advance(10_001));
+        assertEquals(PostingList.END, cursor.next());
+        assertEquals(1_000, list.size());
+
+        for (long noteId = 10; noteId <= 10_000; noteId += 10) {
+            list.remove(noteId, arena);
+        }
+        list.remove(15, arena);
+        assertTrue(list.isEmpty());
+        assertEquals(PostingList.END, list.cursor().next());
+    }
+
+    @Test
+    void testIndexCompactsFragmentedArena() {
+        UserNoteIndex index = new UserNoteIndex(2);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("word").append(i).append(' ');
+        }
+        for (int round = 0; round < 30; round++) {
+            for (long noteId = 1; noteId <= 200; noteId++) {
+                Note note = new Note();
+                note.setId(noteId);
+                note.setTitle("note " + noteId);
+                note.setContent(content.toString());
+                note.setVersion(round);
+                index.put(note);
+            }
+        }
+        // 重複更新產生的已釋放空間會被回收，配置量不隨更新次數成長
+        assertTrue(index.offHeapBytes() < 4L * PostingArena.MAX_CHUNK_BYTES, "實際為 " + index.offHeapBytes());
+        assertEquals(200, index.size());
+    }
+
+    @Test
+    void testIndexRemovesTermsAfterUpdateAndRestore() throws Exception {
+        UserNoteIndex index = new UserNoteIndex(2);
+        Note first = note(1, 0, "spring boot", "jpa hibernate");
+        first.setTags(Set.of(tag("java"), tag("orm")));
+        first.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+        index.put(first);
+        index.put(note(2, 0, "spring data", "redis"));
+
+        // 由快照還原後，每篇筆記的詞 ID 清單由 posting list 重建
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        UserNoteIndex restored = UserNoteIndex.readFrom(ByteBuffer.wrap(bytes.toByteArray()), 2);
+
+        // 更新後舊的詞移除，只出現在此筆記的詞整個刪除 (詞 ID 之後重複使用)
+        restored.put(note(1, 1, "spring boot", "flyway"));
+        assertEquals(0, count(restored, "hibernate"));
+        assertEquals(1, count(restored, "flyway"));
+        assertEquals(2, count(restored, "spring"));
+        assertTrue(restored.suggest("hibernate", 0).isEmpty());
+        // 標籤與更新時間隨快照還原；更新後不再帶有的標籤從點陣圖移除
+        List<UserNoteIndex.Candidate> java = new ArrayList<>();
+        UserNoteIndex restoredOriginal = UserNoteIndex.readFrom(ByteBuffer.wrap(bytes.toByteArray()), 2);
+        assertEquals(1, restoredOriginal.collectByTags(TagFilter.parse("java,orm"), java::add));
+        assertEquals(1L, java.get(0).noteId());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                java.get(0).updatedAt());
+        assertEquals(0, restored.collectByTags(TagFilter.parse("java"), candidate -> { }));
+        assertEquals(2, restored.collectByTags(TagFilter.parse("-java"), candidate -> { }));
+
+        restored.remove(2L);
+        restored.put(note(3, 0, "kafka", "redis streams"));
+        assertEquals(1, count(restored, "spring"));
+        assertEquals(1, count(restored, "redis"));
+        assertEquals(0, count(restored, "data"));
+        assertEquals(1, count(restored, "kafka"));
+    }
+
+    private static Note note(long id, int version, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setVersion(version);
+        note.setTitle(title);
+        note.setContent(content);
+        return note;
+    }
+
+    private static Tag tag(String name) {
+        Tag tag = new Tag();
+        tag.setName(name);
+        return tag;
+    }
+
+    private static int count(UserNoteIndex index, String term) {
+        return index.search(List.of(term), null, false, null, candidate -> { });
+    }
+
+    private static void assertContent(TreeMap<Long, UserNoteIndex.Posting> expected, PostingList list) {
+        assertEquals(expected.size(), list.size());
+        List<Long> ids = new ArrayList<>();
+        PostingList.Cursor cursor = list.cursor();
+        for (long noteId = cursor.next(); noteId != PostingList.END; noteId = cursor.next()) {
+            ids.add(noteId);
+            UserNoteIndex.Posting posting = expected.get(noteId);
+            assertEquals(posting.titleFrequency, cursor.titleFrequency());
+            assertEquals(posting.contentFrequency, cursor.contentFrequency());
+            assertArrayEquals(posting.titleOffsets, cursor.titleOffsets());
+            assertArrayEquals(posting.contentOffsets, cursor.contentOffsets());
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), ids);
+
+        // 逐一跳到每個 ID 與不存在的 ID
+        PostingList.Cursor skipping = list.cursor();
+        for (Map.Entry<Long, UserNoteIndex.Posting> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), skipping.advance(entry.getKey() - 1));
+        }
+        assertEquals(PostingList.END, skipping.advance(Long.MAX_VALUE - 1));
+    }
+
+    private static UserNoteIndex.Posting posting(Random random) {
+        UserNoteIndex.Posting posting = posting(random.nextInt(3), 1 + random.nextInt(50));
+        posting.titleOffsets = offsets(random, Math.min(posting.titleFrequency, UserNoteIndex.MAX_OFFSETS_PER_FIELD));
+        posting.contentOffsets = offsets(random, Math.min(posting.contentFrequency, UserNoteIndex.MAX_OFFSETS_PER_FIELD));
+        return posting;
+    }
+
+    private static UserNoteIndex.Posting posting(int titleFrequency, int contentFrequency) {
+        UserNoteIndex.Posting posting = new UserNoteIndex.Posting();
+        posting.titleFrequency = titleFrequency;
+        posting.contentFrequency = contentFrequency;
+        return posting;
+    }
+
+    private static int[] offsets(Random random, int pairs) {
+        int[] offsets = new int[pairs * 2];
+        int start = 0;
+        for (int i = 0; i < pairs; i++) {
+            start += random.nextInt(300);
+            offsets[i * 2] = start;
+            offsets[i * 2 + 1] = start + 1 + random.nextInt(8);
+        }
+        return offsets;
+    }
+}
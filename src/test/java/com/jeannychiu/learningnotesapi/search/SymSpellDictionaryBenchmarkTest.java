@@ -0,0 +1,64 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.jeannychiu.learningnotesapi.search.SymSpellDictionaryTest.USER;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 拼字修正的延遲量測 (mvn test -Pbenchmark)
+ */
+@Tag("benchmark")
+class SymSpellDictionaryBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(SymSpellDictionaryBenchmarkTest.class);
+
+    /**
+     * 單一使用者 50,000 個詞，含錯字的查詢 p99 應低於 5 ms
+     */
+    @Test
+    void benchmarkCorrectionLatencyWith50kTerms() {
+        Random random = new Random(42);
+        List<String> words = SymSpellDictionaryTest.vocabulary(random, 50_000);
+        NoteSearchIndex index = SymSpellDictionaryTest.indexOf(words);
+
+        List<String> queries = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 12_000; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            queries.add(SymSpellDictionaryTest.misspell(random, word, word.length() >= 7 ? 2 : 1));
+            expected.add(word);
+        }
+
+        // 前 2,000 次為暖機
+        Histogram histogram = new Histogram(TimeUnit.SECONDS.toNanos(1), 3);
+        int corrected = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            String result = index.correctKeyword(USER, queries.get(i));
+            long elapsed = System.nanoTime() - start;
+            if (i >= 2_000) {
+                histogram.recordValue(Math.min(elapsed, histogram.getHighestTrackableValue()));
+                if (expected.get(i).equals(result)) {
+                    corrected++;
+                }
+            }
+        }
+
+        double p50 = histogram.getValueAtPercentile(50) / 1_000_000.0;
+        double p99 = histogram.getValueAtPercentile(99) / 1_000_000.0;
+        double max = histogram.getMaxValue() / 1_000_000.0;
+        log.info(String.format("fuzzy correction @ 50k terms: p50=%.3f ms, p99=%.3f ms, max=%.3f ms, corrected=%d/10000",
+                p50, p99, max, corrected));
+
+        assertTrue(p99 < 5.0, "p99 應低於 5 ms，實際為 " + p99 + " ms");
+    }
+}
@@ -0,0 +1,133 @@
+package com.jeannychiu.learningnotesapi.search;
+
+import com.jeannychiu.learningnotesapi.model.Note;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymSpellDictionaryTest {
+    static final String USER = "user@example.com";
+
+    @Test
+    void testLookupFindsTermsWithinEditDistance() {
+        SymSpellDictionary dictionary = new SymSpellDictionary(2);
+        dictionary.add("spring");
+        dictionary.add("springboot");
+        dictionary.add("java");
+        dictionary.add("javascript");
+
+        assertEquals(List.of(new SymSpellDictionary.Match("spring", 1)), dictionary.lookup("sprng", 1));
+        // 相鄰字元對調算一次編輯
+        assertEquals(List.of(new SymSpellDictionary.Match("java", 1)), dictionary.lookup("jaav", 1));
+        // 超過前綴長度的詞
+        assertTrue(dictionary.lookup("sprnigboot", 2).contains(new SymSpellDictionary.Match("springboot", 1)));
+        assertTrue(dictionary.lookup("python", 2).isEmpty());
+
+        dictionary.remove("spring");
+        assertTrue(dictionary.lookup("sprng", 1).isEmpty());
+        assertEquals(3, dictionary.size());
+    }
+
+    @Test
+    void testCorrectKeywordAndSuggestTerms() {
+        NoteSearchIndex index = new NoteSearchIndex(2.0, 2, 4, ForkJoinPool.commonPool());
+        index.put(note(1L, "Spring Boot 入門", "介紹 dependency injection"));
+        index.put(note(2L, "Spring Security", "JWT 驗證"));
+        index.put(note(3L, "String 處理", "Java 字串"));
+
+        // 拼錯的詞以出現在較多筆記中的詞修正，其他文字保持原樣
+        assertEquals("spring 入門", index.correctKeyword(USER, "Sprnig 入門"));
+        assertEquals("dependency injection", index.correctKeyword(USER, "dependancy injection"));
+        assertNull(index.correctKeyword(USER, "spring"));
+        assertNull(index.correctKeyword("other@example.com", "sprnig"));
+
+        assertEquals(List.of("spring", "string"), index.suggestTerms(USER, "sring", 5));
+        assertEquals(0, index.search(USER, null, "sprnig", 0, 10).totalHits());
+        assertEquals(2, index.search(USER, null, index.correctKeyword(USER, "sprnig"), 0, 10).totalHits());
+    }
+
+    @Test
+    void testCorrectsMostMisspellingsWith50kTerms() {
+        // 延遲量測見 SymSpellDictionaryBenchmarkTest
+        Random random = new Random(42);
+        List<String> words = vocabulary(random, 50_000);
+        NoteSearchIndex index = indexOf(words);
+
+        int corrected = 0;
+        for (int i = 0; i < 2_000; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            if (word.equals(index.correctKeyword(USER, misspell(random, word, word.length() >= 7 ? 2 : 1)))) {
+                corrected++;
+            }
+        }
+        // 隨機詞彙很密集，少數錯字會更接近另一個詞
+        assertTrue(corrected > 1_700, "大部分錯字應修正回原本的詞，實際為 " + corrected);
+    }
+
+    /**
+     * 隨機產生長度 4 到 12 的不重複詞
+     */
+    static List<String> vocabulary(Random random, int size) {
+        Set<String> vocabulary = new LinkedHashSet<>();
+        while (vocabulary.size() < size) {
+            vocabulary.add(randomWord(random, 4 + random.nextInt(9)));
+        }
+        return new ArrayList<>(vocabulary);
+    }
+
+    /**
+     * 單一使用者的索引，每篇筆記 50 個詞
+     */
+    static NoteSearchIndex indexOf(List<String> words) {
+        NoteSearchIndex index = new NoteSearchIndex(2.0, 2, 4, ForkJoinPool.commonPool());
+        for (int i = 0; i < words.size() / 50; i++) {
+            index.put(note((long) i + 1, "note " + i, String.join(" ", words.subList(i * 50, (i + 1) * 50))));
+        }
+        return index;
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    // 隨機刪除、插入、取代或對調字元
+    static String misspell(Random random, String word, int edits) {
+        StringBuilder misspelled = new StringBuilder(word);
+        for (int i = 0; i < edits; i++) {
+            int position = random.nextInt(misspelled.length() - 1);
+            char letter = (char) ('a' + random.nextInt(26));
+            switch (random.nextInt(4)) {
+                case 0 -> misspelled.deleteCharAt(position);
+                case 1 -> misspelled.insert(position, letter);
+                case 2 -> misspelled.setCharAt(position, letter);
+                default -> {
+                    char current = misspelled.charAt(position);
+                    misspelled.setCharAt(position, misspelled.charAt(position + 1));
+                    misspelled.setCharAt(position + 1, current);
+                }
+            }
+        }
+        return misspelled.toString();
+    }
+
+    private static Note note(Long id, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUserEmail(USER);
+        note.setTitle(title);
+        note.setContent(content);
+        note.setVersion(0);
+        return note;
+    }
+}
@@ -0,0 +1,38 @@
+package com.jeannychiu.learningnotesapi.security;
+
+import com.jeannychiu.learningnotesapi.constant.RoleConstants;
+import com.jeannychiu.learningnotesapi.exception.InvalidTokenException;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+    private final JwtUtil jwtUtil = new JwtUtil();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", "test-secret-key-with-at-least-32-bytes!!");
+        ReflectionTestUtils.setField(jwtUtil, "expirationTime", 60_000L);
+    }
+
+    @Test
+    void testUserIdClaim() {
+        // 新版 token 帶有使用者 ID
+        String token = jwtUtil.generateToken(42L, "user@example.com", RoleConstants.USER);
+        assertEquals(42L, jwtUtil.getUserIdFromToken(token));
+        assertEquals("user@example.com", jwtUtil.getEmailFromToken(token));
+
+        // 沒有使用者 ID 的 token 回傳 null，由呼叫端改查快取
+        String legacyToken = jwtUtil.generateToken("user@example.com", RoleConstants.USER);
+        assertNull(jwtUtil.getUserIdFromToken(legacyToken));
+
+        // 需要多個欄位時只解析一次
+        Claims claims = jwtUtil.getClaimsFromToken(legacyToken);
+        assertNull(jwtUtil.getUserId(claims));
+        assertEquals("user@example.com", claims.getSubject());
+        assertThrows(InvalidTokenException.class, () -> jwtUtil.getClaimsFromToken(legacyToken + "x"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.service.ApiLogCapturePolicy.CaptureDecision;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiLogCapturePolicyTest {
+
+    @Test
+    void testSampleRates() {
+        ApiLogCapturePolicy policy = new ApiLogCapturePolicy("ALL", false, 1.0,
+                "GET /notes/**=0, /notes/**=0.5, /auth/**=1.0", 50_000);
+
+        // 先符合的規則優先，HTTP 方法前綴只套用於該方法
+        assertEquals(CaptureDecision.SKIP, policy.decide("GET", "/notes/1", 200));
+        assertEquals(CaptureDecision.FULL, policy.decide("POST", "/auth/login", 200));
+        assertEquals(CaptureDecision.FULL, policy.decide("GET", "/tags", 200));
+
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (policy.decide("PUT", "/notes/1", 200) == CaptureDecision.FULL) {
+                sampled++;
+            }
+        }
+        assertTrue(sampled > 4_500 && sampled < 5_500, "抽樣比例應接近 50%，實際為 " + sampled);
+
+        // 未抽中的請求遇到錯誤回應仍完整保存
+        assertEquals(CaptureDecision.FULL, policy.decide("GET", "/notes/1", 500));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new ApiLogCapturePolicy("ALL", false, 1.0, "/notes/**", 50_000));
+    }
+
+    @Test
+    void testErrorsOnlyAndNone() {
+        ApiLogCapturePolicy errorsOnly = new ApiLogCapturePolicy("errors_only", true, 1.0, "", 50_000);
+        assertEquals(CaptureDecision.SKIP, errorsOnly.decide("POST", "/notes", 201));
+        assertEquals(CaptureDecision.SKIP, errorsOnly.decide("GET", "/notes", 200));
+        assertEquals(CaptureDecision.FULL, errorsOnly.decide("POST", "/notes", 400));
+        assertEquals(CaptureDecision.FULL, errorsOnly.decide("GET", "/notes/1", 404));
+
+        ApiLogCapturePolicy none = new ApiLogCapturePolicy("NONE", true, 1.0, "", 50_000);
+        assertEquals(CaptureDecision.SKIP, none.decide("POST", "/notes", 500));
+    }
+
+    @Test
+    void testHashSuccessfulGet() {
+        ApiLogCapturePolicy policy = new ApiLogCapturePolicy("ALL", true, 1.0, "", 50_000);
+        assertEquals(CaptureDecision.HASH_RESPONSE, policy.decide("GET", "/notes", 200));
+        assertEquals(CaptureDecision.FULL, policy.decide("POST", "/notes", 201));
+        assertEquals(CaptureDecision.FULL, policy.decide("GET", "/notes/1", 404));
+
+        ApiLogCapturePolicy disabled = new ApiLogCapturePolicy("ALL", false, 1.0, "", 50_000);
+        assertEquals(CaptureDecision.FULL, disabled.decide("GET", "/notes", 200));
+    }
+}
@@ -0,0 +1,141 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.model.ApiLog;
+import com.jeannychiu.learningnotesapi.repository.ApiLogRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@Transactional
+class ApiLogRetentionServiceTest {
+    @Autowired
+    private ApiLogRetentionService retentionService;
+
+    @Autowired
+    private ApiLogRepository apiLogRepository;
+
+    @Test
+    void testPurgeExpiredLogsByStatusClass() {
+        // 測試依狀態碼類別套用不同的保留期限 (預設 2xx 14 天、4xx 90 天、5xx 180 天)
+        LocalDate today = LocalDate.of(2025, 9, 1);
+        apiLogRepository.deleteAll();
+
+        ApiLog oldSuccess = saveLog(200, today.minusDays(30));
+        ApiLog recentSuccess = saveLog(200, today.minusDays(3));
+        ApiLog oldClientError = saveLog(404, today.minusDays(30));
+        ApiLog expiredClientError = saveLog(404, today.minusDays(120));
+        ApiLog oldServerError = saveLog(500, today.minusDays(120));
+
+        // 執行測試
+        long deleted = retentionService.purgeExpiredLogs(today);
+
+        // 驗證結果
+        assertEquals(2, deleted);
+        List<Long> remaining = apiLogRepository.findAll().stream().map(ApiLog::getId).toList();
+        assertFalse(remaining.contains(oldSuccess.getId()));
+        assertFalse(remaining.contains(expiredClientError.getId()));
+        assertTrue(remaining.contains(recentSuccess.getId()));
+        assertTrue(remaining.contains(oldClientError.getId()));
+        assertTrue(remaining.contains(oldServerError.getId()));
+    }
+
+    @Test
+    void testConvertToPartitionedTable() {
+        // 測試尚未分區的資料表：先處理沒有 request_time 的資料，再重建主鍵與索引並切成每日分區
+        JdbcTemplate jdbcTemplate = mockPartitionQueries(0, List.of("p20250905", "p20250906", "p20250907",
+                "p20250908", "p20250909", "p20250910", "p20250911", "pmax"), true);
+        when(jdbcTemplate.update(startsWith("UPDATE api_log SET request_time = response_time"))).thenReturn(2);
+        when(jdbcTemplate.update("DELETE FROM api_log WHERE request_time IS NULL")).thenReturn(1);
+
+        partitionedService(jdbcTemplate).maintainPartitions(LocalDate.of(2025, 9, 10));
+
+        var inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).update("UPDATE api_log SET request_time = response_time " +
+                "WHERE request_time IS NULL AND response_time IS NOT NULL");
+        inOrder.verify(jdbcTemplate).update("DELETE FROM api_log WHERE request_time IS NULL");
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE api_log MODIFY request_time DATETIME(6) NOT NULL, " +
+                "DROP PRIMARY KEY, ADD PRIMARY KEY (id, request_time), " +
+                "ADD INDEX idx_api_log_status_code (status_code)");
+        // 最長保留 4 天：早於 9/6 的資料放在 p20250905，往後預先建立到 9/11
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE api_log PARTITION BY RANGE (TO_DAYS(request_time)) (" +
+                "PARTITION p20250905 VALUES LESS THAN (TO_DAYS('2025-09-06')), " +
+                "PARTITION p20250906 VALUES LESS THAN (TO_DAYS('2025-09-07')), " +
+                "PARTITION p20250907 VALUES LESS THAN (TO_DAYS('2025-09-08')), " +
+                "PARTITION p20250908 VALUES LESS THAN (TO_DAYS('2025-09-09')), " +
+                "PARTITION p20250909 VALUES LESS THAN (TO_DAYS('2025-09-10')), " +
+                "PARTITION p20250910 VALUES LESS THAN (TO_DAYS('2025-09-11')), " +
+                "PARTITION p20250911 VALUES LESS THAN (TO_DAYS('2025-09-12')), " +
+                "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+        // 早於保留期限的資料所在的第一個分區，同一次維護即整個刪除；索引與未來分區已在轉換時建立
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE api_log DROP PARTITION p20250905");
+        verify(jdbcTemplate, times(3)).execute(anyString());
+    }
+
+    @Test
+    void testMaintainPartitions() {
+        // 測試已分區的資料表 (較早版本轉換，沒有 status_code 索引)
+        JdbcTemplate jdbcTemplate = mockPartitionQueries(7, List.of("p20250905", "p20250906", "p20250907",
+                "p20250908", "p20250909", "p20250910", "pmax"), false);
+
+        partitionedService(jdbcTemplate).maintainPartitions(LocalDate.of(2025, 9, 10));
+
+        ArgumentCaptor<String> statements = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atLeastOnce()).execute(statements.capture());
+        assertEquals(List.of(
+                "CREATE INDEX idx_api_log_status_code ON api_log (status_code)",
+                "ALTER TABLE api_log REORGANIZE PARTITION pmax INTO (" +
+                        "PARTITION p20250911 VALUES LESS THAN (TO_DAYS('2025-09-12')), " +
+                        "PARTITION pmax VALUES LESS THAN MAXVALUE)",
+                "ALTER TABLE api_log DROP PARTITION p20250905"), statements.getAllValues());
+
+        // 2xx、3xx 保留 2 天、4xx 保留 3 天、5xx 保留 4 天 (與最長期限相同，由 DROP PARTITION 處理)
+        String delete = "DELETE FROM api_log PARTITION (%s) WHERE status_code BETWEEN ? AND ? LIMIT 1000";
+        verify(jdbcTemplate).update(String.format(delete, "p20250906"), 100, 299);
+        verify(jdbcTemplate).update(String.format(delete, "p20250907"), 100, 299);
+        verify(jdbcTemplate).update(String.format(delete, "p20250906"), 300, 399);
+        verify(jdbcTemplate).update(String.format(delete, "p20250907"), 300, 399);
+        verify(jdbcTemplate).update(String.format(delete, "p20250906"), 400, 499);
+        verify(jdbcTemplate, times(5)).update(startsWith("DELETE FROM api_log PARTITION"), any(Object[].class));
+    }
+
+    private static JdbcTemplate mockPartitionQueries(int partitionCount, List<String> partitions,
+                                                     boolean hasStatusCodeIndex) {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(contains("information_schema.PARTITIONS"), eq(Integer.class), eq("api_log")))
+                .thenReturn(partitionCount);
+        when(jdbcTemplate.queryForObject(contains("information_schema.STATISTICS"), eq(Integer.class),
+                eq("api_log"), eq("idx_api_log_status_code")))
+                .thenReturn(hasStatusCodeIndex ? 1 : 0);
+        when(jdbcTemplate.queryForList(contains("information_schema.PARTITIONS"), eq(String.class), eq("api_log")))
+                .thenReturn(partitions);
+        return jdbcTemplate;
+    }
+
+    private static ApiLogRetentionService partitionedService(JdbcTemplate jdbcTemplate) {
+        return new ApiLogRetentionService(null, jdbcTemplate, 2, 2, 3, 4, true, 1, 1000);
+    }
+
+    private ApiLog saveLog(int statusCode, LocalDate day) {
+        LocalDateTime time = day.atTime(12, 0);
+        ApiLog apiLog = new ApiLog();
+        apiLog.setApiPath("/notes");
+        apiLog.setHttpMethod("GET");
+        apiLog.setStatusCode(statusCode);
+        apiLog.setRequestTime(time);
+        apiLog.setResponseTime(time);
+        apiLog.setDuration(0L);
+        return apiLogRepository.save(apiLog);
+    }
+}
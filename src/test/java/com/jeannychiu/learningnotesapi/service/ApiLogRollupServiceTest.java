@@ -0,0 +1,102 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.EndpointErrorRate;
+import com.jeannychiu.learningnotesapi.dto.LatencyPercentiles;
+import com.jeannychiu.learningnotesapi.dto.UserRequestVolume;
+import com.jeannychiu.learningnotesapi.model.ApiLogRollup;
+import com.jeannychiu.learningnotesapi.repository.ApiLogRollupRepository;
+import com.jeannychiu.learningnotesapi.repository.ApiLogUserRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@Transactional
+class ApiLogRollupServiceTest {
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 9, 1, 10, 0);
+
+    @Autowired
+    private ApiLogRollupService rollupService;
+
+    @Test
+    void testRollupsAnswerAdminQueries() {
+        // 10:05 與 10:06 各 50 筆成功請求 (延遲 1 ~ 100 ms)，另有 5 筆 404 與 5 筆 500
+        for (int i = 1; i <= 100; i++) {
+            rollupService.record("/notes/{id}", "GET", 200, i, 1L, HOUR.plusMinutes(i <= 50 ? 5 : 6));
+        }
+        for (int i = 0; i < 5; i++) {
+            rollupService.record("/notes/{id}", "GET", 404, 2, 2L, HOUR.plusMinutes(5));
+            rollupService.record("/notes", "POST", 500, 300, 2L, HOUR.plusMinutes(7));
+        }
+        // 下一個小時的請求
+        rollupService.record("/notes", "POST", 201, 20, 1L, HOUR.plusMinutes(70));
+
+        // 分兩次寫入，同一分鐘同一分組要合併而不是重複
+        rollupService.flush(HOUR.plusMinutes(6));
+        rollupService.record("/notes/{id}", "GET", 200, 1000, 1L, HOUR.plusMinutes(5));
+        rollupService.flush(HOUR.plusDays(1));
+
+        LocalDateTime from = HOUR;
+        LocalDateTime to = HOUR.plusHours(2);
+
+        // 錯誤率
+        List<EndpointErrorRate> errorRates = rollupService.getErrorRates(from, to);
+        assertEquals(2, errorRates.size());
+        EndpointErrorRate post = errorRates.get(0);
+        assertEquals("/notes", post.getApiPath());
+        assertEquals(6, post.getRequestCount());
+        assertEquals(5, post.getServerErrorCount());
+        EndpointErrorRate get = errorRates.get(1);
+        assertEquals(106, get.getRequestCount());
+        assertEquals(5, get.getClientErrorCount());
+        assertEquals(5.0 / 106, get.getErrorRate(), 1e-9);
+
+        // 延遲百分位數
+        List<LatencyPercentiles> latency = rollupService.getHourlyLatency(from, to, "/notes/{id}", "GET");
+        assertEquals(1, latency.size());
+        LatencyPercentiles first = latency.get(0);
+        assertEquals(HOUR, first.getHour());
+        assertEquals(106, first.getRequestCount());
+        assertEquals(1000, first.getMax());
+        assertTrue(Math.abs(first.getP50() - 47) <= 2, "p50 應約為 47 ms，實際為 " + first.getP50());
+        assertTrue(first.getP99() >= 99, "p99 應約為 100 ms，實際為 " + first.getP99());
+        assertEquals(2, rollupService.getHourlyLatency(from, to, null, null).size());
+
+        // 使用者請求量
+        List<UserRequestVolume> topUsers = rollupService.getTopUsers(from, to, 10);
+        assertEquals(2, topUsers.size());
+        assertEquals(1L, topUsers.get(0).getUserId());
+        assertEquals(102, topUsers.get(0).getRequestCount());
+        assertEquals(2L, topUsers.get(1).getUserId());
+        assertEquals(10, topUsers.get(1).getErrorCount());
+    }
+
+    @Test
+    void testFailedFlushKeepsBuckets() {
+        // 寫入時發生非資料庫的錯誤，彙總仍放回記憶體，下一輪寫入
+        ApiLogRollupRepository rollupRepository = mock(ApiLogRollupRepository.class);
+        when(rollupRepository.save(any()))
+                .thenThrow(new IllegalStateException("延遲分佈資料格式錯誤"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        ApiLogRollupService service = new ApiLogRollupService(rollupRepository,
+                mock(ApiLogUserRollupRepository.class), new TransactionTemplate(mock(PlatformTransactionManager.class)));
+
+        service.record("/notes/{id}", "GET", 200, 5, 1L, HOUR);
+        service.flush(HOUR.plusMinutes(1));
+        service.flush(HOUR.plusMinutes(1));
+
+        ArgumentCaptor<ApiLogRollup> saved = ArgumentCaptor.forClass(ApiLogRollup.class);
+        verify(rollupRepository, times(2)).save(saved.capture());
+        assertEquals(1, saved.getValue().getRequestCount());
+    }
+}
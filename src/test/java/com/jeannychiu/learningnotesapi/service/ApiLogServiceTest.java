@@ -0,0 +1,78 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeannychiu.learningnotesapi.model.ApiLog;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ApiLogServiceTest {
+    private final ApiLogSink sink = mock(ApiLogSink.class);
+
+    @Test
+    void testSuccessfulGetStoresResponseHash() throws Exception {
+        ApiLogService service = service(new ApiLogCapturePolicy("ALL", true, 1.0, "", 50_000));
+        ResponseEntity<Map<String, String>> response = ResponseEntity.ok(Map.of("title", "Spring 筆記"));
+
+        ApiLog apiLog = log(service, "GET", response);
+
+        String expected = new ObjectMapper().writeValueAsString(response);
+        assertTrue(apiLog.getResponseBody().matches("sha256:[0-9a-f]{64} \\(\\d+ bytes\\)"), apiLog.getResponseBody());
+        assertTrue(apiLog.getResponseBody().endsWith("(" + expected.getBytes(StandardCharsets.UTF_8).length + " bytes)"));
+    }
+
+    @Test
+    void testLongBodiesAreTruncated() throws Exception {
+        ApiLogService service = service(new ApiLogCapturePolicy("ALL", true, 1.0, "", 100));
+        ApiLog apiLog = log(service, "POST", ResponseEntity.ok(Map.of("content", "長".repeat(1_000))));
+
+        assertEquals(100 + "... [TRUNCATED]".length(), apiLog.getResponseBody().length());
+        assertTrue(apiLog.getResponseBody().endsWith("... [TRUNCATED]"));
+    }
+
+    @Test
+    void testUnmatchedRequestsShareOneRollupBucket() {
+        // 沒有對應路由的請求 (例如掃描任意路徑) 不以原始路徑分組
+        ApiLogRollupService rollupService = mock(ApiLogRollupService.class);
+        ApiLogService service = service(new ApiLogCapturePolicy("ALL", true, 1.0, "", 50_000), rollupService);
+
+        service.logSecurityError(new MockHttpServletRequest("GET", "/wp-admin/setup.php"), 401, "未授權");
+        service.logSecurityError(new MockHttpServletRequest("GET", "/notes/123/secret"), 401, "未授權");
+
+        verify(rollupService, times(2)).record(eq(ApiLogService.UNMATCHED_ROUTE), eq("GET"), eq(401), eq(0L),
+                isNull(), any());
+    }
+
+    private ApiLogService service(ApiLogCapturePolicy policy) {
+        return service(policy, mock(ApiLogRollupService.class));
+    }
+
+    private ApiLogService service(ApiLogCapturePolicy policy, ApiLogRollupService rollupService) {
+        return new ApiLogService(null, null, null, new ObjectMapper(), policy, sink, rollupService, new UserIdCache(10));
+    }
+
+    private ApiLog log(ApiLogService service, String method, Object result) throws Exception {
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        MethodSignature signature = mock(MethodSignature.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(signature.getMethod()).thenReturn(Object.class.getMethod("toString"));
+        when(joinPoint.getArgs()).thenReturn(new Object[0]);
+
+        LocalDateTime now = LocalDateTime.now();
+        service.logApiRequest(joinPoint, new MockHttpServletRequest(method, "/notes"), result, now, now);
+
+        ArgumentCaptor<ApiLog> captor = ArgumentCaptor.forClass(ApiLog.class);
+        verify(sink).write(captor.capture());
+        return captor.getValue();
+    }
+}
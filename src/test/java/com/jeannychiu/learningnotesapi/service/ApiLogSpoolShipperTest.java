@@ -0,0 +1,131 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeannychiu.learningnotesapi.model.ApiLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ApiLogSpoolShipperTest {
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSegmentsAreKeptUntilDatabaseRecovers() throws Exception {
+        // segment 上限設得很小，每筆日誌一個 segment
+        FileSpoolApiLogSink sink = new FileSpoolApiLogSink(mapper, directory.toString(), 100,
+                Duration.ofHours(1), Duration.ofHours(1));
+        sink.open();
+        for (int i = 0; i < 3; i++) {
+            sink.write(sampleLog(i));
+        }
+        sink.close();
+
+        // 第一輪無法開始交易 (例如取不到連線)，之後恢復
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any()))
+                .thenThrow(new CannotCreateTransactionException("無法取得資料庫連線"))
+                .thenReturn(new SimpleTransactionStatus());
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        List<String> inserted = new ArrayList<>();
+        doAnswer(invocation -> {
+            Collection<ApiLog> batch = invocation.getArgument(1);
+            batch.forEach(apiLog -> inserted.add(apiLog.getApiPath()));
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+
+        ApiLogSpoolShipper shipper = new ApiLogSpoolShipper(sink, jdbcTemplate,
+                new TransactionTemplate(transactionManager), mapper, 500, 3);
+
+        assertEquals(0, shipper.shipSealedSegments());
+        assertEquals(3, countSegments());
+        assertTrue(inserted.isEmpty());
+
+        assertEquals(3, shipper.shipSealedSegments());
+        assertEquals(0, countSegments());
+        assertEquals(List.of("/notes/0", "/notes/1", "/notes/2"), inserted);
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void testFailingSegmentIsQuarantined() throws Exception {
+        FileSpoolApiLogSink sink = new FileSpoolApiLogSink(mapper, directory.toString(), 100,
+                Duration.ofHours(1), Duration.ofHours(1));
+        sink.open();
+        for (int i = 0; i < 3; i++) {
+            sink.write(sampleLog(i));
+        }
+        sink.close();
+
+        // 第一個 segment 的內容每次都被資料庫拒絕，其他 segment 照常匯入
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        List<String> inserted = new ArrayList<>();
+        doAnswer(invocation -> {
+            Collection<ApiLog> batch = invocation.getArgument(1);
+            for (ApiLog apiLog : batch) {
+                if (apiLog.getApiPath().equals("/notes/0")) {
+                    throw new DataIntegrityViolationException("Data too long for column 'api_path'");
+                }
+                inserted.add(apiLog.getApiPath());
+            }
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+
+        ApiLogSpoolShipper shipper = new ApiLogSpoolShipper(sink, jdbcTemplate,
+                new TransactionTemplate(transactionManager), mapper, 500, 2);
+
+        assertEquals(2, shipper.shipSealedSegments());
+        assertEquals(List.of("/notes/1", "/notes/2"), inserted);
+        assertEquals(1, countSegments());
+
+        // 連續失敗達上限後隔離，不再重試
+        assertEquals(0, shipper.shipSealedSegments());
+        assertEquals(0, countSegments());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(path -> path.getFileName().toString()
+                    .endsWith(FileSpoolApiLogSink.SEALED_SUFFIX + ApiLogSpoolShipper.FAILED_SUFFIX)).count());
+        }
+        assertEquals(0, shipper.shipSealedSegments());
+        verify(jdbcTemplate, times(4)).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+    }
+
+    private long countSegments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(FileSpoolApiLogSink.SEALED_SUFFIX))
+                    .count();
+        }
+    }
+
+    private ApiLog sampleLog(int index) {
+        ApiLog apiLog = new ApiLog();
+        apiLog.setApiPath("/notes/" + index);
+        apiLog.setHttpMethod("POST");
+        apiLog.setStatusCode(201);
+        apiLog.setRequestTime(LocalDateTime.of(2025, 8, 1, 10, 0));
+        apiLog.setResponseTime(LocalDateTime.of(2025, 8, 1, 10, 0, 1));
+        apiLog.setDuration(1000L);
+        return apiLog;
+    }
+}
@@ -0,0 +1,83 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeannychiu.learningnotesapi.model.ApiLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSpoolApiLogSinkTest {
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteRotateAndSeal() throws Exception {
+        // segment 上限設得很小，每筆日誌都會觸發輪替
+        FileSpoolApiLogSink sink = new FileSpoolApiLogSink(mapper, directory.toString(), 100,
+                Duration.ofHours(1), Duration.ofHours(1));
+        sink.open();
+        for (int i = 0; i < 3; i++) {
+            sink.write(sampleLog(i));
+        }
+        sink.close();
+
+        List<Path> sealed = listFiles(FileSpoolApiLogSink.SEALED_SUFFIX);
+        assertEquals(3, sealed.size());
+        assertTrue(listFiles(FileSpoolApiLogSink.OPEN_SUFFIX).isEmpty());
+
+        // 依檔名順序即為寫入順序
+        List<String> paths = new ArrayList<>();
+        for (Path segment : sealed) {
+            for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+                paths.add(mapper.readValue(line, ApiLog.class).getApiPath());
+            }
+        }
+        assertEquals(List.of("/notes/0", "/notes/1", "/notes/2"), paths);
+    }
+
+    @Test
+    void testLeftoverOpenSegmentIsSealedOnStartup() throws Exception {
+        // 模擬行程異常結束後遺留的 segment
+        Path leftover = directory.resolve("api-log-0000000000001-0000" + FileSpoolApiLogSink.OPEN_SUFFIX);
+        Files.write(leftover, mapper.writeValueAsBytes(sampleLog(9)));
+
+        FileSpoolApiLogSink sink = new FileSpoolApiLogSink(mapper, directory.toString(), 1024 * 1024,
+                Duration.ofHours(1), Duration.ofHours(1));
+        sink.open();
+        sink.close();
+
+        assertFalse(Files.exists(leftover));
+        assertTrue(Files.exists(directory.resolve("api-log-0000000000001-0000" + FileSpoolApiLogSink.SEALED_SUFFIX)));
+        // 沒有寫入任何日誌的 segment 關閉時直接刪除
+        assertEquals(1, listFiles(FileSpoolApiLogSink.SEALED_SUFFIX).size());
+    }
+
+    private List<Path> listFiles(String suffix) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+
+    private ApiLog sampleLog(int index) {
+        ApiLog apiLog = new ApiLog();
+        apiLog.setApiPath("/notes/" + index);
+        apiLog.setHttpMethod("GET");
+        apiLog.setStatusCode(200);
+        apiLog.setRequestTime(LocalDateTime.of(2025, 8, 1, 10, 0));
+        apiLog.setResponseTime(LocalDateTime.of(2025, 8, 1, 10, 0, 1));
+        apiLog.setDuration(1000L);
+        return apiLog;
+    }
+}
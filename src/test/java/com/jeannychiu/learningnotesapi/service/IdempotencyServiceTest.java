@@ -0,0 +1,170 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeannychiu.learningnotesapi.exception.IdempotencyKeyInProgressException;
+import com.jeannychiu.learningnotesapi.exception.IdempotencyKeyMismatchException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+    private static final String USER = "user@example.com";
+
+    private final IdempotencyService service = new IdempotencyService(
+            new InMemoryIdempotencyStore(Duration.ofMinutes(5), DataSize.ofMegabytes(1)), new ObjectMapper(),
+            Duration.ofSeconds(5));
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testReplayReturnsOriginalResponse() {
+        ResponseEntity<String> first = service.execute(USER, "key-1", "POST /notes", Map.of("title", "A"), this::create);
+        ResponseEntity<?> replay = service.execute(USER, "key-1", "POST /notes", Map.of("title", "A"), this::create);
+
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.CREATED, replay.getStatusCode());
+        assertEquals(json(first.getBody()), body(replay));
+        assertEquals("true", replay.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(MediaType.APPLICATION_JSON, replay.getHeaders().getContentType());
+
+        // 其他使用者的同一個 key、沒有 key 的請求照常執行
+        service.execute("other@example.com", "key-1", "POST /notes", Map.of("title", "A"), this::create);
+        service.execute(USER, null, "POST /notes", Map.of("title", "A"), this::create);
+        assertEquals(3, executions.get());
+
+        // 同一個 key 用於不同的請求
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> service.execute(USER, "key-1", "POST /notes", Map.of("title", "B"), this::create));
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> service.execute(USER, "key-1", "POST /notes/batch", Map.of("title", "A"), this::create));
+    }
+
+    @Test
+    void testFailedExecutionIsNotStored() {
+        assertThrows(IllegalStateException.class, () -> service.execute(USER, "key-2", "POST /notes", "body",
+                () -> {
+                    throw new IllegalStateException("資料庫暫時無法使用");
+                }));
+
+        ResponseEntity<String> retried = service.execute(USER, "key-2", "POST /notes", "body", this::create);
+        assertEquals(HttpStatus.CREATED, retried.getStatusCode());
+        assertNull(retried.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+
+        // Error 也一樣不保留
+        assertThrows(OutOfMemoryError.class, () -> service.execute(USER, "key-3", "POST /notes", "body",
+                () -> {
+                    throw new OutOfMemoryError("Java heap space");
+                }));
+        retried = service.execute(USER, "key-3", "POST /notes", "body", this::create);
+        assertEquals(HttpStatus.CREATED, retried.getStatusCode());
+        assertNull(retried.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testConcurrentDuplicatesShareOneExecution() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<ResponseEntity<String>> first = executor.submit(() -> service.execute(USER, "key-3", "POST /notes",
+                "body", () -> {
+                    started.countDown();
+                    await(release);
+                    return create();
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Future<ResponseEntity<String>>> duplicates = List.of(
+                executor.submit(() -> service.execute(USER, "key-3", "POST /notes", "body", this::create)),
+                executor.submit(() -> service.execute(USER, "key-3", "POST /notes", "body", this::create)));
+        release.countDown();
+
+        String body = json(first.get(5, TimeUnit.SECONDS).getBody());
+        for (Future<ResponseEntity<String>> duplicate : duplicates) {
+            assertEquals(body, body(duplicate.get(5, TimeUnit.SECONDS)));
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testWaitTimeout() throws Exception {
+        IdempotencyService impatient = new IdempotencyService(
+                new InMemoryIdempotencyStore(Duration.ofMinutes(5), DataSize.ofMegabytes(1)), new ObjectMapper(),
+                Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Future<?> first = executor.submit(() -> impatient.execute(USER, "key-4", "POST /notes", "body", () -> {
+            started.countDown();
+            await(release);
+            return create();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(IdempotencyKeyInProgressException.class,
+                () -> impatient.execute(USER, "key-4", "POST /notes", "body", this::create));
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testReplayIsSerializedCopy() {
+        // 保存的是序列化後的回應，之後修改原本的物件不影響重播的內容
+        List<String> tags = new ArrayList<>(List.of("java"));
+        ResponseEntity<List<String>> first = service.execute(USER, "key-5", "POST /notes", "body",
+                () -> ResponseEntity.ok().header("Location", "/notes/1").body(tags));
+        tags.add("spring");
+
+        ResponseEntity<?> replay = service.execute(USER, "key-5", "POST /notes", "body",
+                () -> ResponseEntity.ok(List.of("other")));
+        assertSame(tags, first.getBody());
+        assertEquals("[\"java\"]", body(replay));
+        assertEquals("/notes/1", replay.getHeaders().getFirst("Location"));
+    }
+
+    private ResponseEntity<String> create() {
+        return new ResponseEntity<>("note-" + executions.incrementAndGet(), HttpStatus.CREATED);
+    }
+
+    // 重播的本文是保存的 JSON
+    private static String body(ResponseEntity<?> replay) {
+        return new String((byte[]) replay.getBody(), StandardCharsets.UTF_8);
+    }
+
+    private static String json(Object body) {
+        try {
+            return new ObjectMapper().writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.CreateNoteRequest;
+import com.jeannychiu.learningnotesapi.dto.NoteChangeItem;
+import com.jeannychiu.learningnotesapi.dto.NoteChangesResponse;
+import com.jeannychiu.learningnotesapi.dto.UpdateNoteRequest;
+import com.jeannychiu.learningnotesapi.exception.ChangeTokenExpiredException;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteChange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.note-changes.settle-time=PT0S")
+@Transactional
+class NoteChangeLogServiceTest {
+    private static final String USER = "sync@example.com";
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteChangeLogService noteChangeLogService;
+
+    @Test
+    void testChangesSinceToken() {
+        Note first = createNote("筆記1");
+        Note second = createNote("筆記2");
+
+        NoteChangesResponse initial = noteChangeLogService.getChanges(USER, 0, 100);
+        assertEquals(List.of(first.getId(), second.getId()), noteIds(initial));
+        assertFalse(initial.isHasMore());
+
+        // 沒有異動時 token 不變
+        NoteChangesResponse unchanged = noteChangeLogService.getChanges(USER, initial.getNextToken(), 100);
+        assertTrue(unchanged.getChanges().isEmpty());
+        assertEquals(initial.getNextToken(), unchanged.getNextToken());
+
+        updateNote(first, "筆記1 (更新)");
+        updateNote(noteService.readNoteById(first.getId(), USER, false), "筆記1 (再次更新)");
+        noteService.deleteNote(second.getId(), USER, false);
+
+        // 同一筆記只回傳最新狀態，刪除以 tombstone 回傳
+        NoteChangesResponse delta = noteChangeLogService.getChanges(USER, initial.getNextToken(), 100);
+        assertEquals(List.of(first.getId(), second.getId()), noteIds(delta));
+        NoteChangeItem updated = delta.getChanges().get(0);
+        assertEquals(NoteChange.Type.UPDATED, updated.getType());
+        assertEquals("筆記1 (再次更新)", updated.getNote().getTitle());
+        NoteChangeItem deleted = delta.getChanges().get(1);
+        assertEquals(NoteChange.Type.DELETED, deleted.getType());
+        assertNull(deleted.getNote());
+
+        // 分批取得
+        NoteChangesResponse firstBatch = noteChangeLogService.getChanges(USER, initial.getNextToken(), 1);
+        assertTrue(firstBatch.isHasMore());
+        assertEquals(1, firstBatch.getChanges().size());
+
+        // 其他使用者看不到
+        assertTrue(noteChangeLogService.getChanges("other@example.com", 0, 100).getChanges().isEmpty());
+    }
+
+    @Test
+    void testCompaction() {
+        Note kept = createNote("保留");
+        long token = noteChangeLogService.getChanges(USER, 0, 100).getNextToken();
+        updateNote(kept, "保留 (更新)");
+        Note removed = createNote("刪除");
+        noteService.deleteNote(removed.getId(), USER, false);
+
+        // 被取代的紀錄移除後，從舊 token 同步的結果不變
+        assertTrue(noteChangeLogService.compact(LocalDateTime.now()) >= 2);
+        NoteChangesResponse delta = noteChangeLogService.getChanges(USER, token, 100);
+        assertEquals(List.of(kept.getId(), removed.getId()), noteIds(delta));
+        assertEquals(List.of(kept.getId()), noteIds(noteChangeLogService.getChanges(USER, 0, 100)));
+
+        // 刪除紀錄過期後，舊 token 需要重新完整同步
+        noteChangeLogService.compact(LocalDateTime.now().plusDays(31));
+        assertThrows(ChangeTokenExpiredException.class, () -> noteChangeLogService.getChanges(USER, token, 100));
+        assertEquals(List.of(kept.getId()), noteIds(noteChangeLogService.getChanges(USER, 0, 100)));
+        assertTrue(noteChangeLogService.getChanges(USER, delta.getNextToken(), 100).getChanges().isEmpty());
+    }
+
+    private Note createNote(String title) {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.setTitle(title);
+        request.setContent("內容");
+        return noteService.createNote(request, USER);
+    }
+
+    private void updateNote(Note note, String title) {
+        UpdateNoteRequest request = new UpdateNoteRequest();
+        request.setTitle(title);
+        request.setContent(note.getContent());
+        request.setVersion(note.getVersion());
+        noteService.updateNote(note.getId(), request, USER, false);
+    }
+
+    private static List<Long> noteIds(NoteChangesResponse response) {
+        return response.getChanges().stream().map(NoteChangeItem::getNoteId).toList();
+    }
+}
@@ -0,0 +1,21 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteFingerprintTest {
+
+    @Test
+    void testWhitespaceAndUnicodeFormIgnored() {
+        long fingerprint = NoteFingerprint.of("Spring 筆記", "第一行\n第二行");
+
+        assertEquals(fingerprint, NoteFingerprint.of("  Spring   筆記 ", "第一行\r\n\t第二行\n"));
+        assertEquals(NoteFingerprint.of("Café", null), NoteFingerprint.of("Café", ""));
+
+        assertNotEquals(fingerprint, NoteFingerprint.of("Spring 筆記", "第一行第二行"));
+        assertNotEquals(fingerprint, NoteFingerprint.of("spring 筆記", "第一行\n第二行"));
+        // 標題與內容的分界不同
+        assertNotEquals(NoteFingerprint.of("ab", "c"), NoteFingerprint.of("a", "bc"));
+    }
+}
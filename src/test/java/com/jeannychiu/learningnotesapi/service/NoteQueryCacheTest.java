@@ -0,0 +1,95 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.QueryCacheStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NoteQueryCacheTest {
+    private static final String USER = "user@example.com";
+    private static final String OTHER_USER = "other@example.com";
+
+    private final NoteGenerationTracker generationTracker = mock(NoteGenerationTracker.class);
+    private final NoteQueryCache cache = new NoteQueryCache(generationTracker, 1024 * 1024, Duration.ofMinutes(10));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        when(generationTracker.current(any())).thenReturn(new NoteGenerationTracker.Generation(10, true));
+    }
+
+    @Test
+    void testRepeatedQueriesHitCache() {
+        Pageable pageable = PageRequest.of(0, 2);
+        Page<Long> first = cache.get(USER, "spring", null, pageable, () -> load(pageable, 3L, 2L));
+        Page<Long> second = cache.get(USER, "spring", null, pageable, () -> load(pageable, 9L));
+
+        assertEquals(1, loads.get());
+        assertEquals(List.of(3L, 2L), second.getContent());
+        assertEquals(first.getTotalElements(), second.getTotalElements());
+
+        // 不同的關鍵字、標籤或頁碼是不同的項目
+        cache.get(USER, "spring", "java", pageable, () -> load(pageable));
+        cache.get(USER, "spring", null, PageRequest.of(1, 2), () -> load(pageable));
+        assertEquals(3, loads.get());
+
+        QueryCacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(3, stats.getEntryCount());
+        assertTrue(stats.getEstimatedBytes() > 0);
+    }
+
+    @Test
+    void testWritesInvalidateOnlyOwnerAndAdminEntries() {
+        Pageable pageable = PageRequest.of(0, 10);
+        cache.get(USER, null, null, pageable, () -> load(pageable, 1L));
+        cache.get(OTHER_USER, null, null, pageable, () -> load(pageable, 2L));
+        cache.get(null, null, null, pageable, () -> load(pageable, 2L, 1L));
+        assertEquals(3, loads.get());
+
+        // 使用者的異動使自己與管理員的世代改變
+        when(generationTracker.current(USER)).thenReturn(new NoteGenerationTracker.Generation(11, true));
+        when(generationTracker.current(null)).thenReturn(new NoteGenerationTracker.Generation(11, true));
+
+        assertEquals(List.of(4L, 1L), cache.get(USER, null, null, pageable, () -> load(pageable, 4L, 1L)).getContent());
+        assertEquals(List.of(2L), cache.get(OTHER_USER, null, null, pageable, () -> load(pageable)).getContent());
+        assertEquals(List.of(4L, 2L, 1L),
+                cache.get(null, null, null, pageable, () -> load(pageable, 4L, 2L, 1L)).getContent());
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    void testUnsettledGenerationIsNotCached() {
+        Pageable pageable = PageRequest.of(0, 10);
+        when(generationTracker.current(USER)).thenReturn(new NoteGenerationTracker.Generation(11, false));
+
+        cache.get(USER, null, null, pageable, () -> load(pageable, 1L));
+        assertEquals(List.of(2L, 1L), cache.get(USER, null, null, pageable, () -> load(pageable, 2L, 1L)).getContent());
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getStats().getEntryCount());
+
+        // 穩定後開始快取
+        when(generationTracker.current(USER)).thenReturn(new NoteGenerationTracker.Generation(11, true));
+        cache.get(USER, null, null, pageable, () -> load(pageable, 2L, 1L));
+        cache.get(USER, null, null, pageable, () -> load(pageable));
+        assertEquals(3, loads.get());
+    }
+
+    private Page<Long> load(Pageable pageable, Long... ids) {
+        loads.incrementAndGet();
+        return new PageImpl<>(List.of(ids), pageable, ids.length);
+    }
+}
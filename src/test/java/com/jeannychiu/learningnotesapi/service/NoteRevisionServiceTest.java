@@ -0,0 +1,96 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.CreateNoteRequest;
+import com.jeannychiu.learningnotesapi.dto.NoteRevisionResponse;
+import com.jeannychiu.learningnotesapi.dto.NoteRevisionSummary;
+import com.jeannychiu.learningnotesapi.dto.UpdateNoteRequest;
+import com.jeannychiu.learningnotesapi.exception.NoteNotFoundException;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.NoteRevision;
+import com.jeannychiu.learningnotesapi.repository.NoteRevisionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.note-revisions.snapshot-interval=3")
+@Transactional
+class NoteRevisionServiceTest {
+    private static final String USER = "revision@example.com";
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteRevisionService revisionService;
+
+    @Autowired
+    private NoteRevisionRepository revisionRepository;
+
+    @Test
+    void testEveryVersionCanBeReconstructed() {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.setTitle("修訂紀錄");
+        request.setContent("Spring Boot 筆記：".repeat(10));
+        request.setTagNames(Set.of("spring"));
+        Note note = noteService.createNote(request, USER);
+
+        List<String> contents = new ArrayList<>();
+        contents.add(note.getContent());
+        for (int i = 1; i <= 6; i++) {
+            String content = contents.get(i - 1) + " 第" + i + "次修改";
+            note = update(note, "修訂紀錄 v" + i, content, i == 6 ? Set.of("spring", "jpa") : Set.of("spring"));
+            contents.add(content);
+        }
+
+        // 每 3 個版本一個 snapshot，其餘只存差異
+        List<NoteRevision> revisions = revisionRepository.findByNoteIdAndVersionBetweenOrderByVersion(note.getId(), 0, 6);
+        assertEquals(List.of(0, 0, 0, 3, 3, 3, 6), revisions.stream().map(NoteRevision::getBaseVersion).toList());
+        assertTrue(revisions.get(1).getContentData().length() < 20);
+
+        for (int version = 0; version <= 6; version++) {
+            NoteRevisionResponse revision = revisionService.getRevision(note.getId(), version, USER, false);
+            assertEquals(contents.get(version), revision.getContent());
+            assertEquals(version == 0 ? "修訂紀錄" : "修訂紀錄 v" + version, revision.getTitle());
+        }
+        assertEquals(List.of("jpa", "spring"), revisionService.getRevision(note.getId(), 6, USER, false).getTagNames());
+
+        List<NoteRevisionSummary> summaries = revisionService.getRevisions(note.getId(), PageRequest.of(0, 3), USER, false)
+                .getContent();
+        assertEquals(List.of(6, 5, 4), summaries.stream().map(NoteRevisionSummary::getVersion).toList());
+    }
+
+    @Test
+    void testRevisionPermissions() {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.setTitle("權限");
+        request.setContent("內容");
+        Note note = noteService.createNote(request, USER);
+
+        assertThrows(AccessDeniedException.class,
+                () -> revisionService.getRevisions(note.getId(), PageRequest.of(0, 10), "other@example.com", false));
+        assertEquals("內容", revisionService.getRevision(note.getId(), 0, "admin@example.com", true).getContent());
+        assertThrows(NoteNotFoundException.class, () -> revisionService.getRevision(note.getId(), 9, USER, false));
+
+        // 刪除筆記時一併刪除修訂紀錄
+        noteService.deleteNote(note.getId(), USER, false);
+        assertTrue(revisionRepository.findByNoteIdAndVersion(note.getId(), 0).isEmpty());
+    }
+
+    private Note update(Note note, String title, String content, Set<String> tagNames) {
+        UpdateNoteRequest request = new UpdateNoteRequest();
+        request.setTitle(title);
+        request.setContent(content);
+        request.setTagNames(tagNames);
+        request.setVersion(note.getVersion());
+        return noteService.updateNote(note.getId(), request, USER, false);
+    }
+}
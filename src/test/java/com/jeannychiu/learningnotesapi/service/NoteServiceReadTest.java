@@ -0,0 +1,104 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.repository.NoteBodyRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 合併的筆記查看 (見 {@link SingleFlight}) 仍由每個呼叫者各自檢查權限
+ */
+class NoteServiceReadTest {
+    private static final String OWNER = "owner@example.com";
+    private static final String OTHER = "other@example.com";
+
+    private final NoteRepository noteRepository = mock(NoteRepository.class);
+    private final NoteGenerationTracker generationTracker = mock(NoteGenerationTracker.class);
+    private final NoteService noteService = new NoteService(noteRepository, mock(NoteBodyRepository.class),
+            null, null, null, null, generationTracker, null, null,
+            500, Duration.ofSeconds(5), "database");
+
+    @BeforeEach
+    void setUp() {
+        when(generationTracker.current(null)).thenReturn(new NoteGenerationTracker.Generation(1, true));
+    }
+
+    @Test
+    void testNonOwnerCoalescedOntoOwnerReadIsDenied() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(noteRepository.findNotesWithTagsByIds(anyList())).thenAnswer(invocation -> {
+            loading.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return List.of(note(OWNER));
+        });
+
+        FutureTask<Note> ownerRead = new FutureTask<>(() -> noteService.readNoteById(1L, OWNER, false));
+        Thread owner = new Thread(ownerRead);
+        owner.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        // 擁有者的查詢進行中，其他使用者的查看合併到同一次查詢並等待結果
+        FutureTask<Note> otherRead = new FutureTask<>(() -> noteService.readNoteById(1L, OTHER, false));
+        Thread other = new Thread(otherRead);
+        other.start();
+        waitUntil(() -> other.getState() == Thread.State.WAITING || other.getState() == Thread.State.TIMED_WAITING);
+        release.countDown();
+
+        Note read = ownerRead.get(5, TimeUnit.SECONDS);
+        assertEquals(OWNER, read.getUserEmail());
+        ExecutionException denied = assertThrows(ExecutionException.class, () -> otherRead.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(AccessDeniedException.class, denied.getCause());
+        verify(noteRepository, times(1)).findNotesWithTagsByIds(anyList());
+    }
+
+    @Test
+    void testNoteWithoutOwnerIsOnlyReadableByAdmin() {
+        when(noteRepository.findNotesWithTagsByIds(anyList())).thenReturn(List.of(note(null)));
+
+        assertThrows(AccessDeniedException.class, () -> noteService.readNoteById(1L, OTHER, false));
+        assertNull(noteService.readNoteById(1L, null, true).getUserEmail());
+    }
+
+    @Test
+    void testSharedResultIsDetachedCopy() {
+        Note loaded = note(OWNER);
+        when(noteRepository.findNotesWithTagsByIds(anyList())).thenReturn(List.of(loaded));
+
+        Note read = noteService.readNoteById(1L, OWNER, false);
+        assertNotSame(loaded, read);
+        assertEquals(loaded.getTitle(), read.getTitle());
+        assertEquals(loaded.getContent(), read.getContent());
+    }
+
+    private static Note note(String userEmail) {
+        Note note = new Note();
+        note.setId(1L);
+        note.setTitle("筆記");
+        note.setContent("內容");
+        note.setUserEmail(userEmail);
+        return note;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -1,110 +1,370 @@
-package com.jeannychiu.learningnotesapi.service;
-
-import com.jeannychiu.learningnotesapi.model.Note;
-
-import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.transaction.annotation.Transactional;
-
-import static org.junit.jupiter.api.Assertions.*;
-
-@SpringBootTest
-@Transactional
-class NoteServiceTest {
-    @Autowired
-    private NoteService noteService;
-
-    private String testUserEmail;
-
-    @BeforeEach
-    void setUp() {
-        testUserEmail = "test@example.com";
-    }
-
-    @Test
-    void testCreateNote() {
-        // 測試創建筆記
-        // 準備測試資料
-        Note note = new Note();
-        note.setTitle("測試標題 with English & 特殊符號!@#");
-        note.setContent("這是一段較長的測試內容...");
-
-        // 執行測試
-        Note createdNote = noteService.createNote(note, testUserEmail);
-
-        // 驗證結果
-        // 基本驗證
-        assertNotNull(createdNote);
-        assertNotNull(createdNote.getId());
-
-        // 內容驗證
-        assertEquals("測試標題 with English & 特殊符號!@#", createdNote.getTitle());
-        assertEquals("這是一段較長的測試內容...", createdNote.getContent());
-        assertEquals(testUserEmail, createdNote.getUserEmail());
-
-        // 時間戳記
-        assertNotNull(createdNote.getCreatedAt());
-        assertNotNull(createdNote.getUpdatedAt());
-    }
-
-    @Test
-    void testGetNotes() {
-        // 測試查詢筆記 - 一般使用者查詢自己的筆記
-        // 準備測試資料
-        Note note1 = new Note();
-        note1.setTitle("測試標題1");
-        note1.setContent("測試內容1");
-
-        Note note2 = new Note();
-        note2.setTitle("測試標題2");
-        note2.setContent("測試內容2");
-
-        noteService.createNote(note1, testUserEmail);
-        noteService.createNote(note2, testUserEmail);
-
-        // 執行測試
-        Pageable pageable = PageRequest.of(0, 10);
-        Page<Note> allNotes = noteService.getAllNotes(pageable, testUserEmail, false);
-
-        // 驗證結果
-        assertTrue(allNotes.getTotalElements() >= 2);
-        allNotes.getContent().forEach(note -> {
-            assertEquals(testUserEmail, note.getUserEmail());
-            assertNotNull(note.getId());
-            assertNotNull(note.getTitle());
-            assertNotNull(note.getContent());
-        });
-    }
-
-    @Test
-    void testUpdateNote() {
-        // 測試更新筆記
-        // 準備測試資料
-        Note originalNote = new Note();
-        originalNote.setTitle("原始標題");
-        originalNote.setContent("原始內容");
-
-        Note saved = noteService.createNote(originalNote, testUserEmail);
-
-        Note newNote = new Note();
-        newNote.setTitle("新標題");
-        newNote.setContent("新內容");
-
-        // 執行測試
-        Note updated = noteService.updateNote(saved.getId(), newNote, testUserEmail, false);
-
-        // 驗證結果
-        assertNotNull(updated);
-        assertEquals(saved.getId(), updated.getId());
-        assertEquals("新標題", updated.getTitle());
-        assertEquals("新內容", updated.getContent());
-        assertEquals(testUserEmail, updated.getUserEmail());
-        assertNotNull(updated.getUpdatedAt());
-        assertTrue(updated.getUpdatedAt().isAfter(saved.getCreatedAt()));
-    }
-}
\ No newline at end of file
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.CreateNoteRequest;
+import com.jeannychiu.learningnotesapi.dto.NoteBatchItem;
+import com.jeannychiu.learningnotesapi.dto.NoteBatchResponse;
+import com.jeannychiu.learningnotesapi.dto.NoteSummary;
+import com.jeannychiu.learningnotesapi.dto.UpdateNoteRequest;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.model.Tag;
+import com.jeannychiu.learningnotesapi.repository.NoteBodyRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import jakarta.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class NoteServiceTest {
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteBodyRepository noteBodyRepository;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private String testUserEmail;
+
+    @BeforeEach
+    void setUp() {
+        testUserEmail = "test@example.com";
+    }
+
+    @Test
+    void testCreateNote() {
+        // 測試創建筆記
+        // 準備測試資料
+        CreateNoteRequest note = new CreateNoteRequest();
+        note.setTitle("測試標題 with English & 特殊符號!@#");
+        note.setContent("這是一段較長的測試內容...");
+
+        // 執行測試
+        Note createdNote = noteService.createNote(note, testUserEmail);
+
+        // 驗證結果
+        // 基本驗證
+        assertNotNull(createdNote);
+        assertNotNull(createdNote.getId());
+
+        // 內容驗證
+        assertEquals("測試標題 with English & 特殊符號!@#", createdNote.getTitle());
+        assertEquals("這是一段較長的測試內容...", createdNote.getContent());
+        assertEquals(testUserEmail, createdNote.getUserEmail());
+
+        // 時間戳記
+        assertNotNull(createdNote.getCreatedAt());
+        assertNotNull(createdNote.getUpdatedAt());
+    }
+
+    @Test
+    void testGetNotes() {
+        // 測試查詢筆記 - 一般使用者查詢自己的筆記
+        // 準備測試資料
+        CreateNoteRequest note1 = new CreateNoteRequest();
+        note1.setTitle("測試標題1");
+        note1.setContent("測試內容1");
+
+        CreateNoteRequest note2 = new CreateNoteRequest();
+        note2.setTitle("測試標題2");
+        note2.setContent("測試內容2");
+
+        noteService.createNote(note1, testUserEmail);
+        noteService.createNote(note2, testUserEmail);
+
+        // 執行測試
+        Pageable pageable = PageRequest.of(0, 10);
+        Page<Note> allNotes = noteService.getAllNotes(pageable, testUserEmail, false);
+
+        // 驗證結果
+        assertTrue(allNotes.getTotalElements() >= 2);
+        allNotes.getContent().forEach(note -> {
+            assertEquals(testUserEmail, note.getUserEmail());
+            assertNotNull(note.getId());
+            assertNotNull(note.getTitle());
+            assertNotNull(note.getContent());
+        });
+    }
+
+    @Test
+    void testUpdateNote() {
+        // 測試更新筆記
+        // 準備測試資料
+        CreateNoteRequest originalNote = new CreateNoteRequest();
+        originalNote.setTitle("原始標題");
+        originalNote.setContent("原始內容");
+
+        Note saved = noteService.createNote(originalNote, testUserEmail);
+
+        UpdateNoteRequest newNote = new UpdateNoteRequest();
+        newNote.setTitle("新標題");
+        newNote.setContent("新內容");
+        newNote.setVersion(saved.getVersion());
+
+        // 執行測試
+        Note updated = noteService.updateNote(saved.getId(), newNote, testUserEmail, false);
+
+        // 驗證結果
+        assertNotNull(updated);
+        assertEquals(saved.getId(), updated.getId());
+        assertEquals("新標題", updated.getTitle());
+        assertEquals("新內容", updated.getContent());
+        assertEquals(testUserEmail, updated.getUserEmail());
+        assertNotNull(updated.getUpdatedAt());
+        assertTrue(updated.getUpdatedAt().isAfter(saved.getCreatedAt()));
+    }
+
+    @Test
+    void testNoteVersionAndListETag() {
+        // 測試 ETag 所需的版本號與列表世代
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.setTitle("ETag 標題");
+        request.setContent("ETag 內容");
+        Note saved = noteService.createNote(request, testUserEmail);
+
+        // 只有擁有者與管理員取得版本號
+        assertEquals(saved.getVersion(), noteService.findNoteVersion(saved.getId(), testUserEmail, false));
+        assertEquals(saved.getVersion(), noteService.findNoteVersion(saved.getId(), "admin@example.com", true));
+        assertNull(noteService.findNoteVersion(saved.getId(), "other@example.com", false));
+        assertNull(noteService.findNoteVersion(-1L, testUserEmail, false));
+
+        // 剛寫入的異動尚未穩定，不產生 ETag
+        Pageable pageable = PageRequest.of(0, 10);
+        assertNull(noteService.getNotesETag(pageable, testUserEmail, false, "list", null, null));
+
+        // 世代取自資料庫的異動紀錄，其他使用者的異動 (上面的新增) 不影響
+        String userEmail = "etag@example.com";
+        String etag = noteService.getNotesETag(pageable, userEmail, false, "list", null, null);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals(etag, noteService.getNotesETag(pageable, userEmail, false, "list", null, null));
+        assertNotEquals(etag, noteService.getNotesETag(PageRequest.of(1, 10), userEmail, false, "list", null, null));
+        assertNotEquals(etag, noteService.getNotesETag(pageable, userEmail, false, "list", "java", null));
+        assertNotEquals(etag, noteService.getNotesETag(pageable, "other@example.com", false, "list", null, null));
+
+        // 自己的異動改變 ETag
+        noteService.createNote(request, userEmail);
+        assertNotEquals(etag, noteService.getNotesETag(pageable, userEmail, false, "list", null, null));
+    }
+
+    @Test
+    void testNoteSummaries() {
+        // 測試寫入時計算的摘要與統計，以及 view=summary 的列表
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.setTitle("摘要筆記");
+        request.setContent("學習 Spring Boot");
+        request.setTagNames(Set.of("spring", "java"));
+        Note saved = noteService.createNote(request, testUserEmail);
+
+        assertEquals("學習 Spring Boot", saved.getExcerpt());
+        assertEquals(14, saved.getCharCount());
+        assertEquals(4, saved.getWordCount());
+        assertEquals(64, saved.getContentHash().length());
+
+        Page<NoteSummary> summaries = noteService.getNoteSummaries(PageRequest.of(0, 10), testUserEmail, false,
+                null, null);
+        assertEquals(1, summaries.getTotalElements());
+        NoteSummary summary = summaries.getContent().get(0);
+        assertEquals(saved.getId(), summary.getId());
+        assertEquals("摘要筆記", summary.getTitle());
+        assertEquals(saved.getExcerpt(), summary.getExcerpt());
+        assertEquals(List.of("java", "spring"), summary.getTagNames());
+        assertEquals(saved.getContentHash(), summary.getContentHash());
+        assertEquals(saved.getVersion(), summary.getVersion());
+
+        // 更新內容後重新計算
+        UpdateNoteRequest update = new UpdateNoteRequest();
+        update.setTitle("摘要筆記");
+        update.setContent("新的內容");
+        update.setVersion(saved.getVersion());
+        Note updated = noteService.updateNote(saved.getId(), update, testUserEmail, false);
+        assertEquals(4, updated.getWordCount());
+        assertNotEquals(summary.getContentHash(), updated.getContentHash());
+    }
+
+    @Test
+    void testDuplicateNotes() {
+        // 測試以指紋偵測重複的筆記
+        Note original = noteService.createNote(createRequest("重複筆記", "相同的內容", "java"), testUserEmail);
+
+        // 預設照常新增
+        NoteService.CreateResult allowed = noteService.createNote(
+                createRequest("重複筆記", "相同的內容", "java"), testUserEmail, DuplicateNotePolicy.ALLOW);
+        assertEquals(NoteBatchItem.Status.CREATED, allowed.status());
+        assertNotEquals(original.getId(), allowed.note().getId());
+
+        // 空白不同仍視為重複，回傳最早的筆記
+        NoteService.CreateResult skipped = noteService.createNote(
+                createRequest(" 重複筆記", "相同的內容\n", "java"), testUserEmail, DuplicateNotePolicy.SKIP);
+        assertEquals(NoteBatchItem.Status.SKIPPED, skipped.status());
+        assertEquals(original.getId(), skipped.note().getId());
+
+        // 其他使用者的筆記不算重複
+        assertEquals(NoteBatchItem.Status.CREATED, noteService.createNote(
+                createRequest("重複筆記", "相同的內容"), "other@example.com", DuplicateNotePolicy.SKIP).status());
+
+        // 合併新的標籤
+        NoteService.CreateResult merged = noteService.createNote(
+                createRequest("重複筆記", "相同的內容", "java", "spring"), testUserEmail, DuplicateNotePolicy.MERGE);
+        assertEquals(NoteBatchItem.Status.MERGED, merged.status());
+        assertEquals(original.getId(), merged.note().getId());
+        assertEquals(Set.of("java", "spring"),
+                merged.note().getTags().stream().map(Tag::getName).collect(Collectors.toSet()));
+        assertEquals(NoteBatchItem.Status.SKIPPED, noteService.createNote(
+                createRequest("重複筆記", "相同的內容", "spring"), testUserEmail, DuplicateNotePolicy.MERGE).status());
+
+        // 批次新增時，同一批中的重複也會略過
+        NoteBatchResponse batch = noteService.createNotes(List.of(
+                createRequest("重複筆記", "相同的內容"),
+                createRequest("新的筆記", "新的內容"),
+                createRequest("新的筆記", "新的內容")), testUserEmail, DuplicateNotePolicy.SKIP);
+        assertEquals(1, batch.getCreated());
+        assertEquals(2, batch.getSkipped());
+        assertEquals(NoteBatchItem.Status.CREATED, batch.getItems().get(1).getStatus());
+        assertEquals(batch.getItems().get(1).getNoteId(), batch.getItems().get(2).getNoteId());
+    }
+
+    @Test
+    void testFingerprintCollisionIsNotDuplicate() {
+        // 指紋相同但內容不同 (模擬碰撞) 時仍照常新增
+        Note existing = noteService.createNote(createRequest("既有筆記", "既有的內容"), testUserEmail);
+        entityManager.flush();
+        entityManager.createQuery("UPDATE Note n SET n.fingerprint = :fingerprint WHERE n.id = :id")
+                .setParameter("fingerprint", NoteFingerprint.of("新的筆記", "不同的內容"))
+                .setParameter("id", existing.getId())
+                .executeUpdate();
+        entityManager.clear();
+
+        NoteService.CreateResult created = noteService.createNote(
+                createRequest("新的筆記", "不同的內容"), testUserEmail, DuplicateNotePolicy.SKIP);
+        assertEquals(NoteBatchItem.Status.CREATED, created.status());
+        assertNotEquals(existing.getId(), created.note().getId());
+
+        // 同一個指紋的第二筆確實重複，略過並回傳該筆
+        NoteService.CreateResult skipped = noteService.createNote(
+                createRequest("新的筆記", "不同的內容 "), testUserEmail, DuplicateNotePolicy.SKIP);
+        assertEquals(NoteBatchItem.Status.SKIPPED, skipped.status());
+        assertEquals(created.note().getId(), skipped.note().getId());
+    }
+
+    private static CreateNoteRequest createRequest(String title, String content, String... tagNames) {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.setTitle(title);
+        request.setContent(content);
+        request.setTagNames(Set.of(tagNames));
+        return request;
+    }
+
+    @Test
+    void testMultiTagSearchInDatabase() {
+        // 多標籤條件與關鍵字在資料庫中比對並分頁 (不依賴搜尋索引的標籤點陣圖)
+        Note both = noteService.createNote(createRequest("Spring 筆記", "Flyway 遷移", "java", "spring"), testUserEmail);
+        Note kotlin = noteService.createNote(createRequest("Kotlin 筆記", "Flyway 遷移", "kotlin", "spring"),
+                testUserEmail);
+        noteService.createNote(createRequest("草稿", "Flyway 遷移", "java", "spring", "draft"), testUserEmail);
+        noteService.createNote(createRequest("其他筆記", "沒有提到", "java", "spring"), testUserEmail);
+        Note escaped = noteService.createNote(createRequest("C 筆記", "Flyway", "c,c++"), testUserEmail);
+
+        entityManager.flush();
+        entityManager.clear();
+        Pageable pageable = PageRequest.of(0, 10);
+        assertEquals(Set.of(both.getId(), kotlin.getId()), Set.copyOf(noteService.searchNotesByTagAndKeyword(
+                pageable, testUserEmail, false, "java|kotlin,spring,-draft", "flyway").map(Note::getId).getContent()));
+        Page<Note> page = noteService.searchNotesByTagAndKeyword(PageRequest.of(1, 1), testUserEmail, false,
+                "java|kotlin,spring,-draft", "flyway");
+        assertEquals(2, page.getTotalElements());
+        assertEquals(1, page.getContent().size());
+        assertEquals(List.of(escaped.getId()), noteService.searchNotesByTag(pageable, testUserEmail, false,
+                "c\\,c++").map(Note::getId).getContent());
+        assertEquals(4, noteService.searchNotesByTag(pageable, testUserEmail, false, "spring|c\\,c++,-draft")
+                .getTotalElements());
+    }
+
+    @Test
+    void testLargeContentStoredSeparately() {
+        // 測試較長的內容存在 note_body，列表只有摘要
+        String content = "大型筆記內容 large note body. ".repeat(20_000);
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.setTitle("大型筆記");
+        request.setContent(content);
+        Note saved = noteService.createNote(request, testUserEmail);
+
+        assertEquals(content, saved.getContent());
+        assertTrue(saved.isContentExternal());
+        assertEquals(NoteTextStats.EXCERPT_LENGTH + 1, saved.getExcerpt().length());
+        assertTrue(content.startsWith(saved.getExcerpt().substring(0, NoteTextStats.EXCERPT_LENGTH)));
+        assertTrue(noteBodyRepository.existsById(saved.getId()));
+
+        // 列表不載入內容 (剛寫入的異動尚未穩定，不使用查詢快取)
+        entityManager.flush();
+        entityManager.clear();
+        Note listed = noteService.getAllNotes(PageRequest.of(0, 10), testUserEmail, false).getContent().get(0);
+        assertEquals(saved.getId(), listed.getId());
+        assertNull(listed.getContent());
+        assertEquals(saved.getExcerpt(), listed.getExcerpt());
+
+        // 查看單篇筆記時載入完整內容
+        entityManager.clear();
+        Note read = noteService.readNoteById(saved.getId(), testUserEmail, false);
+        assertEquals(content, read.getContent());
+
+        // 改為較短的內容後移回 note 資料表
+        UpdateNoteRequest update = new UpdateNoteRequest();
+        update.setTitle("大型筆記");
+        update.setContent("短內容");
+        update.setVersion(read.getVersion());
+        Note updated = noteService.updateNote(saved.getId(), update, testUserEmail, false);
+        assertFalse(updated.isContentExternal());
+        assertEquals("短內容", updated.getExcerpt());
+        assertFalse(noteBodyRepository.existsById(saved.getId()));
+    }
+
+    @Test
+    void testKeywordSearchMatchesContentStoredSeparately() {
+        // 關鍵字只出現在第 500 個字元之後，內容存在 note_body
+        String content = "前言。".repeat(200) + "這裡介紹 Flyway 資料庫遷移";
+        Note saved = noteService.createNote(createRequest("長筆記", content, "資料庫"), testUserEmail);
+        assertTrue(saved.isContentExternal());
+        noteService.createNote(createRequest("短筆記", "沒有提到遷移工具", "資料庫"), testUserEmail);
+
+        entityManager.flush();
+        entityManager.clear();
+        Pageable pageable = PageRequest.of(0, 10);
+        assertEquals(List.of(saved.getId()), noteService.searchNotes(pageable, testUserEmail, false, "flyway")
+                .map(Note::getId).getContent());
+        // 標籤與關鍵字的資料庫查詢 (搜尋索引的標籤點陣圖在交易提交後才更新，直接查詢)
+        assertEquals(List.of(saved.getId()), noteRepository.findByUserEmailAndTagNameAndKeyword(testUserEmail,
+                "資料庫", "資料庫遷移", pageable).getContent());
+        // 管理員搜尋所有使用者的筆記
+        assertEquals(List.of(saved.getId()), noteService.searchNotes(pageable, null, true, "Flyway")
+                .map(Note::getId).getContent());
+
+        // 內容更新後以新的內容比對
+        UpdateNoteRequest update = new UpdateNoteRequest();
+        update.setTitle("長筆記");
+        update.setContent("前言。".repeat(200) + "改為介紹 Liquibase");
+        update.setVersion(saved.getVersion());
+        noteService.updateNote(saved.getId(), update, testUserEmail, false);
+        entityManager.flush();
+        entityManager.clear();
+        assertTrue(noteService.searchNotes(pageable, testUserEmail, false, "flyway").isEmpty());
+        assertEquals(List.of(saved.getId()), noteService.searchNotes(pageable, testUserEmail, false, "liquibase")
+                .map(Note::getId).getContent());
+    }
+}
@@ -0,0 +1,146 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.event.NoteChangedEvent;
+import com.jeannychiu.learningnotesapi.model.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteStreamHubTest {
+    private static final String USER = "user@example.com";
+    private static final String OTHER_USER = "other@example.com";
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testEventsFanOutToOwnerSubscribers() {
+        // 在呼叫的執行緒直接寫出，事件送出的時間點是確定的
+        NoteStreamHub hub = new NoteStreamHub(Runnable::run, Duration.ofMinutes(30), 4, 2, Duration.ofSeconds(10));
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        RecordingEmitter other = new RecordingEmitter();
+        hub.subscribe(USER, first);
+        hub.subscribe(USER, second);
+        hub.subscribe(OTHER_USER, other);
+
+        hub.onNoteChanged(new NoteChangedEvent(NoteChangedEvent.Type.UPDATED, note(1L, USER)));
+        hub.sendHeartbeats();
+
+        assertTrue(first.text().contains("event:updated"));
+        assertTrue(second.text().contains("event:updated"));
+        assertFalse(other.text().contains("event:updated"));
+        assertTrue(other.text().contains(":heartbeat"));
+        assertEquals(3, hub.getStats().getSubscriberCount());
+
+        // 超過每個使用者的連線數上限時中斷最舊的連線
+        hub.subscribe(USER, new RecordingEmitter());
+        assertEquals(3, hub.getStats().getSubscriberCount());
+        hub.onNoteChanged(new NoteChangedEvent(NoteChangedEvent.Type.DELETED, note(1L, USER)));
+        assertFalse(first.text().contains("event:deleted"));
+        assertTrue(second.text().contains("event:deleted"));
+    }
+
+    @Test
+    void testSlowConsumerIsEvicted() throws Exception {
+        NoteStreamHub hub = new NoteStreamHub(executor, Duration.ofMinutes(30), 4, 2, Duration.ofSeconds(10));
+        BlockingEmitter slow = new BlockingEmitter();
+        hub.subscribe(USER, slow);
+
+        // 寫出執行緒卡在第一個事件 (connected)，緩衝區是空的
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+
+        // 事件堆在緩衝區，剛好填滿時仍保留連線
+        for (long id = 1; id <= 4; id++) {
+            hub.onNoteChanged(new NoteChangedEvent(NoteChangedEvent.Type.CREATED, note(id, USER)));
+        }
+        assertEquals(0, hub.getStats().getEvictedCount());
+        assertEquals(1, hub.getStats().getSubscriberCount());
+
+        // 超過緩衝區大小即中斷連線
+        hub.onNoteChanged(new NoteChangedEvent(NoteChangedEvent.Type.CREATED, note(5L, USER)));
+        assertEquals(1, hub.getStats().getEvictedCount());
+        assertEquals(0, hub.getStats().getSubscriberCount());
+        assertEquals(0, hub.getStats().getUserCount());
+        slow.release.countDown();
+    }
+
+    @Test
+    void testStalledSendIsEvicted() throws Exception {
+        // 時間上限為 0：任何進行中的寫出都視為逾時
+        NoteStreamHub hub = new NoteStreamHub(executor, Duration.ofMinutes(30), 4, 2, Duration.ZERO);
+        BlockingEmitter stalled = new BlockingEmitter();
+        RecordingEmitter idle = new RecordingEmitter();
+        hub.subscribe(USER, stalled);
+        assertTrue(stalled.sending.await(5, TimeUnit.SECONDS));
+        hub.subscribe(OTHER_USER, idle);
+
+        hub.evictStalledSubscribers();
+
+        // 卡住的寫出被中斷，執行緒回到執行緒池繼續處理其他連線
+        assertTrue(stalled.interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, hub.getStats().getEvictedCount());
+        assertEquals(1, hub.getStats().getSubscriberCount());
+        assertFalse(executor.submit(() -> Thread.currentThread().isInterrupted()).get(5, TimeUnit.SECONDS));
+        hub.onNoteChanged(new NoteChangedEvent(NoteChangedEvent.Type.UPDATED, note(1L, OTHER_USER)));
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        assertTrue(idle.text().contains("event:updated"));
+    }
+
+    private static Note note(Long id, String userEmail) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUserEmail(userEmail);
+        note.setVersion(0);
+        return note;
+    }
+
+    // 寫出時卡住，直到 release 或被中斷
+    private static class BlockingEmitter extends SseEmitter {
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new IOException("寫出被中斷", e);
+            }
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            events.add(builder.build().stream()
+                    .map(data -> String.valueOf(data.getData()))
+                    .collect(Collectors.joining()));
+        }
+
+        String text() {
+            return String.join("", events);
+        }
+    }
+}
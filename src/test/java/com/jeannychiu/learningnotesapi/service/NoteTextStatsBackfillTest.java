@@ -0,0 +1,87 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.dto.CreateNoteRequest;
+import com.jeannychiu.learningnotesapi.model.Note;
+import com.jeannychiu.learningnotesapi.repository.NoteBodyRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteChangeRepository;
+import com.jeannychiu.learningnotesapi.repository.NoteRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class NoteTextStatsBackfillTest {
+    private static final String USER_EMAIL = "backfill@example.com";
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private NoteBodyRepository noteBodyRepository;
+
+    @Autowired
+    private NoteChangeRepository noteChangeRepository;
+
+    @Autowired
+    private NoteGenerationTracker generationTracker;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void testBackfillHoldsLeaseAndAdvancesGeneration() {
+        // 模擬升級前建立、尚未有統計的筆記
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.setTitle("升級前的筆記");
+        request.setContent("Spring Boot 的內容");
+        Long id = noteService.createNote(request, USER_EMAIL).getId();
+        entityManager.flush();
+        entityManager.createQuery("UPDATE Note n SET n.excerpt = NULL, n.charCount = NULL, n.wordCount = NULL, " +
+                "n.contentHash = NULL, n.fingerprint = NULL WHERE n.id = :id").setParameter("id", id).executeUpdate();
+        entityManager.clear();
+        long generation = generationTracker.current(USER_EMAIL).value();
+
+        // 其他執行個體持有租約時不執行
+        setLockedUntil("other", LocalDateTime.now().plusHours(1));
+        assertFalse(backfill().backfill());
+        assertNull(noteRepository.findById(id).orElseThrow().getCharCount());
+
+        // 租約過期後接手，補上統計並寫入異動紀錄
+        setLockedUntil("other", LocalDateTime.now().minusSeconds(1));
+        assertTrue(backfill().backfill());
+        entityManager.clear();
+        Note note = noteRepository.findById(id).orElseThrow();
+        assertNotNull(note.getCharCount());
+        assertNotNull(note.getFingerprint());
+        assertTrue(generationTracker.current(USER_EMAIL).value() > generation);
+    }
+
+    private NoteTextStatsBackfill backfill() {
+        return new NoteTextStatsBackfill(noteRepository, noteBodyRepository, noteChangeRepository, transactionTemplate,
+                jdbcTemplate, Duration.ofMinutes(5));
+    }
+
+    private void setLockedUntil(String owner, LocalDateTime lockedUntil) {
+        jdbcTemplate.update("UPDATE background_job_lock SET owner = ?, locked_until = ? WHERE name = ?",
+                owner, lockedUntil, "note-text-stats-backfill");
+    }
+}
@@ -0,0 +1,54 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteTextStatsTest {
+
+    @Test
+    void testExcerptDoesNotSplitGraphemes() {
+        assertNull(NoteTextStats.excerpt(null));
+        assertEquals("短內容", NoteTextStats.excerpt("短內容"));
+
+        // 家庭 emoji 由多個 code point 以 ZWJ 連接，必須整個保留或整個截掉
+        String family = "\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67";
+        String content = "a".repeat(NoteTextStats.EXCERPT_LENGTH - 1) + family + "後面的內容";
+        String excerpt = NoteTextStats.excerpt(content);
+        assertEquals("a".repeat(NoteTextStats.EXCERPT_LENGTH - 1) + family + "…", excerpt);
+
+        // 組合字元 (e + 重音符號) 不會被切開
+        String accented = "e\u0301";
+        String combining = "a".repeat(NoteTextStats.EXCERPT_LENGTH - 2) + accented.repeat(3);
+        assertEquals("a".repeat(NoteTextStats.EXCERPT_LENGTH - 2) + accented.repeat(2) + "…",
+                NoteTextStats.excerpt(combining));
+
+        // 多字元組成的字很多時，以欄位長度為上限
+        String longGraphemes = NoteTextStats.excerpt(family.repeat(NoteTextStats.EXCERPT_LENGTH));
+        assertTrue(longGraphemes.length() <= 255);
+        assertTrue(longGraphemes.replace("…", "").length() % family.length() == 0);
+    }
+
+    @Test
+    void testCounts() {
+        assertEquals(0, NoteTextStats.characterCount(null));
+        assertEquals(0, NoteTextStats.wordCount(null));
+
+        // 補充平面的字元算一個字元
+        assertEquals(3, NoteTextStats.characterCount("a\uD83D\uDE00b"));
+
+        // 中文每字一個詞，英文以空白與標點分隔
+        assertEquals(6, NoteTextStats.wordCount("學習 Spring Boot, 3 版"));
+        assertEquals(4, NoteTextStats.wordCount("資料庫 index"));
+        assertEquals(2, NoteTextStats.wordCount("  hello\n\nworld  "));
+    }
+
+    @Test
+    void testContentHash() {
+        assertNull(NoteTextStats.contentHash(null));
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                NoteTextStats.contentHash(""));
+        assertEquals(NoteTextStats.contentHash("內容"), NoteTextStats.contentHash("內容"));
+        assertNotEquals(NoteTextStats.contentHash("內容"), NoteTextStats.contentHash("內容 "));
+    }
+}
@@ -0,0 +1,116 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentCallsShareOneLoad() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> flight.execute("note-1", () -> blockingLoad(release)));
+        waitUntil(() -> loads.get() == 1);
+
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            followers.add(executor.submit(() -> flight.execute("note-1", () -> blockingLoad(release))));
+        }
+        waitUntil(() -> flight.coalescedCount() == 5);
+        // 不同的鍵不會等待
+        assertEquals("result-2", flight.execute("note-2", () -> "result-" + loads.incrementAndGet()));
+
+        release.countDown();
+        assertEquals("result-1", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> follower : followers) {
+            assertEquals("result-1", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, loads.get());
+
+        // 完成後不保留結果
+        assertEquals(0, flight.inFlightCount());
+        assertEquals("result-3", flight.execute("note-1", () -> "result-" + loads.incrementAndGet()));
+    }
+
+    @Test
+    void testFailureIsSharedButNotKept() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> flight.execute("note-1", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("查詢失敗");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> follower = executor.submit(() -> flight.execute("note-1", () -> "unexpected"));
+        waitUntil(() -> flight.coalescedCount() == 1);
+        release.countDown();
+
+        // 等待中的呼叫者收到同一個例外
+        assertInstanceOf(IllegalStateException.class, assertThrows(ExecutionException.class,
+                () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+        assertInstanceOf(IllegalStateException.class, assertThrows(ExecutionException.class,
+                () -> follower.get(5, TimeUnit.SECONDS)).getCause());
+
+        // 失敗不會保留，之後重新查詢
+        assertEquals("ok", flight.execute("note-1", () -> "ok"));
+    }
+
+    @Test
+    void testTimeoutFallsBackToOwnLoad() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> flight.execute("note-1", () -> blockingLoad(release)));
+        waitUntil(() -> loads.get() == 1);
+
+        assertEquals("own", flight.execute("note-1", () -> "own"));
+        release.countDown();
+        assertEquals("result-1", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    private String blockingLoad(CountDownLatch release) {
+        int load = loads.incrementAndGet();
+        await(release);
+        return "result-" + load;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
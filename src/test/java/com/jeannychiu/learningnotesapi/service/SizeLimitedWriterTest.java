@@ -0,0 +1,43 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SizeLimitedWriterTest {
+
+    @Test
+    void testTruncatesAtLimit() throws IOException {
+        SizeLimitedWriter exact = new SizeLimitedWriter(5);
+        exact.write("ab");
+        exact.write("cde");
+        assertFalse(exact.isTruncated());
+        assertEquals("abcde", exact.toString());
+
+        // 超過上限時保留上限內的部分並中斷寫入
+        SizeLimitedWriter writer = new SizeLimitedWriter(5);
+        writer.write("abc");
+        assertThrows(IOException.class, () -> writer.write("defg"));
+        assertTrue(writer.isTruncated());
+        assertEquals("abcde", writer.toString());
+        assertThrows(IOException.class, () -> writer.write("h"));
+        assertEquals("abcde", writer.toString());
+    }
+
+    @Test
+    void testStopsSerializationEarly() {
+        // 序列化結果遠大於上限時，只保留上限內的內容
+        List<String> large = Collections.nCopies(100_000, "這是一段很長的內容");
+        SizeLimitedWriter writer = new SizeLimitedWriter(1_000);
+
+        assertThrows(IOException.class, () -> new ObjectMapper().writeValue(writer, large));
+        assertTrue(writer.isTruncated());
+        assertEquals(1_000, writer.toString().length());
+        assertTrue(writer.toString().startsWith("[\"這是一段很長的內容\",\""));
+    }
+}
@@ -0,0 +1,67 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextDeltaTest {
+
+    @Test
+    void testDiffAndApply() {
+        assertEquals("=6+5:java =5", TextDelta.diff("hello world", "hello java world"));
+        assertEquals("=11", TextDelta.diff("hello world", "hello world"));
+        assertEquals("+5:hello", TextDelta.diff("", "hello"));
+
+        // 分散的兩處修改只記錄修改的部分
+        String base = "第一段：Spring Boot。".repeat(5) + "中間不變的內容".repeat(20) + "結尾：JPA。";
+        String target = base.replace("第一段：Spring Boot。第一段", "第一段：Spring Boot 3。第一段")
+                .replace("結尾：JPA", "結尾：Hibernate");
+        String delta = TextDelta.diff(base, target);
+        assertEquals(target, TextDelta.apply(base, delta));
+        assertTrue(delta.length() < 40, delta);
+
+        // surrogate pair 不會被拆開
+        assertEquals("😀😃 ok", TextDelta.apply("😀 ok", TextDelta.diff("😀 ok", "😀😃 ok")));
+        assertThrows(IllegalStateException.class, () -> TextDelta.apply("short", "=10"));
+    }
+
+    @Test
+    void testRandomEditsRoundTrip() {
+        Random random = new Random(7);
+        String text = randomText(random, 2_000);
+        for (int i = 0; i < 200; i++) {
+            String edited = randomEdit(random, text);
+            String delta = TextDelta.diff(text, edited);
+            assertEquals(edited, TextDelta.apply(text, delta));
+            text = edited;
+        }
+
+        // 整篇改寫時超過編輯上限，仍然正確
+        String rewritten = randomText(random, 2_000);
+        assertEquals(rewritten, TextDelta.apply(text, TextDelta.diff(text, rewritten)));
+    }
+
+    private static String randomEdit(Random random, String text) {
+        StringBuilder edited = new StringBuilder(text);
+        for (int i = 0; i < 1 + random.nextInt(3); i++) {
+            int position = random.nextInt(edited.length() + 1);
+            if (random.nextBoolean() && position < edited.length()) {
+                edited.delete(position, Math.min(edited.length(), position + random.nextInt(10)));
+            } else {
+                edited.insert(position, randomText(random, random.nextInt(10)));
+            }
+        }
+        return edited.toString();
+    }
+
+    private static String randomText(Random random, int length) {
+        String alphabet = "abc 筆記內容+=-:0123";
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.jeannychiu.learningnotesapi.service;
+
+import com.jeannychiu.learningnotesapi.constant.RoleConstants;
+import com.jeannychiu.learningnotesapi.model.User;
+import com.jeannychiu.learningnotesapi.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class UserIdCacheTest {
+    @Autowired
+    private UserIdCache userIdCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testUpdatedAndDeletedUsersAreEvicted() {
+        User user = new User();
+        user.setEmail("cached@example.com");
+        user.setPassword("password");
+        user.setRole(RoleConstants.USER);
+        userRepository.saveAndFlush(user);
+
+        assertEquals(user.getId(), userIdCache.resolve("cached@example.com", email -> Optional.of(user.getId())));
+        assertEquals(user.getId(), userIdCache.resolve("cached@example.com", email -> Optional.empty()));
+
+        // 變更信箱後，舊信箱不再對應到此使用者
+        user.setEmail("renamed@example.com");
+        userRepository.saveAndFlush(user);
+        assertNull(userIdCache.resolve("cached@example.com", email -> Optional.empty()));
+
+        assertEquals(user.getId(), userIdCache.resolve("renamed@example.com", email -> Optional.of(user.getId())));
+        userRepository.delete(user);
+        userRepository.flush();
+        assertNull(userIdCache.resolve("renamed@example.com", email -> Optional.empty()));
+    }
+}
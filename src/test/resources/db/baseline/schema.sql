@@ -0,0 +1,54 @@
+-- 改用 Flyway 前由 Hibernate (ddl-auto=update) 建立的資料表，用來測試既有資料庫的升級
+-- api_log 的請求/回應內容為 LONGTEXT，沒有 request_time 索引
+
+CREATE TABLE user (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    email      VARCHAR(255) NOT NULL,
+    google_sub VARCHAR(255),
+    password   VARCHAR(255) NOT NULL,
+    role       VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_user_email UNIQUE (email)
+);
+
+CREATE TABLE tag (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    name       VARCHAR(255) NOT NULL,
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_tag_name UNIQUE (name)
+);
+
+CREATE TABLE note (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    title      VARCHAR(255) NOT NULL,
+    content    VARCHAR(500),
+    user_email VARCHAR(255),
+    version    INTEGER,
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE note_tag (
+    note_id BIGINT NOT NULL,
+    tag_id  BIGINT NOT NULL,
+    PRIMARY KEY (note_id, tag_id),
+    CONSTRAINT fk_note_tag_note FOREIGN KEY (note_id) REFERENCES note (id),
+    CONSTRAINT fk_note_tag_tag FOREIGN KEY (tag_id) REFERENCES tag (id)
+);
+
+CREATE TABLE api_log (
+    id            BIGINT       NOT NULL AUTO_INCREMENT,
+    api_path      VARCHAR(255),
+    http_method   VARCHAR(10),
+    request_body  LONGTEXT,
+    response_body LONGTEXT,
+    status_code   INTEGER,
+    request_time  DATETIME(6),
+    response_time DATETIME(6),
+    duration      BIGINT,
+    user_id       BIGINT,
+    PRIMARY KEY (id)
+);